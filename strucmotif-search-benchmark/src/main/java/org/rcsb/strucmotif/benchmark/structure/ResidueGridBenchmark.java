@@ -0,0 +1,120 @@
+package org.rcsb.strucmotif.benchmark.structure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rcsb.strucmotif.config.MotifSearchConfig;
+import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
+import org.rcsb.strucmotif.domain.structure.ResidueGrid;
+import org.rcsb.strucmotif.domain.structure.Structure;
+import org.rcsb.strucmotif.io.StructureReaderImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares contact enumeration of the cell-list {@link ResidueGrid} with the previous list-based grid on large
+ * assemblies.
+ */
+public class ResidueGridBenchmark {
+    /**
+     * Backbone coordinates of all residues of a structure, expanded by every operator of that structure.
+     */
+    @State(Scope.Benchmark)
+    public static class AssemblyState {
+        /**
+         * The structure to expand.
+         */
+        @Param({ "1aon", "4v6x" })
+        public String structureIdentifier;
+        private final MotifSearchConfig config = new MotifSearchConfig();
+        List<float[]> vectors;
+        float squaredCutoff;
+
+        /**
+         * Fetch the structure and compute the vectors.
+         */
+        @Setup
+        public void setup() {
+            Structure structure = readStructure(structureIdentifier);
+            this.squaredCutoff = config.getSquaredDistanceCutoff();
+            this.vectors = new ArrayList<>();
+            ResidueBuffer residue = new ResidueBuffer();
+            int operatorCount = structure.getTransformations().size();
+            for (int operatorIndex = 0; operatorIndex < operatorCount; operatorIndex++) {
+                for (int i = 0; i < structure.getResidueCount(); i++) {
+                    structure.manifestResidue(i, operatorIndex, residue);
+                    if (residue.contains(LabelAtomId.CA)) {
+                        vectors.add(residue.get(LabelAtomId.CA, new float[3]));
+                    } else if (residue.contains(LabelAtomId.C4_PRIME)) {
+                        vectors.add(residue.get(LabelAtomId.C4_PRIME, new float[3]));
+                    } else {
+                        vectors.add(null);
+                    }
+                }
+            }
+        }
+
+        private Structure readStructure(String structureIdentifier) {
+            String pdbId = structureIdentifier.toLowerCase();
+            String uri = config.getCifFetchUrl()
+                    .replace("{middle}", pdbId.substring(1, 3))
+                    .replace("{MIDDLE}", pdbId.substring(1, 3).toUpperCase())
+                    .replace("{id}", pdbId)
+                    .replace("{ID}", pdbId.toUpperCase());
+            try (InputStream inputStream = new URL(uri).openStream()) {
+                return new StructureReaderImpl().readFromInputStream(inputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Cell-list grid, contacts reported by callback.
+     * @param blackhole consume results (avoid dead-code elimination)
+     * @param state state
+     */
+    @Benchmark
+    public void cellListGrid(Blackhole blackhole, AssemblyState state) {
+        ResidueGrid residueGrid = new ResidueGrid(state.vectors, state.squaredCutoff);
+        residueGrid.forEachContact((i, j, distance) -> blackhole.consume(distance));
+    }
+
+    /**
+     * Previous grid, contacts collected as objects.
+     * @param blackhole consume results (avoid dead-code elimination)
+     * @param state state
+     */
+    @Benchmark
+    public void listGrid(Blackhole blackhole, AssemblyState state) {
+        ListResidueGrid residueGrid = new ListResidueGrid(state.vectors, state.squaredCutoff);
+        for (ListResidueGrid.ResidueContact contact : residueGrid.getIndicesContacts()) {
+            blackhole.consume(contact.getDistance());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ResidueGridBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .mode(Mode.AverageTime)
+                .forks(1)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -3,6 +3,7 @@ package org.rcsb.strucmotif.align;
 import org.rcsb.strucmotif.domain.align.AlignmentResult;
 import org.rcsb.strucmotif.domain.align.AtomPairingScheme;
 import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
 
 import java.util.List;
 import java.util.Map;
@@ -19,4 +20,14 @@ public interface AlignmentService {
      * @return an Alignment instance which provides the aligned instances, transformation operations and scores
      */
     AlignmentResult align(List<Map<LabelAtomId, float[]>> reference, List<Map<LabelAtomId, float[]>> candidate, AtomPairingScheme atomPairingScheme);
+
+    /**
+     * Aligns 2 sets of residues to one another. Operates on reusable buffers and avoids allocation of intermediate
+     * vectors.
+     * @param reference the reference set of residues
+     * @param candidate the candidate set of residues to evaluate
+     * @param atomPairingScheme the atom names to consider for each residue during alignment
+     * @return an Alignment instance which provides the aligned instances, transformation operations and scores
+     */
+    AlignmentResult align(ResidueBuffer[] reference, ResidueBuffer[] candidate, AtomPairingScheme atomPairingScheme);
 }
@@ -7,6 +7,7 @@ import org.rcsb.strucmotif.domain.align.AtomPairingScheme;
 import org.rcsb.strucmotif.domain.Pair;
 import org.rcsb.strucmotif.domain.Transformation;
 import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
 import org.rcsb.strucmotif.math.Algebra;
 import org.springframework.stereotype.Service;
 
@@ -25,6 +26,18 @@ public class QuaternionAlignmentService implements AlignmentService {
             { 0, 1, 0 },
             { 0, 0, 1 }
     };
+    private static final LabelAtomId[] LABEL_ATOM_IDS = LabelAtomId.values();
+    // which atoms are considered by each scheme, indexed by ordinal
+    private static final boolean[][] SCHEME_MASKS = new boolean[AtomPairingScheme.values().length][LABEL_ATOM_IDS.length];
+    static {
+        for (AtomPairingScheme atomPairingScheme : AtomPairingScheme.values()) {
+            for (LabelAtomId labelAtomId : LABEL_ATOM_IDS) {
+                SCHEME_MASKS[atomPairingScheme.ordinal()][labelAtomId.ordinal()] = atomPairingScheme.test(labelAtomId);
+            }
+        }
+    }
+    // paired coordinates, reused by each worker
+    private static final ThreadLocal<float[][]> PAIRED_COORDINATES = ThreadLocal.withInitial(() -> new float[2][0]);
 
     @Override
     public AlignmentResult align(List<Map<LabelAtomId, float[]>> reference, List<Map<LabelAtomId, float[]>> candidate, AtomPairingScheme atomPairingScheme) {
@@ -40,6 +53,70 @@ public class QuaternionAlignmentService implements AlignmentService {
         return align(atomCorrespondence);
     }
 
+    @Override
+    public AlignmentResult align(ResidueBuffer[] reference, ResidueBuffer[] candidate, AtomPairingScheme atomPairingScheme) {
+        if (reference.length != candidate.length) {
+            throw new IllegalArgumentException("cannot align containers of unequal size - " + reference.length
+                    + " vs " + candidate.length);
+        }
+        Objects.requireNonNull(atomPairingScheme, "alignment scheme cannot be null");
+
+        float[][] pairedCoordinates = PAIRED_COORDINATES.get();
+        int capacity = 3 * LABEL_ATOM_IDS.length * reference.length;
+        if (pairedCoordinates[0].length < capacity) {
+            pairedCoordinates[0] = new float[capacity];
+            pairedCoordinates[1] = new float[capacity];
+        }
+        float[] referencePoints = pairedCoordinates[0];
+        float[] candidatePoints = pairedCoordinates[1];
+
+        // pair atoms by name - same order as the Map-based variant
+        boolean[] mask = SCHEME_MASKS[atomPairingScheme.ordinal()];
+        int n = 0;
+        for (int i = 0; i < reference.length; i++) {
+            ResidueBuffer referenceResidue = reference[i];
+            ResidueBuffer candidateResidue = candidate[i];
+            float[] referenceCoordinates = referenceResidue.getCoordinates();
+            float[] candidateCoordinates = candidateResidue.getCoordinates();
+            for (int ordinal = 0; ordinal < mask.length; ordinal++) {
+                if (!mask[ordinal] || !referenceResidue.contains(ordinal) || !candidateResidue.contains(ordinal)) {
+                    continue;
+                }
+
+                System.arraycopy(referenceCoordinates, 3 * ordinal, referencePoints, 3 * n, 3);
+                System.arraycopy(candidateCoordinates, 3 * ordinal, candidatePoints, 3 * n, 3);
+                n++;
+            }
+        }
+
+        if (n == 0) {
+            throw new IllegalStateException("Found empty pairing of atoms");
+        }
+
+        float[] referenceCentroid = centerInPlace(referencePoints, n);
+        float[] candidateCentroid = centerInPlace(candidatePoints, n);
+        Pair<Transformation, Float> alignment = align(referencePoints, referenceCentroid, candidatePoints, candidateCentroid, n);
+        return new AlignmentResultImpl(alignment.getFirst(), alignment.getSecond());
+    }
+
+    private static float[] centerInPlace(float[] points, int n) {
+        float x = 0;
+        float y = 0;
+        float z = 0;
+        for (int i = 0; i < n; i++) {
+            x += points[3 * i];
+            y += points[3 * i + 1];
+            z += points[3 * i + 2];
+        }
+        float[] centroid = new float[] { x / n, y / n, z / n };
+        for (int i = 0; i < n; i++) {
+            points[3 * i] -= centroid[0];
+            points[3 * i + 1] -= centroid[1];
+            points[3 * i + 2] -= centroid[2];
+        }
+        return centroid;
+    }
+
     /**
      * Aligns 2 lists of 3D vectors by quaternion-based characteristic polynomial. Both lists of reference and candidate
      * points are expected to be equal of size. Furthermore, centroids have to be computed externally and points must be
@@ -107,8 +184,28 @@ public class QuaternionAlignmentService implements AlignmentService {
      * @param candidateCentroid the centroid of candidate points
      * @return pair of transformation and RMSD
      */
-    @SuppressWarnings("Duplicates")
     public static Pair<Transformation, Float> align(List<float[]> referencePoints, float[] referenceCentroid, List<float[]> candidatePoints, float[] candidateCentroid) {
+        int n = referencePoints.size();
+        float[] flatReferencePoints = new float[3 * n];
+        float[] flatCandidatePoints = new float[3 * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(referencePoints.get(i), 0, flatReferencePoints, 3 * i, 3);
+            System.arraycopy(candidatePoints.get(i), 0, flatCandidatePoints, 3 * i, 3);
+        }
+        return align(flatReferencePoints, referenceCentroid, flatCandidatePoints, candidateCentroid, n);
+    }
+
+    /**
+     * Align two set of points, given as flat arrays of centered coordinates.
+     * @param referencePoints reference points [x1, y1, z1, x2, ...]
+     * @param referenceCentroid the centroid of reference points
+     * @param candidatePoints candidate points [x1, y1, z1, x2, ...]
+     * @param candidateCentroid the centroid of candidate points, will be modified
+     * @param n the number of points to consider
+     * @return pair of transformation and RMSD
+     */
+    @SuppressWarnings("Duplicates")
+    public static Pair<Transformation, Float> align(float[] referencePoints, float[] referenceCentroid, float[] candidatePoints, float[] candidateCentroid, int n) {
         float[][] rot = new float[3][3];
 
         // inner product
@@ -116,18 +213,15 @@ public class QuaternionAlignmentService implements AlignmentService {
         double G2 = 0.0;
         double[] A = new double[9];
 
-        for (int i = 0; i < referencePoints.size(); i++) {
-            float[] r = referencePoints.get(i);
-            float[] c = candidatePoints.get(i);
-
-            double x1 = r[0];
-            double y1 = r[1];
-            double z1 = r[2];
+        for (int i = 0; i < n; i++) {
+            double x1 = referencePoints[3 * i];
+            double y1 = referencePoints[3 * i + 1];
+            double z1 = referencePoints[3 * i + 2];
             G1 += x1 * x1 + y1 * y1 + z1 * z1;
 
-            double x2 = c[0];
-            double y2 = c[1];
-            double z2 = c[2];
+            double x2 = candidatePoints[3 * i];
+            double y2 = candidatePoints[3 * i + 1];
+            double z2 = candidatePoints[3 * i + 2];
             G2 += (x2 * x2 + y2 * y2 + z2 * z2);
 
             A[0] +=  (x1 * x2);
@@ -218,7 +312,7 @@ public class QuaternionAlignmentService implements AlignmentService {
         }
 
         /* the abs() is to guard against extremely small, but *negative* numbers due to floating point error */
-        rms = Math.sqrt(Math.abs(2.0 * (E0 - mxEigenV) / referencePoints.size()));
+        rms = Math.sqrt(Math.abs(2.0 * (E0 - mxEigenV) / n));
 
         a11 = SxxpSyy + Szz - mxEigenV;
         a12 = SyzmSzy;
@@ -8,6 +8,11 @@ public enum InMemoryStrategy {
      * Access file-system any time structure data is requested.
      */
     OFF,
+    /**
+     * Keep recently used structure data in a cache of bounded size (<code>in-memory-cache-size</code>), read everything
+     * else from file-system.
+     */
+    LRU,
     /**
      * Load all data into heap during initialization.
      */
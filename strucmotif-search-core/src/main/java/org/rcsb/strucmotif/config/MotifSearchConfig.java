@@ -49,6 +49,19 @@ public class MotifSearchConfig {
      * speed substantially. A value of 400 works good with 12GB of heap, the higher the faster.
      */
     private int updateChunkSize = 400;
+    /**
+     * Maximum size of extracted residue pairs in MB that are buffered during update before they are written to the
+     * inverted index. One buffer is filled while the previous one is being written, so up to twice this amount is
+     * needed.
+     */
+    private int updateBufferSize = 4096;
+    /**
+     * Write full buffers as sorted run files instead of inserting them into the inverted index directly? All runs are
+     * merged once all structures have been processed, so that each bin of the index is written only once. Requires
+     * temporary disk space of roughly the size of the data being added but allows a small
+     * <code>update-buffer-size</code> without slowing down the update.
+     */
+    private boolean updateSpill = false;
     /**
      * The maximum motif size, any larger user input will be rejected.
      */
@@ -59,13 +72,21 @@ public class MotifSearchConfig {
      */
     private String cifFetchUrl = "https://models.rcsb.org/{id}.bcif";
     /**
-     * What precision to use to write renumbered structure data.
+     * What precision to use to write renumbered structure data. Only applies to legacy BinaryCIF files, the binary
+     * format always stores coordinates with 1 decimal place.
      */
     private int renumberedCoordinatePrecision = 1;
     /**
-     * Gzip renumbered files? Yields smaller files that are slower to read.
+     * Are legacy BinaryCIF renumbered files gzipped? Only used to locate legacy files, renumbered structures are now
+     * written in a binary format.
      */
     private boolean renumberedGzip = true;
+    /**
+     * Store renumbered structures in a few large pack files instead of one file per structure? Reduces file-system
+     * overhead for large collections. Existing single files remain readable and can be moved into the archive by the
+     * <code>MIGRATE</code> operation.
+     */
+    private boolean renumberedPacked = false;
     /**
      * Number of allowed tries during file download before an {@link java.io.IOException} is thrown.
      */
@@ -74,6 +95,42 @@ public class MotifSearchConfig {
      * Allocate a lot of memory to keep index and structure data in memory?
      */
     private InMemoryStrategy inMemoryStrategy = InMemoryStrategy.OFF;
+    /**
+     * Only applies to <code>HEAP</code>: write all loaded structures to a single snapshot file and restore from it on
+     * subsequent starts as long as the set of known structures didn't change.
+     */
+    private boolean inMemorySnapshot = true;
+    /**
+     * Only applies to <code>LRU</code>: maximum size of cached structure data in MB.
+     */
+    private int inMemoryCacheSize = 4096;
+    /**
+     * Maximum number of hits kept by the result cache (summed over all cached queries). 0 disables the cache.
+     */
+    private int resultCacheSize = 100000;
+    /**
+     * Time in seconds after which cached results expire.
+     */
+    private int resultCacheTtl = 3600;
+    /**
+     * Number of target structures that are scored as one task. Tasks of concurrent queries are interleaved, so smaller
+     * batches let small queries overtake expensive ones sooner at the cost of some scheduling overhead.
+     */
+    private int scoringBatchSize = 4;
+    /**
+     * Maximum number of tasks of a single query that are scored concurrently. 0 allows a query to use all threads.
+     */
+    private int maxQueryConcurrency = 0;
+    /**
+     * Use virtual threads for blocking reads (bins of the inverted index, structures) if the runtime supports them (Java
+     * 21+)?
+     */
+    private boolean ioVirtualThreads = true;
+    /**
+     * Maximum number of threads for blocking reads if virtual threads aren't used. Threads that are idle for a minute
+     * are released.
+     */
+    private int ioThreads = 32;
     /**
      * List of all identifiers ever registered.
      */
@@ -82,14 +139,34 @@ public class MotifSearchConfig {
      * List of all identifiers needed to recover if update operation fails.
      */
     public static final String STATE_DIRTY_LIST = "dirty.list";
+    /**
+     * Counter that is incremented by every update operation.
+     */
+    public static final String STATE_GENERATION = "generation";
     /**
      * Name of the renumbered directory.
      */
     public static final String RENUMBERED_DIRECTORY = "renumbered";
+    /**
+     * File extension of renumbered structures.
+     */
+    public static final String RENUMBERED_EXTENSION = ".bin";
+    /**
+     * Name of the snapshot of the structure cache.
+     */
+    public static final String RENUMBERED_SNAPSHOT = "renumbered.snapshot";
     /**
      * Name of the inverted index directory.
      */
     public static final String INDEX_DIRECTORY = "index";
+    /**
+     * Name of the directory where sorted runs are written during update.
+     */
+    public static final String SPILL_DIRECTORY = "spill";
+    /**
+     * Name of the directory where the progress of an update is recorded.
+     */
+    public static final String CHECKPOINT_DIRECTORY = "checkpoint";
     /**
      * RCSB URL that reports currently present identifiers in archive.
      */
@@ -227,6 +304,38 @@ public class MotifSearchConfig {
         this.updateChunkSize = updateChunkSize;
     }
 
+    /**
+     * Maximum size of buffered residue pairs during update.
+     * @return size in MB
+     */
+    public int getUpdateBufferSize() {
+        return updateBufferSize;
+    }
+
+    /**
+     * Set maximum size of buffered residue pairs during update.
+     * @param updateBufferSize size in MB
+     */
+    public void setUpdateBufferSize(int updateBufferSize) {
+        this.updateBufferSize = updateBufferSize;
+    }
+
+    /**
+     * Write buffers as sorted run files and merge them at the end of the update?
+     * @return a boolean
+     */
+    public boolean isUpdateSpill() {
+        return updateSpill;
+    }
+
+    /**
+     * Set whether buffers are written as sorted run files and merged at the end of the update.
+     * @param updateSpill a boolean
+     */
+    public void setUpdateSpill(boolean updateSpill) {
+        this.updateSpill = updateSpill;
+    }
+
     /**
      * Maximum number of residues in a motif.
      * @return an int
@@ -301,6 +410,22 @@ public class MotifSearchConfig {
         this.renumberedGzip = renumberedGzip;
     }
 
+    /**
+     * Store renumbered structures in pack files?
+     * @return a Boolean
+     */
+    public boolean isRenumberedPacked() {
+        return renumberedPacked;
+    }
+
+    /**
+     * Set store renumbered structures in pack files?
+     * @param renumberedPacked a Boolean
+     */
+    public void setRenumberedPacked(boolean renumberedPacked) {
+        this.renumberedPacked = renumberedPacked;
+    }
+
     /**
      * How many tries are allowed for connection failures/timeouts during update.
      * @return an int
@@ -332,4 +457,132 @@ public class MotifSearchConfig {
     public void setInMemoryStrategy(InMemoryStrategy inMemoryStrategy) {
         this.inMemoryStrategy = inMemoryStrategy;
     }
+
+    /**
+     * Write and restore a snapshot of the structure cache?
+     * @return a Boolean
+     */
+    public boolean isInMemorySnapshot() {
+        return inMemorySnapshot;
+    }
+
+    /**
+     * Set write and restore a snapshot of the structure cache?
+     * @param inMemorySnapshot a Boolean
+     */
+    public void setInMemorySnapshot(boolean inMemorySnapshot) {
+        this.inMemorySnapshot = inMemorySnapshot;
+    }
+
+    /**
+     * Maximum size of the structure cache.
+     * @return size in MB
+     */
+    public int getInMemoryCacheSize() {
+        return inMemoryCacheSize;
+    }
+
+    /**
+     * Set maximum size of the structure cache.
+     * @param inMemoryCacheSize size in MB
+     */
+    public void setInMemoryCacheSize(int inMemoryCacheSize) {
+        this.inMemoryCacheSize = inMemoryCacheSize;
+    }
+
+    /**
+     * Maximum number of hits kept by the result cache.
+     * @return number of hits, 0 if the cache is disabled
+     */
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Set maximum number of hits kept by the result cache.
+     * @param resultCacheSize number of hits, 0 disables the cache
+     */
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    /**
+     * Time after which cached results expire.
+     * @return time in seconds
+     */
+    public int getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    /**
+     * Set time after which cached results expire.
+     * @param resultCacheTtl time in seconds
+     */
+    public void setResultCacheTtl(int resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+    }
+
+    /**
+     * Number of target structures that are scored as one task.
+     * @return an int
+     */
+    public int getScoringBatchSize() {
+        return scoringBatchSize;
+    }
+
+    /**
+     * Set number of target structures that are scored as one task.
+     * @param scoringBatchSize an int &gt;0
+     */
+    public void setScoringBatchSize(int scoringBatchSize) {
+        this.scoringBatchSize = scoringBatchSize;
+    }
+
+    /**
+     * Maximum number of tasks of a single query that are scored concurrently.
+     * @return an int, 0 if unlimited
+     */
+    public int getMaxQueryConcurrency() {
+        return maxQueryConcurrency;
+    }
+
+    /**
+     * Set maximum number of tasks of a single query that are scored concurrently.
+     * @param maxQueryConcurrency an int, 0 if unlimited
+     */
+    public void setMaxQueryConcurrency(int maxQueryConcurrency) {
+        this.maxQueryConcurrency = maxQueryConcurrency;
+    }
+
+    /**
+     * Use virtual threads for blocking reads if supported?
+     * @return a boolean
+     */
+    public boolean isIoVirtualThreads() {
+        return ioVirtualThreads;
+    }
+
+    /**
+     * Set whether to use virtual threads for blocking reads if supported.
+     * @param ioVirtualThreads a boolean
+     */
+    public void setIoVirtualThreads(boolean ioVirtualThreads) {
+        this.ioVirtualThreads = ioVirtualThreads;
+    }
+
+    /**
+     * Maximum number of threads for blocking reads if virtual threads aren't used.
+     * @return an int
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Set maximum number of threads for blocking reads if virtual threads aren't used.
+     * @param ioThreads an int &gt;0
+     */
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
 }
@@ -0,0 +1,136 @@
+package org.rcsb.strucmotif.core;
+
+import org.rcsb.strucmotif.domain.result.Hit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fans out the hits of a running streaming search to queries with the same fingerprint that arrive while it's still
+ * running. Emitted hits are retained up to some capacity so that late subscribers receive them as well. Once more hits
+ * have been emitted, no further subscribers are accepted.
+ */
+class HitBroadcast implements Consumer<Hit> {
+    private final Consumer<Hit> consumer;
+    private final int capacity;
+    private final CompletableFuture<Void> done;
+    // guarded by this
+    private final List<Hit> emitted;
+    private List<Subscriber> subscribers;
+    private boolean overflow;
+
+    /**
+     * Construct a broadcast.
+     * @param consumer the consumer of the search that is actually performed
+     * @param capacity maximum number of hits to retain for late subscribers
+     */
+    HitBroadcast(Consumer<Hit> consumer, int capacity) {
+        this.consumer = consumer;
+        this.capacity = capacity;
+        this.done = new CompletableFuture<>();
+        this.emitted = new ArrayList<>();
+        this.subscribers = List.of();
+    }
+
+    private static class Subscriber {
+        private final Consumer<Hit> consumer;
+        private final AtomicInteger hits;
+        private volatile RuntimeException failure;
+
+        private Subscriber(Consumer<Hit> consumer) {
+            this.consumer = consumer;
+            this.hits = new AtomicInteger();
+        }
+
+        private void accept(Hit hit) {
+            if (failure != null) {
+                return;
+            }
+
+            try {
+                consumer.accept(hit);
+                hits.incrementAndGet();
+            } catch (RuntimeException e) {
+                // must not affect the running search or other subscribers
+                failure = e;
+            }
+        }
+    }
+
+    @Override
+    public void accept(Hit hit) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            if (!overflow) {
+                if (emitted.size() < capacity) {
+                    emitted.add(hit);
+                } else {
+                    overflow = true;
+                    emitted.clear();
+                }
+            }
+            targets = subscribers;
+        }
+
+        consumer.accept(hit);
+        for (Subscriber target : targets) {
+            target.accept(hit);
+        }
+    }
+
+    /**
+     * Receive all hits of the running search and block until it has finished.
+     * @param consumer the consumer of the late query
+     * @return the number of hits consumed, -1 if it's too late to subscribe
+     */
+    int subscribe(Consumer<Hit> consumer) {
+        Subscriber subscriber = new Subscriber(consumer);
+        List<Hit> missed;
+        synchronized (this) {
+            if (overflow) {
+                return -1;
+            }
+
+            missed = new ArrayList<>(emitted);
+            if (!done.isDone()) {
+                List<Subscriber> updated = new ArrayList<>(subscribers);
+                updated.add(subscriber);
+                subscribers = List.copyOf(updated);
+            }
+        }
+
+        for (Hit hit : missed) {
+            subscriber.accept(hit);
+        }
+
+        try {
+            ThreadPool.await(done);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+
+        if (subscriber.failure != null) {
+            throw subscriber.failure;
+        }
+        return subscriber.hits.get();
+    }
+
+    /**
+     * Signal that the search has finished.
+     */
+    void complete() {
+        done.complete(null);
+    }
+
+    /**
+     * Signal that the search has failed.
+     * @param throwable the cause, will be rethrown to all subscribers
+     */
+    void completeExceptionally(Throwable throwable) {
+        done.completeExceptionally(throwable);
+    }
+}
@@ -0,0 +1,296 @@
+package org.rcsb.strucmotif.core;
+
+import org.rcsb.strucmotif.domain.result.Hit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Publishes the hits of a search to a single subscriber, driven by its demand. The search is split into units of work
+ * (target structures) that are scored asynchronously. A unit is only started while the subscriber has requested
+ * more hits than are buffered, so loading of structures pauses as soon as the demand is exhausted and resumes once
+ * more hits are requested. Hits of units that are already scored are buffered, none are lost.
+ * <p>
+ * The search starts when the subscriber subscribes. Cancelling the subscription stops it, units that are still
+ * running are cancelled. If the search runs out of time, running units are cancelled as well and all hits accepted
+ * so far are published, followed by a {@link TimeoutException}.
+ * @param <T> the type of units of work
+ */
+class HitPublisher<T> implements Flow.Publisher<Hit> {
+    private final ThreadPool threadPool;
+    private final int parallelism;
+    private final Source<T> source;
+    private final AtomicBoolean subscribed;
+
+    /**
+     * The search behind a publisher.
+     * @param <T> the type of units of work
+     */
+    interface Source<T> {
+        /**
+         * Determine all units of work, called once when the subscriber subscribes.
+         * @param cancellation signals that the subscription was cancelled
+         * @return all units
+         * @throws Exception if the search fails
+         */
+        Collection<T> prepare(BooleanSupplier cancellation) throws Exception;
+
+        /**
+         * Start scoring a unit of work. Must not block, cancelling the returned future should stop all work that
+         * is still pending for this unit.
+         * @param unit the unit
+         * @return all accepted hits of this unit
+         */
+        CompletableFuture<List<Hit>> score(T unit);
+
+        /**
+         * Whether this search ran out of time.
+         * @return true if no more units should be started
+         */
+        boolean isExpired();
+    }
+
+    /**
+     * Construct a publisher.
+     * @param threadPool where units are prepared
+     * @param parallelism maximum number of units that are scored concurrently
+     * @param source the search
+     */
+    HitPublisher(ThreadPool threadPool, int parallelism, Source<T> source) {
+        this.threadPool = threadPool;
+        this.parallelism = Math.max(1, parallelism);
+        this.source = source;
+        this.subscribed = new AtomicBoolean();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Hit> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("search can only be subscribed to once"));
+            return;
+        }
+
+        HitSubscription subscription = new HitSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private class HitSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Hit> subscriber;
+        private final AtomicLong requested;
+        private final Queue<Hit> queue;
+        private final AtomicInteger queued;
+        private final Set<CompletableFuture<List<Hit>>> futures;
+        // serializes signals to the subscriber
+        private final AtomicInteger wip;
+        // guarded by this
+        private Iterator<T> remaining;
+        private int running;
+        private volatile boolean cancelled;
+        private volatile boolean finished;
+        private volatile boolean expired;
+        private volatile Throwable failure;
+        // only accessed in drain loop
+        private boolean terminated;
+
+        private HitSubscription(Flow.Subscriber<? super Hit> subscriber) {
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong();
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.queued = new AtomicInteger();
+            this.futures = ConcurrentHashMap.newKeySet();
+            this.wip = new AtomicInteger();
+        }
+
+        private void start() {
+            threadPool.submit(() -> {
+                try {
+                    Collection<T> units = source.prepare(() -> cancelled);
+                    // preparation may have been cut short
+                    expired = source.isExpired();
+                    synchronized (this) {
+                        remaining = units.iterator();
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                    drain();
+                    return null;
+                }
+                dispatch();
+                return null;
+            });
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("demand must be positive, was " + n);
+            } else {
+                requested.getAndUpdate(r -> Long.MAX_VALUE - r < n ? Long.MAX_VALUE : r + n);
+            }
+            drain();
+            dispatch();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stop();
+            drain();
+        }
+
+        /**
+         * Cancel all units that are still running.
+         */
+        private void stop() {
+            futures.forEach(future -> future.cancel(false));
+        }
+
+        /**
+         * Start units of work while there is unmet demand.
+         */
+        private void dispatch() {
+            List<T> units = new ArrayList<>();
+            synchronized (this) {
+                if (remaining == null) {
+                    // still preparing
+                    return;
+                }
+
+                while (!cancelled && failure == null && running < parallelism && remaining.hasNext() && requested.get() > queued.get()) {
+                    if (source.isExpired()) {
+                        expired = true;
+                        remaining = Collections.emptyIterator();
+                        stop();
+                        break;
+                    }
+
+                    units.add(remaining.next());
+                    running++;
+                }
+
+                if (!remaining.hasNext() && running == 0) {
+                    finished = true;
+                }
+            }
+
+            for (T unit : units) {
+                score(unit);
+            }
+            drain();
+        }
+
+        private void score(T unit) {
+            CompletableFuture<List<Hit>> future;
+            try {
+                future = source.score(unit);
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            CompletableFuture<List<Hit>> scored = future;
+            futures.add(scored);
+            if (cancelled || expired) {
+                // stopped while this unit was started
+                scored.cancel(false);
+            }
+            scored.whenComplete((hits, e) -> {
+                if (e == null) {
+                    if (!cancelled) {
+                        queued.addAndGet(hits.size());
+                        queue.addAll(hits);
+                    }
+                } else if (!(e instanceof CancellationException)) {
+                    failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                }
+
+                futures.remove(scored);
+                synchronized (this) {
+                    running--;
+                }
+                drain();
+                dispatch();
+            });
+        }
+
+        /**
+         * Emit buffered hits according to demand and signal termination.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!terminated) {
+                    if (cancelled) {
+                        terminate();
+                    } else if (failure != null) {
+                        terminate();
+                        subscriber.onError(failure);
+                    } else {
+                        long demand = requested.get();
+                        long emitted = 0;
+                        while (emitted != demand && !cancelled) {
+                            Hit hit = queue.poll();
+                            if (hit == null) {
+                                break;
+                            }
+                            queued.decrementAndGet();
+                            subscriber.onNext(hit);
+                            emitted++;
+                        }
+                        if (emitted != 0 && demand != Long.MAX_VALUE) {
+                            requested.addAndGet(-emitted);
+                        }
+
+                        if (!cancelled && finished && queue.isEmpty()) {
+                            terminate();
+                            if (expired) {
+                                subscriber.onError(new TimeoutException("search expired, hits are truncated"));
+                            } else {
+                                subscriber.onComplete();
+                            }
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            terminated = true;
+            cancelled = true;
+            stop();
+            queue.clear();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.rcsb.strucmotif.align.AlignmentService;
 import org.rcsb.strucmotif.domain.align.AlignmentResult;
 import org.rcsb.strucmotif.domain.align.AtomPairingScheme;
 import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
 
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import java.util.Map;
  */
 public class HitScorer {
     private final List<Map<LabelAtomId, float[]>> queryResidues;
+    private final ResidueBuffer[] queryResidueBuffers;
     private final AtomPairingScheme atomPairingScheme;
     private final AlignmentService alignmentService;
 
@@ -24,6 +26,9 @@ public class HitScorer {
      */
     public HitScorer(List<Map<LabelAtomId, float[]>> queryResidues, AtomPairingScheme atomPairingScheme, AlignmentService alignmentService) {
         this.queryResidues = queryResidues;
+        this.queryResidueBuffers = queryResidues.stream()
+                .map(ResidueBuffer::of)
+                .toArray(ResidueBuffer[]::new);
         this.atomPairingScheme = atomPairingScheme;
         this.alignmentService = alignmentService;
     }
@@ -44,4 +49,13 @@ public class HitScorer {
     public AlignmentResult alignToReference(List<Map<LabelAtomId, float[]>> targetResidues) {
         return alignmentService.align(queryResidues, targetResidues, atomPairingScheme);
     }
+
+    /**
+     * Align a set of residues to the reference.
+     * @param targetResidues collection of residues, manifested into buffers
+     * @return an {@link AlignmentResult}
+     */
+    public AlignmentResult alignToReference(ResidueBuffer[] targetResidues) {
+        return alignmentService.align(queryResidueBuffers, targetResidues, atomPairingScheme);
+    }
 }
@@ -4,6 +4,9 @@ import org.rcsb.strucmotif.domain.query.MotifSearchQuery;
 import org.rcsb.strucmotif.domain.result.Hit;
 import org.rcsb.strucmotif.domain.result.MotifSearchResult;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
 
 /**
@@ -23,4 +26,40 @@ public interface MotifSearchRuntime {
      * @param consumer some terminal operation that will be applied to each accepted hit
      */
     void performSearch(MotifSearchQuery query, Consumer<Hit> consumer);
+
+    /**
+     * Performs a structural motif search run for a given query without blocking the caller. Cancelling the returned
+     * future stops the search. If the search runs out of time (see {@link org.rcsb.strucmotif.domain.query.Parameters#getTimeout()}),
+     * the result contains the hits accepted so far and is flagged as truncated.
+     * @param query the query, specifying motif and all parameters
+     * @return a future of the result container
+     */
+    CompletableFuture<MotifSearchResult> performSearchAsync(MotifSearchQuery query);
+
+    /**
+     * Performs a structural motif search for a given query without blocking the caller. Cancelling the returned future
+     * stops the search, no more hits will be consumed shortly after.
+     * @param query the query, specifying motif and all parameters
+     * @param consumer some terminal operation that will be applied to each accepted hit
+     * @return a future of the result container, it holds no hits but reports whether the search was truncated
+     */
+    CompletableFuture<MotifSearchResult> performSearchAsync(MotifSearchQuery query, Consumer<Hit> consumer);
+
+    /**
+     * Performs a structural motif search for a given query and publishes accepted hits according to the demand of the
+     * subscriber. The search starts once subscribed, target structures are only loaded while there is outstanding
+     * demand. Cancelling the subscription stops the search. If the search runs out of time, all hits accepted so far
+     * are published, followed by a {@link java.util.concurrent.TimeoutException}.
+     * @param query the query, specifying motif and all parameters
+     * @return a publisher that accepts a single subscriber
+     */
+    Flow.Publisher<Hit> publishSearch(MotifSearchQuery query);
+
+    /**
+     * Performs structural motif searches for a batch of queries. Bins of the inverted index and target structures
+     * needed by several queries are only read once. The order of hits may differ from individual searches.
+     * @param queries the queries, specifying motifs and all parameters
+     * @return the result containers, in the order of the queries
+     */
+    List<MotifSearchResult> performSearch(List<MotifSearchQuery> queries);
 }
@@ -4,9 +4,11 @@ import org.rcsb.strucmotif.align.AlignmentService;
 import org.rcsb.strucmotif.config.MotifSearchConfig;
 import org.rcsb.strucmotif.domain.query.MotifSearchQuery;
 import org.rcsb.strucmotif.domain.query.Parameters;
+import org.rcsb.strucmotif.domain.query.QueryFingerprint;
 import org.rcsb.strucmotif.domain.query.QueryStructure;
 import org.rcsb.strucmotif.domain.result.Hit;
 import org.rcsb.strucmotif.domain.result.MotifSearchResult;
+import org.rcsb.strucmotif.domain.result.TargetStructure;
 import org.rcsb.strucmotif.domain.structure.Structure;
 import org.rcsb.strucmotif.io.StateRepository;
 import org.rcsb.strucmotif.io.StructureDataProvider;
@@ -17,10 +19,21 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -36,6 +49,11 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
     private final AlignmentService alignmentService;
     private final StructureDataProvider structureDataProvider;
     private final StateRepository stateRepository;
+    private final ResultCache resultCache;
+    private final QueryScheduler queryScheduler;
+    // searches that are currently running, identical queries attach to them
+    private final Map<QueryFingerprint, InFlightSearch> inFlightSearches;
+    private final Map<QueryFingerprint, HitBroadcast> inFlightStreams;
 
     /**
      * Injectable constructor.
@@ -54,6 +72,11 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
         this.alignmentService = alignmentService;
         this.structureDataProvider = structureDataProvider;
         this.stateRepository = stateRepository;
+        this.resultCache = motifSearchConfig.getResultCacheSize() > 0 ? new ResultCache(motifSearchConfig.getResultCacheSize(), motifSearchConfig.getResultCacheTtl()) : null;
+        int maxQueryConcurrency = motifSearchConfig.getMaxQueryConcurrency() > 0 ? motifSearchConfig.getMaxQueryConcurrency() : motifSearchConfig.getNumberThreads();
+        this.queryScheduler = new QueryScheduler(threadPool, motifSearchConfig.getNumberThreads(), maxQueryConcurrency);
+        this.inFlightSearches = new ConcurrentHashMap<>();
+        this.inFlightStreams = new ConcurrentHashMap<>();
 
         // initialize structure cache (if active)
         try {
@@ -66,63 +89,347 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
     @Override
     public MotifSearchResult performSearch(MotifSearchQuery query) {
         try {
-            QueryStructure queryStructure = query.getQueryStructure();
-            Parameters parameters = query.getParameters();
-            MotifSearchResult result = createResultContainer(query, queryStructure, parameters);
+            return performSearch(query, (BooleanSupplier) null);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
 
-            // get all valid targets
-            targetAssembler.assemble(result);
+    @Override
+    public CompletableFuture<MotifSearchResult> performSearchAsync(MotifSearchQuery query) {
+        CompletableFuture<MotifSearchResult> future = new CompletableFuture<>();
+        threadPool.submit(() -> {
+            try {
+                future.complete(performSearch(query, future::isCancelled));
+            } catch (Exception e) {
+                future.completeExceptionally(handleException(e));
+            }
+            return null;
+        });
+        return future;
+    }
 
-            List<Hit> hits = scoreHits(parameters, result, queryStructure.getResidueIndexSwaps());
-            logger.info("[{}] Accepted {} hits in {} ms",
-                    query.hashCode(),
-                    hits.size(),
-                    result.getTimings().getScoreHitsTime());
+    /**
+     * Perform a search.
+     * @param query the query
+     * @param cancellation signals that the search should stop, <code>null</code> if the search can't be cancelled
+     * @return the result
+     */
+    private MotifSearchResult performSearch(MotifSearchQuery query, BooleanSupplier cancellation) throws ExecutionException, InterruptedException {
+        int limit = Math.min(query.getParameters().getLimit(), motifSearchConfig.getMaxResults());
+        long generation = resultCache != null ? stateRepository.selectGeneration() : 0;
+        if (resultCache != null) {
+            MotifSearchResult cached = resultCache.get(query, limit, generation);
+            if (cached != null) {
+                logger.info("[{}] Served {} hits from result cache", query.hashCode(), cached.getHits().size());
+                return cached;
+            }
+        }
 
-            // dereference target structure map
-            result.getTargetStructures().clear();
-            result.setTargetStructures(null);
+        MotifSearchResult result;
+        if (isInterruptible(query, cancellation)) {
+            // can't share results that may be truncated
+            result = search(query, limit, cancellation);
+        } else {
+            // attach to an identical query that is currently running (if it reports enough hits)
+            QueryFingerprint fingerprint = query.getFingerprint();
+            InFlightSearch inFlightSearch = new InFlightSearch(limit);
+            InFlightSearch running = inFlightSearches.putIfAbsent(fingerprint, inFlightSearch);
+            if (running != null && running.limit >= limit) {
+                result = ThreadPool.await(running.future).toResult(query, limit);
+                logger.info("[{}] Served {} hits from concurrent identical query", query.hashCode(), result.getHits().size());
+                return result;
+            }
 
-            result.setHits(hits);
-            result.getTimings().queryStop();
+            if (running == null) {
+                try {
+                    result = search(query, limit, null);
+                    inFlightSearch.future.complete(new ResultSnapshot(result, limit));
+                } catch (Exception e) {
+                    inFlightSearch.future.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlightSearches.remove(fingerprint, inFlightSearch);
+                }
+            } else {
+                result = search(query, limit, null);
+            }
+        }
+
+        if (resultCache != null && !result.isTruncated()) {
+            resultCache.put(query.getFingerprint(), new ResultSnapshot(result, limit), generation);
+            logger.debug("[{}] Result cache: {}", query.hashCode(), resultCache);
+        }
+
+        return result;
+    }
 
+    private static boolean isInterruptible(MotifSearchQuery query, BooleanSupplier cancellation) {
+        return cancellation != null || query.getParameters().hasTimeout();
+    }
+
+    private MotifSearchResult search(MotifSearchQuery query, int limit, BooleanSupplier cancellation) throws ExecutionException, InterruptedException {
+        QueryStructure queryStructure = query.getQueryStructure();
+        Parameters parameters = query.getParameters();
+        MotifSearchResult result = createResultContainer(query, queryStructure, parameters, cancellation);
+
+        // get all valid targets
+        targetAssembler.assemble(result);
+
+        List<Hit> hits = scoreHits(parameters, result, limit, queryStructure.getResidueIndexSwaps());
+        logger.info("[{}] Accepted {} hits in {} ms ({} ms queued){}",
+                query.hashCode(),
+                hits.size(),
+                result.getTimings().getScoreHitsTime(),
+                result.getTimings().getQueueWaitTime(),
+                result.isTruncated() ? " - search expired, result is truncated" : "");
+        logger.debug("[{}] Structure cache: {}", query.hashCode(), structureDataProvider.getStructureCacheStatistics());
+
+        // dereference target structure map
+        result.getTargetStructures().clear();
+        result.setTargetStructures(null);
+
+        result.setHits(hits);
+        result.getTimings().queryStop();
+        return result;
+    }
+
+    @Override
+    public void performSearch(MotifSearchQuery query, Consumer<Hit> consumer) {
+        try {
+            performSearch(query, consumer, null);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<MotifSearchResult> performSearchAsync(MotifSearchQuery query, Consumer<Hit> consumer) {
+        CompletableFuture<MotifSearchResult> future = new CompletableFuture<>();
+        threadPool.submit(() -> {
+            try {
+                future.complete(performSearch(query, consumer, future::isCancelled));
+            } catch (Exception e) {
+                future.completeExceptionally(handleException(e));
+            }
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Perform a search and stream hits.
+     * @param query the query
+     * @param consumer receives hits
+     * @param cancellation signals that the search should stop, <code>null</code> if the search can't be cancelled
+     * @return the result container, without hits
+     */
+    private MotifSearchResult performSearch(MotifSearchQuery query, Consumer<Hit> consumer, BooleanSupplier cancellation) throws ExecutionException, InterruptedException {
+        if (resultCache != null) {
+            // only complete results can be streamed, as there is no limit
+            List<Hit> cached = resultCache.getAll(query, stateRepository.selectGeneration());
+            if (cached != null) {
+                cached.forEach(consumer);
+                logger.info("[{}] Served {} hits from result cache", query.hashCode(), cached.size());
+                return emptyResult(query);
+            }
+        }
+
+        // can't share streams that may be truncated
+        if (isInterruptible(query, cancellation)) {
+            return search(query, consumer, cancellation);
+        }
+
+        // attach to an identical query that is currently running
+        QueryFingerprint fingerprint = query.getFingerprint();
+        HitBroadcast broadcast = new HitBroadcast(consumer, motifSearchConfig.getMaxResults());
+        HitBroadcast running = inFlightStreams.putIfAbsent(fingerprint, broadcast);
+        if (running != null) {
+            int hits = running.subscribe(consumer);
+            if (hits != -1) {
+                logger.info("[{}] Served {} hits from concurrent identical query", query.hashCode(), hits);
+                return emptyResult(query);
+            }
+
+            // too many hits were emitted already, can't catch up
+            return search(query, consumer, null);
+        }
+
+        try {
+            MotifSearchResult result = search(query, broadcast, null);
+            broadcast.complete();
             return result;
         } catch (Exception e) {
-            // unwrap specific exceptions
-            Throwable t = unwrapException(e);
-            if (t instanceof IllegalQueryDefinitionException) {
-                throw (IllegalQueryDefinitionException) t;
+            broadcast.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightStreams.remove(fingerprint, broadcast);
+        }
+    }
+
+    private MotifSearchResult emptyResult(MotifSearchQuery query) {
+        MotifSearchResult result = new MotifSearchResult(query);
+        result.getTimings().queryStop();
+        return result;
+    }
+
+    private MotifSearchResult search(MotifSearchQuery query, Consumer<Hit> consumer, BooleanSupplier cancellation) throws ExecutionException, InterruptedException {
+        QueryStructure queryStructure = query.getQueryStructure();
+        Parameters parameters = query.getParameters();
+        MotifSearchResult result = createResultContainer(query, queryStructure, parameters, cancellation);
+
+        // get all valid targets
+        targetAssembler.assemble(result);
+
+        int hits = scoreHits(parameters, result, consumer, queryStructure.getResidueIndexSwaps());
+        logger.info("[{}] Accepted {} hits in {} ms ({} ms queued){}",
+                query.hashCode(),
+                hits,
+                result.getTimings().getScoreHitsTime(),
+                result.getTimings().getQueueWaitTime(),
+                result.isTruncated() ? " - search expired, result is truncated" : "");
+        logger.debug("[{}] Structure cache: {}", query.hashCode(), structureDataProvider.getStructureCacheStatistics());
+
+        // dereference target structure map
+        result.getTargetStructures().clear();
+        result.setTargetStructures(null);
+        result.getTimings().queryStop();
+        return result;
+    }
+
+    @Override
+    public Flow.Publisher<Hit> publishSearch(MotifSearchQuery query) {
+        if (resultCache != null) {
+            // serve all cached hits as a single unit of work
+            List<Hit> cached = resultCache.getAll(query, stateRepository.selectGeneration());
+            if (cached != null) {
+                logger.info("[{}] Publishing {} hits from result cache", query.hashCode(), cached.size());
+                return new HitPublisher<>(threadPool, 1, new HitPublisher.Source<List<Hit>>() {
+                    @Override
+                    public Collection<List<Hit>> prepare(BooleanSupplier cancellation) {
+                        return List.of(cached);
+                    }
+
+                    @Override
+                    public CompletableFuture<List<Hit>> score(List<Hit> hits) {
+                        return CompletableFuture.completedFuture(hits);
+                    }
+
+                    @Override
+                    public boolean isExpired() {
+                        return false;
+                    }
+                });
             }
-            throw new RuntimeException(e);
         }
+
+        QueryStructure queryStructure = query.getQueryStructure();
+        Parameters parameters = query.getParameters();
+        HitScorer hitScorer = new HitScorer(queryStructure.getResidues(),
+                parameters.getAtomPairingScheme(),
+                alignmentService);
+        QueryScheduler.Tenant tenant = queryScheduler.tenant(parameters.getPriority());
+        return new HitPublisher<>(threadPool, motifSearchConfig.getNumberThreads(), new HitPublisher.Source<TargetStructure>() {
+            private volatile MotifSearchResult result;
+
+            @Override
+            public Collection<TargetStructure> prepare(BooleanSupplier cancellation) throws Exception {
+                result = createResultContainer(query, queryStructure, parameters, cancellation);
+                targetAssembler.assemble(result);
+                logger.info("[{}] Publishing hits of {} target structures on demand", query.hashCode(), result.getNumberOfTargetStructures());
+                return result.getTargetStructures().values();
+            }
+
+            @Override
+            public CompletableFuture<List<Hit>> score(TargetStructure targetStructure) {
+                // no compute thread waits for the read, scoring is scheduled once the structure is available
+                CompletableFuture<Structure> read = readStructure(targetStructure);
+                CompletableFuture<List<Hit>> hits = read.thenApplyAsync(structure -> targetStructure.paths(queryStructure.getResidueIndexSwaps(), structure, hitScorer, stateRepository)
+                        .filter(hit -> hit.getRootMeanSquareDeviation() <= parameters.getRmsdCutoff())
+                        .collect(Collectors.toList()), tenant);
+                hits.whenComplete((h, e) -> {
+                    if (hits.isCancelled()) {
+                        read.cancel(false);
+                    }
+                });
+                return hits;
+            }
+
+            @Override
+            public boolean isExpired() {
+                return result != null && expire(result);
+            }
+        });
     }
 
     @Override
-    public void performSearch(MotifSearchQuery query, Consumer<Hit> consumer) {
+    public List<MotifSearchResult> performSearch(List<MotifSearchQuery> queries) {
         try {
-            QueryStructure queryStructure = query.getQueryStructure();
-            Parameters parameters = query.getParameters();
-            MotifSearchResult result = createResultContainer(query, queryStructure, parameters);
-
-            // get all valid targets
-            targetAssembler.assemble(result);
-
-            int hits = scoreHits(parameters, result, consumer, queryStructure.getResidueIndexSwaps());
-            logger.info("[{}] Accepted {} hits in {} ms",
-                    query.hashCode(),
-                    hits,
-                    result.getTimings().getScoreHitsTime());
-        } catch (Exception e) {
-            // unwrap specific exceptions
-            Throwable t = unwrapException(e);
-            if (t instanceof IllegalQueryDefinitionException) {
-                throw (IllegalQueryDefinitionException) t;
+            long generation = resultCache != null ? stateRepository.selectGeneration() : 0;
+            MotifSearchResult[] results = new MotifSearchResult[queries.size()];
+            int[] limits = new int[queries.size()];
+            List<MotifSearchResult> pending = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                MotifSearchQuery query = queries.get(i);
+                limits[i] = Math.min(query.getParameters().getLimit(), motifSearchConfig.getMaxResults());
+                if (resultCache != null) {
+                    results[i] = resultCache.get(query, limits[i], generation);
+                    if (results[i] != null) {
+                        logger.info("[{}] Served {} hits from result cache", query.hashCode(), results[i].getHits().size());
+                        continue;
+                    }
+                }
+
+                results[i] = createResultContainer(query, query.getQueryStructure(), query.getParameters(), null);
+                pending.add(results[i]);
             }
-            throw new RuntimeException(e);
+
+            if (!pending.isEmpty()) {
+                // get all valid targets
+                targetAssembler.assemble(pending);
+
+                scoreHits(results, limits);
+                for (int i = 0; i < results.length; i++) {
+                    MotifSearchResult result = results[i];
+                    if (result.getTargetStructures() == null) {
+                        continue;
+                    }
+
+                    logger.info("[{}] Accepted {} hits in {} ms{}",
+                            result.getQuery().hashCode(),
+                            result.getHits().size(),
+                            result.getTimings().getScoreHitsTime(),
+                            result.isTruncated() ? " - search expired, result is truncated" : "");
+
+                    // dereference target structure map
+                    result.getTargetStructures().clear();
+                    result.setTargetStructures(null);
+                    result.getTimings().queryStop();
+
+                    if (resultCache != null && !result.isTruncated()) {
+                        resultCache.put(result.getQuery().getFingerprint(), new ResultSnapshot(result, limits[i]), generation);
+                    }
+                }
+                logger.debug("Structure cache: {}", structureDataProvider.getStructureCacheStatistics());
+            }
+
+            return Arrays.asList(results);
+        } catch (Exception e) {
+            throw handleException(e);
         }
     }
 
-    private MotifSearchResult createResultContainer(MotifSearchQuery query, QueryStructure queryStructure, Parameters parameters) {
+    private static class InFlightSearch {
+        private final int limit;
+        private final CompletableFuture<ResultSnapshot> future;
+
+        private InFlightSearch(int limit) {
+            this.limit = limit;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    private MotifSearchResult createResultContainer(MotifSearchQuery query, QueryStructure queryStructure, Parameters parameters, BooleanSupplier cancellation) {
         logger.info("[{}] Query: {} with {}",
                 query.hashCode(),
                 queryStructure.getStructureIdentifier(),
@@ -135,7 +442,20 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
                 parameters.getAngleTolerance(),
                 parameters.getRmsdCutoff());
 
-        return new MotifSearchResult(query);
+        MotifSearchResult result = new MotifSearchResult(query);
+        if (cancellation != null) {
+            result.setCancellation(cancellation);
+        }
+        return result;
+    }
+
+    private static RuntimeException handleException(Exception e) {
+        // unwrap specific exceptions
+        Throwable t = unwrapException(e);
+        if (t instanceof IllegalQueryDefinitionException) {
+            return (IllegalQueryDefinitionException) t;
+        }
+        return new RuntimeException(e);
     }
 
     private static Throwable unwrapException(Throwable throwable) {
@@ -147,28 +467,217 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
         return rootCause;
     }
 
-    private List<Hit> scoreHits(Parameters parameters, MotifSearchResult result, List<Integer> residueIndexSwaps) throws ExecutionException, InterruptedException {
+    private List<Hit> scoreHits(Parameters parameters, MotifSearchResult result, int limit, List<Integer> residueIndexSwaps) throws ExecutionException, InterruptedException {
         result.getTimings().scoreHitsStart();
-        int limit = Math.min(parameters.getLimit(), motifSearchConfig.getMaxResults());
         HitScorer hitScorer = new HitScorer(result.getQuery().getQueryStructure().getResidues(),
                 parameters.getAtomPairingScheme(),
                 alignmentService);
 
-        List<Hit> hits = threadPool.submit(() -> result.getTargetStructures()
-                .values()
-                .parallelStream()
-                .flatMap(targetStructure -> {
-                    Structure structure = structureDataProvider.readRenumbered(targetStructure.getStructureIdentifier());
-                    return targetStructure.paths(residueIndexSwaps, structure, hitScorer, stateRepository);
-                })
-                .filter(hit -> hit.getRootMeanSquareDeviation() <= parameters.getRmsdCutoff())
-                .limit(limit)
-                .collect(Collectors.toList())).get();
+        // hits of each batch, concatenated in order so that the limit retains the same hits as a sequential run
+        List<List<TargetStructure>> batches = partition(result.getTargetStructures().values());
+        AtomicReferenceArray<List<Hit>> hitsByBatch = new AtomicReferenceArray<>(batches.size());
+        AtomicInteger accepted = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            int index = i;
+            List<TargetStructure> batch = batches.get(i);
+            tasks.add(() -> {
+                // batches are started in order - all hits counted so far precede this batch
+                if (accepted.get() >= limit) {
+                    return;
+                }
+
+                List<Hit> hits = new ArrayList<>();
+                List<CompletableFuture<Structure>> structures = readStructures(batch);
+                try {
+                    for (int j = 0; j < batch.size(); j++) {
+                        if (expire(result)) {
+                            break;
+                        }
+
+                        TargetStructure targetStructure = batch.get(j);
+                        Structure structure = ThreadPool.await(structures.get(j));
+                        targetStructure.paths(residueIndexSwaps, structure, hitScorer, stateRepository)
+                                .filter(hit -> hit.getRootMeanSquareDeviation() <= parameters.getRmsdCutoff())
+                                .forEach(hits::add);
+                    }
+                } finally {
+                    cancel(structures);
+                }
+                hitsByBatch.set(index, hits);
+                accepted.addAndGet(hits.size());
+            });
+        }
+        result.getTimings().queueWaitAdd(queryScheduler.run(parameters.getPriority(), tasks));
+
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < hitsByBatch.length() && hits.size() < limit; i++) {
+            List<Hit> batchHits = hitsByBatch.get(i);
+            if (batchHits != null) {
+                hits.addAll(batchHits.subList(0, Math.min(batchHits.size(), limit - hits.size())));
+            }
+        }
 
         result.getTimings().scoreHitsStop();
         return hits;
     }
 
+    /**
+     * Read a structure on the I/O executor.
+     */
+    private CompletableFuture<Structure> readStructure(TargetStructure targetStructure) {
+        return threadPool.submitIo(() -> structureDataProvider.readRenumbered(targetStructure.getStructureIdentifier(), targetStructure.getResidueIndices()));
+    }
+
+    /**
+     * Cancel reads that are no longer needed, e.g. because the search expired. Reads that already started complete.
+     */
+    private static void cancel(Collection<CompletableFuture<Structure>> reads) {
+        reads.forEach(read -> read.cancel(false));
+    }
+
+    /**
+     * Start reading all structures of a batch, so that reads overlap with scoring.
+     */
+    private List<CompletableFuture<Structure>> readStructures(List<TargetStructure> batch) {
+        return batch.stream()
+                .map(this::readStructure)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Split target structures into batches that are scheduled as individual tasks.
+     */
+    private List<List<TargetStructure>> partition(Collection<TargetStructure> targetStructures) {
+        int batchSize = Math.max(1, motifSearchConfig.getScoringBatchSize());
+        List<List<TargetStructure>> batches = new ArrayList<>();
+        List<TargetStructure> batch = new ArrayList<>(batchSize);
+        for (TargetStructure targetStructure : targetStructures) {
+            batch.add(targetStructure);
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Score the hits of a batch of queries. Target structures are grouped by their identifier, so that each is read
+     * once for all queries that reference it. Results served from cache (i.e. without target structures) are skipped.
+     */
+    private void scoreHits(MotifSearchResult[] results, int[] limits) throws ExecutionException, InterruptedException {
+        Map<String, List<Integer>> queriesByStructure = new HashMap<>();
+        HitScorer[] hitScorers = new HitScorer[results.length];
+        AtomicInteger[] counts = new AtomicInteger[results.length];
+        List<List<Hit>> hits = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            MotifSearchResult result = results[i];
+            hits.add(Collections.synchronizedList(new ArrayList<>()));
+            if (result.getTargetStructures() == null) {
+                continue;
+            }
+
+            result.getTimings().scoreHitsStart();
+            for (String structureIdentifier : result.getTargetStructures().keySet()) {
+                queriesByStructure.computeIfAbsent(structureIdentifier, k -> new ArrayList<>()).add(i);
+            }
+            Parameters parameters = result.getQuery().getParameters();
+            hitScorers[i] = new HitScorer(result.getQuery().getQueryStructure().getResidues(),
+                    parameters.getAtomPairingScheme(),
+                    alignmentService);
+            counts[i] = new AtomicInteger();
+        }
+
+        // a batch gets the share of its least important query, not one share per query
+        int priority = Arrays.stream(results)
+                .filter(result -> result.getTargetStructures() != null)
+                .mapToInt(result -> result.getQuery().getParameters().getPriority())
+                .min()
+                .orElse(1);
+        List<String> structureIdentifiers = new ArrayList<>(queriesByStructure.keySet());
+        int batchSize = Math.max(1, motifSearchConfig.getScoringBatchSize());
+        List<Runnable> tasks = new ArrayList<>();
+        for (int from = 0; from < structureIdentifiers.size(); from += batchSize) {
+            List<String> batch = structureIdentifiers.subList(from, Math.min(from + batchSize, structureIdentifiers.size()));
+            tasks.add(() -> {
+                // start reading all structures of this batch that are still needed by any query
+                Map<String, CompletableFuture<Structure>> structures = new HashMap<>();
+                for (String structureIdentifier : batch) {
+                    // residues needed by any of the queries
+                    int[] residueIndices = queriesByStructure.get(structureIdentifier)
+                            .stream()
+                            .filter(i -> counts[i].get() < limits[i] && !expire(results[i]))
+                            .map(i -> results[i].getTargetStructures().get(structureIdentifier))
+                            .flatMapToInt(targetStructure -> Arrays.stream(targetStructure.getResidueIndices()))
+                            .distinct()
+                            .sorted()
+                            .toArray();
+                    if (residueIndices.length > 0) {
+                        structures.put(structureIdentifier, threadPool.submitIo(() -> structureDataProvider.readRenumbered(structureIdentifier, residueIndices)));
+                    }
+                }
+
+                try {
+                    for (String structureIdentifier : batch) {
+                        CompletableFuture<Structure> read = structures.get(structureIdentifier);
+                        if (read == null) {
+                            continue;
+                        }
+
+                        List<Integer> indices = queriesByStructure.get(structureIdentifier)
+                                .stream()
+                                .filter(i -> counts[i].get() < limits[i] && !expire(results[i]))
+                                .collect(Collectors.toList());
+                        if (indices.isEmpty()) {
+                            continue;
+                        }
+
+                        Structure structure = ThreadPool.await(read);
+                        for (int i : indices) {
+                            MotifSearchResult result = results[i];
+                            int limit = limits[i];
+                            AtomicInteger count = counts[i];
+                            result.getTargetStructures()
+                                    .get(structureIdentifier)
+                                    .paths(result.getQuery().getQueryStructure().getResidueIndexSwaps(), structure, hitScorers[i], stateRepository)
+                                    .filter(hit -> hit.getRootMeanSquareDeviation() <= result.getQuery().getParameters().getRmsdCutoff())
+                                    .takeWhile(hit -> count.getAndIncrement() < limit)
+                                    .forEach(hits.get(i)::add);
+                        }
+                    }
+                } finally {
+                    cancel(structures.values());
+                }
+            });
+        }
+        long queueWait = queryScheduler.run(priority, tasks);
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i].getTargetStructures() == null) {
+                continue;
+            }
+
+            results[i].setHits(new ArrayList<>(hits.get(i)));
+            results[i].getTimings().queueWaitAdd(queueWait);
+            results[i].getTimings().scoreHitsStop();
+        }
+    }
+
+    /**
+     * Check whether a search should stop, flag its result as truncated if so.
+     */
+    private static boolean expire(MotifSearchResult result) {
+        if (result.isExpired()) {
+            result.setTruncated(true);
+            return true;
+        }
+        return false;
+    }
+
     private int scoreHits(Parameters parameters, MotifSearchResult result, Consumer<Hit> consumer, List<Integer> residueIndexSwaps) throws ExecutionException, InterruptedException {
         result.getTimings().scoreHitsStart();
         AtomicInteger hits = new AtomicInteger();
@@ -176,21 +685,31 @@ public class MotifSearchRuntimeImpl implements MotifSearchRuntime {
                 parameters.getAtomPairingScheme(),
                 alignmentService);
 
-        threadPool.submit(() -> {
-            result.getTargetStructures()
-                    .values()
-                    .parallelStream()
-                    .flatMap(targetStructure -> {
-                        Structure structure = structureDataProvider.readRenumbered(targetStructure.getStructureIdentifier());
-                        return targetStructure.paths(residueIndexSwaps, structure, hitScorer, stateRepository);
-                    })
-                    .filter(hit -> hit.getRootMeanSquareDeviation() <= parameters.getRmsdCutoff())
-                    .forEach(hit -> {
-                        hits.incrementAndGet();
-                        consumer.accept(hit);
-                    });
-            return null;
-        }).get();
+        List<Runnable> tasks = new ArrayList<>();
+        for (List<TargetStructure> batch : partition(result.getTargetStructures().values())) {
+            tasks.add(() -> {
+                List<CompletableFuture<Structure>> structures = readStructures(batch);
+                try {
+                    for (int j = 0; j < batch.size(); j++) {
+                        if (expire(result)) {
+                            return;
+                        }
+
+                        TargetStructure targetStructure = batch.get(j);
+                        Structure structure = ThreadPool.await(structures.get(j));
+                        targetStructure.paths(residueIndexSwaps, structure, hitScorer, stateRepository)
+                                .filter(hit -> hit.getRootMeanSquareDeviation() <= parameters.getRmsdCutoff())
+                                .forEach(hit -> {
+                                    hits.incrementAndGet();
+                                    consumer.accept(hit);
+                                });
+                    }
+                } finally {
+                    cancel(structures);
+                }
+            });
+        }
+        result.getTimings().queueWaitAdd(queryScheduler.run(parameters.getPriority(), tasks));
 
         result.getTimings().scoreHitsStop();
         return hits.get();
@@ -0,0 +1,196 @@
+package org.rcsb.strucmotif.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the thread pool among concurrent queries. Each query submits its work as tasks (batches of target structures)
+ * that are interleaved across queries by weighted fair queuing: every query has a virtual clock that advances by the
+ * inverse of its priority whenever one of its tasks is started, the query with the earliest virtual time goes next. A
+ * query that arrives late (or becomes busy again) starts at the current virtual time, so it neither waits for the
+ * backlog of running queries nor gains credit for the time it was idle. An expensive query can therefore delay others
+ * by no more than a task. Additionally, the number of tasks of a single query that run concurrently is capped.
+ */
+class QueryScheduler {
+    private final ThreadPool threadPool;
+    private final int slots;
+    private final int maxConcurrency;
+    // guarded by this
+    private final List<Tenant> tenants;
+    private double virtualTime;
+    private int running;
+
+    /**
+     * Construct a scheduler.
+     * @param threadPool where tasks are executed
+     * @param slots maximum number of tasks that run concurrently, over all queries
+     * @param maxConcurrency maximum number of tasks of a single query that run concurrently
+     */
+    QueryScheduler(ThreadPool threadPool, int slots, int maxConcurrency) {
+        this.threadPool = threadPool;
+        this.slots = Math.max(1, slots);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.tenants = new ArrayList<>();
+    }
+
+    /**
+     * The share of a query. Tasks passed to {@link #execute(Runnable)} are started in order.
+     */
+    class Tenant implements Executor {
+        private final double weight;
+        private final Queue<Task> pending;
+        private final AtomicLong queueWait;
+        // guarded by the scheduler
+        private double virtualTime;
+        private int running;
+        private boolean active;
+
+        private Tenant(int priority) {
+            this.weight = Math.max(1, priority);
+            this.pending = new ArrayDeque<>();
+            this.queueWait = new AtomicLong();
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            synchronized (QueryScheduler.this) {
+                pending.add(new Task(runnable));
+                if (!active) {
+                    active = true;
+                    this.virtualTime = Math.max(this.virtualTime, QueryScheduler.this.virtualTime);
+                    tenants.add(this);
+                }
+            }
+            dispatch();
+        }
+
+        /**
+         * The time tasks of this query spent waiting in the queue, summed over all tasks.
+         * @return the time in ns
+         */
+        long getQueueWait() {
+            return queueWait.get();
+        }
+    }
+
+    private static class Task {
+        private final Runnable runnable;
+        private final long enqueued;
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    /**
+     * Create the share of a query. It can be used for any number of tasks.
+     * @param priority the weight of this query, a query with priority 2 gets twice the share of one with priority 1
+     * @return an executor that schedules tasks fairly with those of other queries
+     */
+    Tenant tenant(int priority) {
+        return new Tenant(priority);
+    }
+
+    /**
+     * Run all tasks of a query and wait for them to finish. Tasks of a query are started in order. If a task fails, no
+     * further tasks of this query are run.
+     * @param priority the weight of this query, a query with priority 2 gets twice the share of one with priority 1
+     * @param tasks the tasks
+     * @return the time in ns tasks of this query spent waiting in the queue, summed over all tasks
+     * @throws ExecutionException if a task failed
+     * @throws InterruptedException if interrupted while waiting, pending tasks are skipped
+     */
+    long run(int priority, List<Runnable> tasks) throws ExecutionException, InterruptedException {
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+
+        Tenant tenant = tenant(priority);
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        for (Runnable task : tasks) {
+            tenant.execute(() -> {
+                try {
+                    if (!done.isDone()) {
+                        task.run();
+                    }
+                } catch (Throwable e) {
+                    done.completeExceptionally(e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }
+            });
+        }
+
+        try {
+            // managed blocking, the caller may itself be a worker of the pool
+            done.get();
+        } catch (InterruptedException e) {
+            done.cancel(false);
+            throw e;
+        }
+        return tenant.getQueueWait();
+    }
+
+    /**
+     * Start tasks while there are free slots.
+     */
+    private void dispatch() {
+        List<Runnable> started = new ArrayList<>();
+        synchronized (this) {
+            while (running < slots) {
+                Tenant next = null;
+                for (Tenant tenant : tenants) {
+                    if (!tenant.pending.isEmpty() && tenant.running < maxConcurrency && (next == null || tenant.virtualTime < next.virtualTime)) {
+                        next = tenant;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+
+                Tenant tenant = next;
+                Task task = tenant.pending.poll();
+                running++;
+                tenant.running++;
+                virtualTime = tenant.virtualTime;
+                tenant.virtualTime += 1 / tenant.weight;
+                started.add(() -> execute(tenant, task));
+            }
+        }
+
+        for (Runnable runnable : started) {
+            threadPool.submit(() -> {
+                runnable.run();
+                return null;
+            });
+        }
+    }
+
+    private void execute(Tenant tenant, Task task) {
+        tenant.queueWait.addAndGet(System.nanoTime() - task.enqueued);
+        try {
+            task.runnable.run();
+        } finally {
+            synchronized (this) {
+                running--;
+                tenant.running--;
+                if (tenant.pending.isEmpty() && tenant.running == 0) {
+                    tenant.active = false;
+                    tenants.remove(tenant);
+                }
+            }
+            dispatch();
+        }
+    }
+}
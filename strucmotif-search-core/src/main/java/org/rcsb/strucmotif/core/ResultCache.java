@@ -0,0 +1,203 @@
+package org.rcsb.strucmotif.core;
+
+import org.rcsb.strucmotif.domain.query.MotifSearchQuery;
+import org.rcsb.strucmotif.domain.query.QueryFingerprint;
+import org.rcsb.strucmotif.domain.result.Hit;
+import org.rcsb.strucmotif.domain.result.MotifSearchResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A cache of search results, keyed by {@link QueryFingerprint}. It is bounded by the total number of cached hits, each
+ * result additionally counts as one hit so that results without hits can't accumulate. The least recently used results
+ * are evicted first, results also expire after some time. All entries are tagged with the
+ * generation of the index they were computed from and are dropped as soon as another generation is encountered.
+ * <p>
+ * A result that was cut off by its limit can still serve all queries that ask for fewer hits. A result that wasn't cut
+ * off is complete and can serve any limit.
+ */
+class ResultCache {
+    private final long capacity;
+    private final long ttl;
+    // access-ordered, guarded by itself
+    private final LinkedHashMap<QueryFingerprint, Entry> entries;
+    private long generation;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Construct a cache.
+     * @param capacity maximum number of hits to keep
+     * @param ttl time in seconds after which results expire
+     */
+    ResultCache(long capacity, long ttl) {
+        this.capacity = capacity;
+        this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private static class Entry {
+        private final ResultSnapshot snapshot;
+        private final long created;
+
+        private Entry(ResultSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.created = System.nanoTime();
+        }
+
+        private int size() {
+            return weigh(snapshot);
+        }
+    }
+
+    private static int weigh(ResultSnapshot snapshot) {
+        return 1 + snapshot.getHits().size();
+    }
+
+    /**
+     * Retrieve a cached result for a query.
+     * @param query the query
+     * @param limit the maximum number of hits that should be reported
+     * @param generation the current generation of the index
+     * @return a new result container, <code>null</code> if nothing suitable is cached
+     */
+    MotifSearchResult get(MotifSearchQuery query, int limit, long generation) {
+        Entry entry = lookup(query.getFingerprint(), generation, snapshot -> snapshot.canServe(limit));
+        return entry != null ? entry.snapshot.toResult(query, limit) : null;
+    }
+
+    /**
+     * Retrieve all hits of a query, if they are cached.
+     * @param query the query
+     * @param generation the current generation of the index
+     * @return all hits, <code>null</code> if no complete result is cached
+     */
+    List<Hit> getAll(MotifSearchQuery query, long generation) {
+        Entry entry = lookup(query.getFingerprint(), generation, ResultSnapshot::isComplete);
+        return entry != null ? entry.snapshot.getHits() : null;
+    }
+
+    private Entry lookup(QueryFingerprint fingerprint, long generation, Predicate<ResultSnapshot> suitable) {
+        synchronized (entries) {
+            updateGeneration(generation);
+            Entry entry = entries.get(fingerprint);
+            if (entry != null && isExpired(entry)) {
+                remove(fingerprint);
+                entry = null;
+            }
+            if (entry != null && suitable.test(entry.snapshot)) {
+                hits++;
+                return entry;
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Cache the result of a query.
+     * @param fingerprint the fingerprint of the query
+     * @param snapshot the result
+     * @param generation the generation of the index at the time the query started (and the cache was consulted)
+     */
+    void put(QueryFingerprint fingerprint, ResultSnapshot snapshot, long generation) {
+        // never cache results that would evict everything else
+        if (weigh(snapshot) > capacity) {
+            return;
+        }
+
+        Entry entry = new Entry(snapshot);
+        synchronized (entries) {
+            // index changed while this query was running
+            if (generation != this.generation) {
+                return;
+            }
+
+            Entry previous = entries.get(fingerprint);
+            // don't replace a result that can serve more queries
+            if (previous != null && !isExpired(previous) && (previous.snapshot.isComplete() || previous.size() >= entry.size())) {
+                return;
+            }
+
+            remove(fingerprint);
+            entries.put(fingerprint, entry);
+            size += entry.size();
+
+            // drop expired and least recently used results
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                boolean expired = isExpired(eldest);
+                if (!expired && size <= capacity) {
+                    break;
+                }
+
+                size -= eldest.size();
+                iterator.remove();
+                if (!expired) {
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of cached results.
+     * @return the number of entries
+     */
+    int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Weight of all cached results, never exceeds the capacity.
+     * @return the number of cached hits plus one per entry
+     */
+    long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    private void updateGeneration(long generation) {
+        if (generation != this.generation) {
+            entries.clear();
+            size = 0;
+            this.generation = generation;
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.nanoTime() - entry.created > ttl;
+    }
+
+    private void remove(QueryFingerprint fingerprint) {
+        Entry previous = entries.remove(fingerprint);
+        if (previous != null) {
+            size -= previous.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (entries) {
+            return "ResultCache{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", entries=" + entries.size() +
+                    ", size=" + size +
+                    ", capacity=" + capacity +
+                    ", generation=" + generation +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.rcsb.strucmotif.core;
+
+import org.rcsb.strucmotif.domain.query.MotifSearchQuery;
+import org.rcsb.strucmotif.domain.result.Hit;
+import org.rcsb.strucmotif.domain.result.MotifSearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of the outcome of a search that can be handed to other queries with the same
+ * {@link org.rcsb.strucmotif.domain.query.QueryFingerprint}.
+ */
+class ResultSnapshot {
+    private final List<Hit> hits;
+    private final boolean complete;
+    private final int numberOfPaths;
+    private final int numberOfTargetStructures;
+
+    /**
+     * Capture a result.
+     * @param result the result, hits must be set
+     * @param limit the limit that was applied when collecting hits
+     */
+    ResultSnapshot(MotifSearchResult result, int limit) {
+        this.hits = List.copyOf(result.getHits());
+        this.complete = hits.size() < limit;
+        this.numberOfPaths = result.getNumberOfPaths();
+        this.numberOfTargetStructures = result.getNumberOfTargetStructures();
+    }
+
+    /**
+     * All captured hits.
+     * @return an immutable list
+     */
+    List<Hit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Whether the search reported all hits, i.e. it wasn't cut off by its limit.
+     * @return true if complete
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Whether this snapshot holds the same hits that a search with some limit would report.
+     * @param limit the maximum number of hits of the other search
+     * @return true if this snapshot can be used to answer the other search
+     */
+    boolean canServe(int limit) {
+        return complete || limit <= hits.size();
+    }
+
+    /**
+     * Create the result of another query.
+     * @param query the query
+     * @param limit the maximum number of hits to report
+     * @return a new result container
+     */
+    MotifSearchResult toResult(MotifSearchQuery query, int limit) {
+        MotifSearchResult result = new MotifSearchResult(query);
+        result.setHits(new ArrayList<>(hits.subList(0, Math.min(limit, hits.size()))));
+        result.setNumberOfPaths(numberOfPaths);
+        result.setNumberOfTargetStructures(numberOfTargetStructures);
+        result.getTimings().queryStop();
+        return result;
+    }
+}
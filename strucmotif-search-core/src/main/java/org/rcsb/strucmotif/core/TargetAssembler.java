@@ -2,6 +2,7 @@ package org.rcsb.strucmotif.core;
 
 import org.rcsb.strucmotif.domain.result.MotifSearchResult;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -20,4 +21,13 @@ public interface TargetAssembler {
      * @throws InterruptedException thrown by multi-threading impl
      */
     void assemble(MotifSearchResult response) throws ExecutionException, InterruptedException;
+
+    /**
+     * Search for a batch of queries. Each bin of the inverted index is read once, even if it's needed by several
+     * queries.
+     * @param responses the containers to work on
+     * @throws ExecutionException thrown by multi-threading impl
+     * @throws InterruptedException thrown by multi-threading impl
+     */
+    void assemble(List<MotifSearchResult> responses) throws ExecutionException, InterruptedException;
 }
@@ -21,10 +21,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The default strucmotif-search target assembler.
@@ -48,35 +55,139 @@ public class TargetAssemblerImpl implements TargetAssembler {
 
     @Override
     public void assemble(MotifSearchResult response) throws ExecutionException, InterruptedException  {
-        MotifSearchQuery query = response.getQuery();
-        QueryStructure queryStructure = query.getQueryStructure();
+        // bins of the next generation are read on the I/O executor while the current generation is consumed
+        Parameters parameters = response.getQuery().getParameters();
+        Map<IndexSelection, Set<ResidueType>> exchanges = getExchanges(response.getQuery());
+        Map<ResiduePairDescriptor, CompletableFuture<byte[]>> reads = new ConcurrentHashMap<>();
+        try {
+            assemble(response, residuePairOccurrence -> residuePairOccurrence.residuePairDescriptorsByTolerance(parameters.getBackboneDistanceTolerance(), parameters.getSideChainDistanceTolerance(), parameters.getAngleTolerance(), exchanges)
+                    .forEach(residuePairDescriptor -> reads.computeIfAbsent(residuePairDescriptor, this::readBin)), residuePairDescriptor -> {
+                CompletableFuture<byte[]> read = reads.remove(residuePairDescriptor);
+                return invertedIndex.select(residuePairDescriptor, ThreadPool.await(read != null ? read : readBin(residuePairDescriptor)));
+            });
+        } finally {
+            // bins prefetched for a generation that is never consumed, e.g. because the search expired
+            reads.values().forEach(read -> read.cancel(false));
+        }
+    }
+
+    private CompletableFuture<byte[]> readBin(ResiduePairDescriptor residuePairDescriptor) {
+        return threadPool.submitIo(() -> invertedIndex.read(residuePairDescriptor));
+    }
+
+    @Override
+    public void assemble(List<MotifSearchResult> responses) throws ExecutionException, InterruptedException {
+        // count how often each bin is needed, so that it can be dropped after its last use
+        Map<ResiduePairDescriptor, Integer> uses = new ConcurrentHashMap<>();
+        int requested = 0;
+        for (MotifSearchResult response : responses) {
+            List<ResiduePairDescriptor> residuePairDescriptors = residuePairDescriptors(response.getQuery()).collect(Collectors.toList());
+            for (ResiduePairDescriptor residuePairDescriptor : residuePairDescriptors) {
+                uses.merge(residuePairDescriptor, 1, Integer::sum);
+            }
+            requested += residuePairDescriptors.size();
+        }
+        logger.info("Batch of {} queries reads {} distinct bins instead of {}",
+                responses.size(),
+                uses.size(),
+                requested);
+
+        // queries are assembled one after another, bins are read (concurrently) when first needed
+        Map<ResiduePairDescriptor, CompletableFuture<Pair<String, InvertedIndexResiduePairIdentifier[]>[]>> bins = new ConcurrentHashMap<>();
+        for (MotifSearchResult response : responses) {
+            assemble(response, residuePairOccurrence -> {}, residuePairDescriptor -> {
+                CompletableFuture<Pair<String, InvertedIndexResiduePairIdentifier[]>[]> future = new CompletableFuture<>();
+                CompletableFuture<Pair<String, InvertedIndexResiduePairIdentifier[]>[]> existing = bins.putIfAbsent(residuePairDescriptor, future);
+                if (existing == null) {
+                    try {
+                        future.complete(selectBin(residuePairDescriptor));
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                        throw e;
+                    }
+                    existing = future;
+                }
+
+                Pair<String, InvertedIndexResiduePairIdentifier[]>[] bin = ThreadPool.await(existing);
+                if (uses.merge(residuePairDescriptor, -1, Integer::sum) == 0) {
+                    bins.remove(residuePairDescriptor);
+                }
+                return Arrays.stream(bin);
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Pair<String, InvertedIndexResiduePairIdentifier[]>[] selectBin(ResiduePairDescriptor residuePairDescriptor) {
+        return invertedIndex.select(residuePairDescriptor, ThreadPool.await(readBin(residuePairDescriptor))).toArray(Pair[]::new);
+    }
+
+    private Stream<ResiduePairDescriptor> residuePairDescriptors(MotifSearchQuery query) {
         Parameters parameters = query.getParameters();
-        int backboneDistanceTolerance = parameters.getBackboneDistanceTolerance();
-        int sideChainDistanceTolerance = parameters.getSideChainDistanceTolerance();
-        int angleTolerance = parameters.getAngleTolerance();
+        Map<IndexSelection, Set<ResidueType>> exchanges = getExchanges(query);
+        return query.getQueryStructure()
+                .getResiduePairOccurrences()
+                .stream()
+                .flatMap(residuePairOccurrence -> residuePairOccurrence.residuePairDescriptorsByTolerance(parameters.getBackboneDistanceTolerance(), parameters.getSideChainDistanceTolerance(), parameters.getAngleTolerance(), exchanges));
+    }
+
+    private Map<IndexSelection, Set<ResidueType>> getExchanges(MotifSearchQuery query) {
+        QueryStructure queryStructure = query.getQueryStructure();
         Map<LabelSelection, Set<ResidueType>> labelSelectionExchanges = query.getExchanges();
-        Map<IndexSelection, Set<ResidueType>> exchanges = labelSelectionExchanges.entrySet()
+        return labelSelectionExchanges.entrySet()
                 .stream()
                 .collect(Collectors.toMap(entry -> {
                     LabelSelection labelSelection = entry.getKey();
                     int residueIndex = queryStructure.getStructure().getResidueIndex(labelSelection.getLabelAsymId(), labelSelection.getLabelSeqId());
                     return new IndexSelection(labelSelection.getStructOperId(), residueIndex);
                 }, Map.Entry::getValue));
+    }
+
+    /**
+     * Assemble the paths of a query.
+     * @param response the result container
+     * @param prefetch called with the residue pair occurrence of the next generation before a generation is consumed
+     * @param select performs lookups in the inverted index
+     */
+    private void assemble(MotifSearchResult response, Consumer<ResiduePairOccurrence> prefetch, Function<ResiduePairDescriptor, Stream<Pair<String, InvertedIndexResiduePairIdentifier[]>>> select) throws ExecutionException, InterruptedException {
+        MotifSearchQuery query = response.getQuery();
+        QueryStructure queryStructure = query.getQueryStructure();
+        Parameters parameters = query.getParameters();
+        int backboneDistanceTolerance = parameters.getBackboneDistanceTolerance();
+        int sideChainDistanceTolerance = parameters.getSideChainDistanceTolerance();
+        int angleTolerance = parameters.getAngleTolerance();
+        Map<IndexSelection, Set<ResidueType>> exchanges = getExchanges(query);
         boolean whitelist = !query.getWhitelist().isEmpty();
         boolean blacklist = !query.getBlacklist().isEmpty();
 
         response.getTimings().pathsStart();
+        List<ResiduePairOccurrence> residuePairOccurrences = queryStructure.getResiduePairOccurrences();
+        if (!residuePairOccurrences.isEmpty()) {
+            prefetch.accept(residuePairOccurrences.get(0));
+        }
         // retrieve target identifiers per query motif descriptor
-        for (ResiduePairOccurrence residuePairOccurrence : queryStructure.getResiduePairOccurrences()) {
+        for (int generation = 0; generation < residuePairOccurrences.size(); generation++) {
+            ResiduePairOccurrence residuePairOccurrence = residuePairOccurrences.get(generation);
+            // incomplete paths can't be scored: give up on all targets
+            if (response.isExpired()) {
+                logger.info("[{}] Search expired during path assembly", response.getQuery().hashCode());
+                response.setTruncated(true);
+                response.setTargetStructures(new HashMap<>());
+                break;
+            }
+
             long s = System.nanoTime();
             ResiduePairDescriptor residuePairDescriptor = residuePairOccurrence.getResiduePairDescriptor();
+            if (generation + 1 < residuePairOccurrences.size()) {
+                prefetch.accept(residuePairOccurrences.get(generation + 1));
+            }
 
             // sort into target structures
             Map<String, InvertedIndexResiduePairIdentifier[]> residuePairIdentifiers;
             // asked to honor entry-level white- or blacklist
             if (whitelist || blacklist) {
                 residuePairIdentifiers = residuePairOccurrence.residuePairDescriptorsByTolerance(backboneDistanceTolerance, sideChainDistanceTolerance, angleTolerance, exchanges)
-                        .flatMap(invertedIndex::select)
+                        .flatMap(select)
                         // if there is a whitelist, this entry has to occur therein
                         .filter(pair -> !whitelist || query.getWhitelist().contains(pair.getFirst()))
                         // cannot occur in blacklist
@@ -85,7 +196,7 @@ public class TargetAssemblerImpl implements TargetAssembler {
             } else {
                 // standard mode: accepted everybody
                 residuePairIdentifiers = residuePairOccurrence.residuePairDescriptorsByTolerance(backboneDistanceTolerance, sideChainDistanceTolerance, angleTolerance, exchanges)
-                        .flatMap(invertedIndex::select)
+                        .flatMap(select)
                         .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond, TargetAssemblerImpl::concat));
             }
 
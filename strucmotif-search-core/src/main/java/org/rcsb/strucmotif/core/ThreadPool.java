@@ -1,11 +1,17 @@
 package org.rcsb.strucmotif.core;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * An application-wide shared thread pool with a configurable number of threads. Will be used to operations that perform
- * on parallel streams.
+ * on parallel streams. Blocking reads are dispatched to a separate executor, so that they don't occupy compute threads.
  */
 public interface ThreadPool {
     /**
@@ -15,4 +21,52 @@ public interface ThreadPool {
      * @return a Future aka promise
      */
     <R> Future<R> submit(Callable<R> task);
+
+    /**
+     * Dispatch a blocking I/O operation, e.g. reading a bin of the inverted index or a structure. The default
+     * implementation runs it in the calling thread.
+     * @param task the operation
+     * @param <R> type
+     * @return a future of its outcome
+     */
+    default <R> CompletableFuture<R> submitIo(Supplier<R> task) {
+        return CompletableFuture.supplyAsync(task, Runnable::run);
+    }
+
+    /**
+     * Wait for the outcome of an operation dispatched by {@link #submitIo(Supplier)}. When called by a worker of a
+     * ForkJoinPool, the pool is informed that the worker blocks and may start a compensating worker, so that waiting
+     * for reads doesn't reduce the parallelism available to computations.
+     * @param future the operation
+     * @param <R> type
+     * @return its outcome
+     * @throws CompletionException if the operation failed or the thread was interrupted while waiting
+     * @throws CancellationException if the operation was cancelled
+     */
+    static <R> R await(CompletableFuture<R> future) {
+        if (!future.isDone()) {
+            try {
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        try {
+                            future.get();
+                        } catch (ExecutionException | CancellationException e) {
+                            // reported by join
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return future.isDone();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+        return future.join();
+    }
 }
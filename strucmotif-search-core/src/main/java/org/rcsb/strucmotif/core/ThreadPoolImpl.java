@@ -1,19 +1,31 @@
 package org.rcsb.strucmotif.core;
 
 import org.rcsb.strucmotif.config.MotifSearchConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
- * Wraps a ForkJoinPool.
+ * Wraps a ForkJoinPool for computations and a separate executor for blocking reads.
  */
 @Service
 public class ThreadPoolImpl implements ThreadPool {
+    private static final Logger logger = LoggerFactory.getLogger(ThreadPoolImpl.class);
     private final ForkJoinPool pool;
+    private final ExecutorService ioExecutor;
 
     /**
      * Constructor.
@@ -22,10 +34,40 @@ public class ThreadPoolImpl implements ThreadPool {
     @Autowired
     public ThreadPoolImpl(MotifSearchConfig motifSearchConfig) {
         this.pool = new ForkJoinPool(motifSearchConfig.getNumberThreads());
+        this.ioExecutor = createIoExecutor(motifSearchConfig);
+    }
+
+    private static ExecutorService createIoExecutor(MotifSearchConfig motifSearchConfig) {
+        if (motifSearchConfig.isIoVirtualThreads()) {
+            try {
+                // available since Java 21, looked up reflectively as older runtimes are supported too
+                ExecutorService executorService = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logger.info("Using virtual threads for I/O");
+                return executorService;
+            } catch (ReflectiveOperationException e) {
+                logger.info("Virtual threads are not supported by this runtime");
+            }
+        }
+
+        int ioThreads = Math.max(1, motifSearchConfig.getIoThreads());
+        logger.info("Using up to {} threads for I/O", ioThreads);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "strucmotif-io-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
     public <R> Future<R> submit(Callable<R> task) {
         return pool.submit(task);
     }
+
+    @Override
+    public <R> CompletableFuture<R> submitIo(Supplier<R> task) {
+        return CompletableFuture.supplyAsync(task, ioExecutor);
+    }
 }
@@ -22,6 +22,10 @@ public class Transformation {
         public void transform(float[] out, float[] v) {
             System.arraycopy(v, 0, out, 0, 3);
         }
+
+        @Override
+        public void transform(float[] coordinates, int offset) {
+        }
     };
     private final float[][] transformation;
 
@@ -70,4 +74,19 @@ public class Transformation {
     public void transform(float[] out, float[] v) {
         Algebra.multiply4d(out, transformation, v);
     }
+
+    /**
+     * Transform a vector that is part of a flat array in-place.
+     * @param coordinates the array
+     * @param offset position of the x-coordinate, y and z are expected to follow
+     */
+    public void transform(float[] coordinates, int offset) {
+        float[][] m = transformation;
+        float x = coordinates[offset];
+        float y = coordinates[offset + 1];
+        float z = coordinates[offset + 2];
+        coordinates[offset] = m[0][0] * x + m[0][1] * y + m[0][2] * z + m[0][3];
+        coordinates[offset + 1] = m[1][0] * x + m[1][1] * y + m[1][2] * z + m[1][3];
+        coordinates[offset + 2] = m[2][0] * x + m[2][1] * y + m[2][2] * z + m[2][3];
+    }
 }
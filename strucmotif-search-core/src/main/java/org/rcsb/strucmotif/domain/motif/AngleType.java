@@ -47,6 +47,9 @@ public enum AngleType {
      */
     A180;
 
+    // values() copies the array on each call
+    private static final AngleType[] VALUES = values();
+
     /**
      * Width of an angle bin.
      */
@@ -69,10 +72,10 @@ public enum AngleType {
         int i = Math.round(angle / BIN_SIZE);
         if (i < 0) {
             return AngleType.A0;
-        } else if (i >= AngleType.values().length) {
+        } else if (i >= VALUES.length) {
             return AngleType.A180;
         } else {
-            return AngleType.values()[i];
+            return VALUES[i];
         }
     }
 
@@ -82,6 +85,6 @@ public enum AngleType {
      * @return the corresponding bin
      */
     public static AngleType ofIntRepresentation(int ordinal) {
-        return AngleType.values()[Algebra.capToInterval(0, ordinal, values().length)];
+        return VALUES[Algebra.capToInterval(0, ordinal, VALUES.length)];
     }
 }
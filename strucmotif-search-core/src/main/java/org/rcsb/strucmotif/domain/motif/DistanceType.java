@@ -171,6 +171,9 @@ public enum DistanceType {
      */
     D40; // this is the hard-limit for the distance between pairs
 
+    // values() copies the array on each call
+    private static final DistanceType[] VALUES = values();
+
     /**
      * Width of a distance bin.
      */
@@ -193,10 +196,10 @@ public enum DistanceType {
         int i = Math.round(distance / BIN_SIZE);
         if (i < 0) {
             return DistanceType.D0;
-        } else if (i >= DistanceType.values().length) {
+        } else if (i >= VALUES.length) {
             return DistanceType.D40;
         } else {
-            return DistanceType.values()[i];
+            return VALUES[i];
         }
     }
 
@@ -206,6 +209,6 @@ public enum DistanceType {
      * @return the corresponding bin
      */
     public static DistanceType ofIntRepresentation(int ordinal) {
-        return DistanceType.values()[Algebra.capToInterval(0, ordinal, values().length)];
+        return VALUES[Algebra.capToInterval(0, ordinal, VALUES.length)];
     }
 }
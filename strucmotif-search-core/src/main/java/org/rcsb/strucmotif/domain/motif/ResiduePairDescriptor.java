@@ -8,6 +8,9 @@ import java.util.Objects;
  * Captures all properties of a residue pair (i.e. types, distances and angle).
  */
 public class ResiduePairDescriptor {
+    private static final ResidueType[] RESIDUE_TYPES = ResidueType.values();
+    private static final DistanceType[] DISTANCE_TYPES = DistanceType.values();
+    private static final AngleType[] ANGLE_TYPES = AngleType.values();
     private final ResidueType residueType1;
     private final ResidueType residueType2;
     private final DistanceType backboneDistance;
@@ -77,6 +80,64 @@ public class ResiduePairDescriptor {
         return angle;
     }
 
+    /**
+     * Packs this descriptor into an int: ordinals of both residue types (5 bits each), both distances (6 bits each),
+     * the angle (4 bits) and the flipped flag (1 bit), most significant first. Codes of unflipped descriptors are hence
+     * ordered by residue types, then distances, then angle.
+     * @return an int
+     */
+    public int getCode() {
+        return residueType1.ordinal() << 22 |
+                residueType2.ordinal() << 17 |
+                backboneDistance.ordinal() << 11 |
+                sideChainDistance.ordinal() << 5 |
+                angle.ordinal() << 1 |
+                (flipped ? 1 : 0);
+    }
+
+    /**
+     * Compute the code of a residue pair without creating a descriptor, see {@link #getCode()}. Residue types are
+     * flipped like by the constructor.
+     * @param residueType1 the first type
+     * @param residueType2 the second type
+     * @param backboneDistance the backbone distance
+     * @param sideChainDistance the side-chain distance
+     * @param angle the angle
+     * @return an int
+     */
+    public static int getCode(ResidueType residueType1,
+                              ResidueType residueType2,
+                              DistanceType backboneDistance,
+                              DistanceType sideChainDistance,
+                              AngleType angle) {
+        boolean flipped = residueType1.getOneLetterCode().compareTo(residueType2.getOneLetterCode()) > 0;
+        return (flipped ? residueType2 : residueType1).ordinal() << 22 |
+                (flipped ? residueType1 : residueType2).ordinal() << 17 |
+                backboneDistance.ordinal() << 11 |
+                sideChainDistance.ordinal() << 5 |
+                angle.ordinal() << 1 |
+                (flipped ? 1 : 0);
+    }
+
+    /**
+     * Restore a descriptor from its code.
+     * @param code the value of {@link #getCode()}
+     * @return the corresponding descriptor
+     */
+    public static ResiduePairDescriptor ofCode(int code) {
+        ResidueType residueType1 = RESIDUE_TYPES[code >>> 22 & 0x1f];
+        ResidueType residueType2 = RESIDUE_TYPES[code >>> 17 & 0x1f];
+        DistanceType backboneDistance = DISTANCE_TYPES[code >>> 11 & 0x3f];
+        DistanceType sideChainDistance = DISTANCE_TYPES[code >>> 5 & 0x3f];
+        AngleType angle = ANGLE_TYPES[code >>> 1 & 0xf];
+        // residue types are stored in order, swap them again so that the constructor flips
+        if ((code & 1) == 1) {
+            return new ResiduePairDescriptor(residueType2, residueType1, backboneDistance, sideChainDistance, angle);
+        } else {
+            return new ResiduePairDescriptor(residueType1, residueType2, backboneDistance, sideChainDistance, angle);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
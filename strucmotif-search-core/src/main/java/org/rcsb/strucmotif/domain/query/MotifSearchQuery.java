@@ -23,6 +23,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -37,6 +39,8 @@ public class MotifSearchQuery {
     private final Collection<String> whitelist;
     private final Collection<String> blacklist;
     private final MotifSearchConfig config;
+    // lazily computed
+    private volatile QueryFingerprint fingerprint;
 
     MotifSearchQuery(MotifSearchRuntime motifSearchRuntime,
                      String structureIdentifier,
@@ -98,6 +102,20 @@ public class MotifSearchQuery {
         return blacklist;
     }
 
+    /**
+     * A canonical hash of everything that determines the hits of this query (except for the limit). Queries with equal
+     * fingerprints report the same hits.
+     * @return the fingerprint of this query
+     */
+    public QueryFingerprint getFingerprint() {
+        QueryFingerprint fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            fingerprint = new QueryFingerprint(queryStructure, parameters, exchanges, whitelist, blacklist);
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
     /**
      * Dispatch this query and perform the corresponding search.
      * @return the result container
@@ -114,6 +132,33 @@ public class MotifSearchQuery {
         motifSearchRuntime.performSearch(this, hitConsumer);
     }
 
+    /**
+     * Dispatch this query without blocking. Cancelling the returned future stops the search.
+     * @return a future of the result container
+     */
+    public CompletableFuture<MotifSearchResult> runAsync() {
+        return motifSearchRuntime.performSearchAsync(this);
+    }
+
+    /**
+     * Dispatch this query without blocking and consume each accepted hit on-the-fly. Cancelling the returned future
+     * stops the search.
+     * @param hitConsumer terminal operation to perform on accepted hits
+     * @return a future of the result container, it holds no hits
+     */
+    public CompletableFuture<MotifSearchResult> runAsyncAndConsume(Consumer<Hit> hitConsumer) {
+        return motifSearchRuntime.performSearchAsync(this, hitConsumer);
+    }
+
+    /**
+     * Dispatch this query once subscribed and publish accepted hits according to the demand of the subscriber.
+     * Structures are only loaded while there is outstanding demand.
+     * @return a publisher that accepts a single subscriber
+     */
+    public Flow.Publisher<Hit> publish() {
+        return motifSearchRuntime.publishSearch(this);
+    }
+
     /**
      * Dispatch this query and write each accepted hit to a file. Overwrites existing files, doesn't keep hits in memory.
      * @param path destination
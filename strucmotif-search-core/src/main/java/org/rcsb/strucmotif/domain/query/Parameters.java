@@ -14,11 +14,13 @@ public class Parameters {
     private final AtomPairingScheme atomPairingScheme;
     private final MotifPruner motifPruner;
     private final int limit;
+    private final long timeout;
+    private final int priority;
     static final int DEFAULT_BACKBONE_DISTANCE_TOLERANCE = 1;
     static final int DEFAULT_SIDE_CHAIN_DISTANCE_TOLERANCE = 1;
     static final int DEFAULT_ANGLE_TOLERANCE = 1;
 
-    Parameters(int backboneDistanceTolerance, int sideChainDistanceTolerance, int angleTolerance, float rmsdCutoff, AtomPairingScheme atomPairingScheme, MotifPruner motifPruner, int resultLimit) {
+    Parameters(int backboneDistanceTolerance, int sideChainDistanceTolerance, int angleTolerance, float rmsdCutoff, AtomPairingScheme atomPairingScheme, MotifPruner motifPruner, int resultLimit, long timeout, int priority) {
         this.backboneDistanceTolerance = backboneDistanceTolerance;
         this.sideChainDistanceTolerance = sideChainDistanceTolerance;
         this.angleTolerance = angleTolerance;
@@ -26,6 +28,8 @@ public class Parameters {
         this.atomPairingScheme = atomPairingScheme;
         this.motifPruner = motifPruner;
         this.limit = resultLimit;
+        this.timeout = timeout;
+        this.priority = priority;
     }
 
     /**
@@ -91,4 +95,30 @@ public class Parameters {
     public boolean hasLimit() {
         return limit != Integer.MAX_VALUE;
     }
+
+    /**
+     * Stop the search after this many milliseconds. A search that ran out of time reports the hits accepted so far and
+     * is flagged as truncated.
+     * @return a long
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Report if the search time is limited.
+     * @return true if search will stop after a certain time
+     */
+    public boolean hasTimeout() {
+        return timeout != Long.MAX_VALUE;
+    }
+
+    /**
+     * The share of the thread pool this search gets while competing with other searches. A search with priority 2 is
+     * scheduled twice as often as one with priority 1.
+     * @return an int &gt;0
+     */
+    public int getPriority() {
+        return priority;
+    }
 }
@@ -125,6 +125,8 @@ public class QueryBuilder {
         private AtomPairingScheme atomPairingScheme;
         private MotifPruner motifPruner;
         private int limit;
+        private long timeout;
+        private int priority;
 
         MandatoryBuilder(String structureIdentifier, Structure structure, List<LabelSelection> labelSelections, List<Map<LabelAtomId, float[]>> residues) {
             this.structureIdentifier = structureIdentifier;
@@ -139,6 +141,8 @@ public class QueryBuilder {
             // defines the 'default' motif pruning strategy
             this.motifPruner = QueryBuilder.this.kruskalMotifPruner;
             this.limit = Integer.MAX_VALUE;
+            this.timeout = Long.MAX_VALUE;
+            this.priority = 1;
         }
 
         /**
@@ -230,6 +234,30 @@ public class QueryBuilder {
             return this;
         }
 
+        /**
+         * Stop after a certain time. The result will contain all hits accepted until then and is flagged as truncated.
+         * @param timeout the maximum runtime in milliseconds
+         * @return this builder
+         */
+        public MandatoryBuilder timeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Hint how this search should be weighted against concurrent searches (default: 1). Higher values get a larger
+         * share of the thread pool.
+         * @param priority the weight, must be &gt;0
+         * @return this builder
+         */
+        public MandatoryBuilder priority(int priority) {
+            if (priority < 1) {
+                throw new IllegalArgumentException("priority must be positive, was " + priority);
+            }
+            this.priority = priority;
+            return this;
+        }
+
         /**
          * Creates a {@link Parameters} instance based on all values. Proceeds to the next step.
          * @return the optional argument step
@@ -241,7 +269,9 @@ public class QueryBuilder {
                     rmsdCutoff,
                     atomPairingScheme,
                     motifPruner,
-                    limit);
+                    limit,
+                    timeout,
+                    priority);
             return new OptionalStepBuilder(structureIdentifier, structure, labelSelections, residues, parameters);
         }
     }
@@ -0,0 +1,158 @@
+package org.rcsb.strucmotif.domain.query;
+
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.motif.ResiduePairOccurrence;
+import org.rcsb.strucmotif.domain.structure.IndexSelection;
+import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.LabelSelection;
+import org.rcsb.strucmotif.domain.structure.ResidueType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A canonical hash of everything that determines the hits of a {@link MotifSearchQuery}: residue pair descriptors
+ * (and how they are connected), query coordinates, exchanges, tolerances, RMSD cutoff, atom pairing scheme and
+ * white/blacklist. Two queries with the same fingerprint will report the same hits. The limit is not part of the
+ * fingerprint.
+ */
+public class QueryFingerprint {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final byte[] digest;
+    private final int hashCode;
+
+    QueryFingerprint(QueryStructure queryStructure,
+                     Parameters parameters,
+                     Map<LabelSelection, Set<ResidueType>> exchanges,
+                     Collection<String> whitelist,
+                     Collection<String> blacklist) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        // descriptors in path order, with the index selections that connect them
+        List<ResiduePairOccurrence> occurrences = queryStructure.getResiduePairOccurrences();
+        updateInt(messageDigest, buffer, occurrences.size());
+        for (ResiduePairOccurrence occurrence : occurrences) {
+            updateInt(messageDigest, buffer, occurrence.getResiduePairDescriptor().getCode());
+            ResiduePairIdentifier identifier = occurrence.getResidueIdentifier();
+            updateIndexSelection(messageDigest, buffer, identifier.getIndexSelection1());
+            updateIndexSelection(messageDigest, buffer, identifier.getIndexSelection2());
+        }
+        List<Integer> residueIndexSwaps = queryStructure.getResidueIndexSwaps();
+        updateInt(messageDigest, buffer, residueIndexSwaps.size());
+        for (int residueIndexSwap : residueIndexSwaps) {
+            updateInt(messageDigest, buffer, residueIndexSwap);
+        }
+
+        // coordinates of the query residues determine the RMSD of each hit
+        List<Map<LabelAtomId, float[]>> residues = queryStructure.getResidues();
+        updateInt(messageDigest, buffer, residues.size());
+        for (Map<LabelAtomId, float[]> residue : residues) {
+            updateInt(messageDigest, buffer, residue.size());
+            LabelAtomId[] labelAtomIds = residue.keySet().toArray(LabelAtomId[]::new);
+            Arrays.sort(labelAtomIds);
+            for (LabelAtomId labelAtomId : labelAtomIds) {
+                float[] v = residue.get(labelAtomId);
+                updateInt(messageDigest, buffer, labelAtomId.ordinal());
+                updateInt(messageDigest, buffer, Float.floatToIntBits(v[0]));
+                updateInt(messageDigest, buffer, Float.floatToIntBits(v[1]));
+                updateInt(messageDigest, buffer, Float.floatToIntBits(v[2]));
+            }
+        }
+
+        // exchanges, independent of map/set iteration order
+        LabelSelection[] labelSelections = exchanges.keySet().toArray(LabelSelection[]::new);
+        Arrays.sort(labelSelections, Comparator.comparing(LabelSelection::getLabelAsymId)
+                .thenComparing(LabelSelection::getStructOperId)
+                .thenComparingInt(LabelSelection::getLabelSeqId));
+        updateInt(messageDigest, buffer, labelSelections.length);
+        for (LabelSelection labelSelection : labelSelections) {
+            updateString(messageDigest, buffer, labelSelection.toString());
+            int[] residueTypes = exchanges.get(labelSelection).stream()
+                    .mapToInt(ResidueType::ordinal)
+                    .sorted()
+                    .toArray();
+            updateInt(messageDigest, buffer, residueTypes.length);
+            for (int residueType : residueTypes) {
+                updateInt(messageDigest, buffer, residueType);
+            }
+        }
+
+        updateInt(messageDigest, buffer, parameters.getBackboneDistanceTolerance());
+        updateInt(messageDigest, buffer, parameters.getSideChainDistanceTolerance());
+        updateInt(messageDigest, buffer, parameters.getAngleTolerance());
+        updateInt(messageDigest, buffer, Float.floatToIntBits(parameters.getRmsdCutoff()));
+        updateInt(messageDigest, buffer, parameters.getAtomPairingScheme().ordinal());
+
+        updateStrings(messageDigest, buffer, whitelist);
+        updateStrings(messageDigest, buffer, blacklist);
+
+        this.digest = messageDigest.digest();
+        this.hashCode = Arrays.hashCode(digest);
+    }
+
+    private static void updateInt(MessageDigest messageDigest, ByteBuffer buffer, int value) {
+        buffer.clear();
+        buffer.putInt(value);
+        messageDigest.update(buffer.array(), 0, Integer.BYTES);
+    }
+
+    private static void updateIndexSelection(MessageDigest messageDigest, ByteBuffer buffer, IndexSelection indexSelection) {
+        updateString(messageDigest, buffer, indexSelection.getStructOperId());
+        updateInt(messageDigest, buffer, indexSelection.getIndex());
+    }
+
+    private static void updateString(MessageDigest messageDigest, ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // length prefix keeps concatenations unambiguous
+        updateInt(messageDigest, buffer, bytes.length);
+        messageDigest.update(bytes);
+    }
+
+    private static void updateStrings(MessageDigest messageDigest, ByteBuffer buffer, Collection<String> values) {
+        String[] sorted = values.stream()
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+        updateInt(messageDigest, buffer, sorted.length);
+        for (String value : sorted) {
+            updateString(messageDigest, buffer, value);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        QueryFingerprint that = (QueryFingerprint) o;
+        return Arrays.equals(digest, that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        char[] out = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; i++) {
+            out[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(out);
+    }
+}
@@ -5,6 +5,8 @@ import org.rcsb.strucmotif.domain.query.MotifSearchQuery;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * The state and results of a motif search run.
@@ -23,6 +25,11 @@ public class MotifSearchResult {
     private int numberOfPaths;
     private int numberOfTargetStructures;
 
+    // System.nanoTime() after which the search should stop, only valid if the query has a timeout
+    private final long deadline;
+    private BooleanSupplier cancellation;
+    private volatile boolean truncated;
+
     /**
      * Construct a result container.
      * @param query the initial query
@@ -32,6 +39,8 @@ public class MotifSearchResult {
         this.timings = new Timings();
         this.pathGeneration = 0;
         this.hits = new ArrayList<>();
+        this.deadline = query.getParameters().hasTimeout() ? System.nanoTime() + Math.min(TimeUnit.MILLISECONDS.toNanos(query.getParameters().getTimeout()), Long.MAX_VALUE / 2) : 0;
+        this.cancellation = () -> false;
     }
 
     /**
@@ -122,4 +131,36 @@ public class MotifSearchResult {
         pathGeneration++;
         return pathGeneration;
     }
+
+    /**
+     * Register a condition under which the search should stop early (e.g. because a client lost interest).
+     * @param cancellation evaluated periodically during the search
+     */
+    public void setCancellation(BooleanSupplier cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Whether the search should stop now - either because it was cancelled or because its timeout has passed.
+     * @return true if no further work should be done
+     */
+    public boolean isExpired() {
+        return cancellation.getAsBoolean() || (query.getParameters().hasTimeout() && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * Flag this result as truncated.
+     * @param truncated true if the search stopped early
+     */
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    /**
+     * Whether the search stopped early (see {@link #isExpired()}) - hits are then incomplete.
+     * @return true if truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
 }
@@ -7,21 +7,20 @@ import org.rcsb.strucmotif.domain.align.AlignmentResult;
 import org.rcsb.strucmotif.domain.motif.InvertedIndexResiduePairIdentifier;
 import org.rcsb.strucmotif.domain.motif.Overlap;
 import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.structure.AssemblyMembership;
 import org.rcsb.strucmotif.domain.structure.IndexSelection;
-import org.rcsb.strucmotif.domain.structure.LabelAtomId;
 import org.rcsb.strucmotif.domain.structure.LabelSelection;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
 import org.rcsb.strucmotif.domain.structure.ResidueType;
 import org.rcsb.strucmotif.domain.structure.Structure;
 import org.rcsb.strucmotif.io.StateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -64,6 +63,20 @@ public class TargetStructure {
         return paths.size();
     }
 
+    /**
+     * Reports the indices of all residues that occur in currently valid paths. Only these residues are needed to score
+     * hits.
+     * @return a sorted array of residue indices
+     */
+    public int[] getResidueIndices() {
+        return paths.stream()
+                .flatMap(Arrays::stream)
+                .flatMapToInt(identifier -> IntStream.of(identifier.getIndex1(), identifier.getIndex2()))
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
     /**
      * The identifier of this structure
      * @return a String
@@ -122,10 +135,15 @@ public class TargetStructure {
      * @return a stream of lists containing residues (in correspondence with the query)
      */
     public Stream<Hit> paths(List<Integer> residueIndexSwaps, Structure structure, HitScorer hitScorer, StateRepository stateRepository) {
-        return paths.stream().flatMap(p -> createHits(p, residueIndexSwaps, structure, hitScorer, stateRepository));
+        // residues are manifested into buffers that are reused for all paths of this structure
+        ResidueBuffer[] residueBuffers = IntStream.range(0, residueIndexSwaps.size())
+                .mapToObj(i -> new ResidueBuffer())
+                .toArray(ResidueBuffer[]::new);
+        int operatorIndex = structure.getOperatorIndex("1");
+        return paths.stream().flatMap(p -> createHits(p, residueIndexSwaps, structure, hitScorer, stateRepository, residueBuffers, operatorIndex));
     }
 
-    private Stream<Hit> createHits(ResiduePairIdentifier[] identifiers, List<Integer> residueIndexSwaps, Structure structure, HitScorer hitScorer, StateRepository stateRepository) {
+    private Stream<Hit> createHits(ResiduePairIdentifier[] identifiers, List<Integer> residueIndexSwaps, Structure structure, HitScorer hitScorer, StateRepository stateRepository, ResidueBuffer[] residueBuffers, int operatorIndex) {
         List<IndexSelection> indexSelections = orderIndexSelections(identifiers, residueIndexSwaps);
         List<LabelSelection> labelSelections = indexSelections.stream()
                 .map(indexSelection -> {
@@ -137,37 +155,36 @@ public class TargetStructure {
         // determine all assembly ids that this collection of label selections appears in
         int residueCount = labelSelections.size();
         // this is the inverted mapping from opers to assemblies that contain this expression - can't use structure map here
-        Map<String, Set<String>> assemblyMap = stateRepository.selectAssemblyMap(structureIdentifier);
-        Map<String, Long> assemblyCounts = labelSelections.stream()
-                .map(labelSelection -> labelSelection.getLabelAsymId() + "_" + labelSelection.getStructOperId())
-                .map(assemblyMap::get)
-                .flatMap(Collection::stream)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
-
-        return assemblyCounts.entrySet()
-                .stream()
-                // this assembly must be valid for all residues
-                .filter(entry -> entry.getValue() == residueCount)
-                .map(entry -> {
-                    ResidueType[] residueTypes = new ResidueType[residueCount];
-                    @SuppressWarnings("unchecked")
-                    Map<LabelAtomId, float[]>[] residues = new Map[residueCount];
-
-                    for (int i = 0; i < residueCount; i++) {
-                        int index = indexSelections.get(i).getIndex();
-                        residueTypes[i] = structure.getResidueType(index);
-                        residues[i] = structure.manifestResidue(index);
-                    }
+        AssemblyMembership assemblyMembership = stateRepository.selectAssemblyMembership(structureIdentifier);
+        int[] expressionIndices = new int[residueCount];
+        for (int i = 0; i < residueCount; i++) {
+            LabelSelection labelSelection = labelSelections.get(i);
+            expressionIndices[i] = assemblyMembership.getExpressionIndex(labelSelection.getLabelAsymId(), labelSelection.getStructOperId());
+        }
 
-                    AlignmentResult alignmentResult = hitScorer.alignToReference(Arrays.asList(residues));
+        // this assembly must be valid for all residues
+        BitSet assemblies = assemblyMembership.getCommonAssemblies(expressionIndices);
+        if (assemblies.isEmpty()) {
+            return Stream.empty();
+        }
 
-                    return new Hit(structureIdentifier,
-                            entry.getKey(),
-                            labelSelections,
-                            Arrays.asList(residueTypes),
-                            alignmentResult.getRootMeanSquareDeviation(),
-                            alignmentResult.getTransformation());
-                });
+        // residues and alignment are the same for all assemblies
+        ResidueType[] residueTypes = new ResidueType[residueCount];
+        for (int i = 0; i < residueCount; i++) {
+            int index = indexSelections.get(i).getIndex();
+            residueTypes[i] = structure.getResidueType(index);
+            structure.manifestResidue(index, operatorIndex, residueBuffers[i]);
+        }
+        AlignmentResult alignmentResult = hitScorer.alignToReference(residueBuffers);
+        List<ResidueType> residueTypeList = Arrays.asList(residueTypes);
+
+        return assemblies.stream()
+                .mapToObj(assemblyIndex -> new Hit(structureIdentifier,
+                        assemblyMembership.getAssemblyIdentifier(assemblyIndex),
+                        labelSelections,
+                        residueTypeList,
+                        alignmentResult.getRootMeanSquareDeviation(),
+                        alignmentResult.getTransformation()));
     }
 
     private List<IndexSelection> orderIndexSelections(ResiduePairIdentifier[] identifiers, List<Integer> residueIndexSwaps) {
@@ -1,5 +1,7 @@
 package org.rcsb.strucmotif.domain.result;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * A helper class keeping track of internal timings. Useful for development and diagnosis. All but the query timer need
  * to be started at an appropriate time during the query. 'Overall' query timer is started upon creation of this class.
@@ -9,6 +11,7 @@ public class Timings {
     private final Timer query;
     private final Timer paths;
     private final Timer scoreHits;
+    private long queueWait;
 
     /**
      * Constructs a new timer instance. Immediately starts the query timer.
@@ -64,6 +67,22 @@ public class Timings {
         return scoreHits.getMillisecondTime();
     }
 
+    /**
+     * Record time that tasks of this query spent waiting for a thread.
+     * @param nanos the time in ns
+     */
+    public void queueWaitAdd(long nanos) {
+        queueWait += nanos;
+    }
+
+    /**
+     * Get the time tasks of this query spent waiting for a thread in ms, summed over all tasks.
+     * @return a long
+     */
+    public long getQueueWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(queueWait);
+    }
+
     /**
      * Stop the overall query timer.
      */
@@ -0,0 +1,174 @@
+package org.rcsb.strucmotif.domain.structure;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned view on the assembly information of a structure. Each chain-operator expression (e.g. 'A_1' or 'B_1x61')
+ * is assigned an int identifier, the assemblies an expression is part of are stored as bitset over assembly indices.
+ * Testing whether a collection of expressions occurs in a common assembly is therefore a mere AND of their bitsets.
+ * <p>
+ * Expression identifiers are assigned in encounter order (assemblies first, then operator list), so the smallest
+ * identifier referencing a chain is the first occurrence of that chain.
+ */
+public class AssemblyMembership {
+    private static final String EXPRESSION_DELIMITER = "_";
+    /**
+     * Index reported for expressions that aren't part of any assembly.
+     */
+    public static final int UNKNOWN_EXPRESSION = -1;
+    /**
+     * Membership information of a structure without any assemblies.
+     */
+    public static final AssemblyMembership EMPTY = new AssemblyMembership(Collections.emptyMap());
+
+    private final String[] assemblyIdentifiers;
+    private final String[] labelAsymIds;
+    private final String[] structOperIds;
+    private final BitSet[] assemblies;
+    // label_asym_id -> struct_oper_id -> expression index
+    private final Map<String, Map<String, Integer>> expressionIndices;
+
+    /**
+     * Construct assembly membership information.
+     * @param assemblyInformation map of assemblies [assemblyId, (label_asym_id_struct_oper_id)[]]
+     */
+    public AssemblyMembership(Map<String, ? extends Collection<String>> assemblyInformation) {
+        this.assemblyIdentifiers = assemblyInformation.keySet().toArray(String[]::new);
+        this.expressionIndices = new HashMap<>();
+
+        List<String> labelAsymIds = new ArrayList<>();
+        List<String> structOperIds = new ArrayList<>();
+        List<BitSet> assemblies = new ArrayList<>();
+        int assemblyIndex = 0;
+        for (Collection<String> expressions : assemblyInformation.values()) {
+            for (String expression : expressions) {
+                int split = expression.indexOf(EXPRESSION_DELIMITER);
+                // malformed expression: can never be matched
+                if (split == -1) {
+                    continue;
+                }
+
+                String labelAsymId = expression.substring(0, split);
+                String structOperId = expression.substring(split + 1);
+
+                Map<String, Integer> operators = expressionIndices.computeIfAbsent(labelAsymId, k -> new LinkedHashMap<>());
+                Integer expressionIndex = operators.get(structOperId);
+                if (expressionIndex == null) {
+                    expressionIndex = labelAsymIds.size();
+                    operators.put(structOperId, expressionIndex);
+                    labelAsymIds.add(labelAsymId);
+                    structOperIds.add(structOperId);
+                    assemblies.add(new BitSet(assemblyIdentifiers.length));
+                }
+                assemblies.get(expressionIndex).set(assemblyIndex);
+            }
+            assemblyIndex++;
+        }
+
+        this.labelAsymIds = labelAsymIds.toArray(String[]::new);
+        this.structOperIds = structOperIds.toArray(String[]::new);
+        this.assemblies = assemblies.toArray(BitSet[]::new);
+    }
+
+    /**
+     * Number of distinct chain-operator expressions.
+     * @return an int
+     */
+    public int getExpressionCount() {
+        return labelAsymIds.length;
+    }
+
+    /**
+     * Number of assemblies.
+     * @return an int
+     */
+    public int getAssemblyCount() {
+        return assemblyIdentifiers.length;
+    }
+
+    /**
+     * Resolve the identifier of a chain-operator expression.
+     * @param labelAsymId the chain
+     * @param structOperId the operator expression
+     * @return the expression index or -1 if this expression isn't part of any assembly
+     */
+    public int getExpressionIndex(String labelAsymId, String structOperId) {
+        Map<String, Integer> operators = expressionIndices.get(labelAsymId);
+        if (operators == null) {
+            return UNKNOWN_EXPRESSION;
+        }
+        Integer expressionIndex = operators.get(structOperId);
+        return expressionIndex != null ? expressionIndex : UNKNOWN_EXPRESSION;
+    }
+
+    /**
+     * The chain of an expression.
+     * @param expressionIndex the expression index
+     * @return the label_asym_id
+     */
+    public String getLabelAsymId(int expressionIndex) {
+        return labelAsymIds[expressionIndex];
+    }
+
+    /**
+     * The operator of an expression.
+     * @param expressionIndex the expression index
+     * @return the struct_oper_id
+     */
+    public String getStructOperId(int expressionIndex) {
+        return structOperIds[expressionIndex];
+    }
+
+    /**
+     * The assembly identifier associated to an index.
+     * @param assemblyIndex the assembly index (i.e. a bit position)
+     * @return the assembly identifier
+     */
+    public String getAssemblyIdentifier(int assemblyIndex) {
+        return assemblyIdentifiers[assemblyIndex];
+    }
+
+    /**
+     * Checks whether 2 expressions occur in at least 1 common assembly.
+     * @param expressionIndex1 first expression index
+     * @param expressionIndex2 second expression index
+     * @return true if there is a common assembly, unknown expressions are never part of an assembly
+     */
+    public boolean shareAssembly(int expressionIndex1, int expressionIndex2) {
+        if (expressionIndex1 == UNKNOWN_EXPRESSION || expressionIndex2 == UNKNOWN_EXPRESSION) {
+            return false;
+        }
+        return assemblies[expressionIndex1].intersects(assemblies[expressionIndex2]);
+    }
+
+    /**
+     * Determine all assemblies that contain all of the given expressions.
+     * @param expressionIndices the expression indices
+     * @return a new bitset of assembly indices, empty if any expression is unknown
+     */
+    public BitSet getCommonAssemblies(int[] expressionIndices) {
+        BitSet out = new BitSet(assemblyIdentifiers.length);
+        if (expressionIndices.length == 0) {
+            return out;
+        }
+
+        for (int expressionIndex : expressionIndices) {
+            if (expressionIndex == UNKNOWN_EXPRESSION) {
+                return out;
+            }
+        }
+
+        out.or(assemblies[expressionIndices[0]]);
+        for (int i = 1; i < expressionIndices.length && !out.isEmpty(); i++) {
+            out.and(assemblies[expressionIndices[i]]);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,109 @@
+package org.rcsb.strucmotif.domain.structure;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A reusable container for the coordinates of a single residue. Coordinates are stored in a flat array indexed by the
+ * ordinal of the {@link LabelAtomId}, a mask tracks which atoms are present. Use
+ * {@link Structure#manifestResidue(int, int, ResidueBuffer)} to fill it. Not thread-safe, each worker should use its
+ * own instances.
+ */
+public class ResidueBuffer {
+    private static final LabelAtomId[] LABEL_ATOM_IDS = LabelAtomId.values();
+    private final float[] coordinates;
+    private final boolean[] present;
+    private int atomCount;
+
+    /**
+     * Construct an empty buffer.
+     */
+    public ResidueBuffer() {
+        this.coordinates = new float[3 * LABEL_ATOM_IDS.length];
+        this.present = new boolean[LABEL_ATOM_IDS.length];
+    }
+
+    /**
+     * Create a buffer from a residue that was manifested as Map.
+     * @param residue the source
+     * @return a new buffer
+     */
+    public static ResidueBuffer of(Map<LabelAtomId, float[]> residue) {
+        ResidueBuffer buffer = new ResidueBuffer();
+        for (Map.Entry<LabelAtomId, float[]> entry : residue.entrySet()) {
+            float[] v = entry.getValue();
+            buffer.set(entry.getKey().ordinal(), v[0], v[1], v[2]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Drop all atoms.
+     */
+    public void clear() {
+        if (atomCount > 0) {
+            Arrays.fill(present, false);
+            atomCount = 0;
+        }
+    }
+
+    void set(int ordinal, float x, float y, float z) {
+        if (!present[ordinal]) {
+            present[ordinal] = true;
+            atomCount++;
+        }
+        coordinates[3 * ordinal] = x;
+        coordinates[3 * ordinal + 1] = y;
+        coordinates[3 * ordinal + 2] = z;
+    }
+
+    /**
+     * Number of atoms present.
+     * @return an int
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * Check for an atom.
+     * @param labelAtomId the atom name
+     * @return true if this atom is present
+     */
+    public boolean contains(LabelAtomId labelAtomId) {
+        return present[labelAtomId.ordinal()];
+    }
+
+    /**
+     * Check for an atom by ordinal.
+     * @param ordinal the ordinal of the atom name
+     * @return true if this atom is present
+     */
+    public boolean contains(int ordinal) {
+        return present[ordinal];
+    }
+
+    /**
+     * Raw access to all coordinates, the coordinates of an atom start at 3 times its ordinal. Only valid for present
+     * atoms. Do not modify.
+     * @return a float[]
+     */
+    public float[] getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Copy the coordinates of an atom.
+     * @param labelAtomId the atom name
+     * @param out the destination
+     * @return the destination or <code>null</code> if the atom isn't present
+     */
+    public float[] get(LabelAtomId labelAtomId, float[] out) {
+        int ordinal = labelAtomId.ordinal();
+        if (!present[ordinal]) {
+            return null;
+        }
+        System.arraycopy(coordinates, 3 * ordinal, out, 0, 3);
+        return out;
+    }
+}
@@ -1,7 +1,6 @@
 package org.rcsb.strucmotif.domain.structure;
 
 import org.rcsb.strucmotif.align.QuaternionAlignmentService;
-import org.rcsb.strucmotif.domain.Pair;
 import org.rcsb.strucmotif.domain.Transformation;
 import org.rcsb.strucmotif.domain.motif.AngleType;
 import org.rcsb.strucmotif.domain.motif.DistanceType;
@@ -12,14 +11,15 @@ import org.rcsb.strucmotif.domain.motif.ResiduePairOccurrence;
 import org.rcsb.strucmotif.math.Algebra;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.rcsb.strucmotif.math.Algebra.*;
@@ -27,13 +27,26 @@ import static org.rcsb.strucmotif.math.Algebra.*;
 /**
  * Represents the pseudo-graph defined by all residues. Some tricks to efficiently report distances and angles between
  * residues.
+ * <p>
+ * Residues are referenced by int keys (their position in this graph), which resolve to residue index and
+ * struct_oper_id. Contacts are stored as parallel arrays: both residue keys, backbone distance, side-chain distance and
+ * angle.
  */
 public class ResidueGraph {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final float BOUNDS_MARGIN = 0.01f;
     private final Structure structure;
-    private final Map<IndexSelection, Map<IndexSelection, Float>> backboneDistances;
-    private final Map<IndexSelection, Map<IndexSelection, Float>> sideChainDistances;
-    private final Map<IndexSelection, Map<IndexSelection, Float>> angles;
-    private final int numberOfPairings;
+    // residue keys
+    private int residueCount;
+    private int[] residueIndices;
+    private String[] structOperIds;
+    // contacts
+    private int numberOfPairings;
+    private int[] residues1;
+    private int[] residues2;
+    private float[] backboneDistances;
+    private float[] sideChainDistances;
+    private float[] angles;
 
     /**
      * Construct a residue graph.
@@ -45,19 +58,16 @@ public class ResidueGraph {
      */
     public ResidueGraph(Structure structure, List<LabelSelection> labelSelections, List<Map<LabelAtomId, float[]>> residues, float squaredCutoff, boolean allowTransformed) {
         this.structure = structure;
-        this.backboneDistances = new HashMap<>();
-        this.sideChainDistances = new HashMap<>();
-        this.angles = new HashMap<>();
-
-        Map<IndexSelection, float[]> normalVectorMap = new LinkedHashMap<>();
-        Map<IndexSelection, float[]> backboneVectors = new LinkedHashMap<>();
-        Map<IndexSelection, float[]> sideChainVectors = new LinkedHashMap<>();
-        List<IndexSelection> indexSelections = new ArrayList<>();
+        this.residueIndices = new int[labelSelections.size()];
+        this.structOperIds = new String[labelSelections.size()];
+
+        List<float[]> backboneVectors = new ArrayList<>();
+        List<float[]> sideChainVectors = new ArrayList<>();
+        List<float[]> normalVectors = new ArrayList<>();
         for (int i = 0; i < labelSelections.size(); i++) {
             LabelSelection labelSelection = labelSelections.get(i);
             Map<LabelAtomId, float[]> residue = residues.get(i);
             int residueIndex = structure.getResidueIndex(labelSelection.getLabelAsymId(), labelSelection.getLabelSeqId());
-            IndexSelection indexSelection = new IndexSelection(labelSelection.getStructOperId(), residueIndex);
             ResidueType residueType = structure.getResidueType(residueIndex);
 
             float[] backbone = getBackboneCoords(residue);
@@ -72,26 +82,30 @@ public class ResidueGraph {
                 continue;
             }
 
-            indexSelections.add(indexSelection);
-            backboneVectors.put(indexSelection, backbone);
-            sideChainVectors.put(indexSelection, sideChain);
-            normalVectorMap.put(indexSelection, normalVector(backbone, sideChain));
+            addResidue(residueIndex, labelSelection.getStructOperId());
+            backboneVectors.add(backbone);
+            sideChainVectors.add(sideChain);
+            normalVectors.add(normalVector(backbone, sideChain));
         }
 
-        this.numberOfPairings =  fillResidueGrid(backboneVectors, sideChainVectors, normalVectorMap, indexSelections, squaredCutoff, allowTransformed);
+        fillResidueGrid(backboneVectors, sideChainVectors, normalVectors, squaredCutoff, allowTransformed);
     }
 
     /**
      * Construct a new residue graph from a full structure.
+     * <p>
+     * Unless transformed residues may form contacts among each other, only contacts that involve an original chain are
+     * reported. Operator copies are therefore only created if their bounding box is within the cutoff of an original
+     * chain they share an assembly with - this is decided from the transformed bounding box of the chain, before
+     * any residue is transformed. Of the remaining copies, only residues close to the original chains are placed.
      * @param structure data
      * @param squaredCutoff maximum dot product between atoms to consider
      * @param allowTransformed set to true during QueryStructure evaluation
      */
     public ResidueGraph(Structure structure, float squaredCutoff, boolean allowTransformed) {
         this.structure = structure;
-        this.backboneDistances = new HashMap<>();
-        this.sideChainDistances = new HashMap<>();
-        this.angles = new HashMap<>();
+        this.residueIndices = new int[structure.getResidueCount()];
+        this.structOperIds = new String[structure.getResidueCount()];
 
         // sort residues into chains
         // ${label_asym_id}: ${label_asym_id}-${label_seq_id}
@@ -103,9 +117,11 @@ public class ResidueGraph {
 
         List<float[]> originalBackboneVectors = new ArrayList<>();
         List<float[]> originalSideChainVectors = new ArrayList<>();
+        ResidueBuffer residue = new ResidueBuffer();
+        int operatorIndex = structure.getOperatorIndex("1");
         for (int i = 0; i < structure.getResidueCount(); i++) {
             ResidueType residueType = structure.getResidueType(i);
-            Map<LabelAtomId, float[]> residue = structure.manifestResidue(i);
+            structure.manifestResidue(i, operatorIndex, residue);
 
             originalBackboneVectors.add(getBackboneCoords(residue));
             if (residueType == ResidueType.GLYCINE) {
@@ -122,22 +138,57 @@ public class ResidueGraph {
                 .distinct()
                 .collect(Collectors.toList());
 
-        // ${struct_oper_id}-${index}: float[]
-        List<IndexSelection> residueKeys = new ArrayList<>();
-        Map<IndexSelection, float[]> normalVectorMap = new LinkedHashMap<>();
-        Map<IndexSelection, float[]> transformedBackboneVectors = new LinkedHashMap<>();
-        Map<IndexSelection, float[]> transformedSideChainVectors = new LinkedHashMap<>();
+        // bounding box of each chain-operator expression, computed from the untransformed chain
+        AssemblyMembership assemblyMembership = structure.getAssemblyMembership();
+        boolean[] acceptedExpressions = getAcceptedExpressions(assemblyMembership, allowTransformed);
+        float[][] expressionBounds = new float[assemblyMembership.getExpressionCount()][];
+        if (!allowTransformed) {
+            Map<String, float[]> chainBounds = new HashMap<>();
+            for (int i = 0; i < expressionBounds.length; i++) {
+                String labelAsymId = assemblyMembership.getLabelAsymId(i);
+                if (!chainMap.containsKey(labelAsymId)) continue;
+
+                float[] bounds = chainBounds.computeIfAbsent(labelAsymId, k -> getBounds(structure, chainMap.get(k), originalBackboneVectors));
+                Transformation transformation = structure.getTransformation(assemblyMembership.getStructOperId(i));
+                if (bounds != null && transformation != null) {
+                    expressionBounds[i] = transformBounds(transformation, bounds);
+                }
+            }
+        }
+
+        List<float[]> backboneVectors = new ArrayList<>();
+        List<float[]> sideChainVectors = new ArrayList<>();
+        List<float[]> normalVectors = new ArrayList<>();
+        // residue keys are unique, even if label selections are not (e.g. multiple models)
+        boolean[] added = new boolean[structure.getResidueCount()];
+        List<float[]> neighborBounds = new ArrayList<>();
         for (String a : assemblyInformation) {
             String[] split = a.split("_");
             String labelAsymId = split[0];
             String oper = split[1];
-            Transformation transformation = structure.getTransformation(oper);
 
             // happens for non-polymer chains
             if (!chainMap.containsKey(labelAsymId)) continue;
 
+            // copies only contribute contacts to original chains in their vicinity
+            int expressionIndex = assemblyMembership.getExpressionIndex(labelAsymId, oper);
+            // never part of an assembly, thus never in contact
+            if (expressionIndex == AssemblyMembership.UNKNOWN_EXPRESSION) continue;
+
+            boolean copy = !acceptedExpressions[expressionIndex];
+            if (copy) {
+                collectNeighborBounds(assemblyMembership, acceptedExpressions, expressionBounds, expressionIndex, squaredCutoff, neighborBounds);
+                if (neighborBounds.isEmpty()) continue;
+            }
+
+            Transformation transformation = structure.getTransformation(oper);
+            Arrays.fill(added, false);
             for (LabelSelection labelSelection : chainMap.get(labelAsymId)) {
                 int residueIndex = structure.getResidueIndex(labelSelection.getLabelAsymId(), labelSelection.getLabelSeqId());
+                if (added[residueIndex]) {
+                    continue;
+                }
+                added[residueIndex] = true;
 
                 float[] originalBackbone = originalBackboneVectors.get(residueIndex);
                 float[] originalSideChain = originalSideChainVectors.get(residueIndex);
@@ -145,87 +196,194 @@ public class ResidueGraph {
                     continue;
                 }
 
-                IndexSelection key = new IndexSelection(oper, residueIndex);
-                residueKeys.add(key);
                 float[] backbone = new float[3];
-                float[] sideChain = new float[3];
                 transformation.transform(backbone, originalBackbone);
-                transformedBackboneVectors.put(key, backbone);
+                if (copy && !isNear(neighborBounds, backbone, squaredCutoff)) {
+                    continue;
+                }
+
+                addResidue(residueIndex, oper);
+                float[] sideChain = new float[3];
+                backboneVectors.add(backbone);
                 transformation.transform(sideChain, originalSideChain);
-                transformedSideChainVectors.put(key, sideChain);
+                sideChainVectors.add(sideChain);
 
-                normalVectorMap.put(key, normalVector(backbone, sideChain));
+                normalVectors.add(normalVector(backbone, sideChain));
             }
         }
 
-        this.numberOfPairings = fillResidueGrid(transformedBackboneVectors, transformedSideChainVectors, normalVectorMap, residueKeys, squaredCutoff, allowTransformed);
+        fillResidueGrid(backboneVectors, sideChainVectors, normalVectors, squaredCutoff, allowTransformed);
     }
 
-    private int fillResidueGrid(Map<IndexSelection, float[]> backboneVectors, Map<IndexSelection, float[]> sideChainVectors, Map<IndexSelection, float[]> normalVectorMap, List<IndexSelection> indexSelections, float squaredCutoff, boolean allowTransformed) {
-        // temporary ResidueGrid to efficient distance calculation
-        ResidueGrid residueGrid = new ResidueGrid(new ArrayList<>(backboneVectors.values()), squaredCutoff);
-
-        // if needed: check for first occurrence of chain (which may or may not be identity transform)
-        List<LabelSelection> labelSelections = structure.getLabelSelections();
-        Set<String> acceptedChains = new HashSet<>();
-        Set<String> acceptedOperators = new HashSet<>();
-        if (!allowTransformed) {
-            for (List<String> chainExprs : structure.getAssemblies().values()) {
-                for (String chainExpr : chainExprs) {
-                    String chain = chainExpr.split("_")[0];
-                    if (!acceptedChains.contains(chain)) {
-                        acceptedChains.add(chain);
-                        acceptedOperators.add(chainExpr);
-                    }
-                }
+    /**
+     * Expressions whose residues may be the 'dominant' residue of a contact: all if transformed contacts are allowed,
+     * otherwise the first occurrence of each chain (which may or may not be identity transform).
+     */
+    private static boolean[] getAcceptedExpressions(AssemblyMembership assemblyMembership, boolean allowTransformed) {
+        boolean[] acceptedExpressions = new boolean[assemblyMembership.getExpressionCount()];
+        if (allowTransformed) {
+            Arrays.fill(acceptedExpressions, true);
+        } else {
+            Set<String> acceptedChains = new HashSet<>();
+            for (int i = 0; i < acceptedExpressions.length; i++) {
+                acceptedExpressions[i] = acceptedChains.add(assemblyMembership.getLabelAsymId(i));
             }
         }
+        return acceptedExpressions;
+    }
 
-        int size = 0;
-        for (ResidueGrid.ResidueContact residueContact : residueGrid.getIndicesContacts()) {
-            // avoid symmetry/duplicates
-            if (residueContact.getI() >= residueContact.getJ()) {
+    /**
+     * Bounding box of the backbone of a chain: min x, y, z followed by max x, y, z.
+     */
+    private static float[] getBounds(Structure structure, List<LabelSelection> labelSelections, List<float[]> backboneVectors) {
+        float[] bounds = null;
+        for (LabelSelection labelSelection : labelSelections) {
+            float[] v = backboneVectors.get(structure.getResidueIndex(labelSelection.getLabelAsymId(), labelSelection.getLabelSeqId()));
+            if (v == null) {
                 continue;
             }
 
-            IndexSelection residueKey1 = indexSelections.get(residueContact.getI());
-            String chainExpr1 = labelSelections.get(residueKey1.getIndex()).getLabelAsymId() + "_" + residueKey1.getStructOperId();
-            // 'dominant' residue has to be original by contract
-            if (!allowTransformed && !acceptedOperators.contains(chainExpr1)) {
-                continue;
+            if (bounds == null) {
+                bounds = new float[] { v[0], v[1], v[2], v[0], v[1], v[2] };
             }
+            for (int i = 0; i < 3; i++) {
+                bounds[i] = Math.min(bounds[i], v[i]);
+                bounds[i + 3] = Math.max(bounds[i + 3], v[i]);
+            }
+        }
+        return bounds;
+    }
 
-            float distance = residueContact.getDistance();
-            IndexSelection residueKey2 = indexSelections.get(residueContact.getJ());
-            String chainExpr2 = labelSelections.get(residueKey2.getIndex()).getLabelAsymId() + "_" + residueKey2.getStructOperId();
+    /**
+     * Axis-aligned box that contains all 8 transformed corners of a box, padded by {@link #BOUNDS_MARGIN} to absorb
+     * rounding of residues transformed individually.
+     */
+    private static float[] transformBounds(Transformation transformation, float[] bounds) {
+        float[] out = new float[] { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        float[] corner = new float[3];
+        float[] transformed = new float[3];
+        for (int c = 0; c < 8; c++) {
+            corner[0] = bounds[(c & 1) == 0 ? 0 : 3];
+            corner[1] = bounds[(c & 2) == 0 ? 1 : 4];
+            corner[2] = bounds[(c & 4) == 0 ? 2 : 5];
+            transformation.transform(transformed, corner);
+            for (int i = 0; i < 3; i++) {
+                out[i] = Math.min(out[i], transformed[i] - BOUNDS_MARGIN);
+                out[i + 3] = Math.max(out[i + 3], transformed[i] + BOUNDS_MARGIN);
+            }
+        }
+        return out;
+    }
 
-            // ensure that both chainExpressions occur in the same assembly
-            if (structure.getAssemblies().values().stream().noneMatch(opers -> opers.contains(chainExpr1) && opers.contains(chainExpr2))) {
+    /**
+     * Collects the boxes of all accepted expressions that share an assembly with a copy and are within the cutoff of it.
+     */
+    private static void collectNeighborBounds(AssemblyMembership assemblyMembership, boolean[] acceptedExpressions, float[][] expressionBounds, int expressionIndex, float squaredCutoff, List<float[]> out) {
+        out.clear();
+        float[] bounds = expressionBounds[expressionIndex];
+        if (bounds == null) {
+            return;
+        }
+
+        for (int i = 0; i < acceptedExpressions.length; i++) {
+            float[] other = expressionBounds[i];
+            if (!acceptedExpressions[i] || other == null || !assemblyMembership.shareAssembly(i, expressionIndex)) {
                 continue;
             }
 
-            float[] normalVector1 = normalVectorMap.get(residueKey1);
-            float[] normalVector2 = normalVectorMap.get(residueKey2);
+            float squaredDistance = 0;
+            for (int j = 0; j < 3; j++) {
+                float d = Math.max(0, Math.max(other[j] - bounds[j + 3], bounds[j] - other[j + 3]));
+                squaredDistance += d * d;
+            }
+            if (squaredDistance < squaredCutoff) {
+                out.add(other);
+            }
+        }
+    }
 
-            // ensure that side-chain atoms are available
-            float[] sideChainCoordinates1 = sideChainVectors.get(residueKey1);
-            float[] sideChainCoordinates2 = sideChainVectors.get(residueKey2);
-            if (sideChainCoordinates1 == null || sideChainCoordinates2 == null) {
-                continue;
+    private static boolean isNear(List<float[]> bounds, float[] v, float squaredCutoff) {
+        for (float[] b : bounds) {
+            float squaredDistance = 0;
+            for (int j = 0; j < 3; j++) {
+                float d = Math.max(0, Math.max(b[j] - v[j], v[j] - b[j + 3]));
+                squaredDistance += d * d;
             }
+            if (squaredDistance < squaredCutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addResidue(int residueIndex, String structOperId) {
+        if (residueCount == residueIndices.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, 2 * residueCount);
+            residueIndices = Arrays.copyOf(residueIndices, capacity);
+            structOperIds = Arrays.copyOf(structOperIds, capacity);
+        }
+        residueIndices[residueCount] = residueIndex;
+        structOperIds[residueCount] = structOperId;
+        residueCount++;
+    }
 
-            Map<IndexSelection, Float> innerPolymerAnchorMap = backboneDistances.computeIfAbsent(residueKey1, key -> new HashMap<>());
-            innerPolymerAnchorMap.put(residueKey2, distance);
+    private void addContact(int residue1, int residue2, float backboneDistance, float sideChainDistance, float angle) {
+        if (numberOfPairings == residues1.length) {
+            int capacity = 2 * numberOfPairings;
+            residues1 = Arrays.copyOf(residues1, capacity);
+            residues2 = Arrays.copyOf(residues2, capacity);
+            backboneDistances = Arrays.copyOf(backboneDistances, capacity);
+            sideChainDistances = Arrays.copyOf(sideChainDistances, capacity);
+            angles = Arrays.copyOf(angles, capacity);
+        }
+        residues1[numberOfPairings] = residue1;
+        residues2[numberOfPairings] = residue2;
+        backboneDistances[numberOfPairings] = backboneDistance;
+        sideChainDistances[numberOfPairings] = sideChainDistance;
+        angles[numberOfPairings] = angle;
+        numberOfPairings++;
+    }
 
-            Map<IndexSelection, Float> innerInteractionCenterMap = sideChainDistances.computeIfAbsent(residueKey1, key -> new HashMap<>());
-            innerInteractionCenterMap.put(residueKey2, distance3d(sideChainCoordinates1, sideChainCoordinates2));
+    private void fillResidueGrid(List<float[]> backboneVectors, List<float[]> sideChainVectors, List<float[]> normalVectors, float squaredCutoff, boolean allowTransformed) {
+        this.residues1 = new int[INITIAL_CAPACITY];
+        this.residues2 = new int[INITIAL_CAPACITY];
+        this.backboneDistances = new float[INITIAL_CAPACITY];
+        this.sideChainDistances = new float[INITIAL_CAPACITY];
+        this.angles = new float[INITIAL_CAPACITY];
 
-            Map<IndexSelection, Float> innerAngleMap = angles.computeIfAbsent(residueKey1, key -> new HashMap<>());
-            innerAngleMap.put(residueKey2, angle(normalVector1, normalVector2));
+        // temporary ResidueGrid to efficient distance calculation
+        ResidueGrid residueGrid = new ResidueGrid(backboneVectors, squaredCutoff);
 
-            size++;
+        // intern chain-operator expressions of all residues
+        List<LabelSelection> labelSelections = structure.getLabelSelections();
+        AssemblyMembership assemblyMembership = structure.getAssemblyMembership();
+        int[] expressionIndices = new int[residueCount];
+        for (int i = 0; i < residueCount; i++) {
+            expressionIndices[i] = assemblyMembership.getExpressionIndex(labelSelections.get(residueIndices[i]).getLabelAsymId(), structOperIds[i]);
         }
-        return size;
+
+        // if needed: check for first occurrence of chain (which may or may not be identity transform)
+        boolean[] acceptedExpressions = getAcceptedExpressions(assemblyMembership, allowTransformed);
+
+        residueGrid.forEachContact((residue1, residue2, backboneDistance) -> {
+            int expressionIndex1 = expressionIndices[residue1];
+            // 'dominant' residue has to be original by contract
+            if (!allowTransformed && (expressionIndex1 == AssemblyMembership.UNKNOWN_EXPRESSION || !acceptedExpressions[expressionIndex1])) {
+                return;
+            }
+
+            // ensure that both chainExpressions occur in the same assembly
+            int expressionIndex2 = expressionIndices[residue2];
+            if (!assemblyMembership.shareAssembly(expressionIndex1, expressionIndex2)) {
+                return;
+            }
+
+            addContact(residue1,
+                    residue2,
+                    backboneDistance,
+                    distance3d(sideChainVectors.get(residue1), sideChainVectors.get(residue2)),
+                    angle(normalVectors.get(residue1), normalVectors.get(residue2)));
+        });
     }
 
     // already centered coordinates to save operations
@@ -234,6 +392,13 @@ public class ResidueGraph {
             new float[] { 0.174f, -0.292f, -1.208f }); // C
     private static final float[] REFERENCE_CB = new float[] { 1.472f, -0.929f, 0.804f };
     private static final float[] REFERENCE_CENTROID = new float[3];
+    private static final float[] FLAT_REFERENCE_BACKBONE = new float[9];
+
+    static {
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(REFERENCE_BACKBONE.get(i), 0, FLAT_REFERENCE_BACKBONE, 3 * i, 3);
+        }
+    }
 
     static float[] getVirtualCB(Map<LabelAtomId, float[]> residue) {
         float[] n = residue.get(LabelAtomId.N);
@@ -243,14 +408,59 @@ public class ResidueGraph {
             return null;
         }
 
-        List<float[]> coords = List.of(n, ca, c);
-        float[] v = Algebra.centroid3d(coords);
+        return getVirtualCB(n, ca, c);
+    }
 
-        Transformation transformation = QuaternionAlignmentService.align(coords, v, REFERENCE_BACKBONE, REFERENCE_CENTROID).getFirst();
+    private static float[] getVirtualCB(ResidueBuffer residue) {
+        if (!residue.contains(LabelAtomId.N) || !residue.contains(LabelAtomId.CA) || !residue.contains(LabelAtomId.C)) {
+            return null;
+        }
+
+        return getVirtualCB(residue.get(LabelAtomId.N, new float[3]),
+                residue.get(LabelAtomId.CA, new float[3]),
+                residue.get(LabelAtomId.C, new float[3]));
+    }
+
+    /**
+     * Places the reference CB by superimposing the reference backbone onto N, CA, and C. Coordinates are passed as
+     * flat arrays to avoid the copy of the list-based alignment, the placement is identical.
+     * @param n coordinates of N
+     * @param ca coordinates of CA
+     * @param c coordinates of C
+     * @return coordinates of the virtual CB
+     */
+    private static float[] getVirtualCB(float[] n, float[] ca, float[] c) {
+        float[] coords = new float[9];
+        System.arraycopy(n, 0, coords, 0, 3);
+        System.arraycopy(ca, 0, coords, 3, 3);
+        System.arraycopy(c, 0, coords, 6, 3);
+        float[] v = Algebra.centroid3d(List.of(n, ca, c));
+
+        Transformation transformation = QuaternionAlignmentService.align(coords, v, FLAT_REFERENCE_BACKBONE, REFERENCE_CENTROID, 3).getFirst();
         Algebra.multiply4d(v, transformation.getTransformationMatrix(), REFERENCE_CB);
         return v;
     }
 
+    private static float[] getBackboneCoords(ResidueBuffer residue) {
+        if (residue.contains(LabelAtomId.CA)) {
+            return residue.get(LabelAtomId.CA, new float[3]);
+        }
+        if (residue.contains(LabelAtomId.C4_PRIME)) {
+            return residue.get(LabelAtomId.C4_PRIME, new float[3]);
+        }
+        return null;
+    }
+
+    private static float[] getSideChainCoords(ResidueBuffer residue) {
+        if (residue.contains(LabelAtomId.CB)) {
+            return residue.get(LabelAtomId.CB, new float[3]);
+        }
+        if (residue.contains(LabelAtomId.C1_PRIME)) {
+            return residue.get(LabelAtomId.C1_PRIME, new float[3]);
+        }
+        return null;
+    }
+
     private static float[] getBackboneCoords(Map<LabelAtomId, float[]> residue) {
         if (residue.containsKey(LabelAtomId.CA)) {
             return residue.get(LabelAtomId.CA);
@@ -290,60 +500,6 @@ public class ResidueGraph {
         return (float) Math.toDegrees(Math.acos(capToInterval(-1, vDot, 1)));
     }
 
-    /**
-     * Reports the distance of backbone of 2 residues.
-     * @param residue1 first
-     * @param residue2 second
-     * @return the distance
-     */
-    public float getBackboneDistance(IndexSelection residue1, IndexSelection residue2) {
-        try {
-            return backboneDistances.get(residue1).get(residue2);
-        } catch (NullPointerException e1) {
-            try {
-                return backboneDistances.get(residue2).get(residue1);
-            } catch (NullPointerException e2) {
-                return Float.MAX_VALUE;
-            }
-        }
-    }
-
-    /**
-     * Reports the distance of side-chains of 2 residues.
-     * @param residue1 first
-     * @param residue2 second
-     * @return the distance
-     */
-    public float getSideChainDistance(IndexSelection residue1, IndexSelection residue2) {
-        try {
-            return sideChainDistances.get(residue1).get(residue2);
-        } catch (NullPointerException e1) {
-            try {
-                return sideChainDistances.get(residue2).get(residue1);
-            } catch (NullPointerException e2) {
-                return Float.MAX_VALUE;
-            }
-        }
-    }
-
-    /**
-     * Reports the angle between 2 residues.
-     * @param residue1 first
-     * @param residue2 second
-     * @return the angle
-     */
-    public float getAngle(IndexSelection residue1, IndexSelection residue2) {
-        try {
-            return angles.get(residue1).get(residue2);
-        } catch (NullPointerException e1) {
-            try {
-                return angles.get(residue2).get(residue1);
-            } catch (NullPointerException e2) {
-                return Float.MAX_VALUE;
-            }
-        }
-    }
-
     /**
      * Reports the number of pairings present in this graph.
      * @return the number of registered pairs
@@ -352,34 +508,14 @@ public class ResidueGraph {
         return numberOfPairings;
     }
 
-    /**
-     * Allows to sequentially traverse all pairings.
-     * @return a stream of residue pairs
-     */
-    public Stream<Pair<IndexSelection, IndexSelection>> pairingsSequential() {
-        // parallel streaming here will cause shuffling of motif descriptors and lead to alignment errors because correspondence cannot be asserted
-        return backboneDistances.keySet()
-                .stream()
-                .flatMap(e -> pairs(e, false));
-    }
-
-    /**
-     * Allows to traverse all pairings.
-     * @return a stream of residue pairs
-     */
-    public Stream<Pair<IndexSelection, IndexSelection>> pairingsParallel() {
-        return backboneDistances.keySet()
-                .parallelStream()
-                .flatMap(e -> pairs(e, true));
-    }
-
     /**
      * Allows to traverse all residue pair occurrences. Will employ parallel stream.
      * @return a stream of {@link ResiduePairOccurrence} instances
      */
     public Stream<ResiduePairOccurrence> residuePairOccurrencesParallel() {
-        return pairingsParallel()
-                .map(this::createMotifOccurrence);
+        return IntStream.range(0, numberOfPairings)
+                .parallel()
+                .mapToObj(this::createResiduePairOccurrence);
     }
 
     /**
@@ -387,55 +523,74 @@ public class ResidueGraph {
      * @return a stream of {@link ResiduePairOccurrence} instances
      */
     public Stream<ResiduePairOccurrence> residuePairOccurrencesSequential() {
-        return pairingsSequential()
-                .map(this::createMotifOccurrence);
+        // parallel streaming here will cause shuffling of motif descriptors and lead to alignment errors because correspondence cannot be asserted
+        return IntStream.range(0, numberOfPairings)
+                .mapToObj(this::createResiduePairOccurrence);
     }
 
-    private ResiduePairOccurrence createMotifOccurrence(Pair<IndexSelection, IndexSelection> pair) {
-        IndexSelection indexSelection1 = pair.getFirst();
-        IndexSelection indexSelection2 = pair.getSecond();
+    /**
+     * Sequentially reports all residue pairs without creating descriptor or identifier objects.
+     * @param consumer receives descriptor code and both residues of each pair
+     */
+    public void forEachResiduePair(ResiduePairConsumer consumer) {
+        for (int i = 0; i < numberOfPairings; i++) {
+            int residue1 = residues1[i];
+            int residue2 = residues2[i];
+            // first residue must have lower one-letter code - if not: flip
+            if (isFlipped(residue1, residue2)) {
+                residue1 = residues2[i];
+                residue2 = residues1[i];
+            }
+
+            int code = ResiduePairDescriptor.getCode(structure.getResidueType(residueIndices[residue1]),
+                    structure.getResidueType(residueIndices[residue2]),
+                    DistanceType.ofDistance(backboneDistances[i]),
+                    DistanceType.ofDistance(sideChainDistances[i]),
+                    AngleType.ofAngle(angles[i]));
+            consumer.accept(code, residueIndices[residue1], structOperIds[residue1], residueIndices[residue2], structOperIds[residue2]);
+        }
+    }
 
-        ResidueType residueType1 = structure.getResidueType(indexSelection1.getIndex());
-        ResidueType residueType2 = structure.getResidueType(indexSelection2.getIndex());
+    private boolean isFlipped(int residue1, int residue2) {
+        ResidueType residueType1 = structure.getResidueType(residueIndices[residue1]);
+        ResidueType residueType2 = structure.getResidueType(residueIndices[residue2]);
+        return residueType1.getOneLetterCode().compareTo(residueType2.getOneLetterCode()) > 0;
+    }
 
+    private ResiduePairOccurrence createResiduePairOccurrence(int contact) {
+        int residue1 = residues1[contact];
+        int residue2 = residues2[contact];
         // first residue must have lower one-letter code - if not: flip
-        if (residueType1.getOneLetterCode().compareTo(residueType2.getOneLetterCode()) > 0) {
-            return createMotifOccurrence(new Pair<>(indexSelection2, indexSelection1));
+        if (isFlipped(residue1, residue2)) {
+            residue1 = residues2[contact];
+            residue2 = residues1[contact];
         }
 
         // determine values
-        DistanceType backboneDistance = DistanceType.ofDistance(getBackboneDistance(indexSelection1, indexSelection2));
-        DistanceType sideChainDistance = DistanceType.ofDistance(getSideChainDistance(indexSelection1, indexSelection2));
-        AngleType angle = AngleType.ofAngle(getAngle(indexSelection1, indexSelection2));
-
-        ResiduePairDescriptor residuePairDescriptor = new ResiduePairDescriptor(residueType1,
-                residueType2,
-                backboneDistance,
-                sideChainDistance,
-                angle);
+        ResiduePairDescriptor residuePairDescriptor = new ResiduePairDescriptor(structure.getResidueType(residueIndices[residue1]),
+                structure.getResidueType(residueIndices[residue2]),
+                DistanceType.ofDistance(backboneDistances[contact]),
+                DistanceType.ofDistance(sideChainDistances[contact]),
+                AngleType.ofAngle(angles[contact]));
         // LabelSelection is needed to be able to map position-specific exchanges accurately
-        ResiduePairIdentifier residuePairIdentifier = new IndexResiduePairIdentifier(indexSelection1,
-                indexSelection2);
+        ResiduePairIdentifier residuePairIdentifier = new IndexResiduePairIdentifier(new IndexSelection(structOperIds[residue1], residueIndices[residue1]),
+                new IndexSelection(structOperIds[residue2], residueIndices[residue2]));
         return new ResiduePairOccurrence(residuePairDescriptor, residuePairIdentifier);
     }
 
-    private Stream<Pair<IndexSelection, IndexSelection>> pairs(IndexSelection residue1, boolean parallel) {
-        try {
-            // retrieve all neighbors for id
-            if (parallel) {
-                return backboneDistances.get(residue1)
-                        .keySet()
-                        .parallelStream()
-                        .map(residue2 -> new Pair<>(residue1, residue2));
-            } else {
-                return backboneDistances.get(residue1)
-                        .keySet()
-                        .stream()
-                        .map(residue2 -> new Pair<>(residue1, residue2));
-            }
-        } catch (NullPointerException e) {
-            // value can be empty
-            return Stream.empty();
-        }
+    /**
+     * Receives residue pairs of a graph.
+     */
+    @FunctionalInterface
+    public interface ResiduePairConsumer {
+        /**
+         * Handle a residue pair.
+         * @param descriptorCode the descriptor of this pair, see {@link ResiduePairDescriptor#getCode()}
+         * @param index1 residue index of the first residue
+         * @param structOperId1 operator of the first residue
+         * @param index2 residue index of the second residue
+         * @param structOperId2 operator of the second residue
+         */
+        void accept(int descriptorCode, int index1, String structOperId1, int index2, String structOperId2);
     }
 }
@@ -1,13 +1,15 @@
 package org.rcsb.strucmotif.domain.structure;
 
-import org.rcsb.strucmotif.math.Algebra;
-
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Efficiently determine residues in contacts by a spatial hashing approach. Adapted to code to be inline with other
  * classes, removed support for 2nd set of atoms, only consider alpha carbons (and equivalents) for computation.
+ * <p>
+ * Residues are bucketed into cells by a counting sort: <code>cellStarts</code> holds the offset of each cell in
+ * <code>cellIndices</code>, which lists residue indices ordered by cell (and by index within a cell). Coordinates are
+ * copied into a packed array in the same order, so that contacts can be enumerated without any per-cell or
+ * per-contact objects.
  *
  * see: https://github.com/biojava/biojava/blob/master/biojava-structure/src/main/java/org/biojava/nbio/structure/contact/Grid.java
  * original author: Jose M. Duarte &lt;jose.duarte@rcsb.org&gt;
@@ -20,66 +22,146 @@ public class ResidueGrid {
     private final float squaredCutoff;
     private final int cellSize;
 
-    private final List<float[]> vectors;
-    private final BoundingBox boundingBox;
     private final int[] intBounds;
-    private final ResidueGridCell[][][] gridCells;
+    private final int xCells;
+    private final int yCells;
+    private final int zCells;
+    // cell c holds cellIndices[cellStarts[c]] (inclusive) to cellIndices[cellStarts[c + 1]] (exclusive)
+    private final int[] cellStarts;
+    private final int[] cellIndices;
+    // x, y, z of cellIndices[k] at 3 * k
+    private final float[] coordinates;
 
     /**
      * Construct a residue grid from a structure.
-     * @param vectors the data
+     * @param vectors the data, <code>null</code> elements are ignored
      * @param squaredCutoff maximum distance between residues
      */
     public ResidueGrid(List<float[]> vectors, float squaredCutoff) {
-        this.vectors = vectors;
         this.squaredCutoff = squaredCutoff;
         this.cellSize = (int) Math.floor(Math.sqrt(squaredCutoff) * SCALE);
 
-        this.boundingBox = new BoundingBox();
+        this.intBounds = computeIntBounds(vectors);
+        if (intBounds == null) {
+            this.xCells = 0;
+            this.yCells = 0;
+            this.zCells = 0;
+            this.cellStarts = new int[1];
+            this.cellIndices = new int[0];
+            this.coordinates = new float[0];
+            return;
+        }
+
+        this.xCells = 1 + (intBounds[3] - intBounds[0]) / cellSize;
+        this.yCells = 1 + (intBounds[4] - intBounds[1]) / cellSize;
+        this.zCells = 1 + (intBounds[5] - intBounds[2]) / cellSize;
+
+        // counting sort: histogram of cell occupancy
+        int size = vectors.size();
+        int[] cells = new int[size];
+        this.cellStarts = new int[xCells * yCells * zCells + 1];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float[] v = vectors.get(i);
+            if (v == null) {
+                cells[i] = -1;
+                continue;
+            }
+
+            int cell = getCell(v);
+            cells[i] = cell;
+            cellStarts[cell + 1]++;
+            count++;
+        }
+
+        // prefix sum: offset of each cell
+        for (int c = 1; c < cellStarts.length; c++) {
+            cellStarts[c] += cellStarts[c - 1];
+        }
 
-        this.intBounds = boundingBox.getIntBounds();
-        this.gridCells = new ResidueGridCell
-                [1 + (intBounds[3] - intBounds[0]) / cellSize]
-                [1 + (intBounds[4] - intBounds[1]) / cellSize]
-                [1 + (intBounds[5] - intBounds[2]) / cellSize];
+        // scatter, stable w.r.t. residue index
+        this.cellIndices = new int[count];
+        this.coordinates = new float[3 * count];
+        int[] cursors = new int[cellStarts.length - 1];
+        System.arraycopy(cellStarts, 0, cursors, 0, cursors.length);
+        for (int i = 0; i < size; i++) {
+            int cell = cells[i];
+            if (cell == -1) {
+                continue;
+            }
 
-        fillGrid();
+            int k = cursors[cell]++;
+            float[] v = vectors.get(i);
+            cellIndices[k] = i;
+            coordinates[3 * k] = v[0];
+            coordinates[3 * k + 1] = v[1];
+            coordinates[3 * k + 2] = v[2];
+        }
     }
 
     /**
-     * Creates the grid based on the {@link BoundingBox} defined by all atoms and places the atoms into their
-     * corresponding grid cells.
+     * Calculates the bounds of the grid:
+     * - elements 0, 1, 2: minimum x, y, z
+     * - elements 3, 4, 5: maximum x, y, z
+     * @param vectors the data
+     * @return an int[], <code>null</code> if there are no vectors
      */
-    private void fillGrid() {
-        int i = -1;
+    private int[] computeIntBounds(List<float[]> vectors) {
+        float xmin = Float.MAX_VALUE;
+        float xmax = -Float.MAX_VALUE;
+        float ymin = Float.MAX_VALUE;
+        float ymax = -Float.MAX_VALUE;
+        float zmin = Float.MAX_VALUE;
+        float zmax = -Float.MAX_VALUE;
+        boolean empty = true;
+
         for (float[] v : vectors) {
-            i++;
-            if (v != null) {
-                assignCoordsToGridCell(v, i);
+            if (v == null) {
+                continue;
+            }
+
+            empty = false;
+            if (v[0] > xmax) {
+                xmax = v[0];
+            }
+            if (v[0] < xmin) {
+                xmin = v[0];
             }
-        }
-    }
 
-    private void assignCoordsToGridCell(float[] coords, int i) {
-        int xind = xintgrid2xgridindex(getFloor(coords[0]));
-        int yind = yintgrid2ygridindex(getFloor(coords[1]));
-        int zind = zintgrid2zgridindex(getFloor(coords[2]));
-        if (gridCells[xind][yind][zind] == null) {
-            gridCells[xind][yind][zind] = new ResidueGridCell();
+            if (v[1] > ymax) {
+                ymax = v[1];
+            }
+            if (v[1] < ymin) {
+                ymin = v[1];
+            }
+
+            if (v[2] > zmax) {
+                zmax = v[2];
+            }
+            if (v[2] < zmin) {
+                zmin = v[2];
+            }
         }
-        this.gridCells[xind][yind][zind].addIndex(i);
-    }
 
-    private int xintgrid2xgridindex(int x) {
-        return (x - intBounds[0]) / cellSize;
-    }
+        if (empty) {
+            return null;
+        }
 
-    private int yintgrid2ygridindex(int y) {
-        return (y - intBounds[1]) / cellSize;
+        return new int[] {
+                getFloor(xmin),
+                getFloor(ymin),
+                getFloor(zmin),
+                getFloor(xmax),
+                getFloor(ymax),
+                getFloor(zmax)
+        };
     }
 
-    private int zintgrid2zgridindex(int z) {
-        return (z - intBounds[2]) / cellSize;
+    private int getCell(float[] coords) {
+        int xind = (getFloor(coords[0]) - intBounds[0]) / cellSize;
+        int yind = (getFloor(coords[1]) - intBounds[1]) / cellSize;
+        int zind = (getFloor(coords[2]) - intBounds[2]) / cellSize;
+        return (xind * yCells + yind) * zCells + zind;
     }
 
     private int getFloor(float number) {
@@ -87,169 +169,79 @@ public class ResidueGrid {
     }
 
     /**
-     * All contacts registered.
-     * @return a collection of contacts
+     * Report all contacts registered. Each pair of residues is reported once, with the smaller index first.
+     * @param consumer receives each contact
      */
-    public List<ResidueContact> getIndicesContacts() {
-        List<ResidueContact> contacts = new ArrayList<>();
-
-        for (int xind = 0; xind < gridCells.length; xind++) {
-            for (int yind = 0; yind < gridCells[xind].length; yind++) {
-                for (int zind = 0; zind < gridCells[xind][yind].length; zind++) {
-                    // distances of points within this cell
-                    ResidueGridCell thisCell = gridCells[xind][yind][zind];
-                    if (thisCell == null) {
+    public void forEachContact(ContactConsumer consumer) {
+        for (int xind = 0; xind < xCells; xind++) {
+            for (int yind = 0; yind < yCells; yind++) {
+                for (int zind = 0; zind < zCells; zind++) {
+                    int thisCell = (xind * yCells + yind) * zCells + zind;
+                    if (cellStarts[thisCell] == cellStarts[thisCell + 1]) {
                         continue;
                     }
 
-                    contacts.addAll(thisCell.getContactsWithinGridCell());
+                    // distances of points within this cell
+                    reportContacts(thisCell, thisCell, consumer);
 
                     // distances of points from this box to all neighbouring boxes: 26 iterations (26 neighbouring boxes)
-                    for (int x = xind - 1; x <= xind + 1; x++) {
-                        for (int y = yind - 1; y <= yind + 1; y++) {
-                            for (int z = zind - 1; z <= zind + 1; z++) {
+                    for (int x = Math.max(0, xind - 1); x <= Math.min(xCells - 1, xind + 1); x++) {
+                        for (int y = Math.max(0, yind - 1); y <= Math.min(yCells - 1, yind + 1); y++) {
+                            for (int z = Math.max(0, zind - 1); z <= Math.min(zCells - 1, zind + 1); z++) {
                                 if (x == xind && y == yind && z == zind) {
                                     continue;
                                 }
 
-                                if (x >= 0 && x < gridCells.length && y >= 0 && y < gridCells[x].length && z >= 0 && z < gridCells[x][y].length) {
-                                    if (gridCells[x][y][z] == null) {
-                                        continue;
-                                    }
-
-                                    contacts.addAll(thisCell.getContactsToGridCell(gridCells[x][y][z]));
+                                int otherCell = (x * yCells + y) * zCells + z;
+                                if (cellStarts[otherCell] == cellStarts[otherCell + 1]) {
+                                    continue;
                                 }
+
+                                reportContacts(thisCell, otherCell, consumer);
                             }
                         }
                     }
                 }
             }
         }
-
-        return contacts;
     }
 
-    class BoundingBox {
-        final float xmin;
-        final float xmax;
-        final float ymin;
-        final float ymax;
-        final float zmin;
-        final float zmax;
-
-        public BoundingBox() {
-            float xmin = Float.MAX_VALUE;
-            float xmax = -Float.MAX_VALUE;
-            float ymin = Float.MAX_VALUE;
-            float ymax = -Float.MAX_VALUE;
-            float zmin = Float.MAX_VALUE;
-            float zmax = -Float.MAX_VALUE;
-
-            for (float[] v : vectors) {
-                if (v == null) {
+    private void reportContacts(int thisCell, int otherCell, ContactConsumer consumer) {
+        int otherStart = cellStarts[otherCell];
+        int otherEnd = cellStarts[otherCell + 1];
+        for (int k = cellStarts[thisCell], thisEnd = cellStarts[thisCell + 1]; k < thisEnd; k++) {
+            int i = cellIndices[k];
+            float xi = coordinates[3 * k];
+            float yi = coordinates[3 * k + 1];
+            float zi = coordinates[3 * k + 2];
+            for (int l = otherStart; l < otherEnd; l++) {
+                int j = cellIndices[l];
+                if (j <= i) {
                     continue;
                 }
 
-                if (v[0] > xmax) {
-                    xmax = v[0];
-                }
-                if (v[0] < xmin) {
-                    xmin = v[0];
-                }
-
-                if (v[1] > ymax) {
-                    ymax = v[1];
-                }
-                if (v[1] < ymin) {
-                    ymin = v[1];
-                }
-
-                if (v[2] > zmax) {
-                    zmax = v[2];
-                }
-                if (v[2] < zmin) {
-                    zmin = v[2];
+                float dx = xi - coordinates[3 * l];
+                float dy = yi - coordinates[3 * l + 1];
+                float dz = zi - coordinates[3 * l + 2];
+                float squaredDistance = dx * dx + dy * dy + dz * dz;
+                if (squaredDistance < squaredCutoff) {
+                    consumer.accept(i, j, (float) Math.sqrt(squaredDistance));
                 }
             }
-
-            this.xmin = xmin;
-            this.xmax = xmax;
-            this.ymin = ymin;
-            this.ymax = ymax;
-            this.zmin = zmin;
-            this.zmax = zmax;
         }
+    }
 
+    /**
+     * Receives contacts of a {@link ResidueGrid}.
+     */
+    @FunctionalInterface
+    public interface ContactConsumer {
         /**
-         * Calculates the member variable bounds:
-         * - elements 0, 1, 2: minimum x, y, z
-         * - elements 3, 4, 5: maximum x, y, z
-         * @return an int[]
+         * Handle a single contact.
+         * @param i index of the first residue
+         * @param j index of the second residue, always greater than i
+         * @param distance the distance between both residues
          */
-        public int[] getIntBounds() {
-            return new int[] {
-                    getFloor(boundingBox.xmin),
-                    getFloor(boundingBox.ymin),
-                    getFloor(boundingBox.zmin),
-                    getFloor(boundingBox.xmax),
-                    getFloor(boundingBox.ymax),
-                    getFloor(boundingBox.zmax)
-            };
-        }
-    }
-
-    class ResidueGridCell {
-        private final List<Integer> indices;
-
-        public ResidueGridCell() {
-            this.indices = new ArrayList<>();
-        }
-
-        public void addIndex(int index) {
-            indices.add(index);
-        }
-
-        public List<ResidueContact> getContactsWithinGridCell() {
-            return getContactsToGridCell(this);
-        }
-
-        private List<ResidueContact> getContactsToGridCell(ResidueGridCell other) {
-            List<ResidueContact> contacts = new ArrayList<>();
-            for (int i : indices) {
-                for (int j : other.indices) {
-                    if (j > i) {
-                        float squaredDistance = Algebra.distanceSquared3d(vectors.get(i), vectors.get(j));
-                        if (squaredDistance < squaredCutoff) {
-                            contacts.add(new ResidueContact(i, j, (float) Math.sqrt(squaredDistance)));
-                        }
-                    }
-                }
-            }
-            return contacts;
-        }
-    }
-
-    static class ResidueContact {
-        private final int i;
-        private final int j;
-        private final float distance;
-
-        public ResidueContact(int i, int j, float distance) {
-            this.i = i;
-            this.j = j;
-            this.distance = distance;
-        }
-
-        public int getI() {
-            return i;
-        }
-
-        public int getJ() {
-            return j;
-        }
-
-        public float getDistance() {
-            return distance;
-        }
+        void accept(int i, int j, float distance);
     }
 }
@@ -4,6 +4,7 @@ import org.rcsb.strucmotif.domain.Transformation;
 
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -12,10 +13,24 @@ import java.util.stream.IntStream;
 
 /**
  * The structure object wraps categories of a mmCIF file and allows access via some utility methods.
+ * <p>
+ * Many structures are kept in memory at once, so everything is stored in flat arrays: chains as parallel arrays of
+ * identifiers and residue ranges, assemblies as a CSR-like layout of expressions, transformations as parallel arrays of
+ * operator identifiers and instances. Chain identifiers, operator identifiers and expressions are interned by
+ * {@link String#intern()}, so that structures share the same instances of the handful of names that occur in all
+ * structures, without keeping names of unloaded structures alive.
  */
 public class Structure {
+    private static final LabelAtomId[] LABEL_ATOM_IDS = LabelAtomId.values();
+    private static final int UNKNOWN_ATOM_ORDINAL = LabelAtomId.UNKNOWN_ATOM.ordinal();
+    /**
+     * Index of operators that aren't present in a structure. Resolves to the identity transformation.
+     */
+    public static final int UNKNOWN_OPERATOR = -1;
     private final String structureIdentifier;
-    private final Map<String, int[]> chainOffsets;
+    private final String[] chainIdentifiers;
+    // [first residue index, last residue index] of each chain
+    private final int[] chainRanges;
     private final int[] labelSeqId;
     private final int chainCount;
     private final int residueCount;
@@ -26,8 +41,14 @@ public class Structure {
     private final short[] x;
     private final short[] y;
     private final short[] z;
-    private final Map<String, List<String>> assemblies;
-    private final Map<String, Transformation> transformations;
+    private final String[] assemblyIdentifiers;
+    // expressions of assembly i are found at [assemblyOffsets[i], assemblyOffsets[i + 1])
+    private final int[] assemblyOffsets;
+    private final String[] assemblyExpressions;
+    private final String[] operatorIdentifiers;
+    private final Transformation[] operators;
+    // lazily interned as only needed during index creation
+    private volatile AssemblyMembership assemblyMembership;
 
     /**
      * Create a structure view.
@@ -55,7 +76,15 @@ public class Structure {
                      Map<String, List<String>> assemblies,
                      Map<String, Transformation> transformations) {
         this.structureIdentifier = structureIdentifier;
-        this.chainOffsets = chainOffsets;
+        this.chainIdentifiers = new String[chainOffsets.size()];
+        this.chainRanges = new int[2 * chainOffsets.size()];
+        int chainIndex = 0;
+        for (Map.Entry<String, int[]> entry : chainOffsets.entrySet()) {
+            chainIdentifiers[chainIndex] = entry.getKey().intern();
+            chainRanges[2 * chainIndex] = entry.getValue()[0];
+            chainRanges[2 * chainIndex + 1] = entry.getValue()[1];
+            chainIndex++;
+        }
         this.labelSeqId = labelSeqId;
         this.residueOffsets = residueOffsets;
         this.residueTypes = residueTypes;
@@ -66,8 +95,30 @@ public class Structure {
         this.x = x;
         this.y = y;
         this.z = z;
-        this.assemblies = assemblies;
-        this.transformations = transformations;
+
+        this.assemblyIdentifiers = new String[assemblies.size()];
+        this.assemblyOffsets = new int[assemblies.size() + 1];
+        this.assemblyExpressions = new String[assemblies.values().stream().mapToInt(List::size).sum()];
+        int assemblyIndex = 0;
+        int expressionIndex = 0;
+        for (Map.Entry<String, List<String>> entry : assemblies.entrySet()) {
+            assemblyIdentifiers[assemblyIndex] = entry.getKey().intern();
+            assemblyOffsets[assemblyIndex] = expressionIndex;
+            for (String expression : entry.getValue()) {
+                assemblyExpressions[expressionIndex++] = expression.intern();
+            }
+            assemblyIndex++;
+        }
+        assemblyOffsets[assemblyIndex] = expressionIndex;
+
+        this.operatorIdentifiers = new String[transformations.size()];
+        this.operators = new Transformation[transformations.size()];
+        int operatorIndex = 0;
+        for (Map.Entry<String, Transformation> entry : transformations.entrySet()) {
+            operatorIdentifiers[operatorIndex] = entry.getKey().intern();
+            operators[operatorIndex] = entry.getValue();
+            operatorIndex++;
+        }
     }
 
     /**
@@ -98,21 +149,29 @@ public class Structure {
      * @return the index of the residue
      */
     public int getResidueIndex(String labelAsymId, int labelSeqId) {
-        if (!chainOffsets.containsKey(labelAsymId)) {
+        int chainIndex = getChainIndex(labelAsymId);
+        if (chainIndex == -1) {
             throw new NoSuchElementException("Didn't find chain: " + labelAsymId);
         }
 
-        int[] chainOffset = chainOffsets.get(labelAsymId);
         // on the sub-array binary search works
-        return Arrays.binarySearch(this.labelSeqId, chainOffset[0], chainOffset[1] + 1, labelSeqId);
+        return Arrays.binarySearch(this.labelSeqId, chainRanges[2 * chainIndex], chainRanges[2 * chainIndex + 1] + 1, labelSeqId);
+    }
+
+    private int getChainIndex(String labelAsymId) {
+        for (int i = 0; i < chainIdentifiers.length; i++) {
+            if (chainIdentifiers[i].equals(labelAsymId)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public LabelSelection getLabelSelection(int residueIndex) {
         String labelAsymId = null;
-        for (Map.Entry<String, int[]> entry : chainOffsets.entrySet()) {
-            int[] offsets =  entry.getValue();
-            if (residueIndex >= offsets[0] && residueIndex <= offsets[1]) {
-                labelAsymId = entry.getKey();
+        for (int i = 0; i < chainIdentifiers.length; i++) {
+            if (residueIndex >= chainRanges[2 * i] && residueIndex <= chainRanges[2 * i + 1]) {
+                labelAsymId = chainIdentifiers[i];
             }
         }
 
@@ -141,13 +200,82 @@ public class Structure {
     }
 
     /**
-     * Count of all atoms/rows in the source CIF file.
+     * Count of all atoms/rows in the source CIF file. Structures that were decoded partially only report the atoms of
+     * residues that were actually loaded.
      * @return an int
      */
     public int getAtomCount() {
         return atomCount;
     }
 
+    /**
+     * Access to chain information. Creates a new map for each invocation.
+     * @return Map of all chains [label_asym_id, [first residue index, last residue index]]
+     */
+    public Map<String, int[]> getChainOffsets() {
+        Map<String, int[]> chainOffsets = new LinkedHashMap<>();
+        for (int i = 0; i < chainIdentifiers.length; i++) {
+            chainOffsets.put(chainIdentifiers[i], new int[] { chainRanges[2 * i], chainRanges[2 * i + 1] });
+        }
+        return chainOffsets;
+    }
+
+    /**
+     * Raw access to the label_seq_id of all residues. Do not modify.
+     * @return an int[]
+     */
+    public int[] getLabelSeqIds() {
+        return labelSeqId;
+    }
+
+    /**
+     * Raw access to the atom offset of each residue. Do not modify.
+     * @return an int[]
+     */
+    public int[] getResidueOffsets() {
+        return residueOffsets;
+    }
+
+    /**
+     * Raw access to the residue type ordinals of all residues. Do not modify.
+     * @return a byte[]
+     */
+    public byte[] getResidueTypes() {
+        return residueTypes;
+    }
+
+    /**
+     * Raw access to the label_atom_id ordinals of all atoms. Do not modify.
+     * @return a byte[]
+     */
+    public byte[] getLabelAtomIds() {
+        return labelAtomId;
+    }
+
+    /**
+     * Raw access to x coordinates (scaled by 10). Do not modify.
+     * @return a short[]
+     */
+    public short[] getX() {
+        return x;
+    }
+
+    /**
+     * Raw access to y coordinates (scaled by 10). Do not modify.
+     * @return a short[]
+     */
+    public short[] getY() {
+        return y;
+    }
+
+    /**
+     * Raw access to z coordinates (scaled by 10). Do not modify.
+     * @return a short[]
+     */
+    public short[] getZ() {
+        return z;
+    }
+
     /**
      * Reports the residue type/amino acid at a certain index.
      * @param residueIndex the index of the residue
@@ -158,28 +286,106 @@ public class Structure {
     }
 
     /**
-     * Access to assembly information.
+     * Access to assembly information. Creates a new map for each invocation.
      * @return Map of all assemblies [assemblyId, (label_asym_id x struct_oper_id)[]]
      */
     public Map<String, List<String>> getAssemblies() {
+        Map<String, List<String>> assemblies = new LinkedHashMap<>();
+        for (int i = 0; i < assemblyIdentifiers.length; i++) {
+            assemblies.put(assemblyIdentifiers[i], Arrays.asList(assemblyExpressions).subList(assemblyOffsets[i], assemblyOffsets[i + 1]));
+        }
         return assemblies;
     }
 
     /**
-     * Access to all transformations.
+     * Access to interned assembly information, allows to test assembly membership of chain-operator expressions
+     * without String operations.
+     * @return assembly membership information
+     */
+    public AssemblyMembership getAssemblyMembership() {
+        // benign race: at worst, the same information is interned twice
+        AssemblyMembership assemblyMembership = this.assemblyMembership;
+        if (assemblyMembership == null) {
+            assemblyMembership = new AssemblyMembership(getAssemblies());
+            this.assemblyMembership = assemblyMembership;
+        }
+        return assemblyMembership;
+    }
+
+    /**
+     * Access to all transformations. Creates a new map for each invocation.
      * @return Map of transformations [struct_oper_id, Transformation]
      */
     public Map<String, Transformation> getTransformations() {
+        Map<String, Transformation> transformations = new LinkedHashMap<>();
+        for (int i = 0; i < operatorIdentifiers.length; i++) {
+            transformations.put(operatorIdentifiers[i], operators[i]);
+        }
         return transformations;
     }
 
     /**
      * Access to a specific transformation.
      * @param structOperIdentifier the struct_oper_id expression
-     * @return a Transformation object
+     * @return a Transformation object, <code>null</code> if not present
      */
     public Transformation getTransformation(String structOperIdentifier) {
-        return transformations.get(structOperIdentifier);
+        for (int i = 0; i < operatorIdentifiers.length; i++) {
+            // interned: usually an identity check
+            if (operatorIdentifiers[i].equals(structOperIdentifier)) {
+                return operators[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve an operator by name once, so that it can be referenced by index subsequently.
+     * @param structOperIdentifier the struct_oper_id expression
+     * @return the index of this operator, {@link #UNKNOWN_OPERATOR} if not present
+     */
+    public int getOperatorIndex(String structOperIdentifier) {
+        for (int i = 0; i < operatorIdentifiers.length; i++) {
+            if (operatorIdentifiers[i].equals(structOperIdentifier)) {
+                return i;
+            }
+        }
+        return UNKNOWN_OPERATOR;
+    }
+
+    /**
+     * Access to a specific transformation by index.
+     * @param operatorIndex the index of the operator
+     * @return a Transformation object, the identity for unknown operators
+     */
+    public Transformation getTransformation(int operatorIndex) {
+        return operatorIndex == UNKNOWN_OPERATOR ? Transformation.IDENTITY_TRANSFORMATION : operators[operatorIndex];
+    }
+
+    /**
+     * Estimate how much memory this structure occupies.
+     * @return the footprint, split by component
+     */
+    public StructureFootprint getFootprint() {
+        // interned strings are shared and not accounted for
+        return new StructureFootprint(
+                arrayBytes(labelAtomId.length, 1) + 3 * arrayBytes(x.length, 2),
+                arrayBytes(labelSeqId.length, 4) + arrayBytes(residueOffsets.length, 4) + arrayBytes(residueTypes.length, 1),
+                arrayBytes(chainIdentifiers.length, StructureFootprint.REFERENCE_SIZE) + arrayBytes(chainRanges.length, 4),
+                arrayBytes(assemblyIdentifiers.length, StructureFootprint.REFERENCE_SIZE) + arrayBytes(assemblyOffsets.length, 4) + arrayBytes(assemblyExpressions.length, StructureFootprint.REFERENCE_SIZE),
+                arrayBytes(operatorIdentifiers.length, StructureFootprint.REFERENCE_SIZE) + arrayBytes(operators.length, StructureFootprint.REFERENCE_SIZE) + countDistinctTransformations() * StructureFootprint.TRANSFORMATION_SIZE,
+                // object itself (16 references, 3 ints) and its identifier
+                StructureFootprint.OBJECT_HEADER_SIZE + 16L * StructureFootprint.REFERENCE_SIZE + 3 * 4 + StructureFootprint.STRING_SIZE + arrayBytes(structureIdentifier.length(), 1));
+    }
+
+    private long countDistinctTransformations() {
+        // the identity transformation is shared by all structures
+        return Arrays.stream(operators).filter(t -> t != Transformation.IDENTITY_TRANSFORMATION).count();
+    }
+
+    private static long arrayBytes(int length, int elementSize) {
+        // header and length, padded to 8 bytes
+        return (StructureFootprint.ARRAY_HEADER_SIZE + (long) length * elementSize + 7) / 8 * 8;
     }
 
     /**
@@ -223,15 +429,11 @@ public class Structure {
         Map<LabelAtomId, float[]> out = new EnumMap<>(LabelAtomId.class);
         int offsetStart = residueOffsets[residueIndex];
         int offsetEnd = residueIndex + 1 == residueOffsets.length ? labelAtomId.length : residueOffsets[residueIndex + 1];
-        Transformation transformation = transformations.get(structOperIdentifier);
-
         // happens e.g. for 7a3x, there assembly '1' references opers '2' and '3'
-        if (transformation == null) {
-            transformation = Transformation.IDENTITY_TRANSFORMATION;
-        }
+        Transformation transformation = getTransformation(getOperatorIndex(structOperIdentifier));
 
         for (int i = offsetStart; i < offsetEnd; i++) {
-            LabelAtomId labelAtomId = LabelAtomId.values()[this.labelAtomId[i]];
+            LabelAtomId labelAtomId = LABEL_ATOM_IDS[this.labelAtomId[i]];
             // ignore 'non-standard' atoms
             if (labelAtomId == LabelAtomId.UNKNOWN_ATOM) {
                 continue;
@@ -247,4 +449,32 @@ public class Structure {
         }
         return out;
     }
+
+    /**
+     * Manifests a residue into a reusable buffer. Same semantics as {@link #manifestResidue(int, String)} but doesn't
+     * allocate anything. The buffer is cleared before it is filled.
+     * @param residueIndex the index of the residue
+     * @param operatorIndex the operator to apply to these coordinates (see {@link #getOperatorIndex(String)})
+     * @param buffer the destination
+     * @return the number of atoms written
+     */
+    public int manifestResidue(int residueIndex, int operatorIndex, ResidueBuffer buffer) {
+        buffer.clear();
+        int offsetStart = residueOffsets[residueIndex];
+        int offsetEnd = residueIndex + 1 == residueOffsets.length ? labelAtomId.length : residueOffsets[residueIndex + 1];
+        Transformation transformation = getTransformation(operatorIndex);
+        float[] coordinates = buffer.getCoordinates();
+
+        for (int i = offsetStart; i < offsetEnd; i++) {
+            int ordinal = labelAtomId[i];
+            // ignore 'non-standard' atoms
+            if (ordinal == UNKNOWN_ATOM_ORDINAL) {
+                continue;
+            }
+
+            buffer.set(ordinal, x[i] * 0.1f, y[i] * 0.1f, z[i] * 0.1f);
+            transformation.transform(coordinates, 3 * ordinal);
+        }
+        return buffer.getAtomCount();
+    }
 }
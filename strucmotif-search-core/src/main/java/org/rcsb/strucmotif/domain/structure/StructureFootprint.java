@@ -0,0 +1,133 @@
+package org.rcsb.strucmotif.domain.structure;
+
+/**
+ * Estimated heap usage of one or several structures, split by component. Assumes a 64-bit JVM with compressed oops.
+ * Instances can be summed up to report the footprint of a whole collection.
+ */
+public class StructureFootprint {
+    static final int OBJECT_HEADER_SIZE = 12;
+    static final int ARRAY_HEADER_SIZE = 16;
+    static final int REFERENCE_SIZE = 4;
+    static final int STRING_SIZE = 24;
+    // object, outer array, 4 rows of 4 floats
+    static final int TRANSFORMATION_SIZE = 16 + 32 + 4 * 32;
+    /**
+     * Footprint of nothing.
+     */
+    public static final StructureFootprint EMPTY = new StructureFootprint(0, 0, 0, 0, 0, 0, 0);
+    private final long atoms;
+    private final long residues;
+    private final long chains;
+    private final long assemblies;
+    private final long transformations;
+    private final long other;
+    private final int structureCount;
+
+    StructureFootprint(long atoms, long residues, long chains, long assemblies, long transformations, long other) {
+        this(atoms, residues, chains, assemblies, transformations, other, 1);
+    }
+
+    private StructureFootprint(long atoms, long residues, long chains, long assemblies, long transformations, long other, int structureCount) {
+        this.atoms = atoms;
+        this.residues = residues;
+        this.chains = chains;
+        this.assemblies = assemblies;
+        this.transformations = transformations;
+        this.other = other;
+        this.structureCount = structureCount;
+    }
+
+    /**
+     * Sum of 2 footprints.
+     * @param other the other footprint
+     * @return a new instance
+     */
+    public StructureFootprint add(StructureFootprint other) {
+        return new StructureFootprint(atoms + other.atoms,
+                residues + other.residues,
+                chains + other.chains,
+                assemblies + other.assemblies,
+                transformations + other.transformations,
+                this.other + other.other,
+                structureCount + other.structureCount);
+    }
+
+    /**
+     * Bytes occupied by atom-level data (label_atom_id and coordinates).
+     * @return a long
+     */
+    public long getAtoms() {
+        return atoms;
+    }
+
+    /**
+     * Bytes occupied by residue-level data (label_seq_id, atom offsets and residue types).
+     * @return a long
+     */
+    public long getResidues() {
+        return residues;
+    }
+
+    /**
+     * Bytes occupied by chain identifiers and ranges.
+     * @return a long
+     */
+    public long getChains() {
+        return chains;
+    }
+
+    /**
+     * Bytes occupied by assembly information.
+     * @return a long
+     */
+    public long getAssemblies() {
+        return assemblies;
+    }
+
+    /**
+     * Bytes occupied by transformations.
+     * @return a long
+     */
+    public long getTransformations() {
+        return transformations;
+    }
+
+    /**
+     * Bytes occupied by the structure objects themselves and their identifiers.
+     * @return a long
+     */
+    public long getOther() {
+        return other;
+    }
+
+    /**
+     * Total number of bytes.
+     * @return a long
+     */
+    public long getTotal() {
+        return atoms + residues + chains + assemblies + transformations + other;
+    }
+
+    /**
+     * Number of structures accounted for.
+     * @return an int
+     */
+    public int getStructureCount() {
+        return structureCount;
+    }
+
+    @Override
+    public String toString() {
+        int n = Math.max(1, structureCount);
+        return String.format("%d structures, %d MB - bytes per structure: atoms %d, residues %d, chains %d, assemblies %d, transformations %d, other %d, total %d",
+                structureCount,
+                getTotal() / 1024 / 1024,
+                atoms / n,
+                residues / n,
+                chains / n,
+                assemblies / n,
+                transformations / n,
+                other / n,
+                getTotal() / n);
+    }
+}
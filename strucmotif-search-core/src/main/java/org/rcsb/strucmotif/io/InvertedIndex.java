@@ -15,7 +15,7 @@ import java.util.stream.Stream;
  */
 public interface InvertedIndex {
     /**
-     * Insert operation for new data.
+     * Insert operation for new data. Data of structures that are already present in this bin is replaced.
      * @param residuePairDescriptor the bin for which new data should be written
      * @param residuePairOccurrences the data to append to this bin - keys are pdbIds, values are all words of this descriptor
      */
@@ -28,9 +28,33 @@ public interface InvertedIndex {
      */
     Stream<Pair<String, InvertedIndexResiduePairIdentifier[]>> select(ResiduePairDescriptor residuePairDescriptor);
 
+    /**
+     * Read the content of a bin without decoding it. This is the part of a lookup that blocks on I/O, it can be
+     * performed on a dedicated thread and decoded later by {@link #select(ResiduePairDescriptor, byte[])}.
+     * @param residuePairDescriptor the bin to read
+     * @return the encoded bin, <code>null</code> if it doesn't exist
+     */
+    byte[] read(ResiduePairDescriptor residuePairDescriptor);
+
+    /**
+     * Perform lookup for a particular bin that was read before.
+     * @param residuePairDescriptor the bin for which occurrences should the lookup be performed
+     * @param bin the encoded bin as returned by {@link #read(ResiduePairDescriptor)}
+     * @return a {@link Stream} of all occurrences, grouped by their structure identifier
+     */
+    Stream<Pair<String, InvertedIndexResiduePairIdentifier[]>> select(ResiduePairDescriptor residuePairDescriptor, byte[] bin);
+
     /**
      * Removes all information on a set of structures from the index.
      * @param structureIdentifiers what to remove
      */
     void delete(Collection<String> structureIdentifiers);
+
+    /**
+     * Removes all information on a set of structures from a single bin. Use this if the affected bins are known, it
+     * avoids visiting the whole index.
+     * @param residuePairDescriptor the bin
+     * @param structureIdentifiers what to remove
+     */
+    void delete(ResiduePairDescriptor residuePairDescriptor, Collection<String> structureIdentifiers);
 }
@@ -12,9 +12,11 @@ import org.rcsb.strucmotif.domain.structure.IndexSelection;
 import org.rcsb.strucmotif.domain.structure.ResidueType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -26,6 +28,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -46,8 +49,17 @@ public class InvertedIndexImpl implements InvertedIndex {
      * Construct a inverted index instance.
      * @param motifSearchConfig the config
      */
+    @Autowired
     public InvertedIndexImpl(MotifSearchConfig motifSearchConfig) {
-        this.basePath = Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.INDEX_DIRECTORY);
+        this(Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.INDEX_DIRECTORY));
+    }
+
+    /**
+     * Construct a inverted index instance in a custom location.
+     * @param basePath the directory of the index
+     */
+    public InvertedIndexImpl(Path basePath) {
+        this.basePath = basePath;
         this.paths = false;
     }
 
@@ -59,18 +71,16 @@ public class InvertedIndexImpl implements InvertedIndex {
         }
 
         try {
-            Map<String, Object> data = residuePairOccurrences.entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(Map.Entry::getKey,
-                            entry -> entry.getValue()
-                                    .stream()
-                                    .map(this::createObjectArray)
-                                    .toArray()));
-
-            Map<String, Object> map = getMap(residuePairDescriptor);
+            // keep bins ordered by structure identifier, read already present target identifiers
+            Map<String, Object> data = new TreeMap<>(getMap(residuePairDescriptor));
 
-            // read already present target identifiers and add to list to write
-            data.putAll(map);
+            // new data replaces previous data of a structure
+            for (Map.Entry<String, Collection<ResiduePairIdentifier>> entry : residuePairOccurrences.entrySet()) {
+                data.put(entry.getKey(), entry.getValue()
+                        .stream()
+                        .map(this::createObjectArray)
+                        .toArray());
+            }
 
             // serialize message
             byte[] bytes = MessagePackCodec.encode(data);
@@ -94,6 +104,28 @@ public class InvertedIndexImpl implements InvertedIndex {
         }
     }
 
+    @Override
+    public byte[] read(ResiduePairDescriptor residuePairDescriptor) {
+        try (InputStream inputStream = getInputStream(residuePairDescriptor)) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Stream<Pair<String, InvertedIndexResiduePairIdentifier[]>> select(ResiduePairDescriptor residuePairDescriptor, byte[] bin) {
+        if (bin == null) {
+            return Stream.empty();
+        }
+
+        try {
+            return getPairs(new ByteArrayInputStream(bin), residuePairDescriptor);
+        } catch (IOException e) {
+            return Stream.empty();
+        }
+    }
+
     private Stream<Pair<String, InvertedIndexResiduePairIdentifier[]>> getPairs(InputStream inputStream, ResiduePairDescriptor residuePairDescriptor) throws IOException {
         return getData(inputStream)
                 .map(entry -> {
@@ -150,8 +182,8 @@ public class InvertedIndexImpl implements InvertedIndex {
             // walk whole lookup
             Files.walk(basePath, FileVisitOption.FOLLOW_LINKS)
                     .parallel()
-                    // ignore directories
-                    .filter(path -> !Files.isDirectory(path))
+                    // ignore directories and anything but bins (e.g. data recorded by the update)
+                    .filter(path -> !Files.isDirectory(path) && path.getFileName().toString().endsWith(".msg"))
                     .peek(path -> {
                         if (counter.incrementAndGet() % 10000 == 0) {
                             logger.info("{} bins of inverted index cleaned",
@@ -176,7 +208,8 @@ public class InvertedIndexImpl implements InvertedIndex {
         return new ResiduePairDescriptor(residueType1, residueType2, d1, d2, a);
     }
 
-    private void delete(ResiduePairDescriptor residuePairDescriptor, Collection<String> removals) {
+    @Override
+    public void delete(ResiduePairDescriptor residuePairDescriptor, Collection<String> removals) {
         try {
             Map<String, Object> map = getMap(residuePairDescriptor);
 
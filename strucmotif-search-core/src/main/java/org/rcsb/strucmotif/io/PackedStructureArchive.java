@@ -0,0 +1,487 @@
+package org.rcsb.strucmotif.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores encoded renumbered structures in a few large pack files instead of one file per entry. A directory maps each
+ * structure identifier to its (pack, offset, length). Pack files are mapped into memory, so reads are mere slices of
+ * already mapped buffers.
+ * <p>
+ * The directory is an append-only log: each addition appends the encoded structure to the current pack and a record
+ * to the directory, each removal appends a tombstone. When replaying the log, the last record of an identifier wins.
+ * Replaced or removed entries leave garbage in pack files which is reclaimed by {@link #compact()}.
+ * <p>
+ * Compaction writes a new generation of pack files and directory next to the current one and then switches to it by
+ * atomically replacing a pointer file. Files of other generations (a half-written one or the one that was replaced) are
+ * ignored by readers.
+ * <p>
+ * An archive is opened read-only. Its first modification acquires an exclusive lock file, which is held until the
+ * archive is closed, so only one process (the update) writes. Only the writer removes files
+ * of other generations and truncates a partially written record at the end of the directory. Readers in other processes
+ * only see entries that were present when the archive was opened.
+ */
+class PackedStructureArchive implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PackedStructureArchive.class);
+    static final String DIRECTORY_FILE = "structures.idx";
+    static final String GENERATION_FILE = "structures.current";
+    static final String LOCK_FILE = "structures.lock";
+    private static final Pattern ARCHIVE_FILE = Pattern.compile("structures(-g(\\d+))?(-\\d{5}\\.pack|\\.idx)");
+    private static final int TOMBSTONE = -1;
+    private final Path basePath;
+    private final long packSizeLimit;
+    // readers hold the read lock, modifications the write lock
+    private final ReadWriteLock lock;
+    private volatile Map<String, Entry> directory;
+    private final List<Pack> packs;
+    private int generation;
+    // null while read-only
+    private FileChannel directoryChannel;
+    private FileChannel lockChannel;
+    private long garbage;
+
+    /**
+     * Location of a structure in the archive.
+     */
+    static class Entry {
+        private final int pack;
+        private final long offset;
+        private final int length;
+
+        Entry(int pack, long offset, int length) {
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Pack {
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private volatile MappedByteBuffer mapped;
+
+        private Pack(Path path, boolean writable) throws IOException {
+            this.path = path;
+            this.channel = writable ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE) : FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+    }
+
+    /**
+     * Open (or create) an archive. It stays read-only until the first modification.
+     * @param basePath the directory holding pack files and the directory
+     * @param packSizeLimit when to start a new pack file (in bytes)
+     * @throws IOException if existing data cannot be read
+     */
+    PackedStructureArchive(Path basePath, long packSizeLimit) throws IOException {
+        this(basePath, packSizeLimit, readGeneration(basePath), false);
+        logger.info("Opened structure archive with {} entries in {} pack files ({} MB garbage)",
+                directory.size(),
+                packs.size(),
+                garbage / 1024 / 1024);
+    }
+
+    /**
+     * Open (or create) a specific generation of an archive.
+     */
+    private PackedStructureArchive(Path basePath, long packSizeLimit, int generation, boolean writable) throws IOException {
+        this.basePath = basePath;
+        this.packSizeLimit = packSizeLimit;
+        this.lock = new ReentrantReadWriteLock();
+        this.packs = new ArrayList<>();
+        open(generation, writable);
+    }
+
+    /**
+     * Determine the current generation.
+     */
+    private static int readGeneration(Path basePath) throws IOException {
+        Files.createDirectories(basePath);
+        Path generationPath = basePath.resolve(GENERATION_FILE);
+        return Files.exists(generationPath) ? Integer.parseInt(Files.readString(generationPath).trim()) : 0;
+    }
+
+    /**
+     * Switch to writing: acquire the lock file, remove files of all other generations, and reopen the current generation
+     * for modification. Must be called with the write lock held.
+     */
+    private void ensureWritable() throws IOException {
+        if (directoryChannel != null) {
+            return;
+        }
+
+        FileChannel channel = FileChannel.open(basePath.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IllegalStateException("Structure archive in " + basePath + " is modified by another process");
+        }
+        this.lockChannel = channel;
+
+        // the generation may have been switched by the previous writer
+        closeChannels();
+        packs.clear();
+        int generation = readGeneration(basePath);
+        removeOtherGenerations(generation);
+        open(generation, true);
+    }
+
+    private void removeOtherGenerations(int generation) throws IOException {
+        List<Path> stale;
+        try (Stream<Path> files = Files.list(basePath)) {
+            stale = files.filter(path -> {
+                Matcher matcher = ARCHIVE_FILE.matcher(path.getFileName().toString());
+                return matcher.matches() && (matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0) != generation;
+            }).collect(Collectors.toList());
+        }
+        for (Path path : stale) {
+            logger.info("Removing {} of an abandoned structure archive generation", path.getFileName());
+            Files.delete(path);
+        }
+        Files.deleteIfExists(basePath.resolve(GENERATION_FILE + ".tmp"));
+    }
+
+    private void open(int generation, boolean writable) throws IOException {
+        this.generation = generation;
+        this.directory = new ConcurrentHashMap<>();
+        this.garbage = 0;
+        for (int i = 0; Files.exists(getPackPath(generation, i)); i++) {
+            packs.add(new Pack(getPackPath(generation, i), writable));
+        }
+        long length = replayDirectory();
+        if (!writable) {
+            return;
+        }
+
+        // appending after a partially written record would misalign all records that follow
+        this.directoryChannel = FileChannel.open(getDirectoryPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (directoryChannel.size() > length) {
+            logger.warn("Truncating partially written record at the end of {}", getDirectoryPath(generation).getFileName());
+            directoryChannel.truncate(length);
+        }
+        directoryChannel.position(length);
+    }
+
+    private Path getPackPath(int generation, int pack) {
+        return basePath.resolve(String.format("structures%s-%05d.pack", generation == 0 ? "" : "-g" + generation, pack));
+    }
+
+    private Path getDirectoryPath(int generation) {
+        return generation == 0 ? basePath.resolve(DIRECTORY_FILE) : basePath.resolve("structures-g" + generation + ".idx");
+    }
+
+    /**
+     * Replay all complete records of the directory.
+     * @return the length of the directory up to the end of the last complete record
+     */
+    private long replayDirectory() throws IOException {
+        Path path = getDirectoryPath(generation);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        int complete = 0;
+        while (buffer.remaining() >= 2) {
+            byte[] id = new byte[Short.toUnsignedInt(buffer.getShort())];
+            // a record that was only partially written is ignored
+            if (buffer.remaining() < id.length + 16) {
+                break;
+            }
+            buffer.get(id);
+            int pack = buffer.getInt();
+            long offset = buffer.getLong();
+            int length = buffer.getInt();
+
+            String structureIdentifier = new String(id, StandardCharsets.UTF_8);
+            Entry previous = length == TOMBSTONE ? directory.remove(structureIdentifier) : directory.put(structureIdentifier, new Entry(pack, offset, length));
+            if (previous != null) {
+                garbage += previous.length;
+            }
+            complete = buffer.position();
+        }
+        return complete;
+    }
+
+    /**
+     * Check whether a structure is present.
+     * @param structureIdentifier the identifier
+     * @return true if this archive contains the structure
+     */
+    boolean contains(String structureIdentifier) {
+        return directory.containsKey(structureIdentifier);
+    }
+
+    /**
+     * All identifiers present in this archive.
+     * @return a collection of identifiers
+     */
+    Collection<String> getStructureIdentifiers() {
+        return directory.keySet();
+    }
+
+    /**
+     * Number of bytes occupied by replaced or removed entries.
+     * @return garbage in bytes
+     */
+    long getGarbage() {
+        lock.readLock().lock();
+        try {
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of bytes in all pack files.
+     * @return total size in bytes
+     */
+    long getSize() {
+        lock.readLock().lock();
+        try {
+            return packs.stream().mapToLong(pack -> pack.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Access the encoded data of a structure.
+     * @param structureIdentifier the identifier
+     * @return a little-endian buffer that contains exactly the encoded structure or null if not present
+     */
+    ByteBuffer read(String structureIdentifier) {
+        lock.readLock().lock();
+        try {
+            Entry entry = directory.get(structureIdentifier);
+            if (entry == null) {
+                return null;
+            }
+
+            // mapped buffers stay valid after their channel was closed, so the slice survives compaction
+            ByteBuffer buffer = getMapped(packs.get(entry.pack), entry.offset + entry.length).duplicate();
+            buffer.position((int) entry.offset);
+            buffer.limit((int) entry.offset + entry.length);
+            return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private MappedByteBuffer getMapped(Pack pack, long requiredLength) {
+        MappedByteBuffer mapped = pack.mapped;
+        if (mapped != null && mapped.capacity() >= requiredLength) {
+            return mapped;
+        }
+
+        // pack grew since it was mapped
+        synchronized (pack) {
+            if (pack.mapped == null || pack.mapped.capacity() < requiredLength) {
+                try {
+                    pack.mapped = pack.channel.map(FileChannel.MapMode.READ_ONLY, 0, pack.channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return pack.mapped;
+        }
+    }
+
+    /**
+     * Append a structure. If the structure is already present, the previous data becomes garbage.
+     * @param structureIdentifier the identifier
+     * @param data the encoded structure
+     */
+    void append(String structureIdentifier, ByteBuffer data) {
+        lock.writeLock().lock();
+        try {
+            ensureWritable();
+            int length = data.remaining();
+            if (packs.isEmpty() || (packs.get(packs.size() - 1).size > 0 && packs.get(packs.size() - 1).size + length > packSizeLimit)) {
+                packs.add(new Pack(getPackPath(generation, packs.size()), true));
+            }
+
+            int packIndex = packs.size() - 1;
+            Pack pack = packs.get(packIndex);
+            long offset = pack.size;
+            long position = offset;
+            while (data.hasRemaining()) {
+                position += pack.channel.write(data, position);
+            }
+            pack.size += length;
+
+            // write data before directory: a crash in between merely leaves garbage
+            writeRecord(structureIdentifier, packIndex, offset, length);
+            Entry previous = directory.put(structureIdentifier, new Entry(packIndex, offset, length));
+            if (previous != null) {
+                garbage += previous.length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a structure.
+     * @param structureIdentifier the identifier
+     */
+    void delete(String structureIdentifier) {
+        lock.writeLock().lock();
+        try {
+            ensureWritable();
+            Entry previous = directory.remove(structureIdentifier);
+            if (previous == null) {
+                return;
+            }
+
+            writeRecord(structureIdentifier, previous.pack, previous.offset, TOMBSTONE);
+            garbage += previous.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeRecord(String structureIdentifier, int pack, long offset, int length) throws IOException {
+        directoryChannel.write(createRecord(structureIdentifier, pack, offset, length));
+    }
+
+    private static ByteBuffer createRecord(String structureIdentifier, int pack, long offset, int length) {
+        byte[] id = structureIdentifier.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 + id.length + 16).order(ByteOrder.LITTLE_ENDIAN);
+        record.putShort((short) id.length);
+        record.put(id);
+        record.putInt(pack);
+        record.putLong(offset);
+        record.putInt(length);
+        return record.flip();
+    }
+
+    /**
+     * Rewrite all live entries into a new generation of pack files and drop all garbage. Entries are written in
+     * identifier order. The new generation is only used once it has been written completely, the previous generation is
+     * deleted afterwards.
+     */
+    void compact() {
+        lock.writeLock().lock();
+        try {
+            ensureWritable();
+            long start = System.nanoTime();
+            long before = getSize();
+            int next = generation + 1;
+
+            // write and sync the next generation, remnants of a failed attempt were removed when this archive became writable
+            try (PackedStructureArchive compacted = new PackedStructureArchive(basePath, packSizeLimit, next, true)) {
+                for (String structureIdentifier : directory.keySet().stream().sorted().collect(Collectors.toList())) {
+                    compacted.append(structureIdentifier, read(structureIdentifier));
+                }
+                compacted.force();
+            }
+
+            // switch in one atomic step
+            Path generationPath = basePath.resolve(GENERATION_FILE);
+            Path tmpPath = basePath.resolve(GENERATION_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(String.valueOf(next).getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(tmpPath, generationPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory();
+
+            // only now the previous generation can go
+            int previous = generation;
+            closeChannels();
+            for (Pack pack : packs) {
+                Files.delete(pack.path);
+            }
+            packs.clear();
+            Files.deleteIfExists(getDirectoryPath(previous));
+            open(next, true);
+
+            logger.info("Compacted structure archive from {} MB to {} MB in {} ms",
+                    before / 1024 / 1024,
+                    getSize() / 1024 / 1024,
+                    (System.nanoTime() - start) / 1000 / 1000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void force() throws IOException {
+        for (Pack pack : packs) {
+            pack.channel.force(true);
+        }
+        directoryChannel.force(true);
+    }
+
+    private void forceDirectory() {
+        // makes the rename durable, not supported on all platforms
+        try (FileChannel channel = FileChannel.open(basePath, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync {}", basePath, e);
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        if (directoryChannel != null) {
+            directoryChannel.close();
+        }
+        for (Pack pack : packs) {
+            pack.channel.close();
+            pack.mapped = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeChannels();
+            // releases the lock file
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package org.rcsb.strucmotif.io;
 
+import org.rcsb.strucmotif.domain.structure.AssemblyMembership;
 import org.rcsb.strucmotif.domain.structure.StructureInformation;
 
 import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * The state of the application consists of two lists of structure identifiers:
@@ -12,6 +11,8 @@ import java.util.Set;
  *     <li><b>known:</b> entries that have been processed (might become invalid if e.g. alpha carbon trace)</li>
  *     <li><b>dirty:</b> all identifiers that could cause a corrupted state (if update fails during inverted index writing) - useful to recover</li>
  * </ul>
+ * Additionally, a generation counter is incremented by every update operation, so that anything derived from indexed
+ * data (such as cached results) can tell whether it's outdated.
  *
  * This instance also does double duty and provides assembly information.
  */
@@ -19,9 +20,10 @@ public interface StateRepository {
     /**
      * Provides assembly information.
      * @param structureIdentifier the structure of interest
-     * @return a map with operator expressions as key and a collection of all corresponding assembly ids as value
+     * @return interned assembly information, allows to determine all assemblies that contain a set of operator
+     * expressions
      */
-    Map<String, Set<String>> selectAssemblyMap(String structureIdentifier);
+    AssemblyMembership selectAssemblyMembership(String structureIdentifier);
 
     /**
      * Returns all registered revisions.
@@ -59,4 +61,15 @@ public interface StateRepository {
      * @param removals a collection of ids
      */
     void deleteDirty(Collection<String> removals);
+
+    /**
+     * The current generation of indexed data.
+     * @return a number that changes whenever an update operation starts or finishes, 0 if there was none
+     */
+    long selectGeneration();
+
+    /**
+     * Increment the generation of indexed data.
+     */
+    void incrementGeneration();
 }
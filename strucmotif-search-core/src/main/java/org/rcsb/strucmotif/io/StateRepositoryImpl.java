@@ -2,6 +2,7 @@ package org.rcsb.strucmotif.io;
 
 import org.rcsb.strucmotif.config.MotifSearchConfig;
 import org.rcsb.strucmotif.domain.Pair;
+import org.rcsb.strucmotif.domain.structure.AssemblyMembership;
 import org.rcsb.strucmotif.domain.structure.Revision;
 import org.rcsb.strucmotif.domain.structure.StructureInformation;
 import org.springframework.stereotype.Service;
@@ -12,11 +13,10 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -31,8 +31,9 @@ public class StateRepositoryImpl implements StateRepository {
     private static final String ASSEMBLY_INFORMATION_DELIMITER = ";";
     private final Path knownPath;
     private final Path dirtyPath;
-    // maps from struct_oper_id to all assemblies this transformation is part of
-    private final Map<String, Map<String, Set<String>>> reverseAssemblyInformation;
+    private final Path generationPath;
+    // maps from structure identifier to interned assembly information
+    private final Map<String, AssemblyMembership> assemblyMemberships;
 
     /**
      * Construct a state repository instance.
@@ -42,31 +43,19 @@ public class StateRepositoryImpl implements StateRepository {
         Path rootPath = Paths.get(motifSearchConfig.getRootPath());
         this.knownPath = rootPath.resolve(MotifSearchConfig.STATE_KNOWN_LIST);
         this.dirtyPath = rootPath.resolve(MotifSearchConfig.STATE_DIRTY_LIST);
-        this.reverseAssemblyInformation = loadAssemblyInformation();
+        this.generationPath = rootPath.resolve(MotifSearchConfig.STATE_GENERATION);
+        this.assemblyMemberships = loadAssemblyInformation();
     }
 
-    private Map<String, Map<String, Set<String>>> loadAssemblyInformation() {
+    private Map<String, AssemblyMembership> loadAssemblyInformation() {
         Collection<StructureInformation> data = selectKnown();
         return data.stream()
-                .map(s -> {
-                    String structureIdentifier = s.getStructureIdentifier();
-                    Map<String, Set<String>> assemblyInformation = s.getAssemblyInformation();
-                    Map<String, Set<String>> reversed = new HashMap<>();
-                    for (Map.Entry<String, Set<String>> partial : assemblyInformation.entrySet()) {
-                        String assemblyId = partial.getKey();
-                        for (String structOperId : partial.getValue()) {
-                            Set<String> mappedAssemblyIds = reversed.computeIfAbsent(structOperId, e -> new HashSet<>());
-                            mappedAssemblyIds.add(assemblyId);
-                        }
-                    }
-                    return new Pair<>(structureIdentifier, reversed);
-                })
-                .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond));
+                .collect(Collectors.toMap(StructureInformation::getStructureIdentifier, s -> new AssemblyMembership(s.getAssemblyInformation())));
     }
 
     @Override
-    public Map<String, Set<String>> selectAssemblyMap(String structureIdentifier) {
-        return reverseAssemblyInformation.get(structureIdentifier);
+    public AssemblyMembership selectAssemblyMembership(String structureIdentifier) {
+        return assemblyMemberships.getOrDefault(structureIdentifier, AssemblyMembership.EMPTY);
     }
 
     @Override
@@ -190,4 +179,25 @@ public class StateRepositoryImpl implements StateRepository {
             throw new UncheckedIOException(e);
         }
     }
+
+    @Override
+    public long selectGeneration() {
+        try {
+            return Long.parseLong(Files.readString(generationPath).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized void incrementGeneration() {
+        try {
+            // write to temporary file first so that readers never see a partially written value
+            Path tmpPath = generationPath.resolveSibling(MotifSearchConfig.STATE_GENERATION + ".tmp");
+            Files.writeString(tmpPath, (selectGeneration() + 1) + "\n");
+            Files.move(tmpPath, generationPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package org.rcsb.strucmotif.io;
+
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A cache of decoded structures that is bounded by the (estimated) number of bytes they occupy. The least recently
+ * used structures are evicted first. Concurrent requests of a missing structure are coalesced: only one caller loads
+ * it, all others wait for the result.
+ */
+class StructureCache {
+    private final long capacity;
+    // access-ordered, guarded by itself
+    private final LinkedHashMap<String, Structure> structures;
+    private final Map<String, CompletableFuture<Structure>> loading;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Construct a cache.
+     * @param capacity maximum number of bytes to keep
+     */
+    StructureCache(long capacity) {
+        this.capacity = capacity;
+        this.structures = new LinkedHashMap<>(16, 0.75f, true);
+        this.loading = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieve a structure, loading it if it isn't cached yet.
+     * @param structureIdentifier the identifier
+     * @param loader how to load a missing structure
+     * @return the structure
+     */
+    Structure get(String structureIdentifier, Function<String, Structure> loader) {
+        synchronized (structures) {
+            Structure structure = structures.get(structureIdentifier);
+            if (structure != null) {
+                hits++;
+                return structure;
+            }
+            misses++;
+        }
+
+        CompletableFuture<Structure> future = new CompletableFuture<>();
+        CompletableFuture<Structure> existing = loading.putIfAbsent(structureIdentifier, future);
+        if (existing != null) {
+            // someone else is loading this structure already
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        try {
+            // a concurrent load may have finished in the meantime
+            Structure structure;
+            synchronized (structures) {
+                structure = structures.get(structureIdentifier);
+            }
+            if (structure == null) {
+                structure = loader.apply(structureIdentifier);
+                put(structureIdentifier, structure);
+            }
+            future.complete(structure);
+            return structure;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(structureIdentifier);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+
+    private void put(String structureIdentifier, Structure structure) {
+        long footprint = estimateFootprint(structure);
+        // never cache structures that would evict everything else
+        if (footprint > capacity) {
+            return;
+        }
+
+        synchronized (structures) {
+            Structure previous = structures.put(structureIdentifier, structure);
+            if (previous != null) {
+                size -= estimateFootprint(previous);
+            }
+            size += footprint;
+
+            Iterator<Structure> iterator = structures.values().iterator();
+            while (size > capacity && iterator.hasNext()) {
+                size -= estimateFootprint(iterator.next());
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Drop a structure from the cache.
+     * @param structureIdentifier the identifier
+     */
+    void invalidate(String structureIdentifier) {
+        synchronized (structures) {
+            Structure previous = structures.remove(structureIdentifier);
+            if (previous != null) {
+                size -= estimateFootprint(previous);
+            }
+        }
+    }
+
+    /**
+     * Approximate number of bytes occupied by a structure.
+     * @param structure the structure
+     * @return bytes
+     */
+    static long estimateFootprint(Structure structure) {
+        return structure.getFootprint().getTotal();
+    }
+
+    /**
+     * Report current statistics.
+     * @return a snapshot of counters
+     */
+    StructureCacheStatistics getStatistics() {
+        synchronized (structures) {
+            return new StructureCacheStatistics(hits, misses, evictions, structures.size(), size, capacity);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.rcsb.strucmotif.io;
+
+/**
+ * Counters of the bounded structure cache.
+ */
+public class StructureCacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long size;
+    private final long capacity;
+
+    /**
+     * Construct statistics.
+     * @param hits number of requests served from cache
+     * @param misses number of requests that had to load data
+     * @param evictions number of structures dropped to honor the capacity
+     * @param entries number of cached structures
+     * @param size estimated bytes occupied by cached structures
+     * @param capacity maximum number of bytes
+     */
+    public StructureCacheStatistics(long hits, long misses, long evictions, int entries, long size, long capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Number of requests served from cache.
+     * @return a long
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of requests that had to load data (or waited for a concurrent load).
+     * @return a long
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Fraction of requests served from cache.
+     * @return a double between 0 and 1
+     */
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : hits / (double) requests;
+    }
+
+    /**
+     * Number of structures dropped to honor the capacity.
+     * @return a long
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Number of cached structures.
+     * @return an int
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Estimated bytes occupied by cached structures.
+     * @return a long
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Maximum number of bytes.
+     * @return a long
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "StructureCacheStatistics{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", hitRatio=" + getHitRatio() +
+                ", evictions=" + evictions +
+                ", entries=" + entries +
+                ", size=" + size +
+                ", capacity=" + capacity +
+                '}';
+    }
+}
@@ -0,0 +1,356 @@
+package org.rcsb.strucmotif.io;
+
+import org.rcsb.strucmotif.domain.Transformation;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary representation of renumbered structures. The layout mirrors the fields of {@link Structure}, all values are
+ * little-endian, Strings are stored as length-prefixed UTF-8:
+ * <pre>
+ * header:  magic (int), version (short), flags (short), residue count (int), atom count (int), meta length (int)
+ * meta:    structure identifier, chains, transformations, assemblies, label_seq_id (int[]), residue offsets (int[]),
+ *          residue types (byte[])
+ * atoms:   label_atom_id (byte[]), x (short[]), y (short[]), z (short[])
+ * </pre>
+ * Residue offsets point into the atom blocks, which allows to decode the atoms of selected residues without touching
+ * the rest of the file. Complete structures are decoded from a single buffer (e.g. a mapped file) by bulk copies of
+ * the primitive blocks.
+ * <p>
+ * Readers reject files with unknown magic number or version, the flags field is reserved for compatible extensions.
+ * Any change to the layout must increment {@link #VERSION}.
+ */
+final class StructureCodec {
+    static final int MAGIC = 0x53524d53; // 'SMRS'
+    static final short VERSION = 1;
+    static final int HEADER_LENGTH = 20;
+
+    private StructureCodec() {
+        // deny instantiation
+    }
+
+    /**
+     * Encode a structure.
+     * @param structure the structure to encode
+     * @return a little-endian buffer, positioned at 0
+     */
+    static ByteBuffer encode(Structure structure) {
+        String structureIdentifier = structure.getStructureIdentifier();
+        Map<String, int[]> chainOffsets = structure.getChainOffsets();
+        Map<String, Transformation> transformations = structure.getTransformations();
+        Map<String, List<String>> assemblies = structure.getAssemblies();
+        int residueCount = structure.getResidueCount();
+        int atomCount = structure.getAtomCount();
+
+        int metaLength = sizeOf(structureIdentifier) + 12 + 9 * residueCount;
+        for (String labelAsymId : chainOffsets.keySet()) {
+            metaLength += sizeOf(labelAsymId) + 8;
+        }
+        for (String structOperId : transformations.keySet()) {
+            metaLength += sizeOf(structOperId) + 48;
+        }
+        for (Map.Entry<String, List<String>> assembly : assemblies.entrySet()) {
+            metaLength += sizeOf(assembly.getKey()) + 4;
+            for (String expression : assembly.getValue()) {
+                metaLength += sizeOf(expression);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + metaLength + 7 * atomCount).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(residueCount);
+        buffer.putInt(atomCount);
+        buffer.putInt(metaLength);
+
+        putString(buffer, structureIdentifier);
+        buffer.putInt(chainOffsets.size());
+        for (Map.Entry<String, int[]> chain : chainOffsets.entrySet()) {
+            putString(buffer, chain.getKey());
+            buffer.putInt(chain.getValue()[0]);
+            buffer.putInt(chain.getValue()[1]);
+        }
+        buffer.putInt(transformations.size());
+        for (Map.Entry<String, Transformation> transformation : transformations.entrySet()) {
+            putString(buffer, transformation.getKey());
+            float[][] matrix = transformation.getValue().getTransformationMatrix();
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 4; j++) {
+                    buffer.putFloat(matrix[i][j]);
+                }
+            }
+        }
+        buffer.putInt(assemblies.size());
+        for (Map.Entry<String, List<String>> assembly : assemblies.entrySet()) {
+            putString(buffer, assembly.getKey());
+            buffer.putInt(assembly.getValue().size());
+            for (String expression : assembly.getValue()) {
+                putString(buffer, expression);
+            }
+        }
+
+        buffer.asIntBuffer().put(structure.getLabelSeqIds());
+        buffer.position(buffer.position() + 4 * residueCount);
+        buffer.asIntBuffer().put(structure.getResidueOffsets());
+        buffer.position(buffer.position() + 4 * residueCount);
+        buffer.put(structure.getResidueTypes());
+
+        buffer.put(structure.getLabelAtomIds());
+        putShorts(buffer, structure.getX());
+        putShorts(buffer, structure.getY());
+        putShorts(buffer, structure.getZ());
+
+        return buffer.flip();
+    }
+
+    /**
+     * Decode a structure entirely.
+     * @param buffer the source, positioned at the start of the header
+     * @return the structure
+     * @throws IOException if the header is invalid
+     */
+    static Structure decode(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int[] header = readHeader(buffer);
+        int atomCount = header[1];
+        Meta meta = readMeta(buffer, header[0]);
+
+        byte[] labelAtomId = new byte[atomCount];
+        buffer.get(labelAtomId);
+        short[] x = getShorts(buffer, atomCount);
+        short[] y = getShorts(buffer, atomCount);
+        short[] z = getShorts(buffer, atomCount);
+        return meta.toStructure(meta.residueOffsets, labelAtomId, x, y, z);
+    }
+
+    /**
+     * Decode a structure but only manifest atoms of selected residues. All residue-level information (chains, sequence
+     * positions, residue types) is complete, residues that were not requested have no atoms.
+     * @param channel the source
+     * @param position the offset of the header in this channel
+     * @param residueIndices residue indices to decode
+     * @return the structure
+     * @throws IOException if reading fails or the header is invalid
+     */
+    static Structure decode(FileChannel channel, long position, int[] residueIndices) throws IOException {
+        return decode((offset, length) -> read(channel, position + offset, length), residueIndices);
+    }
+
+    /**
+     * Decode a structure but only manifest atoms of selected residues. Data is copied from the buffer (e.g. a slice of
+     * a mapped file) without any further I/O.
+     * @param buffer the source, positioned at the start of the header
+     * @param residueIndices residue indices to decode
+     * @return the structure
+     * @throws IOException if the header is invalid
+     */
+    static Structure decode(ByteBuffer buffer, int[] residueIndices) throws IOException {
+        int base = buffer.position();
+        return decode((offset, length) -> {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(base + (int) offset);
+            slice.limit(base + (int) offset + length);
+            return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }, residueIndices);
+    }
+
+    /**
+     * Provides a little-endian view on a range of an encoded structure.
+     */
+    @FunctionalInterface
+    private interface RangeReader {
+        ByteBuffer read(long offset, int length) throws IOException;
+    }
+
+    private static Structure decode(RangeReader reader, int[] residueIndices) throws IOException {
+        int[] header = readHeader(reader.read(0, HEADER_LENGTH));
+        int residueCount = header[0];
+        int atomCount = header[1];
+        int metaLength = header[2];
+        Meta meta = readMeta(reader.read(HEADER_LENGTH, metaLength), residueCount);
+        long atomPosition = HEADER_LENGTH + metaLength;
+
+        int[] selected = Arrays.stream(residueIndices)
+                .filter(i -> i >= 0 && i < residueCount)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        // offsets into the compacted atom arrays: residues that were not requested span 0 atoms
+        int[] residueOffsets = new int[residueCount];
+        int loadedAtomCount = 0;
+        int pointer = 0;
+        for (int i = 0; i < residueCount; i++) {
+            residueOffsets[i] = loadedAtomCount;
+            if (pointer < selected.length && selected[pointer] == i) {
+                loadedAtomCount += meta.getAtomEnd(i, atomCount) - meta.residueOffsets[i];
+                pointer++;
+            }
+        }
+
+        byte[] labelAtomId = new byte[loadedAtomCount];
+        short[] x = new short[loadedAtomCount];
+        short[] y = new short[loadedAtomCount];
+        short[] z = new short[loadedAtomCount];
+
+        // read consecutive residues at once
+        int i = 0;
+        while (i < selected.length) {
+            int j = i;
+            while (j + 1 < selected.length && selected[j + 1] == selected[j] + 1) {
+                j++;
+            }
+
+            int atomStart = meta.residueOffsets[selected[i]];
+            int length = meta.getAtomEnd(selected[j], atomCount) - atomStart;
+            int destination = residueOffsets[selected[i]];
+            reader.read(atomPosition + atomStart, length).get(labelAtomId, destination, length);
+            reader.read(atomPosition + atomCount + 2L * atomStart, 2 * length).asShortBuffer().get(x, destination, length);
+            reader.read(atomPosition + 3L * atomCount + 2L * atomStart, 2 * length).asShortBuffer().get(y, destination, length);
+            reader.read(atomPosition + 5L * atomCount + 2L * atomStart, 2 * length).asShortBuffer().get(z, destination, length);
+            i = j + 1;
+        }
+
+        return meta.toStructure(residueOffsets, labelAtomId, x, y, z);
+    }
+
+    private static int[] readHeader(ByteBuffer buffer) throws IOException {
+        int magic = buffer.getInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a renumbered structure file - magic number mismatch");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported renumbered structure version " + version + " - expected " + VERSION);
+        }
+        // flags: reserved
+        buffer.getShort();
+        return new int[] { buffer.getInt(), buffer.getInt(), buffer.getInt() };
+    }
+
+    private static Meta readMeta(ByteBuffer buffer, int residueCount) {
+        String structureIdentifier = getString(buffer);
+
+        int chainCount = buffer.getInt();
+        Map<String, int[]> chainOffsets = new LinkedHashMap<>();
+        for (int i = 0; i < chainCount; i++) {
+            chainOffsets.put(getString(buffer), new int[] { buffer.getInt(), buffer.getInt() });
+        }
+
+        int transformationCount = buffer.getInt();
+        Map<String, Transformation> transformations = new HashMap<>();
+        for (int i = 0; i < transformationCount; i++) {
+            String structOperId = getString(buffer);
+            float[][] matrix = new float[4][4];
+            for (int j = 0; j < 3; j++) {
+                for (int k = 0; k < 4; k++) {
+                    matrix[j][k] = buffer.getFloat();
+                }
+            }
+            matrix[3][3] = 1;
+            transformations.put(structOperId, Transformation.of(matrix));
+        }
+
+        int assemblyCount = buffer.getInt();
+        Map<String, List<String>> assemblies = new LinkedHashMap<>();
+        for (int i = 0; i < assemblyCount; i++) {
+            String assemblyId = getString(buffer);
+            int expressionCount = buffer.getInt();
+            List<String> expressions = new ArrayList<>(expressionCount);
+            for (int j = 0; j < expressionCount; j++) {
+                expressions.add(getString(buffer));
+            }
+            assemblies.put(assemblyId, expressions);
+        }
+
+        int[] labelSeqId = new int[residueCount];
+        buffer.asIntBuffer().get(labelSeqId);
+        buffer.position(buffer.position() + 4 * residueCount);
+        int[] residueOffsets = new int[residueCount];
+        buffer.asIntBuffer().get(residueOffsets);
+        buffer.position(buffer.position() + 4 * residueCount);
+        byte[] residueTypes = new byte[residueCount];
+        buffer.get(residueTypes);
+
+        return new Meta(structureIdentifier, chainOffsets, labelSeqId, residueOffsets, residueTypes, assemblies, transformations);
+    }
+
+    private static class Meta {
+        private final String structureIdentifier;
+        private final Map<String, int[]> chainOffsets;
+        private final int[] labelSeqId;
+        private final int[] residueOffsets;
+        private final byte[] residueTypes;
+        private final Map<String, List<String>> assemblies;
+        private final Map<String, Transformation> transformations;
+
+        private Meta(String structureIdentifier, Map<String, int[]> chainOffsets, int[] labelSeqId, int[] residueOffsets, byte[] residueTypes, Map<String, List<String>> assemblies, Map<String, Transformation> transformations) {
+            this.structureIdentifier = structureIdentifier;
+            this.chainOffsets = chainOffsets;
+            this.labelSeqId = labelSeqId;
+            this.residueOffsets = residueOffsets;
+            this.residueTypes = residueTypes;
+            this.assemblies = assemblies;
+            this.transformations = transformations;
+        }
+
+        private int getAtomEnd(int residueIndex, int atomCount) {
+            return residueIndex + 1 == residueOffsets.length ? atomCount : residueOffsets[residueIndex + 1];
+        }
+
+        private Structure toStructure(int[] residueOffsets, byte[] labelAtomId, short[] x, short[] y, short[] z) {
+            return new Structure(structureIdentifier, chainOffsets, labelSeqId, residueOffsets, residueTypes, labelAtomId, x, y, z, assemblies, transformations);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("Renumbered structure file is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int sizeOf(String s) {
+        return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putShorts(ByteBuffer buffer, short[] values) {
+        buffer.asShortBuffer().put(values);
+        buffer.position(buffer.position() + 2 * values.length);
+    }
+
+    private static short[] getShorts(ByteBuffer buffer, int length) {
+        short[] out = new short[length];
+        buffer.asShortBuffer().get(out);
+        buffer.position(buffer.position() + 2 * length);
+        return out;
+    }
+}
@@ -30,6 +30,16 @@ public interface StructureDataProvider {
      */
     Structure readRenumbered(String structureIdentifier);
 
+    /**
+     * Read selected residues of a renumbered structure. All residue-level information is present, but atoms are only
+     * guaranteed to be present for the requested residues. Use this during scoring, where only few residues of a
+     * structure are needed.
+     * @param structureIdentifier the structure to read
+     * @param residueIndices the indices of all residues to manifest
+     * @return the corresponding {@link Structure}
+     */
+    Structure readRenumbered(String structureIdentifier, int[] residueIndices);
+
     /**
      * Read a selected range from an original structure.
      * @param structureIdentifier the structure to read
@@ -51,16 +61,43 @@ public interface StructureDataProvider {
      */
     void writeRenumbered(String structureIdentifier, MmCifFile mmCifFile);
 
+    /**
+     * Convert a renumbered structure from the legacy BinaryCIF representation to the binary format.
+     * @param structureIdentifier the structure identifier to migrate
+     * @return true if a legacy file was converted, false if there was nothing to do
+     */
+    boolean migrateRenumbered(String structureIdentifier);
+
     /**
      * Drop information on a renumbered structure.
      * @param structureIdentifier the structure identifier to remove
      */
     void deleteRenumbered(String structureIdentifier);
 
+    /**
+     * Reclaim space occupied by removed or replaced renumbered structures. Only has an effect if renumbered structures
+     * are stored in pack files.
+     */
+    void compactRenumbered();
+
+    /**
+     * Report usage of the bounded structure cache. All counters are 0 unless the <code>LRU</code> in-memory strategy is
+     * active.
+     * @return current statistics
+     */
+    StructureCacheStatistics getStructureCacheStatistics();
+
     /**
      * Acquire the input stream of an original structure.
      * @param structureIdentifier the structure identifier to read
      * @return the corresponding input stream
      */
     InputStream getOriginalInputStream(String structureIdentifier);
+
+    /**
+     * Acquire the input stream of a local copy of an original structure. Never downloads anything.
+     * @param structureIdentifier the structure identifier to read
+     * @return the corresponding input stream or <code>null</code> if there is no local copy
+     */
+    InputStream getLocalOriginalInputStream(String structureIdentifier);
 }
@@ -5,24 +5,32 @@ import org.rcsb.strucmotif.config.InMemoryStrategy;
 import org.rcsb.strucmotif.config.MotifSearchConfig;
 import org.rcsb.strucmotif.domain.Pair;
 import org.rcsb.strucmotif.domain.structure.Structure;
+import org.rcsb.strucmotif.domain.structure.StructureFootprint;
 import org.rcsb.strucmotif.math.Partition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * Default implementation of a structure data provider.
@@ -30,16 +38,29 @@ import java.util.stream.Collectors;
 @Service
 public class StructureDataProviderImpl implements StructureDataProvider {
     private static final Logger logger = LoggerFactory.getLogger(StructureDataProviderImpl.class);
+    // start a new pack file once the current one exceeds 1 GB
+    private static final long PACK_SIZE_LIMIT = 1L << 30;
+    // compact pack files once more than 20% of their content is garbage
+    private static final double COMPACTION_THRESHOLD = 0.2;
+    // map renumbered files of at least 64 KB, smaller ones are cheaper to read into the heap
+    private static final long MAP_THRESHOLD = 1L << 16;
     private final StructureReader structureReader;
     private final StructureWriter renumberedStructureWriter;
     private final MotifSearchConfig motifSearchConfig;
     private final String dataSource;
     private final Path renumberedPath;
-    private final String extension;
+    private final Path snapshotPath;
+    private final Path knownPath;
+    // legacy BinaryCIF files are still readable, new data is always written using the StructureCodec
+    private final String legacyExtension;
+    private final boolean packed;
+    private volatile PackedStructureArchive archive;
     private boolean paths;
     private boolean caching;
     // keys must be upper-case
     private Map<String, Structure> structureCache;
+    // bounded cache, only used by LRU strategy
+    private StructureCache lruCache;
 
     /**
      * Construct a structure provider.
@@ -56,13 +77,17 @@ public class StructureDataProviderImpl implements StructureDataProvider {
         this.motifSearchConfig = motifSearchConfig;
         this.dataSource = motifSearchConfig.getDataSource();
         this.renumberedPath = Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.RENUMBERED_DIRECTORY);
-        this.extension = motifSearchConfig.isRenumberedGzip() ? ".bcif.gz" : ".bcif";
+        this.snapshotPath = Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.RENUMBERED_SNAPSHOT);
+        this.knownPath = Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.STATE_KNOWN_LIST);
+        this.legacyExtension = motifSearchConfig.isRenumberedGzip() ? ".bcif.gz" : ".bcif";
+        this.packed = motifSearchConfig.isRenumberedPacked();
 
-        logger.info("BinaryCIF data source is {} - CIF fetch URL: {} - precision: {} - gzipping: {}",
+        logger.info("BinaryCIF data source is {} - CIF fetch URL: {} - precision: {} - gzipping: {} - packed: {}",
                 motifSearchConfig.getDataSource(),
                 motifSearchConfig.getCifFetchUrl(),
                 motifSearchConfig.getRenumberedCoordinatePrecision(),
-                motifSearchConfig.isRenumberedGzip());
+                motifSearchConfig.isRenumberedGzip(),
+                packed);
 
         this.paths = false;
         this.caching = false;
@@ -76,6 +101,25 @@ public class StructureDataProviderImpl implements StructureDataProvider {
         }
     }
 
+    private PackedStructureArchive getArchive() {
+        // opened lazily: creates files below the root path
+        PackedStructureArchive archive = this.archive;
+        if (archive == null) {
+            synchronized (this) {
+                archive = this.archive;
+                if (archive == null) {
+                    try {
+                        archive = new PackedStructureArchive(renumberedPath, PACK_SIZE_LIMIT);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    this.archive = archive;
+                }
+            }
+        }
+        return archive;
+    }
+
     private String prepareUri(String raw, String structureIdentifier) {
         String pdbId = structureIdentifier.toLowerCase();
         String PDBID = pdbId.toUpperCase();
@@ -100,15 +144,11 @@ public class StructureDataProviderImpl implements StructureDataProvider {
     }
 
     private Path getRenumberedStructurePath(String structureIdentifier) {
-        return renumberedPath.resolve(structureIdentifier + extension);
+        return renumberedPath.resolve(structureIdentifier + MotifSearchConfig.RENUMBERED_EXTENSION);
     }
 
-    private InputStream getRenumberedInputStream(String structureIdentifier) {
-        try {
-            return Files.newInputStream(getRenumberedStructurePath(structureIdentifier));
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+    private Path getLegacyRenumberedStructurePath(String structureIdentifier) {
+        return renumberedPath.resolve(structureIdentifier + legacyExtension);
     }
 
     @Override
@@ -119,17 +159,52 @@ public class StructureDataProviderImpl implements StructureDataProvider {
             return;
         }
 
+        if (strategy == InMemoryStrategy.LRU) {
+            long capacity = motifSearchConfig.getInMemoryCacheSize() * 1024L * 1024L;
+            logger.info("Recently used structure data will be kept in memory - capacity: {} MB", motifSearchConfig.getInMemoryCacheSize());
+            this.lruCache = new StructureCache(capacity);
+            return;
+        }
+
         if (strategy == InMemoryStrategy.HEAP) {
             logger.info("Structure data will be kept in memory - start loading...");
 
             this.caching = true;
+            long checksum = computeKnownChecksum();
+            if (motifSearchConfig.isInMemorySnapshot()) {
+                long start = System.nanoTime();
+                Map<String, Structure> snapshot = StructureSnapshot.read(snapshotPath, checksum);
+                if (snapshot != null) {
+                    this.structureCache = snapshot;
+                    logger.info("Restored {} structures from snapshot in {} ms",
+                            structureCache.size(),
+                            (System.nanoTime() - start) / 1000 / 1000);
+                    logFootprint();
+                    return;
+                }
+            }
+
             List<Path> paths = Files.walk(renumberedPath)
                     .parallel()
                     .filter(path -> !Files.isDirectory(path))
+                    .filter(path -> {
+                        String fileName = path.toFile().getName();
+                        return fileName.endsWith(MotifSearchConfig.RENUMBERED_EXTENSION) || fileName.endsWith(legacyExtension);
+                    })
                     .collect(Collectors.toList());
             long start = System.nanoTime();
             this.structureCache = new HashMap<>();
 
+            if (packed) {
+                // decoding from mapped pack files is cheap, no need to partition
+                PackedStructureArchive archive = getArchive();
+                List<String> structureIdentifiers = new ArrayList<>(archive.getStructureIdentifiers());
+                Map<String, Structure> buffer = structureIdentifiers.parallelStream()
+                        .collect(Collectors.toMap(id -> id, id -> readPacked(id, null)));
+                this.structureCache.putAll(buffer);
+                logger.info("Loaded {} structures from pack files", buffer.size());
+            }
+
             Partition<Path> partitions = new Partition<>(paths, motifSearchConfig.getUpdateChunkSize());
             logger.info("Formed {} partitions of {} structures",
                     partitions.size(),
@@ -144,9 +219,11 @@ public class StructureDataProviderImpl implements StructureDataProvider {
                 // this will run on strucmotif-instances only: let's ignore thread-parameter
                 Map<String, Structure> buffer = partition.parallelStream()
                         .map(this::loadRenumberedStructure)
-                        .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond));
+                        // a structure may be present in both formats, both files describe the same data
+                        .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond, (s1, s2) -> s1));
 
-                this.structureCache.putAll(buffer);
+                // pack files take precedence over single files
+                buffer.forEach(this.structureCache::putIfAbsent);
             }
 
             long time = (System.nanoTime() - start) / 1000 / 1000 / 1000;
@@ -156,13 +233,51 @@ public class StructureDataProviderImpl implements StructureDataProvider {
                     .sum();
 
             logger.info("Done caching structure data in {} seconds - {} atoms in {} structures held in memory", time, atoms, structureCache.size());
+            logFootprint();
+
+            if (motifSearchConfig.isInMemorySnapshot()) {
+                start = System.nanoTime();
+                try {
+                    StructureSnapshot.write(snapshotPath, checksum, structureCache);
+                    logger.info("Wrote snapshot of structure data in {} ms", (System.nanoTime() - start) / 1000 / 1000);
+                } catch (UncheckedIOException e) {
+                    // the snapshot only speeds up the next start, all structures are loaded already
+                    logger.warn("Could not write snapshot of structure data to {}", snapshotPath, e);
+                }
+            }
         }
     }
 
+    private void logFootprint() {
+        StructureFootprint footprint = structureCache.values()
+                .stream()
+                .map(Structure::getFootprint)
+                .reduce(StructureFootprint.EMPTY, StructureFootprint::add);
+        logger.info("Estimated heap footprint of structure data: {}", footprint);
+    }
+
+    /**
+     * The snapshot is valid as long as the list of known structures is unchanged, every update operation modifies it.
+     * @return a checksum of the known list
+     */
+    private long computeKnownChecksum() throws IOException {
+        CRC32 crc32 = new CRC32();
+        if (Files.exists(knownPath)) {
+            crc32.update(Files.readAllBytes(knownPath));
+        }
+        return crc32.getValue();
+    }
+
     private Pair<String, Structure> loadRenumberedStructure(Path path) {
         try {
-            String pdbId = path.toFile().getName().split("\\.")[0];
-            Structure structure = readFromInputStream(Files.newInputStream(path));
+            String fileName = path.toFile().getName();
+            String pdbId = fileName.split("\\.")[0];
+            Structure structure;
+            if (fileName.endsWith(MotifSearchConfig.RENUMBERED_EXTENSION)) {
+                structure = decodeRenumbered(path);
+            } else {
+                structure = readFromInputStream(Files.newInputStream(path));
+            }
             return new Pair<>(pdbId, structure);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -171,13 +286,26 @@ public class StructureDataProviderImpl implements StructureDataProvider {
 
     @Override
     public InputStream getOriginalInputStream(String structureIdentifier) {
+        InputStream inputStream = getLocalOriginalInputStream(structureIdentifier);
+        if (inputStream != null) {
+            return inputStream;
+        }
+
+        try {
+            return getCifFetchUrl(structureIdentifier).openStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream getLocalOriginalInputStream(String structureIdentifier) {
         try {
             Path originalPath = getOriginalStructurePath(structureIdentifier);
             if (Files.exists(originalPath)) {
                 return Files.newInputStream(originalPath);
-            } else {
-                return getCifFetchUrl(structureIdentifier).openStream();
             }
+            return null;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -193,7 +321,94 @@ public class StructureDataProviderImpl implements StructureDataProvider {
         if (caching) {
             return structureCache.get(structureIdentifier);
         }
-        return readFromInputStream(getRenumberedInputStream(structureIdentifier));
+
+        if (lruCache != null) {
+            return lruCache.get(structureIdentifier, this::readRenumberedUncached);
+        }
+
+        return readRenumberedUncached(structureIdentifier);
+    }
+
+    private Structure readRenumberedUncached(String structureIdentifier) {
+        if (packed) {
+            Structure structure = readPacked(structureIdentifier, null);
+            if (structure != null) {
+                return structure;
+            }
+        }
+
+        try {
+            Path path = getRenumberedStructurePath(structureIdentifier);
+            if (Files.exists(path)) {
+                return decodeRenumbered(path);
+            }
+            return readFromInputStream(Files.newInputStream(getLegacyRenumberedStructurePath(structureIdentifier)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Structure readPacked(String structureIdentifier, int[] residueIndices) {
+        ByteBuffer buffer = getArchive().read(structureIdentifier);
+        if (buffer == null) {
+            return null;
+        }
+
+        try {
+            return residueIndices == null ? StructureCodec.decode(buffer) : StructureCodec.decode(buffer, residueIndices);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Structure decodeRenumbered(Path path) throws IOException {
+        // single bulk read: decode primitive blocks directly from the whole file
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return StructureCodec.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+
+            // setting up and tearing down a mapping costs more than copying a small file
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of " + path);
+                }
+            }
+            return StructureCodec.decode(buffer.flip());
+        }
+    }
+
+    @Override
+    public Structure readRenumbered(String structureIdentifier, int[] residueIndices) {
+        if (caching) {
+            return structureCache.get(structureIdentifier);
+        }
+
+        // popular targets are worth decoding entirely once
+        if (lruCache != null) {
+            return lruCache.get(structureIdentifier, this::readRenumberedUncached);
+        }
+
+        if (packed) {
+            Structure structure = readPacked(structureIdentifier, residueIndices);
+            if (structure != null) {
+                return structure;
+            }
+        }
+
+        Path path = getRenumberedStructurePath(structureIdentifier);
+        if (!Files.exists(path)) {
+            // legacy files can only be read entirely
+            return readRenumbered(structureIdentifier);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return StructureCodec.decode(channel, 0, residueIndices);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
@@ -208,9 +423,8 @@ public class StructureDataProviderImpl implements StructureDataProvider {
             return readFromInputStream(Files.newInputStream(originalPath));
         } catch (IOException e1) {
             try {
-                Path renumberedPath = getRenumberedStructurePath(structureIdentifier);
-                return readFromInputStream(Files.newInputStream(renumberedPath));
-            } catch (IOException e2) {
+                return readRenumbered(structureIdentifier);
+            } catch (UncheckedIOException e2) {
                 try {
                     return readFromInputStream(getCifFetchUrl(structureIdentifier).openStream());
                 } catch (IOException e) {
@@ -222,20 +436,116 @@ public class StructureDataProviderImpl implements StructureDataProvider {
 
     @Override
     public void writeRenumbered(String structureIdentifier, MmCifFile mmCifFile) {
+        if (lruCache != null) {
+            lruCache.invalidate(structureIdentifier);
+        }
+
+        if (packed) {
+            Structure structure = renumberedStructureWriter.convert(mmCifFile);
+            if (structure != null) {
+                getArchive().append(structureIdentifier, StructureCodec.encode(structure));
+            }
+            // don't keep outdated single files around
+            deleteIfExists(getRenumberedStructurePath(structureIdentifier));
+            deleteIfExists(getLegacyRenumberedStructurePath(structureIdentifier));
+            return;
+        }
+
         if (!paths) {
             ensureRenumberedPathExists();
             this.paths = true;
         }
         renumberedStructureWriter.write(mmCifFile, getRenumberedStructurePath(structureIdentifier));
+        // don't keep outdated legacy data around
+        deleteIfExists(getLegacyRenumberedStructurePath(structureIdentifier));
     }
 
     @Override
-    public void deleteRenumbered(String structureIdentifier) {
+    public boolean migrateRenumbered(String structureIdentifier) {
+        if (packed) {
+            return migrateToArchive(structureIdentifier);
+        }
+
+        Path legacyPath = getLegacyRenumberedStructurePath(structureIdentifier);
+        if (!Files.exists(legacyPath)) {
+            return false;
+        }
+
+        if (!paths) {
+            ensureRenumberedPathExists();
+            this.paths = true;
+        }
+
         try {
-            Path renumberedPath = getRenumberedStructurePath(structureIdentifier);
-            if (Files.exists(renumberedPath)) {
-                Files.delete(getRenumberedStructurePath(structureIdentifier));
+            Structure structure = readFromInputStream(Files.newInputStream(legacyPath));
+            // write to temporary file first so that an interrupted migration never leaves a truncated file behind
+            Path path = getRenumberedStructurePath(structureIdentifier);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, StructureCodec.encode(structure).array());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(legacyPath);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean migrateToArchive(String structureIdentifier) {
+        try {
+            Path path = getRenumberedStructurePath(structureIdentifier);
+            if (Files.exists(path)) {
+                getArchive().append(structureIdentifier, ByteBuffer.wrap(Files.readAllBytes(path)));
+                deleteIfExists(getLegacyRenumberedStructurePath(structureIdentifier));
+                Files.delete(path);
+                return true;
             }
+
+            Path legacyPath = getLegacyRenumberedStructurePath(structureIdentifier);
+            if (Files.exists(legacyPath)) {
+                Structure structure = readFromInputStream(Files.newInputStream(legacyPath));
+                getArchive().append(structureIdentifier, StructureCodec.encode(structure));
+                Files.delete(legacyPath);
+                return true;
+            }
+
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteRenumbered(String structureIdentifier) {
+        if (lruCache != null) {
+            lruCache.invalidate(structureIdentifier);
+        }
+        if (packed) {
+            getArchive().delete(structureIdentifier);
+        }
+        deleteIfExists(getRenumberedStructurePath(structureIdentifier));
+        deleteIfExists(getLegacyRenumberedStructurePath(structureIdentifier));
+    }
+
+    @Override
+    public StructureCacheStatistics getStructureCacheStatistics() {
+        return lruCache != null ? lruCache.getStatistics() : new StructureCacheStatistics(0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void compactRenumbered() {
+        if (!packed) {
+            return;
+        }
+
+        PackedStructureArchive archive = getArchive();
+        if (archive.getGarbage() > COMPACTION_THRESHOLD * archive.getSize()) {
+            archive.compact();
+        }
+    }
+
+    private void deleteIfExists(Path path) {
+        try {
+            Files.deleteIfExists(path);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -3,7 +3,6 @@ package org.rcsb.strucmotif.io;
 import org.rcsb.cif.CifIO;
 import org.rcsb.cif.schema.StandardSchemata;
 import org.rcsb.cif.schema.mm.AtomSite;
-import org.rcsb.cif.schema.mm.MmCifBlock;
 import org.rcsb.cif.schema.mm.MmCifFile;
 import org.rcsb.cif.schema.mm.PdbxStructAssemblyGen;
 import org.rcsb.cif.schema.mm.PdbxStructOperList;
@@ -45,7 +44,6 @@ public class StructureReaderImpl implements StructureReader {
     static class StructureReaderState {
         // all relevant categories
         private final String structureIdentifier;
-        private final AtomSite atomSite;
         private final PdbxStructAssemblyGen pdbxStructAssemblyGen;
         private final PdbxStructOperList pdbxStructOperList;
 
@@ -69,21 +67,51 @@ public class StructureReaderImpl implements StructureReader {
          * Initialize a new reading operation.
          * @param mmCifFile data source in binary format
          */
-        private StructureReaderState(MmCifFile mmCifFile) {
-            MmCifBlock block = mmCifFile.getFirstBlock();
-            this.structureIdentifier = block.getBlockHeader();
-
-            this.atomSite = block.getAtomSite();
-            this.pdbxStructAssemblyGen = block.getPdbxStructAssemblyGen();
-            this.pdbxStructOperList = block.getPdbxStructOperList();
-
-            this.labelAtomId = convertLabelAtomId(atomSite.getLabelAtomId().getArray());
-            this.labelCompId = atomSite.getLabelCompId().getArray();
-            this.labelAsymId = atomSite.getLabelAsymId().getArray();
-            this.labelSeqId = atomSite.getLabelSeqId().getArray();
-            this.x = convertCoords(atomSite.getCartnX().getArray());
-            this.y = convertCoords(atomSite.getCartnY().getArray());
-            this.z = convertCoords(atomSite.getCartnZ().getArray());
+        StructureReaderState(MmCifFile mmCifFile) {
+            this(mmCifFile.getFirstBlock().getBlockHeader(),
+                    mmCifFile.getFirstBlock().getAtomSite(),
+                    mmCifFile.getFirstBlock().getPdbxStructAssemblyGen(),
+                    mmCifFile.getFirstBlock().getPdbxStructOperList());
+        }
+
+        private StructureReaderState(String structureIdentifier, AtomSite atomSite, PdbxStructAssemblyGen pdbxStructAssemblyGen, PdbxStructOperList pdbxStructOperList) {
+            this(structureIdentifier,
+                    convertLabelAtomId(atomSite.getLabelAtomId().getArray()),
+                    atomSite.getLabelCompId().getArray(),
+                    atomSite.getLabelAsymId().getArray(),
+                    atomSite.getLabelSeqId().getArray(),
+                    convertCoords(atomSite.getCartnX().getArray()),
+                    convertCoords(atomSite.getCartnY().getArray()),
+                    convertCoords(atomSite.getCartnZ().getArray()),
+                    pdbxStructAssemblyGen,
+                    pdbxStructOperList);
+        }
+
+        /**
+         * Initialize a new reading operation from already extracted atom data.
+         * @param structureIdentifier the identifier
+         * @param labelAtomId label_atom_id ordinals of all atoms
+         * @param labelCompId label_comp_id of all atoms
+         * @param labelAsymId label_asym_id of all atoms
+         * @param labelSeqId label_seq_id of all atoms
+         * @param x x coordinates of all atoms (scaled by 10)
+         * @param y y coordinates of all atoms (scaled by 10)
+         * @param z z coordinates of all atoms (scaled by 10)
+         * @param pdbxStructAssemblyGen assembly information
+         * @param pdbxStructOperList operator information
+         */
+        StructureReaderState(String structureIdentifier, byte[] labelAtomId, String[] labelCompId, String[] labelAsymId, int[] labelSeqId, short[] x, short[] y, short[] z, PdbxStructAssemblyGen pdbxStructAssemblyGen, PdbxStructOperList pdbxStructOperList) {
+            this.structureIdentifier = structureIdentifier;
+            this.pdbxStructAssemblyGen = pdbxStructAssemblyGen;
+            this.pdbxStructOperList = pdbxStructOperList;
+
+            this.labelAtomId = labelAtomId;
+            this.labelCompId = labelCompId;
+            this.labelAsymId = labelAsymId;
+            this.labelSeqId = labelSeqId;
+            this.x = x;
+            this.y = y;
+            this.z = z;
 
             this.lastLabelAsymId = null;
             this.lastLabelSeqId = -1;
@@ -93,7 +121,7 @@ public class StructureReaderImpl implements StructureReader {
             this.residueTypes = new ArrayList<>();
         }
 
-        private short[] convertCoords(double[] array) {
+        private static short[] convertCoords(double[] array) {
             short[] out = new short[array.length];
             for (int i = 0; i < out.length; i++) {
                 // TODO need underflow/overflow check here? 3j3q e.g. is in range of [0.0, 1100.0] and more than safe
@@ -102,7 +130,7 @@ public class StructureReaderImpl implements StructureReader {
             return out;
         }
 
-        private byte[] convertLabelAtomId(String[] array) {
+        private static byte[] convertLabelAtomId(String[] array) {
             byte[] out = new byte[array.length];
             for (int i = 0; i < out.length; i++) {
                 out[i] = (byte) LabelAtomId.ofLabelAtomId(array[i]).ordinal();
@@ -126,9 +154,9 @@ public class StructureReaderImpl implements StructureReader {
             return out;
         }
 
-        private Structure build() {
+        Structure build() {
             int residueIndex = 0;
-            for (int row = 0; row < atomSite.getRowCount(); row++) {
+            for (int row = 0; row < labelAtomId.length; row++) {
                 String labelAsymId = this.labelAsymId[row];
                 int labelSeqId = this.labelSeqId[row];
                 boolean chainChange = !labelAsymId.equals(lastLabelAsymId);
@@ -0,0 +1,223 @@
+package org.rcsb.strucmotif.io;
+
+import org.rcsb.strucmotif.domain.structure.Structure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A single file holding all structures of the HEAP cache. Structures are stored back-to-back in the layout of
+ * {@link StructureCodec}, followed by a directory of (identifier, offset, length) records. The header carries a
+ * checksum of the state the snapshot was created from, a snapshot with a different checksum is considered outdated.
+ * <p>
+ * Restoring maps the file in a few large segments and decodes structures in parallel.
+ */
+class StructureSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(StructureSnapshot.class);
+    private static final int MAGIC = 0x534d5353;
+    private static final short VERSION = 1;
+    // magic, version, flags, checksum, count, directory offset
+    private static final int HEADER_LENGTH = 28;
+    // map at most 1 GB at once
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private StructureSnapshot() {
+        // deny instantiation
+    }
+
+    /**
+     * Write a snapshot. Data is written to a temporary file first, an interrupted write never leaves a truncated
+     * snapshot behind. If writing fails, the temporary file is removed.
+     * @param path the destination
+     * @param checksum the checksum of the state these structures represent
+     * @param structures all structures by identifier
+     */
+    static void write(Path path, long checksum, Map<String, Structure> structures) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<String> structureIdentifiers = structures.keySet().stream().sorted().collect(Collectors.toList());
+        int count = structureIdentifiers.size();
+        long[] offsets = new long[count];
+        int[] lengths = new int[count];
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER_LENGTH;
+            channel.position(position);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer data = StructureCodec.encode(structures.get(structureIdentifiers.get(i)));
+                offsets[i] = position;
+                lengths[i] = data.remaining();
+                writeFully(channel, data);
+                position += lengths[i];
+            }
+
+            long directoryOffset = position;
+            int directoryLength = structureIdentifiers.stream()
+                    .mapToInt(id -> 2 + id.getBytes(StandardCharsets.UTF_8).length + 12)
+                    .sum();
+            ByteBuffer directory = ByteBuffer.allocate(directoryLength).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < count; i++) {
+                byte[] id = structureIdentifiers.get(i).getBytes(StandardCharsets.UTF_8);
+                directory.putShort((short) id.length);
+                directory.put(id);
+                directory.putLong(offsets[i]);
+                directory.putInt(lengths[i]);
+            }
+            writeFully(channel, directory.flip());
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) 0);
+            header.putLong(checksum);
+            header.putInt(count);
+            header.putLong(directoryOffset);
+            channel.position(0);
+            writeFully(channel, header.flip());
+            channel.force(false);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not remove snapshot {}", path, e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Restore a snapshot. A snapshot that can't be read is removed, it only speeds up the start and the structures can
+     * always be loaded from their renumbered files.
+     * @param path the source
+     * @param checksum the checksum of the current state
+     * @return all structures by identifier or <code>null</code> if there is no valid snapshot for this state
+     */
+    static Map<String, Structure> read(Path path, long checksum) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            return readSnapshot(path, checksum);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Removing corrupted snapshot {}", path, e);
+            deleteQuietly(path);
+            return null;
+        }
+    }
+
+    private static Map<String, Structure> readSnapshot(Path path, long checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                logger.warn("Ignoring truncated snapshot {}", path);
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                logger.warn("Ignoring snapshot {} of unknown format", path);
+                return null;
+            }
+            header.getShort();
+            if (header.getLong() != checksum) {
+                logger.info("Snapshot {} is outdated", path);
+                return null;
+            }
+            int count = header.getInt();
+            long directoryOffset = header.getLong();
+            if (count < 0 || directoryOffset < HEADER_LENGTH || directoryOffset > channel.size() || channel.size() - directoryOffset > Integer.MAX_VALUE) {
+                throw new IOException("Invalid directory of snapshot " + path);
+            }
+
+            ByteBuffer directory = ByteBuffer.allocate((int) (channel.size() - directoryOffset)).order(ByteOrder.LITTLE_ENDIAN);
+            while (directory.hasRemaining()) {
+                if (channel.read(directory, directoryOffset + directory.position()) < 0) {
+                    throw new IOException("Unexpected end of snapshot " + path);
+                }
+            }
+            directory.flip();
+
+            String[] structureIdentifiers = new String[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(directory.getShort())];
+                directory.get(id);
+                structureIdentifiers[i] = new String(id, StandardCharsets.UTF_8);
+                offsets[i] = directory.getLong();
+                lengths[i] = directory.getInt();
+            }
+
+            // records are contiguous: group them into segments that can be mapped at once
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            int[] segmentIndices = new int[count];
+            long[] segmentStarts = new long[count];
+            long segmentStart = HEADER_LENGTH;
+            long segmentEnd = HEADER_LENGTH;
+            for (int i = 0; i < count; i++) {
+                if (offsets[i] + lengths[i] - segmentStart > SEGMENT_SIZE) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+                    segmentStart = offsets[i];
+                }
+                segmentIndices[i] = segments.size();
+                segmentStarts[i] = segmentStart;
+                segmentEnd = offsets[i] + lengths[i];
+            }
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+
+            Structure[] structures = new Structure[count];
+            IntStream.range(0, count).parallel().forEach(i -> {
+                ByteBuffer buffer = segments.get(segmentIndices[i]).duplicate();
+                int position = (int) (offsets[i] - segmentStarts[i]);
+                buffer.position(position);
+                buffer.limit(position + lengths[i]);
+                try {
+                    structures[i] = StructureCodec.decode(buffer.slice());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            Map<String, Structure> out = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                out.put(structureIdentifiers[i], structures[i]);
+            }
+            return out;
+        }
+    }
+}
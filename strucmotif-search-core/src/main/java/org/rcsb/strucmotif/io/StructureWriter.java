@@ -1,6 +1,7 @@
 package org.rcsb.strucmotif.io;
 
 import org.rcsb.cif.schema.mm.MmCifFile;
+import org.rcsb.strucmotif.domain.structure.Structure;
 
 import java.nio.file.Path;
 
@@ -14,4 +15,11 @@ public interface StructureWriter {
      * @param destination where to write data
      */
     void write(MmCifFile source, Path destination);
+
+    /**
+     * Filter structure data without writing it anywhere.
+     * @param source a MmCifFile to process
+     * @return the filtered structure, <code>null</code> if no atoms remain
+     */
+    Structure convert(MmCifFile source);
 }
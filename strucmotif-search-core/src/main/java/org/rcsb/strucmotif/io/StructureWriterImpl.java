@@ -1,34 +1,25 @@
 package org.rcsb.strucmotif.io;
 
-import org.rcsb.cif.CifBuilder;
-import org.rcsb.cif.CifIO;
-import org.rcsb.cif.CifOptions;
-import org.rcsb.cif.model.CifFile;
-import org.rcsb.cif.model.FloatColumnBuilder;
-import org.rcsb.cif.model.IntColumnBuilder;
-import org.rcsb.cif.model.StrColumnBuilder;
 import org.rcsb.cif.model.ValueKind;
-import org.rcsb.cif.schema.StandardSchemata;
 import org.rcsb.cif.schema.mm.AtomSite;
 import org.rcsb.cif.schema.mm.MmCifBlock;
-import org.rcsb.cif.schema.mm.MmCifBlockBuilder;
-import org.rcsb.cif.schema.mm.MmCifCategoryBuilder;
 import org.rcsb.cif.schema.mm.MmCifFile;
-import org.rcsb.cif.schema.mm.MmCifFileBuilder;
 import org.rcsb.cif.schema.mm.PdbxStructAssemblyGen;
 import org.rcsb.cif.schema.mm.PdbxStructOperList;
+import org.rcsb.strucmotif.domain.structure.LabelAtomId;
 import org.rcsb.strucmotif.domain.structure.LabelSelection;
 import org.rcsb.strucmotif.domain.structure.PolymerType;
 import org.rcsb.strucmotif.domain.structure.ResidueType;
+import org.rcsb.strucmotif.domain.structure.Structure;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -42,6 +33,8 @@ import java.util.Set;
  *     <li>coordinates</li>
  *     <li>entry identifier and data used for assembly generation</li>
  * </ul>
+ * Data is collected directly into primitive arrays and written in the binary layout of {@link StructureCodec} without
+ * building an intermediate CIF file.
  * <p>This implementation ignores:
  * <ul>
  *     <li>models with number unequal to 1</li>
@@ -52,51 +45,41 @@ import java.util.Set;
  */
 @Service
 public class StructureWriterImpl implements StructureWriter {
-    private final CifOptions options;
+    @Override
+    public void write(MmCifFile source, Path destination) {
+        Structure structure = convert(source);
+        // skip empty files
+        if (structure == null) {
+            return;
+        }
 
-    /**
-     * Construct a writer.
-     */
-    public StructureWriterImpl() {
-        int precision = 1;
-        this.options = CifOptions.builder()
-                .encodingStrategyHint("atom_site", "Cartn_x", "delta", precision)
-                .encodingStrategyHint("atom_site", "Cartn_y", "delta", precision)
-                .encodingStrategyHint("atom_site", "Cartn_z", "delta", precision)
-                .gzip(true)
-                .build();
+        try {
+            Files.write(destination, StructureCodec.encode(structure).array());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
-    public void write(MmCifFile source, Path destination) {
+    public Structure convert(MmCifFile source) {
         MmCifBlock block = source.getFirstBlock();
         PdbxStructAssemblyGen pdbxStructAssemblyGen = block.getPdbxStructAssemblyGen();
         PdbxStructOperList pdbxStructOperList = block.getPdbxStructOperList();
         AtomSite atomSite = block.getAtomSite();
         String pdbId = block.getBlockHeader().toUpperCase();
 
-        MmCifBlockBuilder outputBuilder = CifBuilder.enterFile(StandardSchemata.MMCIF)
-                .enterBlock(pdbId.toUpperCase());
-
-        if (pdbxStructAssemblyGen.isDefined()) {
-            outputBuilder.addCategory(pdbxStructAssemblyGen);
-        }
-
-        if (pdbxStructOperList.isDefined()) {
-            outputBuilder.addCategory(pdbxStructOperList);
-        }
-
         // ensure that all needed atoms are present to make this residue useful during indexing
-        List<LabelSelection> validResidues = determineValidResidues(atomSite);
-
-        MmCifCategoryBuilder.AtomSiteBuilder atomSiteBuilder = outputBuilder.enterAtomSite();
-        StrColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> labelAtomId = atomSiteBuilder.enterLabelAtomId();
-        StrColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> labelCompId = atomSiteBuilder.enterLabelCompId();
-        StrColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> labelAsymId = atomSiteBuilder.enterLabelAsymId();
-        IntColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> labelSeqId = atomSiteBuilder.enterLabelSeqId();
-        FloatColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> cartnX = atomSiteBuilder.enterCartnX();
-        FloatColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> cartnY = atomSiteBuilder.enterCartnY();
-        FloatColumnBuilder<MmCifCategoryBuilder.AtomSiteBuilder, MmCifBlockBuilder, MmCifFileBuilder> cartnZ = atomSiteBuilder.enterCartnZ();
+        Set<LabelSelection> validResidues = determineValidResidues(atomSite);
+
+        int rowCount = atomSite.getRowCount();
+        byte[] labelAtomId = new byte[rowCount];
+        String[] labelCompId = new String[rowCount];
+        String[] labelAsymId = new String[rowCount];
+        int[] labelSeqId = new int[rowCount];
+        short[] x = new short[rowCount];
+        short[] y = new short[rowCount];
+        short[] z = new short[rowCount];
+        int atomCount = 0;
 
         // keep track of alt locs
         String lastAcceptedLabelAsymId = "";
@@ -104,7 +87,7 @@ public class StructureWriterImpl implements StructureWriter {
         String lastAcceptedAtomLabelId = "";
         Set<String> currentlyAcceptedLabelAtomIds = new HashSet<>();
 
-        for (int row = 0; row < atomSite.getRowCount(); row++) {
+        for (int row = 0; row < rowCount; row++) {
             // ignore all models but the 1st
             if (atomSite.getPdbxPDBModelNum().isDefined() && atomSite.getPdbxPDBModelNum().get(row) != 1) {
                 continue;
@@ -163,30 +146,37 @@ public class StructureWriterImpl implements StructureWriter {
             lastAcceptedLabelSeqId = currentLabelSeqId;
             lastAcceptedLabelAsymId = currentLabelAsymId;
 
-            labelAtomId.add(currentLabelAtomId);
-            labelCompId.add(currentLabelCompId);
-            labelAsymId.add(currentLabelAsymId);
-            labelSeqId.add(currentLabelSeqId);
-            cartnX.add(atomSite.getCartnX().get(row));
-            cartnY.add(atomSite.getCartnY().get(row));
-            cartnZ.add(atomSite.getCartnZ().get(row));
+            labelAtomId[atomCount] = (byte) LabelAtomId.ofLabelAtomId(currentLabelAtomId).ordinal();
+            labelCompId[atomCount] = currentLabelCompId;
+            labelAsymId[atomCount] = currentLabelAsymId;
+            labelSeqId[atomCount] = currentLabelSeqId;
+            x[atomCount] = convertCoord(atomSite.getCartnX().get(row));
+            y[atomCount] = convertCoord(atomSite.getCartnY().get(row));
+            z[atomCount] = convertCoord(atomSite.getCartnZ().get(row));
+            atomCount++;
         }
-        atomSiteBuilder.leaveCategory();
-        CifFile outputFile = outputBuilder.leaveBlock().leaveFile();
 
-        // skip empty files
-        if (outputFile.getBlocks().get(0).getCategory("atom_site").getRowCount() == 0) {
-            return;
+        if (atomCount == 0) {
+            return null;
         }
 
-        try {
-            CifIO.writeBinary(outputFile, destination, options);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return new StructureReaderImpl.StructureReaderState(pdbId,
+                Arrays.copyOf(labelAtomId, atomCount),
+                Arrays.copyOf(labelCompId, atomCount),
+                Arrays.copyOf(labelAsymId, atomCount),
+                Arrays.copyOf(labelSeqId, atomCount),
+                Arrays.copyOf(x, atomCount),
+                Arrays.copyOf(y, atomCount),
+                Arrays.copyOf(z, atomCount),
+                pdbxStructAssemblyGen,
+                pdbxStructOperList).build();
+    }
+
+    private static short convertCoord(double coord) {
+        return (short) Math.round(coord * 10);
     }
 
-    private List<LabelSelection> determineValidResidues(AtomSite atomSite) {
+    private Set<LabelSelection> determineValidResidues(AtomSite atomSite) {
         Map<LabelSelection, ResidueType> residueTypes = new HashMap<>();
         Map<LabelSelection, Set<String>> presentAtoms = new HashMap<>();
         for (int row = 0; row < atomSite.getRowCount(); row++) {
@@ -199,7 +189,7 @@ public class StructureWriterImpl implements StructureWriter {
             Set<String> atoms = presentAtoms.computeIfAbsent(labelSelection, e -> new HashSet<>());
             atoms.add(atomSite.getLabelAtomId().get(row));
         }
-        List<LabelSelection> validResidues = new ArrayList<>();
+        Set<LabelSelection> validResidues = new HashSet<>();
         for (Map.Entry<LabelSelection, ResidueType> entry : residueTypes.entrySet()) {
             LabelSelection labelSelection = entry.getKey();
             ResidueType residueType = residueTypes.get(labelSelection);
@@ -7,11 +7,13 @@ import org.rcsb.strucmotif.domain.Transformation;
 import org.rcsb.strucmotif.domain.align.AlignmentResult;
 import org.rcsb.strucmotif.domain.align.AtomPairingScheme;
 import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.ResidueBuffer;
 import org.rcsb.strucmotif.domain.structure.ResidueType;
 import org.rcsb.strucmotif.domain.structure.Structure;
 import org.rcsb.strucmotif.io.StructureReader;
 import org.rcsb.strucmotif.io.StructureReaderImpl;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -213,4 +215,37 @@ public class QuaternionAlignmentServiceTest {
         AlignmentResult result = alignmentService.align(residues1, residues2, AtomPairingScheme.ALL);
         assertEquals(2.211, result.getRootMeanSquareDeviation(), Helpers.RELAXED_DELTA);
     }
+
+    @Test
+    public void whenAminopeptidaseExampleWithBuffers_thenRmsdMatchesMapBasedAlignment() {
+        Structure structure1 = structureReader.readFromInputStream(getOriginalBcif("1lap"));
+        int[] indices1 = Stream.of("A-250", "A-255", "A-273", "A-332", "A-334")
+                .map(id -> id.split("-"))
+                .mapToInt(split -> structure1.getResidueIndex(split[0], Integer.parseInt(split[1])))
+                .toArray();
+        Structure structure2 = structureReader.readFromInputStream(getOriginalBcif("3pei"));
+        int[] indices2 = Stream.of("A-251", "A-256", "A-274", "A-333", "A-335")
+                .map(id -> id.split("-"))
+                .mapToInt(split -> structure2.getResidueIndex(split[0], Integer.parseInt(split[1])))
+                .toArray();
+
+        ResidueBuffer[] buffers1 = new ResidueBuffer[indices1.length];
+        ResidueBuffer[] buffers2 = new ResidueBuffer[indices2.length];
+        for (int i = 0; i < indices1.length; i++) {
+            buffers1[i] = new ResidueBuffer();
+            structure1.manifestResidue(indices1[i], structure1.getOperatorIndex("1"), buffers1[i]);
+            buffers2[i] = new ResidueBuffer();
+            structure2.manifestResidue(indices2[i], structure2.getOperatorIndex("1"), buffers2[i]);
+            assertEquals(structure1.manifestResidue(indices1[i]).size(), buffers1[i].getAtomCount());
+        }
+
+        for (AtomPairingScheme atomPairingScheme : List.of(AtomPairingScheme.ALL, AtomPairingScheme.SIDE_CHAIN)) {
+            AlignmentResult expected = alignmentService.align(Arrays.stream(indices1).mapToObj(structure1::manifestResidue).collect(Collectors.toList()),
+                    Arrays.stream(indices2).mapToObj(structure2::manifestResidue).collect(Collectors.toList()),
+                    atomPairingScheme);
+            AlignmentResult actual = alignmentService.align(buffers1, buffers2, atomPairingScheme);
+            assertEquals(expected.getRootMeanSquareDeviation(), actual.getRootMeanSquareDeviation(), Helpers.DELTA);
+            assertArrayEquals(expected.getTransformation().getFlattenedTransformation(), actual.getTransformation().getFlattenedTransformation(), Helpers.DELTA);
+        }
+    }
 }
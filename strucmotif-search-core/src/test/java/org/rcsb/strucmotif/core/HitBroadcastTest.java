@@ -0,0 +1,79 @@
+package org.rcsb.strucmotif.core;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.result.Hit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitBroadcastTest {
+    private static Hit hit(int i) {
+        return new Hit(String.valueOf(i), "1", List.of(), List.of(), 0, null);
+    }
+
+    @Test
+    public void whenSubscribingLate_thenReceiveAllHits() throws Exception {
+        List<Hit> leader = Collections.synchronizedList(new ArrayList<>());
+        List<Hit> follower = Collections.synchronizedList(new ArrayList<>());
+        HitBroadcast broadcast = new HitBroadcast(leader::add, 10);
+        broadcast.accept(hit(0));
+        broadcast.accept(hit(1));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> subscription = executorService.submit(() -> broadcast.subscribe(follower::add));
+            // blocks until the search has finished
+            Thread.sleep(100);
+            assertFalse(subscription.isDone());
+
+            broadcast.accept(hit(2));
+            broadcast.complete();
+            assertEquals(3, subscription.get(5, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(3, leader.size());
+        assertEquals(3, follower.size());
+        assertTrue(follower.containsAll(leader));
+    }
+
+    @Test
+    public void whenCapacityExceeded_thenRejectSubscription() {
+        HitBroadcast broadcast = new HitBroadcast(hit -> {}, 1);
+        broadcast.accept(hit(0));
+        broadcast.accept(hit(1));
+
+        assertEquals(-1, broadcast.subscribe(hit -> fail("no hits expected")));
+    }
+
+    @Test
+    public void whenSubscriberFails_thenSearchContinues() throws Exception {
+        List<Hit> leader = Collections.synchronizedList(new ArrayList<>());
+        HitBroadcast broadcast = new HitBroadcast(leader::add, 10);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> subscription = executorService.submit(() -> broadcast.subscribe(hit -> { throw new IllegalStateException(); }));
+            Thread.sleep(100);
+            broadcast.accept(hit(0));
+            broadcast.accept(hit(1));
+            broadcast.complete();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> subscription.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(2, leader.size());
+    }
+}
@@ -0,0 +1,177 @@
+package org.rcsb.strucmotif.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.result.Hit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitPublisherTest {
+    private ExecutorService executorService;
+    private ThreadPool threadPool;
+
+    @BeforeEach
+    public void init() {
+        executorService = Executors.newFixedThreadPool(4);
+        threadPool = executorService::submit;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Each unit yields 2 hits.
+     */
+    private class CountingSource implements HitPublisher.Source<Integer> {
+        private final int units;
+        private final AtomicInteger scored = new AtomicInteger();
+        private volatile boolean expired;
+
+        private CountingSource(int units) {
+            this.units = units;
+        }
+
+        @Override
+        public Collection<Integer> prepare(BooleanSupplier cancellation) {
+            return IntStream.range(0, units).boxed().collect(Collectors.toList());
+        }
+
+        @Override
+        public CompletableFuture<List<Hit>> score(Integer unit) {
+            return CompletableFuture.supplyAsync(() -> {
+                scored.incrementAndGet();
+                return List.of(hit(unit), hit(unit));
+            }, executorService);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+
+    private static Hit hit(int i) {
+        return new Hit(String.valueOf(i), "1", List.of(), List.of(), 0, null);
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<Hit> {
+        private final long initialDemand;
+        private final List<Hit> hits = Collections.synchronizedList(new ArrayList<>());
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+
+        private RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(Hit item) {
+            hits.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    @Test
+    public void whenDemandExhausted_thenPauseScoring() throws Exception {
+        CountingSource source = new CountingSource(10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(3);
+        new HitPublisher<>(threadPool, 1, source).subscribe(subscriber);
+
+        Thread.sleep(200);
+        assertEquals(3, subscriber.hits.size());
+        // the 2nd unit was needed for the 3rd hit, its 4th hit is buffered
+        assertEquals(2, source.scored.get());
+        assertFalse(subscriber.done.isDone());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.done.get(5, TimeUnit.SECONDS);
+        assertEquals(20, subscriber.hits.size());
+        assertEquals(10, source.scored.get());
+    }
+
+    @Test
+    public void whenCancelled_thenStopScoring() throws Exception {
+        CountingSource source = new CountingSource(10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        new HitPublisher<>(threadPool, 1, source).subscribe(subscriber);
+
+        Thread.sleep(200);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(5);
+        Thread.sleep(200);
+        assertEquals(1, subscriber.hits.size());
+        assertEquals(1, source.scored.get());
+        assertFalse(subscriber.done.isDone());
+    }
+
+    @Test
+    public void whenExpired_thenPublishBufferedHitsAndFail() throws Exception {
+        CountingSource source = new CountingSource(10);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        new HitPublisher<>(threadPool, 1, source).subscribe(subscriber);
+
+        Thread.sleep(200);
+        source.expired = true;
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Exception e = assertThrows(Exception.class, () -> subscriber.done.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertEquals(2, subscriber.hits.size());
+        assertEquals(1, source.scored.get());
+    }
+
+    @Test
+    public void whenCancelled_thenCancelRunningUnits() throws Exception {
+        List<CompletableFuture<List<Hit>>> units = Collections.synchronizedList(new ArrayList<>());
+        HitPublisher.Source<Integer> source = new CountingSource(10) {
+            @Override
+            public CompletableFuture<List<Hit>> score(Integer unit) {
+                // never completes on its own, like a slow read
+                CompletableFuture<List<Hit>> future = new CompletableFuture<>();
+                units.add(future);
+                return future;
+            }
+        };
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        new HitPublisher<>(threadPool, 3, source).subscribe(subscriber);
+
+        Thread.sleep(200);
+        assertEquals(3, units.size());
+        subscriber.subscription.cancel();
+        assertTrue(units.stream().allMatch(CompletableFuture::isCancelled));
+        assertTrue(subscriber.hits.isEmpty());
+        assertFalse(subscriber.done.isDone());
+    }
+}
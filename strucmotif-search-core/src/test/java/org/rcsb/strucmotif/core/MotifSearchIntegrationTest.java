@@ -27,9 +27,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -52,6 +58,7 @@ public class MotifSearchIntegrationTest {
     private MotifSearchConfig motifSearchConfig;
     @Autowired
     private AlignmentService alignmentService;
+    private MotifSearchRuntimeImpl motifSearchRuntime;
     private QueryBuilder queryBuilder;
 
     @BeforeEach
@@ -75,6 +82,11 @@ public class MotifSearchIntegrationTest {
             InputStream inputStream = Helpers.getResource("renum/" + structureIdentifier + ".bcif.gz");
             return structureReader.readFromInputStream(inputStream);
         });
+        when(structureDataProvider.readRenumbered(any(), any())).thenAnswer(invocation -> {
+            String structureIdentifier = invocation.getArgument(0, String.class);
+            InputStream inputStream = Helpers.getResource("renum/" + structureIdentifier + ".bcif.gz");
+            return structureReader.readFromInputStream(inputStream);
+        });
 
         StateRepositoryImpl stateRepository = new StateRepositoryImpl(motifSearchConfig) {
             @Override
@@ -89,7 +101,7 @@ public class MotifSearchIntegrationTest {
         };
 
         TargetAssembler targetAssembler = new TargetAssemblerImpl(invertedIndex, threadPool);
-        MotifSearchRuntimeImpl motifSearchRuntime = new MotifSearchRuntimeImpl(targetAssembler, threadPool, motifSearchConfig, alignmentService, structureDataProvider, stateRepository);
+        this.motifSearchRuntime = new MotifSearchRuntimeImpl(targetAssembler, threadPool, motifSearchConfig, alignmentService, structureDataProvider, stateRepository);
         this.queryBuilder = new QueryBuilder(structureDataProvider, kruskalMotifPruner, noOperationMotifPruner, motifSearchRuntime, motifSearchConfig);
     }
 
@@ -165,6 +177,183 @@ public class MotifSearchIntegrationTest {
                 .anyMatch(s -> s < 0.5), "no low-RMSD hits observed");
     }
 
+    @Test
+    public void whenRepeatingQuery_thenServeFromResultCache() {
+        Structure structure = structureReader.readFromInputStream(getOriginalBcif("2mnr"));
+        List<LabelSelection> labelSelections = List.of(new LabelSelection("A", "1", 162), // K
+                new LabelSelection("A", "1", 193), // D
+                new LabelSelection("A", "1", 219), // E
+                new LabelSelection("A", "1", 245), // E
+                new LabelSelection("A", "1", 295)); // H
+
+        MotifSearchQuery query = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .backboneDistanceTolerance(1)
+                .buildParameters()
+                .buildQuery();
+        MotifSearchResult response = query.run();
+
+        MotifSearchQuery limitedQuery = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .backboneDistanceTolerance(1)
+                .limitResults(5)
+                .buildParameters()
+                .buildQuery();
+        assertEquals(query.getFingerprint(), limitedQuery.getFingerprint());
+        MotifSearchResult limitedResponse = limitedQuery.run();
+
+        assertEquals(5, limitedResponse.getHits().size());
+        assertEquals(response.getHits().subList(0, 5), limitedResponse.getHits());
+        // no target structures were read for the second query
+        assertEquals(0, limitedResponse.getTimings().getScoreHitsTime());
+
+        MotifSearchQuery otherQuery = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .backboneDistanceTolerance(2)
+                .buildParameters()
+                .buildQuery();
+        assertNotEquals(query.getFingerprint(), otherQuery.getFingerprint());
+    }
+
+    @Test
+    public void whenSearchingBatch_thenSameHitsAsIndividualSearches() {
+        int resultCacheSize = motifSearchConfig.getResultCacheSize();
+        motifSearchConfig.setResultCacheSize(0);
+        try {
+            init();
+            Structure structure = structureReader.readFromInputStream(getOriginalBcif("2mnr"));
+            List<LabelSelection> labelSelections = List.of(new LabelSelection("A", "1", 162), // K
+                    new LabelSelection("A", "1", 193), // D
+                    new LabelSelection("A", "1", 219), // E
+                    new LabelSelection("A", "1", 245), // E
+                    new LabelSelection("A", "1", 295)); // H
+            List<MotifSearchQuery> queries = List.of(queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                            .backboneDistanceTolerance(1)
+                            .sideChainDistanceTolerance(1)
+                            .angleTolerance(1)
+                            .buildParameters()
+                            .addPositionSpecificExchange(new LabelSelection("A", "1", 162), Set.of(ResidueType.LYSINE, ResidueType.HISTIDINE))
+                            .buildQuery(),
+                    queryBuilder.defineByStructureAndSelection(structure, labelSelections.subList(0, 4))
+                            .backboneDistanceTolerance(1)
+                            .sideChainDistanceTolerance(1)
+                            .angleTolerance(1)
+                            .buildParameters()
+                            .buildQuery());
+
+            List<MotifSearchResult> responses = motifSearchRuntime.performSearch(queries);
+
+            assertEquals(2, responses.size());
+            for (int i = 0; i < queries.size(); i++) {
+                MotifSearchResult individual = queries.get(i).run();
+                assertFalse(individual.getHits().isEmpty());
+                assertEquals(toSortedStrings(individual.getHits()), toSortedStrings(responses.get(i).getHits()));
+                assertEquals(individual.getNumberOfPaths(), responses.get(i).getNumberOfPaths());
+            }
+        } finally {
+            motifSearchConfig.setResultCacheSize(resultCacheSize);
+        }
+    }
+
+    @Test
+    public void whenRunningAsync_thenReportHits() throws Exception {
+        Structure structure = structureReader.readFromInputStream(getOriginalBcif("2mnr"));
+        List<LabelSelection> labelSelections = List.of(new LabelSelection("A", "1", 162), // K
+                new LabelSelection("A", "1", 193), // D
+                new LabelSelection("A", "1", 219), // E
+                new LabelSelection("A", "1", 245), // E
+                new LabelSelection("A", "1", 295)); // H
+
+        MotifSearchResult response = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .buildParameters()
+                .buildQuery()
+                .runAsync()
+                .get(30, TimeUnit.SECONDS);
+        assertFalse(response.getHits().isEmpty());
+        assertFalse(response.isTruncated());
+
+        AtomicInteger consumed = new AtomicInteger();
+        MotifSearchResult streamed = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .timeout(30000)
+                .buildParameters()
+                .buildQuery()
+                .runAsyncAndConsume(hit -> consumed.incrementAndGet())
+                .get(30, TimeUnit.SECONDS);
+        assertEquals(response.getHits().size(), consumed.get());
+        assertFalse(streamed.isTruncated());
+    }
+
+    @Test
+    public void whenPublishing_thenReportHitsOnDemand() throws Exception {
+        Structure structure = structureReader.readFromInputStream(getOriginalBcif("2mnr"));
+        List<LabelSelection> labelSelections = List.of(new LabelSelection("A", "1", 162), // K
+                new LabelSelection("A", "1", 193), // D
+                new LabelSelection("A", "1", 219), // E
+                new LabelSelection("A", "1", 245), // E
+                new LabelSelection("A", "1", 295)); // H
+
+        List<Hit> published = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .buildParameters()
+                .buildQuery()
+                .publish()
+                .subscribe(new Flow.Subscriber<>() {
+                    private Flow.Subscription subscription;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        this.subscription = subscription;
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onNext(Hit item) {
+                        published.add(item);
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        done.completeExceptionally(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        done.complete(null);
+                    }
+                });
+        done.get(30, TimeUnit.SECONDS);
+
+        MotifSearchResult response = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .buildParameters()
+                .buildQuery()
+                .run();
+        assertEquals(toSortedStrings(response.getHits()), toSortedStrings(published));
+    }
+
+    @Test
+    public void whenTimeoutExceeded_thenResultIsTruncated() {
+        Structure structure = structureReader.readFromInputStream(getOriginalBcif("2mnr"));
+        List<LabelSelection> labelSelections = List.of(new LabelSelection("A", "1", 162), // K
+                new LabelSelection("A", "1", 193), // D
+                new LabelSelection("A", "1", 219), // E
+                new LabelSelection("A", "1", 245), // E
+                new LabelSelection("A", "1", 295)); // H
+
+        MotifSearchResult response = queryBuilder.defineByStructureAndSelection(structure, labelSelections)
+                .timeout(0)
+                .buildParameters()
+                .buildQuery()
+                .run();
+        assertTrue(response.isTruncated());
+        assertTrue(response.getHits().isEmpty());
+    }
+
+    private static List<String> toSortedStrings(List<Hit> hits) {
+        return hits.stream()
+                .map(hit -> hit.getStructureIdentifier() + "_" + hit.getAssemblyIdentifier() + " " + hit.getLabelSelections() + " " + hit.getRootMeanSquareDeviation())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
     /**
      * A query defined by non-identity struct_oper_ids.
      */
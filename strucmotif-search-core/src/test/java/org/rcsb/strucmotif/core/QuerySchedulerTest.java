@@ -0,0 +1,168 @@
+package org.rcsb.strucmotif.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuerySchedulerTest {
+    private ExecutorService executorService;
+    private ThreadPool threadPool;
+
+    @BeforeEach
+    public void init() {
+        executorService = Executors.newCachedThreadPool();
+        threadPool = executorService::submit;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private static List<Runnable> tasks(int count, Runnable runnable) {
+        return Collections.nCopies(count, runnable);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void whenExpensiveQueryRunning_thenInterleaveSmallQuery() throws Exception {
+        QueryScheduler queryScheduler = new QueryScheduler(threadPool, 1, 1);
+        AtomicInteger expensive = new AtomicInteger();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> future = caller.submit(() -> queryScheduler.run(1, tasks(100, () -> {
+                sleep();
+                expensive.incrementAndGet();
+            })));
+            Thread.sleep(50);
+
+            AtomicInteger small = new AtomicInteger();
+            queryScheduler.run(1, tasks(5, () -> {
+                sleep();
+                small.incrementAndGet();
+            }));
+            assertEquals(5, small.get());
+            // the small query didn't wait for the backlog of the expensive one
+            assertTrue(expensive.get() < 50, "small query was starved");
+
+            future.get(10, TimeUnit.SECONDS);
+            assertEquals(100, expensive.get());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenBatchRunning_thenInterleaveInteractiveQuery() throws Exception {
+        QueryScheduler queryScheduler = new QueryScheduler(threadPool, 1, 1);
+        AtomicInteger batch = new AtomicInteger();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> future = caller.submit(() -> queryScheduler.run(1, tasks(100, () -> {
+                sleep();
+                batch.incrementAndGet();
+            })));
+            Thread.sleep(50);
+
+            // units of a published search are handed to a tenant one by one
+            QueryScheduler.Tenant tenant = queryScheduler.tenant(1);
+            CountDownLatch interactive = new CountDownLatch(5);
+            for (int i = 0; i < 5; i++) {
+                tenant.execute(() -> {
+                    sleep();
+                    interactive.countDown();
+                });
+            }
+            assertTrue(interactive.await(5, TimeUnit.SECONDS));
+            // the interactive query didn't wait for the backlog of the batch
+            assertTrue(batch.get() < 50, "interactive query was starved");
+            assertTrue(tenant.getQueueWait() > 0);
+
+            future.get(10, TimeUnit.SECONDS);
+            assertEquals(100, batch.get());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenPrioritized_thenScheduledMoreOften() throws Exception {
+        QueryScheduler queryScheduler = new QueryScheduler(threadPool, 1, 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        // occupy the only slot so that both queries are enqueued before anything is scheduled
+        ExecutorService caller = Executors.newFixedThreadPool(3);
+        try {
+            Future<Long> blocker = caller.submit(() -> queryScheduler.run(1, tasks(1, () -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            })));
+            Thread.sleep(20);
+            Future<Long> low = caller.submit(() -> queryScheduler.run(1, tasks(10, () -> order.add("low"))));
+            Future<Long> high = caller.submit(() -> queryScheduler.run(3, tasks(10, () -> order.add("high"))));
+            blocker.get(5, TimeUnit.SECONDS);
+            low.get(5, TimeUnit.SECONDS);
+            long queueWait = high.get(5, TimeUnit.SECONDS);
+            assertTrue(queueWait > 0);
+        } finally {
+            caller.shutdownNow();
+        }
+
+        // of the first 8 tasks, the high-priority query gets about 3 out of 4
+        long high = order.subList(0, 8).stream().filter("high"::equals).count();
+        assertTrue(high >= 5, "unexpected order " + order);
+    }
+
+    @Test
+    public void whenConcurrencyCapped_thenRespectCap() throws Exception {
+        QueryScheduler queryScheduler = new QueryScheduler(threadPool, 4, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        queryScheduler.run(1, tasks(20, () -> {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep();
+            running.decrementAndGet();
+        }));
+        assertEquals(2, max.get());
+    }
+
+    @Test
+    public void whenTaskFails_thenThrow() {
+        QueryScheduler queryScheduler = new QueryScheduler(threadPool, 2, 2);
+        AtomicInteger executed = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            throw new IllegalStateException();
+        });
+        tasks.addAll(tasks(10, () -> {
+            sleep();
+            executed.incrementAndGet();
+        }));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queryScheduler.run(1, tasks));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(executed.get() < 10);
+    }
+}
@@ -0,0 +1,56 @@
+package org.rcsb.strucmotif.core;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.query.QueryFingerprint;
+import org.rcsb.strucmotif.domain.result.Hit;
+import org.rcsb.strucmotif.domain.result.MotifSearchResult;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResultCacheTest {
+    private static ResultSnapshot snapshot(int hits) {
+        MotifSearchResult result = mock(MotifSearchResult.class);
+        Hit hit = new Hit("1ACJ", "1", List.of(), List.of(), 0, null);
+        when(result.getHits()).thenReturn(Collections.nCopies(hits, hit));
+        return new ResultSnapshot(result, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void whenCachingManyEmptyResults_thenStayWithinCapacity() {
+        ResultCache resultCache = new ResultCache(100, 3600);
+        ResultSnapshot empty = snapshot(0);
+        for (int i = 0; i < 1000; i++) {
+            resultCache.put(mock(QueryFingerprint.class), empty, 0);
+            assertTrue(resultCache.getSize() <= 100);
+        }
+        assertEquals(100, resultCache.getEntryCount());
+    }
+
+    @Test
+    public void whenCachingResults_thenChargeHitsAndEntry() {
+        ResultCache resultCache = new ResultCache(100, 3600);
+        resultCache.put(mock(QueryFingerprint.class), snapshot(49), 0);
+        resultCache.put(mock(QueryFingerprint.class), snapshot(49), 0);
+        assertEquals(100, resultCache.getSize());
+
+        // evicts the least recently used result
+        resultCache.put(mock(QueryFingerprint.class), snapshot(0), 0);
+        assertEquals(51, resultCache.getSize());
+        assertEquals(2, resultCache.getEntryCount());
+    }
+
+    @Test
+    public void whenResultsExpire_thenDropThemOnPut() {
+        ResultCache resultCache = new ResultCache(1000, 0);
+        for (int i = 0; i < 100; i++) {
+            resultCache.put(mock(QueryFingerprint.class), snapshot(1), 0);
+        }
+        // everything but the latest result has expired
+        assertTrue(resultCache.getEntryCount() <= 2);
+    }
+}
@@ -0,0 +1,87 @@
+package org.rcsb.strucmotif.domain.motif;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.structure.ResidueType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResiduePairDescriptorTest {
+    private static final ResidueType[] RESIDUE_TYPES = ResidueType.values();
+    private static final DistanceType[] DISTANCE_TYPES = DistanceType.values();
+    private static final AngleType[] ANGLE_TYPES = AngleType.values();
+
+    @Test
+    public void whenEnumerated_thenFitIntoBitFields() {
+        assertTrue(RESIDUE_TYPES.length <= 1 << 5);
+        assertTrue(DISTANCE_TYPES.length <= 1 << 6);
+        assertTrue(ANGLE_TYPES.length <= 1 << 4);
+    }
+
+    @Test
+    public void whenEncodingAnyDescriptor_thenRoundTrip() {
+        for (ResidueType residueType1 : RESIDUE_TYPES) {
+            for (ResidueType residueType2 : RESIDUE_TYPES) {
+                for (DistanceType backboneDistance : DISTANCE_TYPES) {
+                    for (DistanceType sideChainDistance : DISTANCE_TYPES) {
+                        for (AngleType angle : ANGLE_TYPES) {
+                            ResiduePairDescriptor descriptor = new ResiduePairDescriptor(residueType1, residueType2, backboneDistance, sideChainDistance, angle);
+                            int code = descriptor.getCode();
+                            assertEquals(code, ResiduePairDescriptor.getCode(residueType1, residueType2, backboneDistance, sideChainDistance, angle));
+                            // 27 bits
+                            assertEquals(0, code >>> 27, "code exceeds 27 bits");
+
+                            ResiduePairDescriptor decoded = ResiduePairDescriptor.ofCode(code);
+                            if (!descriptor.equals(decoded) || decoded.getCode() != code) {
+                                fail("code " + code + " of " + descriptor + " decodes to " + decoded);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void whenBoundaryValues_thenFieldsDontBleed() {
+        ResidueType first = RESIDUE_TYPES[0];
+        ResidueType last = RESIDUE_TYPES[RESIDUE_TYPES.length - 1];
+        DistanceType minDistance = DISTANCE_TYPES[0];
+        DistanceType maxDistance = DISTANCE_TYPES[DISTANCE_TYPES.length - 1];
+        AngleType minAngle = ANGLE_TYPES[0];
+        AngleType maxAngle = ANGLE_TYPES[ANGLE_TYPES.length - 1];
+
+        // all fields at their minimum and maximum, in every combination
+        for (ResidueType residueType1 : new ResidueType[] { first, last }) {
+            for (ResidueType residueType2 : new ResidueType[] { first, last }) {
+                for (DistanceType backboneDistance : new DistanceType[] { minDistance, maxDistance }) {
+                    for (DistanceType sideChainDistance : new DistanceType[] { minDistance, maxDistance }) {
+                        for (AngleType angle : new AngleType[] { minAngle, maxAngle }) {
+                            ResiduePairDescriptor descriptor = new ResiduePairDescriptor(residueType1, residueType2, backboneDistance, sideChainDistance, angle);
+                            ResiduePairDescriptor decoded = ResiduePairDescriptor.ofCode(descriptor.getCode());
+                            assertEquals(descriptor.getResidueType1(), decoded.getResidueType1());
+                            assertEquals(descriptor.getResidueType2(), decoded.getResidueType2());
+                            assertEquals(backboneDistance, decoded.getBackboneDistance());
+                            assertEquals(sideChainDistance, decoded.getSideChainDistance());
+                            assertEquals(angle, decoded.getAngle());
+                            assertEquals(descriptor.isFlipped(), decoded.isFlipped());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void whenFlipped_thenOnlyLowestBitDiffers() {
+        ResidueType residueType1 = RESIDUE_TYPES[0];
+        ResidueType residueType2 = RESIDUE_TYPES[RESIDUE_TYPES.length - 1];
+        DistanceType distance = DISTANCE_TYPES[DISTANCE_TYPES.length - 1];
+        AngleType angle = ANGLE_TYPES[ANGLE_TYPES.length - 1];
+        ResiduePairDescriptor descriptor = new ResiduePairDescriptor(residueType1, residueType2, distance, distance, angle);
+        ResiduePairDescriptor reversed = new ResiduePairDescriptor(residueType2, residueType1, distance, distance, angle);
+
+        assertNotEquals(descriptor.isFlipped(), reversed.isFlipped());
+        assertEquals(1, descriptor.getCode() ^ reversed.getCode());
+        assertEquals(reversed.isFlipped(), ResiduePairDescriptor.ofCode(reversed.getCode()).isFlipped());
+    }
+}
@@ -2,6 +2,8 @@ package org.rcsb.strucmotif.domain.structure;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.align.QuaternionAlignmentService;
+import org.rcsb.strucmotif.domain.Transformation;
 import org.rcsb.strucmotif.domain.motif.AngleType;
 import org.rcsb.strucmotif.domain.motif.DistanceType;
 import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
@@ -12,6 +14,7 @@ import org.rcsb.strucmotif.io.StructureReaderImpl;
 import org.rcsb.strucmotif.math.Algebra;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +35,33 @@ class ResidueGraphTest {
         assertArrayEquals(new float[]{1.204f, -0.620f, 1.296f}, betaCarbon, 0.01f);
     }
 
+    @Test
+    public void whenPlacingVirtualBetaCarbons_thenSameAsSuperposition() {
+        List<float[]> referenceBackbone = List.of(new float[] { -0.698f, 0.184f, 1.008f },
+                new float[] { 0.525f, 0.109f, 0.200f },
+                new float[] { 0.174f, -0.292f, -1.208f });
+        float[] referenceCB = new float[] { 1.472f, -0.929f, 0.804f };
+        Structure structure = new StructureReaderImpl().readFromInputStream(getOriginalBcif("1acj"));
+
+        int placed = 0;
+        for (int i = 0; i < structure.getResidueCount(); i++) {
+            Map<LabelAtomId, float[]> residue = structure.manifestResidue(i);
+            float[] betaCarbon = ResidueGraph.getVirtualCB(residue);
+            if (betaCarbon == null) {
+                continue;
+            }
+
+            // the superposition of previous releases, indices depend on this exact placement
+            List<float[]> backbone = List.of(residue.get(LabelAtomId.N), residue.get(LabelAtomId.CA), residue.get(LabelAtomId.C));
+            float[] expected = Algebra.centroid3d(backbone);
+            Transformation transformation = QuaternionAlignmentService.align(backbone, expected, referenceBackbone, new float[3]).getFirst();
+            Algebra.multiply4d(expected, transformation.getTransformationMatrix(), referenceCB);
+            assertArrayEquals(expected, betaCarbon);
+            placed++;
+        }
+        assertTrue(placed > 500);
+    }
+
     private static final float TEST_DISTANCE_CUTOFF = 20;
     private static final float TEST_SQUARED_DISTANCE_CUTOFF = TEST_DISTANCE_CUTOFF * TEST_DISTANCE_CUTOFF;
     private StructureReader structureReader;
@@ -170,6 +200,18 @@ class ResidueGraphTest {
                 .count());
     }
 
+    @Test
+    public void whenReadingOriginalIcosahedralAssembly_thenCountsMatch() {
+        // 132 chain-operator expressions, copies out of reach of the original chains are never placed
+        Structure structure = structureReader.readFromInputStream(getOriginalBcif("2bfu"));
+        ResidueGraph residueGraph = new ResidueGraph(structure, TEST_SQUARED_DISTANCE_CUTOFF, false);
+
+        assertEquals(51855, residueGraph.getNumberOfPairings());
+        assertTrue(residueGraph.residuePairOccurrencesSequential()
+                .map(ResiduePairOccurrence::getResidueIdentifier)
+                .allMatch(identifier -> identifier.getIndex1() != identifier.getIndex2() || !identifier.getStructOperId1().equals(identifier.getStructOperId2())));
+    }
+
     @Test
     public void whenReadingRenumbered200l_thenCountsMatch() {
         Structure structure = structureReader.readFromInputStream(getRenumberedBcif("200l"));
@@ -253,6 +295,27 @@ class ResidueGraphTest {
                 .anyMatch(id -> !id.equals("1")));
     }
 
+    @Test
+    public void whenTraversingResiduePairsDirectly_thenSameAsOccurrences() {
+        Structure structure = structureReader.readFromInputStream(getRenumberedBcif("4ob8"));
+        ResidueGraph residueGraph = new ResidueGraph(structure, TEST_SQUARED_DISTANCE_CUTOFF, false);
+
+        List<String> expected = residueGraph.residuePairOccurrencesSequential()
+                .map(residuePairOccurrence -> {
+                    ResiduePairIdentifier residuePairIdentifier = residuePairOccurrence.getResidueIdentifier();
+                    return residuePairOccurrence.getResiduePairDescriptor().getCode() + ":" +
+                            residuePairIdentifier.getIndex1() + "_" + residuePairIdentifier.getStructOperId1() + ":" +
+                            residuePairIdentifier.getIndex2() + "_" + residuePairIdentifier.getStructOperId2();
+                })
+                .collect(Collectors.toList());
+        List<String> actual = new ArrayList<>();
+        residueGraph.forEachResiduePair((descriptorCode, index1, structOperId1, index2, structOperId2) ->
+                actual.add(descriptorCode + ":" + index1 + "_" + structOperId1 + ":" + index2 + "_" + structOperId2));
+
+        assertEquals(residueGraph.getNumberOfPairings(), actual.size());
+        assertEquals(expected, actual);
+    }
+
     @Test
     public void whenReadingRNA_thenContactsFound() {
         Structure structure = structureReader.readFromInputStream(getOriginalBcif("7els"));
@@ -13,7 +13,11 @@ import org.rcsb.strucmotif.domain.structure.ResidueType;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InvertedIndexImplTest {
@@ -49,4 +53,20 @@ public class InvertedIndexImplTest {
                 .flatMap(ResiduePairIdentifier::indexSelections)
                 .anyMatch(indexSelector -> !indexSelector.getStructOperId().equals("1")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void whenReadingAheadOfDecoding_thenSameOccurrences() {
+        byte[] bin = invertedIndex.read(BIN_WITH_ASSEMBLY);
+        assertNotNull(bin);
+        assertEquals(invertedIndex.select(BIN_WITH_ASSEMBLY).map(Pair::getFirst).sorted().collect(Collectors.toList()),
+                invertedIndex.select(BIN_WITH_ASSEMBLY, bin).map(Pair::getFirst).sorted().collect(Collectors.toList()));
+
+        ResiduePairDescriptor missing = new ResiduePairDescriptor(ResidueType.TRYPTOPHAN,
+                ResidueType.TRYPTOPHAN,
+                DistanceType.D0,
+                DistanceType.D0,
+                AngleType.A0);
+        assertNull(invertedIndex.read(missing));
+        assertEquals(0, invertedIndex.select(missing, null).count());
+    }
+}
@@ -0,0 +1,220 @@
+package org.rcsb.strucmotif.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rcsb.strucmotif.Helpers.getRenumberedBcif;
+
+class PackedStructureArchiveTest {
+    private Structure structure;
+    private Path basePath;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.structure = new StructureReaderImpl().readFromInputStream(getRenumberedBcif("1acj"));
+        this.basePath = Files.createTempDirectory("archive");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(basePath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void whenReopening_thenLastRecordWins() throws IOException {
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            archive.append("1ACJ", StructureCodec.encode(structure));
+            archive.append("2ACJ", StructureCodec.encode(structure));
+            archive.append("3ACJ", StructureCodec.encode(structure));
+            archive.delete("2ACJ");
+            archive.append("3ACJ", StructureCodec.encode(structure));
+        }
+
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            assertEquals(Set.of("1ACJ", "3ACJ"), Set.copyOf(archive.getStructureIdentifiers()));
+            assertNull(archive.read("2ACJ"));
+            assertEquals(2 * StructureCodec.encode(structure).remaining(), archive.getGarbage());
+
+            Structure actual = StructureCodec.decode(archive.read("3ACJ"));
+            assertEquals(structure.getResidueCount(), actual.getResidueCount());
+            assertArrayEquals(structure.getX(), actual.getX());
+        }
+    }
+
+    @Test
+    public void whenCompacting_thenGarbageIsDropped() throws IOException {
+        int length = StructureCodec.encode(structure).remaining();
+        // small limit: every structure ends up in its own pack file
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, length)) {
+            for (int i = 0; i < 4; i++) {
+                archive.append(i + "ACJ", StructureCodec.encode(structure));
+            }
+            archive.delete("0ACJ");
+            archive.delete("2ACJ");
+            assertEquals(4L * length, archive.getSize());
+
+            archive.compact();
+            assertEquals(0, archive.getGarbage());
+            assertEquals(2L * length, archive.getSize());
+            assertFalse(Files.exists(basePath.resolve("structures-00002.pack")));
+
+            int[] residueIndices = new int[] { 5, 100 };
+            Structure actual = StructureCodec.decode(archive.read("3ACJ"), residueIndices);
+            assertEquals(structure.manifestResidue(100).keySet(), actual.manifestResidue(100).keySet());
+        }
+    }
+
+    @Test
+    public void whenReopeningAfterCompaction_thenUseNewGeneration() throws IOException {
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            archive.append("1ACJ", StructureCodec.encode(structure));
+            archive.append("2ACJ", StructureCodec.encode(structure));
+            archive.delete("1ACJ");
+            archive.compact();
+            archive.append("3ACJ", StructureCodec.encode(structure));
+        }
+
+        assertFalse(Files.exists(basePath.resolve(PackedStructureArchive.DIRECTORY_FILE)));
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            assertEquals(Set.of("2ACJ", "3ACJ"), Set.copyOf(archive.getStructureIdentifiers()));
+            assertEquals(0, archive.getGarbage());
+            assertEquals(structure.getResidueCount(), StructureCodec.decode(archive.read("3ACJ")).getResidueCount());
+        }
+    }
+
+    @Test
+    public void whenCompactionWasInterrupted_thenIgnoreHalfWrittenGeneration() throws IOException {
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            archive.append("1ACJ", StructureCodec.encode(structure));
+        }
+        // crash before the generation pointer was switched
+        Files.write(basePath.resolve("structures-g1-00000.pack"), new byte[] { 1, 2, 3 });
+        Files.write(basePath.resolve("structures-g1.idx"), new byte[] { 4, 5 });
+
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            assertEquals(Set.of("1ACJ"), Set.copyOf(archive.getStructureIdentifiers()));
+            assertNotNull(archive.read("1ACJ"));
+
+            // removed by the first modification
+            archive.append("2ACJ", StructureCodec.encode(structure));
+            assertFalse(Files.exists(basePath.resolve("structures-g1-00000.pack")));
+            assertFalse(Files.exists(basePath.resolve("structures-g1.idx")));
+
+            // the abandoned generation number can be reused
+            archive.compact();
+            assertEquals(structure.getResidueCount(), StructureCodec.decode(archive.read("1ACJ")).getResidueCount());
+        }
+    }
+
+    @Test
+    public void whenOpenedWhileAnotherArchiveWrites_thenNeverRemoveFiles() throws IOException {
+        try (PackedStructureArchive writer = new PackedStructureArchive(basePath, 1 << 20)) {
+            writer.append("1ACJ", StructureCodec.encode(structure));
+            // the next generation of a compaction in progress
+            Files.write(basePath.resolve("structures-g1-00000.pack"), new byte[] { 1, 2, 3 });
+            Files.write(basePath.resolve("structures-g1.idx"), new byte[] { 4, 5 });
+
+            try (PackedStructureArchive reader = new PackedStructureArchive(basePath, 1 << 20)) {
+                assertEquals(Set.of("1ACJ"), Set.copyOf(reader.getStructureIdentifiers()));
+                assertNotNull(reader.read("1ACJ"));
+                assertTrue(Files.exists(basePath.resolve("structures-g1-00000.pack")));
+                assertTrue(Files.exists(basePath.resolve("structures-g1.idx")));
+
+                // only one writer at a time
+                assertThrows(IllegalStateException.class, () -> reader.delete("1ACJ"));
+                assertTrue(Files.exists(basePath.resolve("structures-g1.idx")));
+            }
+        }
+
+        // lock was released
+        try (PackedStructureArchive writer = new PackedStructureArchive(basePath, 1 << 20)) {
+            writer.delete("1ACJ");
+            assertFalse(Files.exists(basePath.resolve("structures-g1.idx")));
+        }
+    }
+
+    @Test
+    public void whenLastRecordIsPartial_thenTruncateBeforeAppending() throws IOException {
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            archive.append("1ACJ", StructureCodec.encode(structure));
+            archive.append("2ACJ", StructureCodec.encode(structure));
+        }
+        // crash while writing the record of a third structure
+        Path directoryPath = basePath.resolve(PackedStructureArchive.DIRECTORY_FILE);
+        byte[] bytes = Files.readAllBytes(directoryPath);
+        byte[] torn = Arrays.copyOf(bytes, bytes.length + bytes.length / 4);
+        System.arraycopy(bytes, 0, torn, bytes.length, bytes.length / 4);
+        Files.write(directoryPath, torn);
+
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            assertEquals(Set.of("1ACJ", "2ACJ"), Set.copyOf(archive.getStructureIdentifiers()));
+            archive.append("3ACJ", StructureCodec.encode(structure));
+        }
+        assertEquals(bytes.length * 3 / 2, Files.size(directoryPath));
+
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 1 << 20)) {
+            assertEquals(Set.of("1ACJ", "2ACJ", "3ACJ"), Set.copyOf(archive.getStructureIdentifiers()));
+            assertEquals(structure.getResidueCount(), StructureCodec.decode(archive.read("3ACJ")).getResidueCount());
+        }
+    }
+
+    @Test
+    public void whenReadingConcurrently_thenSurviveAppendAndCompaction() throws Exception {
+        int length = StructureCodec.encode(structure).remaining();
+        try (PackedStructureArchive archive = new PackedStructureArchive(basePath, 2L * length)) {
+            archive.append("0ACJ", StructureCodec.encode(structure));
+            AtomicBoolean running = new AtomicBoolean(true);
+            ExecutorService executorService = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<Integer>> readers = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    readers.add(executorService.submit(() -> {
+                        int reads = 0;
+                        while (running.get()) {
+                            assertEquals(structure.getResidueCount(), StructureCodec.decode(archive.read("0ACJ")).getResidueCount());
+                            reads++;
+                        }
+                        return reads;
+                    }));
+                }
+
+                for (int i = 1; i < 20; i++) {
+                    archive.append(i + "ACJ", StructureCodec.encode(structure));
+                    if (i % 5 == 0) {
+                        archive.compact();
+                    }
+                }
+                running.set(false);
+                for (Future<Integer> reader : readers) {
+                    assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+                }
+            } finally {
+                running.set(false);
+                executorService.shutdownNow();
+            }
+        }
+    }
+}
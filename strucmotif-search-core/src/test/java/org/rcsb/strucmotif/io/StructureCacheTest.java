@@ -0,0 +1,85 @@
+package org.rcsb.strucmotif.io;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rcsb.strucmotif.Helpers.getRenumberedBcif;
+
+class StructureCacheTest {
+    private Structure structure;
+
+    @BeforeEach
+    public void init() {
+        this.structure = new StructureReaderImpl().readFromInputStream(getRenumberedBcif("1acj"));
+    }
+
+    @Test
+    public void whenCapacityExceeded_thenLeastRecentlyUsedIsEvicted() {
+        long footprint = StructureCache.estimateFootprint(structure);
+        StructureCache cache = new StructureCache(2 * footprint);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("1", id -> { loads.incrementAndGet(); return structure; });
+        cache.get("2", id -> { loads.incrementAndGet(); return structure; });
+        cache.get("1", id -> { loads.incrementAndGet(); return structure; });
+        // evicts 2
+        cache.get("3", id -> { loads.incrementAndGet(); return structure; });
+        cache.get("1", id -> { loads.incrementAndGet(); return structure; });
+        cache.get("2", id -> { loads.incrementAndGet(); return structure; });
+
+        assertEquals(4, loads.get());
+        StructureCacheStatistics statistics = cache.getStatistics();
+        assertEquals(2, statistics.getHits());
+        assertEquals(4, statistics.getMisses());
+        assertEquals(2, statistics.getEvictions());
+        assertEquals(2, statistics.getEntries());
+        assertEquals(2 * footprint, statistics.getSize());
+    }
+
+    @Test
+    public void whenRequestedConcurrently_thenLoadedOnce() throws Exception {
+        StructureCache cache = new StructureCache(Long.MAX_VALUE);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?>[] futures = new Future[8];
+        // one thread per caller, so that all of them can wait at once
+        ExecutorService executorService = Executors.newFixedThreadPool(futures.length);
+        try {
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executorService.submit(() -> cache.get("1ACJ", id -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return structure;
+                }));
+            }
+            // the load is blocked: once every caller missed, all of them wait for that load
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.getStatistics().getMisses() < futures.length) {
+                assertTrue(System.nanoTime() < deadline, "callers didn't arrive");
+                Thread.yield();
+            }
+            release.countDown();
+            for (Future<?> future : futures) {
+                assertSame(structure, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.getStatistics().getHits());
+    }
+}
@@ -0,0 +1,96 @@
+package org.rcsb.strucmotif.io;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.cif.CifIO;
+import org.rcsb.cif.schema.StandardSchemata;
+import org.rcsb.cif.schema.mm.MmCifFile;
+import org.rcsb.strucmotif.domain.structure.LabelAtomId;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rcsb.strucmotif.Helpers.getOriginalBcif;
+import static org.rcsb.strucmotif.Helpers.getRenumberedBcif;
+
+class StructureCodecTest {
+    private StructureReader structureReader;
+
+    @BeforeEach
+    public void init() {
+        this.structureReader = new StructureReaderImpl();
+    }
+
+    @Test
+    public void whenRoundTrip_thenAllFieldsMatch() throws IOException {
+        Structure expected = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        Structure actual = StructureCodec.decode(StructureCodec.encode(expected));
+
+        assertEquals(expected.getStructureIdentifier(), actual.getStructureIdentifier());
+        assertEquals(expected.getChainCount(), actual.getChainCount());
+        assertEquals(expected.getResidueCount(), actual.getResidueCount());
+        assertEquals(expected.getAtomCount(), actual.getAtomCount());
+        assertArrayEquals(expected.getLabelSeqIds(), actual.getLabelSeqIds());
+        assertArrayEquals(expected.getResidueOffsets(), actual.getResidueOffsets());
+        assertArrayEquals(expected.getResidueTypes(), actual.getResidueTypes());
+        assertArrayEquals(expected.getLabelAtomIds(), actual.getLabelAtomIds());
+        assertArrayEquals(expected.getX(), actual.getX());
+        assertArrayEquals(expected.getY(), actual.getY());
+        assertArrayEquals(expected.getZ(), actual.getZ());
+        assertEquals(expected.getAssemblies(), actual.getAssemblies());
+        assertEquals(expected.getTransformations().keySet(), actual.getTransformations().keySet());
+    }
+
+    @Test
+    public void whenDecodingSelectedResidues_thenOnlyTheseResiduesAreManifested() throws IOException {
+        Structure expected = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        Path path = Files.createTempFile("1acj", ".bin");
+        try {
+            Files.write(path, StructureCodec.encode(expected).array());
+            int[] residueIndices = new int[] { 200, 5, 6, 7, 100, 6 };
+            Structure actual;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                actual = StructureCodec.decode(channel, 0, residueIndices);
+            }
+
+            assertEquals(expected.getResidueCount(), actual.getResidueCount());
+            assertEquals(expected.getLabelSelection(200), actual.getLabelSelection(200));
+            for (int residueIndex : residueIndices) {
+                Map<LabelAtomId, float[]> expectedResidue = expected.manifestResidue(residueIndex);
+                Map<LabelAtomId, float[]> actualResidue = actual.manifestResidue(residueIndex);
+                assertEquals(expectedResidue.keySet(), actualResidue.keySet());
+                for (LabelAtomId labelAtomId : expectedResidue.keySet()) {
+                    assertArrayEquals(expectedResidue.get(labelAtomId), actualResidue.get(labelAtomId));
+                }
+            }
+            assertTrue(actual.manifestResidue(8).isEmpty());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void whenWritingOriginal_thenMatchesRenumberedBcif() throws IOException {
+        MmCifFile mmCifFile = CifIO.readFromInputStream(getOriginalBcif("1acj")).as(StandardSchemata.MMCIF);
+        Structure expected = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        Path path = Files.createTempFile("1acj", ".bin");
+        try {
+            new StructureWriterImpl().write(mmCifFile, path);
+            Structure actual = StructureCodec.decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+
+            assertEquals(expected.getResidueCount(), actual.getResidueCount());
+            assertArrayEquals(expected.getLabelSeqIds(), actual.getLabelSeqIds());
+            assertArrayEquals(expected.getResidueTypes(), actual.getResidueTypes());
+            assertEquals(expected.getAssemblies(), actual.getAssemblies());
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
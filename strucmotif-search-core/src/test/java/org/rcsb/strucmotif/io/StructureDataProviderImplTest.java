@@ -0,0 +1,67 @@
+package org.rcsb.strucmotif.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.config.MotifSearchConfig;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rcsb.strucmotif.Helpers.getRenumberedBcif;
+
+class StructureDataProviderImplTest {
+    private Path rootPath;
+    private StructureDataProvider structureDataProvider;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.rootPath = Files.createTempDirectory("root");
+        MotifSearchConfig motifSearchConfig = new MotifSearchConfig();
+        motifSearchConfig.setRootPath(rootPath.toString());
+        this.structureDataProvider = new StructureDataProviderImpl(new StructureReaderImpl(), null, motifSearchConfig);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(rootPath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Structure writeRenumbered(String pdbId) throws IOException {
+        Structure structure = new StructureReaderImpl().readFromInputStream(getRenumberedBcif(pdbId));
+        Path renumberedPath = rootPath.resolve(MotifSearchConfig.RENUMBERED_DIRECTORY);
+        Files.createDirectories(renumberedPath);
+        Files.write(renumberedPath.resolve(pdbId.toUpperCase() + MotifSearchConfig.RENUMBERED_EXTENSION), StructureCodec.encode(structure).array());
+        return structure;
+    }
+
+    @Test
+    public void whenReadingRenumbered_thenDecodeSmallAndLargeFiles() throws IOException {
+        // read into the heap
+        Structure small = writeRenumbered("1acj");
+        // mapped
+        Structure large = writeRenumbered("3vvk");
+        assertTrue(Files.size(rootPath.resolve(MotifSearchConfig.RENUMBERED_DIRECTORY).resolve("1ACJ" + MotifSearchConfig.RENUMBERED_EXTENSION)) < 1 << 16);
+        assertTrue(Files.size(rootPath.resolve(MotifSearchConfig.RENUMBERED_DIRECTORY).resolve("3VVK" + MotifSearchConfig.RENUMBERED_EXTENSION)) >= 1 << 16);
+
+        for (Structure expected : new Structure[] { small, large }) {
+            Structure actual = structureDataProvider.readRenumbered(expected.getStructureIdentifier());
+            assertEquals(expected.getStructureIdentifier(), actual.getStructureIdentifier());
+            assertEquals(expected.getAtomCount(), actual.getAtomCount());
+            assertArrayEquals(expected.getResidueTypes(), actual.getResidueTypes());
+            assertArrayEquals(expected.getX(), actual.getX());
+            assertArrayEquals(expected.getY(), actual.getY());
+            assertArrayEquals(expected.getZ(), actual.getZ());
+        }
+    }
+}
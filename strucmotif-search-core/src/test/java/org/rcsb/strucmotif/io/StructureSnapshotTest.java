@@ -0,0 +1,80 @@
+package org.rcsb.strucmotif.io;
+
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.structure.Structure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.rcsb.strucmotif.Helpers.getRenumberedBcif;
+
+class StructureSnapshotTest {
+    @Test
+    public void whenChecksumMatches_thenStructuresAreRestored() throws IOException {
+        StructureReader structureReader = new StructureReaderImpl();
+        Structure structure1 = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        Structure structure2 = structureReader.readFromInputStream(getRenumberedBcif("4cha"));
+        Path path = Files.createTempFile("structures", ".snapshot");
+        try {
+            StructureSnapshot.write(path, 42, Map.of("1ACJ", structure1, "4CHA", structure2));
+
+            assertNull(StructureSnapshot.read(path, 43));
+            Map<String, Structure> restored = StructureSnapshot.read(path, 42);
+            assertNotNull(restored);
+            assertEquals(2, restored.size());
+            assertEquals(structure1.getResidueCount(), restored.get("1ACJ").getResidueCount());
+            assertArrayEquals(structure2.getZ(), restored.get("4CHA").getZ());
+            assertEquals(structure2.getAssemblies(), restored.get("4CHA").getAssemblies());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void whenSnapshotIsCorrupted_thenRemoveIt() throws IOException {
+        StructureReader structureReader = new StructureReaderImpl();
+        Structure structure = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        Path path = Files.createTempFile("structures", ".snapshot");
+        try {
+            // directory offset points beyond the end of the file
+            StructureSnapshot.write(path, 42, Map.of("1ACJ", structure));
+            byte[] bytes = Files.readAllBytes(path);
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(20, bytes.length + 1);
+            Files.write(path, bytes);
+            assertNull(StructureSnapshot.read(path, 42));
+            assertFalse(Files.exists(path));
+
+            // directory is garbage
+            StructureSnapshot.write(path, 42, Map.of("1ACJ", structure));
+            bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+            assertNull(StructureSnapshot.read(path, 42));
+            assertFalse(Files.exists(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void whenWriteFails_thenRemoveTemporaryFile() throws IOException {
+        StructureReader structureReader = new StructureReaderImpl();
+        Structure structure = structureReader.readFromInputStream(getRenumberedBcif("1acj"));
+        // a non-empty directory can't be replaced by the snapshot
+        Path path = Files.createTempDirectory("structures");
+        Path blocker = Files.createFile(path.resolve("blocker"));
+        try {
+            assertThrows(UncheckedIOException.class, () -> StructureSnapshot.write(path, 42, Map.of("1ACJ", structure)));
+            assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+        } finally {
+            Files.delete(blocker);
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.strucmotif.domain.structure.Revision;
+import org.rcsb.strucmotif.domain.structure.StructureInformation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Durable record of the progress of an update. A partition is committed before its structures are written to the
+ * inverted index (or once they are written to a sorted run) and removed when the index and the state are consistent
+ * again. An interrupted update resumes from the committed partitions: structures of partitions with a run are merged
+ * from that run, all others are extracted again from their renumbered files. Either way, nothing is downloaded again
+ * and only the bins touched by these structures are visited.
+ * <p>
+ * For structures that are replaced by an update, the descriptor codes of their previous version are recorded as well,
+ * so that a structure that was marked as dirty before it reached a partition can be removed from exactly these bins.
+ * <p>
+ * Files are written to a temporary file, synced and then moved in place - a partition either exists completely or
+ * not at all.
+ */
+class Checkpoint {
+    private static final String PARTITION_PREFIX = "partition-";
+    private static final String EXTENSION = ".bin";
+    private static final String REPLACED = "replaced" + EXTENSION;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int[] NONE = new int[0];
+    private final Path directory;
+    private final AtomicInteger partitionCounter;
+
+    /**
+     * Checkpoint in a directory. Existing partitions are retained.
+     * @param directory where partitions are written
+     */
+    Checkpoint(Path directory) {
+        this.directory = directory;
+        this.partitionCounter = new AtomicInteger(getPartitionNumbers().stream()
+                .mapToInt(Integer::intValue)
+                .max()
+                .orElse(0));
+    }
+
+    /**
+     * Commit a partition.
+     * @param run name of the run that contains the residue pairs of these structures, <code>null</code> if they are
+     *            written to the inverted index directly
+     * @param structures the structures
+     * @param stale descriptor codes of bins that contain a previous version of structures that won't be overwritten,
+     *              keys are structure identifiers
+     * @return the partition
+     */
+    Partition commit(String run, List<StructureInformation> structures, Map<String, int[]> stale) {
+        Partition partition = new Partition(partitionCounter.incrementAndGet(), run, structures, stale);
+        write(PARTITION_PREFIX + String.format("%05d", partition.number) + EXTENSION, outputStream -> {
+            outputStream.writeUTF(run == null ? "" : run);
+            outputStream.writeInt(structures.size());
+            for (StructureInformation structureInformation : structures) {
+                writeStructureInformation(outputStream, structureInformation);
+                writeCodes(outputStream, stale.getOrDefault(structureInformation.getStructureIdentifier(), NONE));
+            }
+        });
+        return partition;
+    }
+
+    /**
+     * Remove a partition once its structures are consistent.
+     * @param partition the partition
+     */
+    void remove(Partition partition) {
+        delete(directory.resolve(PARTITION_PREFIX + String.format("%05d", partition.number) + EXTENSION));
+    }
+
+    /**
+     * All committed partitions in the order they were committed.
+     * @return a list of partitions
+     */
+    List<Partition> getPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        for (int number : getPartitionNumbers()) {
+            partitions.add(read(PARTITION_PREFIX + String.format("%05d", number) + EXTENSION, inputStream -> {
+                String run = inputStream.readUTF();
+                int structureCount = inputStream.readInt();
+                List<StructureInformation> structures = new ArrayList<>(structureCount);
+                Map<String, int[]> stale = new HashMap<>();
+                for (int i = 0; i < structureCount; i++) {
+                    StructureInformation structureInformation = readStructureInformation(inputStream);
+                    structures.add(structureInformation);
+                    int[] codes = readCodes(inputStream);
+                    if (codes.length > 0) {
+                        stale.put(structureInformation.getStructureIdentifier(), codes);
+                    }
+                }
+                return new Partition(number, run.isEmpty() ? null : run, structures, stale);
+            }));
+        }
+        return partitions;
+    }
+
+    /**
+     * Identifiers of all structures in committed partitions.
+     * @return a set of structure identifiers
+     */
+    Set<String> getStructureIdentifiers() {
+        return getPartitions().stream()
+                .flatMap(partition -> partition.structures.stream())
+                .map(StructureInformation::getStructureIdentifier)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Record the previous version of structures that are about to be replaced.
+     * @param replaced descriptor codes of all previously indexed residue pairs, keys are structure identifiers
+     */
+    void writeReplaced(Map<String, int[]> replaced) {
+        write(REPLACED, outputStream -> {
+            outputStream.writeInt(replaced.size());
+            for (Map.Entry<String, int[]> entry : replaced.entrySet()) {
+                outputStream.writeUTF(entry.getKey());
+                writeCodes(outputStream, entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * The previous version of structures that were about to be replaced by the last update.
+     * @return descriptor codes of all previously indexed residue pairs, keys are structure identifiers
+     */
+    Map<String, int[]> getReplaced() {
+        if (!Files.exists(directory.resolve(REPLACED))) {
+            return Collections.emptyMap();
+        }
+
+        return read(REPLACED, inputStream -> {
+            int count = inputStream.readInt();
+            Map<String, int[]> replaced = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                replaced.put(inputStream.readUTF(), readCodes(inputStream));
+            }
+            return replaced;
+        });
+    }
+
+    /**
+     * Remove all partitions and the record of replaced structures.
+     */
+    void clear() {
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Integer> getPartitionNumbers() {
+        if (!Files.exists(directory)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PARTITION_PREFIX) && name.endsWith(EXTENSION))
+                    .map(name -> Integer.parseInt(name.substring(PARTITION_PREFIX.length(), name.length() - EXTENSION.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String name, Writer writer) {
+        Path tmp = directory.resolve(name + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tmp.toFile());
+                 DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream, BUFFER_SIZE))) {
+                writer.write(outputStream);
+                outputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            Files.move(tmp, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(String name, Reader<T> reader) {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(name)), BUFFER_SIZE))) {
+            return reader.read(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeStructureInformation(DataOutputStream outputStream, StructureInformation structureInformation) throws IOException {
+        outputStream.writeUTF(structureInformation.getStructureIdentifier());
+        outputStream.writeInt(structureInformation.getRevision().getMajor());
+        outputStream.writeInt(structureInformation.getRevision().getMinor());
+        Map<String, Set<String>> assemblyInformation = structureInformation.getAssemblyInformation();
+        outputStream.writeInt(assemblyInformation.size());
+        for (Map.Entry<String, Set<String>> entry : assemblyInformation.entrySet()) {
+            outputStream.writeUTF(entry.getKey());
+            outputStream.writeInt(entry.getValue().size());
+            for (String operator : entry.getValue()) {
+                outputStream.writeUTF(operator);
+            }
+        }
+    }
+
+    private static StructureInformation readStructureInformation(DataInputStream inputStream) throws IOException {
+        String structureIdentifier = inputStream.readUTF();
+        Revision revision = new Revision(inputStream.readInt(), inputStream.readInt());
+        int assemblyCount = inputStream.readInt();
+        Map<String, Set<String>> assemblyInformation = new LinkedHashMap<>();
+        for (int i = 0; i < assemblyCount; i++) {
+            String assemblyId = inputStream.readUTF();
+            int operatorCount = inputStream.readInt();
+            Set<String> operators = new HashSet<>();
+            for (int j = 0; j < operatorCount; j++) {
+                operators.add(inputStream.readUTF());
+            }
+            assemblyInformation.put(assemblyId, operators);
+        }
+        return new StructureInformation(structureIdentifier, revision, assemblyInformation);
+    }
+
+    private static void writeCodes(DataOutputStream outputStream, int[] codes) throws IOException {
+        outputStream.writeInt(codes.length);
+        for (int code : codes) {
+            outputStream.writeInt(code);
+        }
+    }
+
+    private static int[] readCodes(DataInputStream inputStream) throws IOException {
+        int[] codes = new int[inputStream.readInt()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = inputStream.readInt();
+        }
+        return codes;
+    }
+
+    interface Writer {
+        void write(DataOutputStream outputStream) throws IOException;
+    }
+
+    interface Reader<T> {
+        T read(DataInputStream inputStream) throws IOException;
+    }
+
+    /**
+     * A committed set of structures.
+     */
+    static class Partition {
+        final int number;
+        // null if structures are written to the inverted index directly
+        final String run;
+        final List<StructureInformation> structures;
+        final Map<String, int[]> stale;
+
+        Partition(int number, String run, List<StructureInformation> structures, Map<String, int[]> stale) {
+            this.number = number;
+            this.run = run;
+            this.structures = structures;
+            this.stale = stale;
+        }
+    }
+}
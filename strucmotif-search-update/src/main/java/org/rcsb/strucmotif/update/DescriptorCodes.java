@@ -0,0 +1,97 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+/**
+ * Records the descriptor codes (see {@link ResiduePairDescriptor#getCode()}) of all bins that contain residue pairs of
+ * a structure, as they were extracted when the structure was written to the inverted index. A replaced or removed
+ * structure can then be removed from exactly these bins, even if the residue graph or the distance cutoff changed in
+ * the meantime.
+ * <p>
+ * Codes are kept in the directory of the inverted index they describe, so a rebuilt index brings its own codes. Each
+ * structure has its own file, which is written to a temporary file and then moved in place. Structures without a record
+ * (e.g. indexed by an older version) have to be removed by a walk of the whole inverted index.
+ */
+class DescriptorCodes {
+    /**
+     * Name of the directory below the inverted index.
+     */
+    static final String DIRECTORY = "codes";
+    private static final String EXTENSION = ".bin";
+    private final Path directory;
+
+    /**
+     * Codes of the inverted index in a directory.
+     * @param indexPath the directory of the inverted index
+     */
+    DescriptorCodes(Path indexPath) {
+        this.directory = indexPath.resolve(DIRECTORY);
+    }
+
+    /**
+     * Record the codes of a structure, replaces any previous record.
+     * @param structureIdentifier the structure
+     * @param codes descriptor codes of all bins that contain residue pairs of this structure
+     */
+    void write(String structureIdentifier, int[] codes) {
+        Path tmp = directory.resolve(structureIdentifier + EXTENSION + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                outputStream.writeInt(codes.length);
+                for (int code : codes) {
+                    outputStream.writeInt(code);
+                }
+            }
+            Files.move(tmp, directory.resolve(structureIdentifier + EXTENSION), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The recorded codes of a structure.
+     * @param structureIdentifier the structure
+     * @return descriptor codes of all bins that contain residue pairs of this structure, <code>null</code> if there is
+     * no record
+     */
+    int[] read(String structureIdentifier) {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(structureIdentifier + EXTENSION))))) {
+            int[] codes = new int[inputStream.readInt()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = inputStream.readInt();
+            }
+            return codes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Remove the records of structures.
+     * @param structureIdentifiers the structures
+     */
+    void delete(Collection<String> structureIdentifiers) {
+        try {
+            for (String structureIdentifier : structureIdentifiers) {
+                Files.deleteIfExists(directory.resolve(structureIdentifier + EXTENSION));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,22 +1,19 @@
 package org.rcsb.strucmotif.update;
 
 import org.rcsb.cif.CifIO;
-import org.rcsb.cif.ParsingException;
+import org.rcsb.cif.CifOptions;
 import org.rcsb.cif.schema.StandardSchemata;
 import org.rcsb.cif.schema.mm.MmCifFile;
 import org.rcsb.cif.schema.mm.PdbxAuditRevisionHistory;
 import org.rcsb.cif.schema.mm.PdbxStructAssemblyGen;
 import org.rcsb.strucmotif.config.MotifSearchConfig;
 import org.rcsb.strucmotif.core.ThreadPool;
-import org.rcsb.strucmotif.domain.structure.ResidueGraph;
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
 import org.rcsb.strucmotif.domain.structure.Revision;
 import org.rcsb.strucmotif.domain.structure.StructureInformation;
-import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
-import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
-import org.rcsb.strucmotif.domain.structure.Structure;
 import org.rcsb.strucmotif.io.StructureDataProvider;
-import org.rcsb.strucmotif.math.Partition;
 import org.rcsb.strucmotif.io.InvertedIndex;
+import org.rcsb.strucmotif.io.InvertedIndexImpl;
 import org.rcsb.strucmotif.io.StateRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,16 +26,23 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 import org.springframework.context.annotation.ComponentScan;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -53,6 +57,7 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Runs strucmotif updates from the command-line.
@@ -62,6 +67,8 @@ import java.util.stream.Stream;
 @EntityScan("org.rcsb.strucmotif")
 public class MotifSearchUpdate implements CommandLineRunner {
     private static final Logger logger = LoggerFactory.getLogger(MotifSearchUpdate.class);
+    private static final String REBUILD_DIRECTORY = MotifSearchConfig.INDEX_DIRECTORY + ".rebuild";
+    private static final String OBSOLETE_DIRECTORY = MotifSearchConfig.INDEX_DIRECTORY + ".obsolete";
 
     /**
      * Entry point from the command-line.
@@ -76,6 +83,8 @@ public class MotifSearchUpdate implements CommandLineRunner {
     private final InvertedIndex invertedIndex;
     private final MotifSearchConfig motifSearchConfig;
     private final ThreadPool threadPool;
+    private final Checkpoint checkpoint;
+    private final DescriptorCodes descriptorCodes;
 
     /**
      * Injectable constructor.
@@ -92,6 +101,8 @@ public class MotifSearchUpdate implements CommandLineRunner {
         this.invertedIndex = invertedIndex;
         this.motifSearchConfig = motifSearchConfig;
         this.threadPool = threadPool;
+        this.checkpoint = new Checkpoint(Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.CHECKPOINT_DIRECTORY));
+        this.descriptorCodes = new DescriptorCodes(Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.INDEX_DIRECTORY));
     }
 
     /**
@@ -105,8 +116,11 @@ public class MotifSearchUpdate implements CommandLineRunner {
             System.out.println("Usage: java -Xmx12G -jar update.jar operation ...");
             System.out.println("Valid operation values: " + Arrays.toString(Operation.values()));
             System.out.println("Optionally: list of entry ids - (no argument performs null operation, use single argument 'full' for complete update)");
-            System.out.println("If you want to update entries you have to explicitly remove them first");
+            System.out.println("ADD skips known entries, UPDATE also reprocesses known entries whose revision changed");
             System.out.println("Example: java -Xmx12G -jar update.jar ADD 1acj 1exr 4hhb");
+            System.out.println("Weekly update: java -Xmx12G -jar update.jar UPDATE full");
+            System.out.println("Convert legacy renumbered structures: java -Xmx12G -jar update.jar MIGRATE full");
+            System.out.println("Rebuild inverted index from all known structures: java -Xmx12G -jar update.jar REBUILD");
             return;
         }
 
@@ -116,21 +130,22 @@ public class MotifSearchUpdate implements CommandLineRunner {
         List<String> requested;
         System.arraycopy(args, 1, ids, 0, ids.length);
         if (ids.length == 1 && ids[0].equalsIgnoreCase("full")) {
-            requested = getAllIdentifiers();
+            // migration only concerns structures that have been processed before
+            requested = operation == Operation.MIGRATE ? getKnownIdentifiers() : getAllIdentifiers();
         } else {
             requested = Arrays.stream(ids).map(String::toUpperCase).collect(Collectors.toList());
         }
         Collections.shuffle(requested);
 
-        // check for sanity of internal state
-        if (operation != Operation.RECOVER) {
-            Collection<String> dirtyStructureIdentifiers = stateRepository.selectDirty();
-            if (dirtyStructureIdentifiers.size() > 0) {
-                logger.warn("Update state is dirty - problematic identifiers:\n{}",
-                        dirtyStructureIdentifiers);
-                logger.info("Recovering from dirty state");
-                remove(stateRepository.selectDirty());
-            }
+        // invalidate cached results before the index changes and again once it's done, so that results computed in the meantime are discarded too
+        stateRepository.incrementGeneration();
+
+        // an interrupted rebuild may have left the index half swapped
+        recoverIndex(Paths.get(motifSearchConfig.getRootPath()));
+
+        // check for sanity of internal state - a rebuild replaces the whole index anyway
+        if (operation != Operation.MIGRATE && operation != Operation.REBUILD) {
+            recover();
         }
 
         logger.info("Starting update - Operation: {}, {} ids ({})",
@@ -143,16 +158,30 @@ public class MotifSearchUpdate implements CommandLineRunner {
                                 "[",
                                 requested.size() > 5 ? ", ...]" : "]")));
 
-        switch (operation) {
-            case ADD:
-                add(getDeltaPlusIdentifiers(requested));
-                break;
-            case REMOVE:
-                remove(getDeltaMinusIdentifiers(requested));
-                break;
-            case RECOVER:
-                remove(stateRepository.selectDirty());
-                break;
+        try {
+            switch (operation) {
+                case ADD:
+                    add(getDeltaPlusIdentifiers(requested));
+                    break;
+                case UPDATE:
+                    update(requested);
+                    break;
+                case REMOVE:
+                    resume();
+                    remove(getDeltaMinusIdentifiers(requested));
+                    break;
+                case RECOVER:
+                    resume();
+                    break;
+                case MIGRATE:
+                    migrate(requested);
+                    break;
+                case REBUILD:
+                    rebuild();
+                    break;
+            }
+        } finally {
+            stateRepository.incrementGeneration();
         }
 
         logger.info("Finished update operation");
@@ -165,132 +194,352 @@ public class MotifSearchUpdate implements CommandLineRunner {
      * @throws InterruptedException update failure
      */
     public void add(Collection<String> identifiers) throws ExecutionException, InterruptedException {
-        long target = identifiers.size();
-        logger.info("{} files to process in total", target);
+        logger.info("{} files to process in total - flushing every {} structures or {} MB of residue pairs",
+                identifiers.size(),
+                motifSearchConfig.getUpdateChunkSize(),
+                motifSearchConfig.getUpdateBufferSize());
 
-        Partition<String> partitions = new Partition<>(identifiers, motifSearchConfig.getUpdateChunkSize());
-        logger.info("Formed {} partitions of {} structures",
-                partitions.size(),
-                motifSearchConfig.getUpdateChunkSize());
+        new UpdatePipeline(structureDataProvider, invertedIndex, stateRepository, threadPool, motifSearchConfig, this::createStructureInformation, checkpoint, descriptorCodes)
+                .run(identifiers);
+    }
 
-        Context context = new Context();
+    /**
+     * Prepare resuming an interrupted update. Structures of committed partitions are kept and finished by the next
+     * pipeline. Replaced structures that didn't reach a partition are removed from the bins of their previous version.
+     * Only remaining dirty structures (e.g. of an update that ran without checkpoint) require a walk of the whole
+     * inverted index.
+     */
+    private void recover() {
+        Set<String> committed = checkpoint.getStructureIdentifiers();
+        Map<String, int[]> uncommitted = checkpoint.getReplaced()
+                .entrySet()
+                .stream()
+                .filter(entry -> !committed.contains(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (!uncommitted.isEmpty()) {
+            logger.info("Removing {} replaced structures that weren't committed", uncommitted.size());
+            removeFromBins(uncommitted);
+        }
+        checkpoint.writeReplaced(Collections.emptyMap());
 
-        // split into partitions and process
-        for (int i = 0; i < partitions.size(); i++) {
-            context.partitionContext = (i + 1) + " / " + partitions.size();
+        if (!committed.isEmpty()) {
+            logger.info("Found {} structures of interrupted update - they will be resumed", committed.size());
+        }
 
-            List<String> partition = partitions.get(i);
-            logger.info("[{}] Start processing partition", context.partitionContext);
+        List<String> dirtyStructureIdentifiers = stateRepository.selectDirty()
+                .stream()
+                .filter(structureIdentifier -> !committed.contains(structureIdentifier))
+                .collect(Collectors.toList());
+        if (dirtyStructureIdentifiers.size() > 0) {
+            logger.warn("Update state is dirty - problematic identifiers:\n{}",
+                    dirtyStructureIdentifiers);
+            logger.info("Recovering from dirty state");
+            remove(dirtyStructureIdentifiers);
+        }
+    }
 
-            context.structureCounter = new AtomicInteger();
-            context.buffer = new ConcurrentHashMap<>();
-            threadPool.submit(() -> {
-                partition.parallelStream().forEach(id -> handleStructureIdentifier(id, context));
-                return null;
-            }).get();
+    private void removeFromBins(Map<String, int[]> structures) {
+        Map<Integer, Set<String>> bins = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : structures.entrySet()) {
+            for (int code : entry.getValue()) {
+                bins.computeIfAbsent(code, k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
 
-            // mark as dirty only around index update
-            stateRepository.insertDirty(partition);
-            persist(context);
+        for (String structureIdentifier : structures.keySet()) {
+            structureDataProvider.deleteRenumbered(structureIdentifier);
         }
+        bins.forEach((code, structureIdentifiers) -> invertedIndex.delete(ResiduePairDescriptor.ofCode(code), structureIdentifiers));
+        descriptorCodes.delete(structures.keySet());
+        List<String> known = getKnownIdentifiers()
+                .stream()
+                .filter(structures::containsKey)
+                .collect(Collectors.toList());
+        if (!known.isEmpty()) {
+            stateRepository.deleteKnown(known);
+        }
+        stateRepository.deleteDirty(structures.keySet());
     }
 
-    static class Context {
-        final Set<StructureInformation> processed;
-        String partitionContext;
-        Map<ResiduePairDescriptor, Map<String, Collection<ResiduePairIdentifier>>> buffer;
-        AtomicInteger structureCounter;
-
-        public Context() {
-            this.processed = Collections.synchronizedSet(new HashSet<>());
+    /**
+     * The 'RECOVER' operation. Finishes all committed partitions of an interrupted update.
+     * @throws ExecutionException update failure
+     * @throws InterruptedException update failure
+     */
+    public void resume() throws ExecutionException, InterruptedException {
+        if (checkpoint.getPartitions().isEmpty()) {
+            return;
         }
+
+        new UpdatePipeline(structureDataProvider, invertedIndex, stateRepository, threadPool, motifSearchConfig, this::createStructureInformation, checkpoint, descriptorCodes)
+                .resume();
     }
 
-    private void handleStructureIdentifier(String structureIdentifier, Context context) {
-        int maxRetries = motifSearchConfig.getDownloadTries();
-        for (int i = 1; i <= maxRetries; i++) {
-            try {
-                handleStructureIdentifierInternal(structureIdentifier, context);
-                break;
-            } catch (UncheckedIOException e) {
-                if (i >= maxRetries) {
-                    // max retries exceeded
-                    throw e;
+    /**
+     * The 'UPDATE' operation. Adds unknown structures and replaces known structures whose revision differs from that
+     * of the source file. Previous versions are removed from exactly those bins where they don't get replaced by new
+     * data, so the effort is proportional to the number of changed structures.
+     * @param identifiers set of identifiers to add or update
+     * @throws ExecutionException update failure
+     * @throws InterruptedException update failure
+     */
+    public void update(Collection<String> identifiers) throws ExecutionException, InterruptedException {
+        Map<String, Revision> knownRevisions = stateRepository.selectKnown()
+                .stream()
+                .collect(Collectors.toMap(StructureInformation::getStructureIdentifier, StructureInformation::getRevision, (a, b) -> b));
+        // structures of an interrupted update are resumed as they are
+        Set<String> committed = checkpoint.getStructureIdentifiers();
+        List<String> added = new ArrayList<>();
+        List<String> candidates = new ArrayList<>();
+        for (String identifier : identifiers) {
+            if (committed.contains(identifier)) {
+                added.add(identifier);
+            } else if (knownRevisions.containsKey(identifier)) {
+                candidates.add(identifier);
+            } else {
+                added.add(identifier);
+            }
+        }
+
+        // only the revision history is parsed
+        logger.info("Checking revisions of {} known structures", candidates.size());
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        AtomicInteger counter = new AtomicInteger();
+        threadPool.submit(() -> {
+            candidates.parallelStream().forEach(id -> {
+                Revision revision = readRevision(id);
+                if (revision != null && !revision.equals(knownRevisions.get(id))) {
+                    changed.add(id);
                 }
 
-                int count = context.structureCounter.get();
-                String structureContext = count + " / " + motifSearchConfig.getUpdateChunkSize() + "] [" + structureIdentifier;
-                logger.warn("[{}] [{}] [try: {} / {}] Failed to download source file - {}",
-                        context.partitionContext,
-                        structureContext,
-                        i,
-                        maxRetries,
-                        e.getMessage());
+                int count = counter.incrementAndGet();
+                if (count % 10000 == 0) {
+                    logger.info("{} / {}", count, candidates.size());
+                }
+            });
+            return null;
+        }).get();
+        logger.info("{} new structures, {} structures with changed revision, {} unchanged",
+                added.size(),
+                changed.size(),
+                candidates.size() - changed.size());
+
+        // bins of previous versions as recorded when they were indexed
+        Map<String, int[]> replaced = new HashMap<>();
+        List<String> unrecorded = new ArrayList<>();
+        for (String id : changed) {
+            int[] codes = descriptorCodes.read(id);
+            if (codes != null) {
+                replaced.put(id, codes);
+            } else {
+                unrecorded.add(id);
             }
         }
+        if (!changed.isEmpty()) {
+            // if anything fails from here, recovery will remove these structures from the bins of their previous version
+            // (or from the whole index if bins weren't recorded)
+            checkpoint.writeReplaced(replaced);
+            stateRepository.insertDirty(changed);
+            stateRepository.deleteKnown(changed);
+        }
+        if (!unrecorded.isEmpty()) {
+            // indexed before bins were recorded, they are added like new structures once gone
+            logger.info("{} structures with changed revision have no recorded bins", unrecorded.size());
+            invertedIndex.delete(unrecorded);
+        }
+
+        List<String> process = new ArrayList<>(added);
+        process.addAll(changed);
+        new UpdatePipeline(structureDataProvider, invertedIndex, stateRepository, threadPool, motifSearchConfig, this::createStructureInformation, checkpoint, descriptorCodes)
+                .run(process, replaced);
     }
 
-    private void handleStructureIdentifierInternal(String structureIdentifier, Context context) {
-        try {
-            // write renumbered structure
-            MmCifFile mmCifFile = CifIO.readFromInputStream(structureDataProvider.getOriginalInputStream(structureIdentifier)).as(StandardSchemata.MMCIF);
-            Revision revision = getRevision(mmCifFile);
-            Map<String, Set<String>> assemblyInformation = getAssemblyInformation(mmCifFile);
-            structureDataProvider.writeRenumbered(structureIdentifier, mmCifFile);
-            context.processed.add(new StructureInformation(structureIdentifier, revision, assemblyInformation));
-        } catch (IOException e) {
-            throw new UncheckedIOException("cif parsing failed for " + structureIdentifier, e);
-        } catch (ParsingException e) {
-            logger.info("cif parsing failed for " + structureIdentifier, e);
+    private Revision readRevision(String structureIdentifier) {
+        CifOptions options = CifOptions.builder()
+                .categoryWhitelist("pdbx_audit_revision_history")
+                .build();
+        try (InputStream inputStream = openRevisionHistory(structureIdentifier)) {
+            return getRevision(CifIO.readFromInputStream(inputStream, options).as(StandardSchemata.MMCIF));
+        } catch (IllegalStateException e) {
+            // a configuration problem, not one of this structure
             throw e;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("[{}] Failed to determine revision - {}",
+                    structureIdentifier,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Open the part of an original structure that holds its revision history. A local copy is read if present, so
+     * checking revisions doesn't download anything. Otherwise, a text CIF file is only transferred up to the end of
+     * its revision history. BinaryCIF can't be cut off like this and would be downloaded in full for every known
+     * structure, so it is rejected.
+     * @throws IllegalStateException if the structure is only available as remote BinaryCIF
+     */
+    private InputStream openRevisionHistory(String structureIdentifier) throws IOException {
+        InputStream localInputStream = structureDataProvider.getLocalOriginalInputStream(structureIdentifier);
+        if (localInputStream != null) {
+            return localInputStream;
         }
 
-        int count = context.structureCounter.incrementAndGet();
-        String structureContext = count + " / " + motifSearchConfig.getUpdateChunkSize() + "] [" + structureIdentifier;
+        String cifFetchUrl = motifSearchConfig.getCifFetchUrl();
+        if (cifFetchUrl.contains(".bcif")) {
+            throw new IllegalStateException(getBinaryCifMessage(structureIdentifier, cifFetchUrl));
+        }
 
-        // fails when file is missing (should not happen) or does not contain valid polymer chain
-        Structure structure;
-        try {
-            structure = structureDataProvider.readRenumbered(structureIdentifier);
-        } catch (UncheckedIOException e) {
-            logger.warn("[{}] [{}] No valid polymer chains",
-                    context.partitionContext,
-                    structureContext);
+        BufferedInputStream inputStream = new BufferedInputStream(structureDataProvider.getOriginalInputStream(structureIdentifier));
+        inputStream.mark(2);
+        boolean gzipped = inputStream.read() == 0x1f && inputStream.read() == 0x8b;
+        inputStream.reset();
+        if (gzipped) {
+            inputStream = new BufferedInputStream(new GZIPInputStream(inputStream));
+        }
+
+        // text CIF starts with a comment or a data block, anything else is BinaryCIF
+        inputStream.mark(1);
+        int first = inputStream.read();
+        inputStream.reset();
+        if (first != '#' && first != 'd' && !Character.isWhitespace(first)) {
+            inputStream.close();
+            throw new IllegalStateException(getBinaryCifMessage(structureIdentifier, cifFetchUrl));
+        }
+
+        StringBuilder revisionHistory = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            boolean loop = false;
+            boolean found = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data_")) {
+                    revisionHistory.append(line).append('\n');
+                } else if (line.startsWith("_pdbx_audit_revision_history.")) {
+                    if (!found && loop) {
+                        revisionHistory.append("loop_\n");
+                    }
+                    found = true;
+                    revisionHistory.append(line).append('\n');
+                } else if (found) {
+                    // end of category: stop transferring
+                    if (line.startsWith("#") || line.startsWith("_") || line.startsWith("loop_")) {
+                        break;
+                    }
+                    revisionHistory.append(line).append('\n');
+                }
+                loop = line.startsWith("loop_");
+            }
+        }
+        return new ByteArrayInputStream(revisionHistory.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getBinaryCifMessage(String structureIdentifier, String cifFetchUrl) {
+        return "Revision of " + structureIdentifier + " can only be read from BinaryCIF at " + cifFetchUrl + ", which " +
+                "would download every known structure in full - provide local copies in 'data-source' or set " +
+                "'cif-fetch-url' to text CIF (e.g. https://files.rcsb.org/download/{id}.cif.gz) for the UPDATE operation";
+    }
+
+    /**
+     * The 'MIGRATE' operation. Converts renumbered structures from legacy BinaryCIF to the binary format
+     * (and moves single files into pack files if these are enabled).
+     * @param identifiers set of identifiers to migrate
+     * @throws ExecutionException migration failure
+     * @throws InterruptedException migration failure
+     */
+    public void migrate(Collection<String> identifiers) throws ExecutionException, InterruptedException {
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger migrated = new AtomicInteger();
+        threadPool.submit(() -> {
+            identifiers.parallelStream().forEach(id -> {
+                if (structureDataProvider.migrateRenumbered(id)) {
+                    migrated.incrementAndGet();
+                }
+
+                int count = counter.incrementAndGet();
+                if (count % 10000 == 0) {
+                    logger.info("{} / {}", count, identifiers.size());
+                }
+            });
+            return null;
+        }).get();
+        logger.info("Migrated {} renumbered structures ({} already up-to-date)", migrated.get(), identifiers.size() - migrated.get());
+    }
+
+    /**
+     * The 'REBUILD' operation. Creates a new inverted index from all known renumbered structures next to the current
+     * one and replaces it once complete. Structures marked as dirty aren't known and therefore won't be part of the new
+     * index, the same applies to structures of an interrupted update, whose checkpoint is dropped.
+     * @throws ExecutionException rebuild failure
+     * @throws InterruptedException rebuild failure
+     * @throws IOException if replacing the index failed
+     */
+    public void rebuild() throws ExecutionException, InterruptedException, IOException {
+        Collection<String> dirty = stateRepository.selectDirty();
+        Collection<StructureInformation> known = stateRepository.selectKnown();
+        Path rootPath = Paths.get(motifSearchConfig.getRootPath());
+        Path indexPath = rootPath.resolve(MotifSearchConfig.INDEX_DIRECTORY);
+        Path rebuildPath = rootPath.resolve(REBUILD_DIRECTORY);
+        Path obsoletePath = rootPath.resolve(OBSOLETE_DIRECTORY);
+        deleteDirectory(rebuildPath);
+        deleteDirectory(obsoletePath);
+        checkpoint.clear();
+
+        logger.info("Rebuilding inverted index from {} structures in {}", known.size(), rebuildPath);
+        new UpdatePipeline(structureDataProvider, new InvertedIndexImpl(rebuildPath), stateRepository, threadPool, motifSearchConfig, this::createStructureInformation, null, new DescriptorCodes(rebuildPath))
+                .rebuild(known);
+
+        // swap in new index - if interrupted in between, recoverIndex finishes the swap
+        if (Files.exists(indexPath)) {
+            Files.move(indexPath, obsoletePath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(rebuildPath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+        deleteDirectory(obsoletePath);
+        if (!dirty.isEmpty()) {
+            stateRepository.deleteDirty(dirty);
+        }
+        logger.info("Replaced inverted index");
+    }
+
+    /**
+     * Finish a swap of the inverted index that was interrupted by a crash. A rebuild moves the current index to
+     * <code>index.obsolete</code> and then the complete new index from <code>index.rebuild</code> to
+     * <code>index</code>. If only the first move happened, the second one is performed. Should the rebuilt index be
+     * gone, the previous index is restored instead. Leftovers of a complete swap are removed.
+     * @param rootPath the root directory of all data
+     * @throws IOException if the index can't be restored
+     */
+    static void recoverIndex(Path rootPath) throws IOException {
+        Path indexPath = rootPath.resolve(MotifSearchConfig.INDEX_DIRECTORY);
+        Path rebuildPath = rootPath.resolve(REBUILD_DIRECTORY);
+        Path obsoletePath = rootPath.resolve(OBSOLETE_DIRECTORY);
+        if (!Files.exists(indexPath) && Files.exists(obsoletePath)) {
+            if (Files.exists(rebuildPath)) {
+                logger.warn("Found interrupted swap of inverted index - moving rebuilt index into place");
+                Files.move(rebuildPath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                logger.warn("Found interrupted swap of inverted index without rebuilt index - restoring previous index");
+                Files.move(obsoletePath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        deleteDirectory(obsoletePath);
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
             return;
         }
 
-        try {
-            ResidueGraph residueGraph = new ResidueGraph(structure, motifSearchConfig.getSquaredDistanceCutoff(), false);
-
-            // extract motifs
-            AtomicInteger structureMotifCounter = new AtomicInteger();
-            threadPool.submit(() -> {
-                residueGraph.residuePairOccurrencesParallel()
-                        .forEach(motifOccurrence -> {
-                            ResiduePairDescriptor motifDescriptor = motifOccurrence.getResiduePairDescriptor();
-                            ResiduePairIdentifier targetIdentifier = motifOccurrence.getResidueIdentifier();
-
-                            Map<String, Collection<ResiduePairIdentifier>> groupedTargetIdentifiers = context.buffer.computeIfAbsent(motifDescriptor, k -> Collections.synchronizedMap(new HashMap<>()));
-                            Collection<ResiduePairIdentifier> targetIdentifiers = groupedTargetIdentifiers.computeIfAbsent(structureIdentifier, k -> Collections.synchronizedSet(new HashSet<>()));
-                            targetIdentifiers.add(targetIdentifier);
-                            structureMotifCounter.incrementAndGet();
-                        });
-                return null;
-            }).get();
-            logger.info("[{}] [{}] Extracted {} residue pairs",
-                    context.partitionContext,
-                    structureContext,
-                    structureMotifCounter.get());
-        } catch (Exception e) {
-            logger.warn("[{}] [{}] Residue graph determination failed",
-                    context.partitionContext,
-                    structureContext,
-                    e);
-            // fail complete update
-            throw new RuntimeException(e);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
         }
     }
 
+    private StructureInformation createStructureInformation(String structureIdentifier, MmCifFile mmCifFile) {
+        return new StructureInformation(structureIdentifier, getRevision(mmCifFile), getAssemblyInformation(mmCifFile));
+    }
+
     private Map<String, Set<String>> getAssemblyInformation(MmCifFile mmCifFile) {
         // TODO maybe this functionality should be part of Structures?
         /*
@@ -378,41 +627,6 @@ public class MotifSearchUpdate implements CommandLineRunner {
         return new Revision(pdbxAuditRevisionHistory.getMajorRevision().get(last), pdbxAuditRevisionHistory.getMinorRevision().get(last));
     }
 
-    private void persist(Context context) throws ExecutionException, InterruptedException {
-        logger.info("[{}] Persisting {} unique residue pair descriptors",
-                context.partitionContext,
-                context.buffer.size());
-
-        final int bufferTotal = context.buffer.size();
-        AtomicInteger bufferCount = new AtomicInteger();
-        threadPool.submit(() -> {
-            context.buffer.entrySet().parallelStream().forEach(entry -> {
-                ResiduePairDescriptor full = entry.getKey();
-                Map<String, Collection<ResiduePairIdentifier>> output = entry.getValue();
-
-                if (bufferCount.incrementAndGet() % 100000 == 0) {
-                    logger.info("[{}] {} / {}",
-                            context.partitionContext,
-                            bufferCount,
-                            bufferTotal);
-                }
-
-                invertedIndex.insert(full, output);
-
-                // writing takes additional heap - ease burden by dropping processed output bins
-                output.clear();
-            });
-            return null;
-        }).get();
-
-        context.buffer.clear();
-
-        // processed contains all StructureIdentifiers + corresponding revision
-        stateRepository.insertKnown(context.processed);
-        stateRepository.deleteDirty(context.processed.stream().map(StructureInformation::getStructureIdentifier).collect(Collectors.toSet()));
-        context.processed.clear();
-    }
-
     /**
      * 'REMOVE' operation.
      * @param identifiers set of identifiers to remove
@@ -429,14 +643,27 @@ public class MotifSearchUpdate implements CommandLineRunner {
         // inverted index is expensive and should be done as batch
         if (identifiers.size() > 0) {
             invertedIndex.delete(identifiers);
+            descriptorCodes.delete(identifiers);
             stateRepository.deleteKnown(identifiers);
             stateRepository.deleteDirty(identifiers);
+            structureDataProvider.compactRenumbered();
         }
         logger.info("Finished removal operation");
     }
 
     private static final Pattern ENTRY_ID_PATTERN = Pattern.compile("[0-9][0-9A-Z]{3}");
 
+    /**
+     * Reports all structures that have been processed before.
+     * @return collection of structure identifiers
+     */
+    public List<String> getKnownIdentifiers() {
+        return stateRepository.selectKnown()
+                .stream()
+                .map(StructureInformation::getStructureIdentifier)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Reports all structures currently present in the PDB archive.
      * @return collection of structure identifiers
@@ -4,21 +4,35 @@ import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
- * The possible operations during a strucmotif update ('ADD' structures, 'REMOVE' structures, 'RECOVER').
+ * The possible operations during a strucmotif update ('ADD' structures, 'UPDATE' changed structures, 'REMOVE'
+ * structures, 'RECOVER', 'MIGRATE' renumbered structures, 'REBUILD' the inverted index).
  */
 public enum Operation {
     /**
      * Add structures.
      */
     ADD,
+    /**
+     * Add new structures and reprocess known structures whose revision changed.
+     */
+    UPDATE,
     /**
      * Remove structures.
      */
     REMOVE,
     /**
-     * Try to recover - this is used when the JVM dies while manipulating the inverted index.
+     * Try to recover - this is used when the JVM dies while manipulating the inverted index. Committed partitions of an
+     * interrupted update are finished, remaining dirty structures are removed.
+     */
+    RECOVER,
+    /**
+     * Convert legacy BinaryCIF renumbered structures to the binary format. Doesn't touch the inverted index.
+     */
+    MIGRATE,
+    /**
+     * Rebuild the inverted index from scratch using all known renumbered structures. Each bin is written exactly once.
      */
-    RECOVER;
+    REBUILD;
 
     /**
      * Map from string to Operation enum.
@@ -0,0 +1,74 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.strucmotif.domain.motif.IndexResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.structure.IndexSelection;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only collection of residue pair identifiers that are stored as packed ints. Residue indices are stored
+ * pairwise, operators are stored as indices into a per-structure table and omitted altogether if all pairs refer to the
+ * identity operator. Identifier objects are only created while iterating.
+ */
+class PackedResiduePairIdentifiers extends AbstractCollection<ResiduePairIdentifier> {
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int OBJECT_SIZE = 24;
+    private final int[] indices;
+    // null if all pairs refer to the identity operator
+    private final int[] operators;
+    private final String[] operatorNames;
+
+    /**
+     * Construct a collection.
+     * @param indices residue indices, 2 per pair
+     * @param operators operator indices, 2 per pair - <code>null</code> if all pairs refer to the identity
+     * @param operatorNames operator table, element 0 must be the identity operator
+     */
+    PackedResiduePairIdentifiers(int[] indices, int[] operators, String[] operatorNames) {
+        this.indices = indices;
+        this.operators = operators;
+        this.operatorNames = operatorNames;
+    }
+
+    @Override
+    public Iterator<ResiduePairIdentifier> iterator() {
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < indices.length;
+            }
+
+            @Override
+            public ResiduePairIdentifier next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                String structOperId1 = operators == null ? operatorNames[0] : operatorNames[operators[i]];
+                String structOperId2 = operators == null ? operatorNames[0] : operatorNames[operators[i + 1]];
+                ResiduePairIdentifier identifier = new IndexResiduePairIdentifier(new IndexSelection(structOperId1, indices[i]),
+                        new IndexSelection(structOperId2, indices[i + 1]));
+                i += 2;
+                return identifier;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return indices.length / 2;
+    }
+
+    /**
+     * Approximate number of bytes occupied by this collection.
+     * @return bytes
+     */
+    long getFootprint() {
+        return OBJECT_SIZE + ARRAY_HEADER_SIZE + 4L * indices.length + (operators == null ? 0 : ARRAY_HEADER_SIZE + 4L * operators.length);
+    }
+}
@@ -0,0 +1,141 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the residue pairs of a single structure as flat int records (descriptor code, both residue indices and both
+ * operators) and groups them by descriptor code once the structure is complete. Not thread-safe and meant to be reused
+ * by one extraction worker, so that extraction neither allocates per-pair objects nor contends on shared collections.
+ */
+class ResiduePairCollector {
+    private static final String IDENTITY = "1";
+    private static final int STRIDE = 5;
+    private static final int MAP_ENTRY_SIZE = 48;
+    private final Map<String, Integer> operatorIndices;
+    private final List<String> operatorNames;
+    private int[] records;
+    private long[] keys;
+    private int size;
+
+    /**
+     * Construct an empty collector.
+     */
+    ResiduePairCollector() {
+        this.operatorIndices = new HashMap<>();
+        this.operatorNames = new ArrayList<>();
+        this.records = new int[STRIDE * 4096];
+        this.keys = new long[4096];
+        clear();
+    }
+
+    /**
+     * Drop all records, keeps allocated arrays.
+     */
+    void clear() {
+        size = 0;
+        operatorIndices.clear();
+        operatorNames.clear();
+        operatorIndices.put(IDENTITY, 0);
+        operatorNames.add(IDENTITY);
+    }
+
+    /**
+     * Register a residue pair.
+     * @param code the descriptor code
+     * @param index1 index of the first residue
+     * @param structOperId1 operator of the first residue
+     * @param index2 index of the second residue
+     * @param structOperId2 operator of the second residue
+     */
+    void add(int code, int index1, String structOperId1, int index2, String structOperId2) {
+        if (STRIDE * (size + 1) > records.length) {
+            records = Arrays.copyOf(records, 2 * records.length);
+        }
+
+        int offset = STRIDE * size++;
+        records[offset] = code;
+        records[offset + 1] = index1;
+        records[offset + 2] = index2;
+        records[offset + 3] = getOperatorIndex(structOperId1);
+        records[offset + 4] = getOperatorIndex(structOperId2);
+    }
+
+    private int getOperatorIndex(String structOperId) {
+        Integer index = operatorIndices.get(structOperId);
+        if (index == null) {
+            index = operatorNames.size();
+            operatorIndices.put(structOperId, index);
+            operatorNames.add(structOperId);
+        }
+        return index;
+    }
+
+    /**
+     * Number of registered residue pairs.
+     * @return an int
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Group all records by descriptor code. Pairs keep their order of registration within each group.
+     * @return a map from descriptor code to packed residue pairs
+     */
+    Map<Integer, Collection<ResiduePairIdentifier>> build() {
+        if (keys.length < size) {
+            keys = new long[records.length / STRIDE];
+        }
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) records[STRIDE * i] << 32 | i;
+        }
+        Arrays.sort(keys, 0, size);
+
+        String[] names = operatorNames.toArray(String[]::new);
+        Map<Integer, Collection<ResiduePairIdentifier>> groups = new HashMap<>();
+        int start = 0;
+        while (start < size) {
+            int code = (int) (keys[start] >>> 32);
+            int end = start + 1;
+            while (end < size && (int) (keys[end] >>> 32) == code) {
+                end++;
+            }
+
+            int[] indices = new int[2 * (end - start)];
+            int[] operators = new int[2 * (end - start)];
+            boolean identity = true;
+            for (int i = start; i < end; i++) {
+                int offset = STRIDE * (int) keys[i];
+                int j = 2 * (i - start);
+                indices[j] = records[offset + 1];
+                indices[j + 1] = records[offset + 2];
+                operators[j] = records[offset + 3];
+                operators[j + 1] = records[offset + 4];
+                identity &= operators[j] == 0 && operators[j + 1] == 0;
+            }
+            groups.put(code, new PackedResiduePairIdentifiers(indices, identity ? null : operators, names));
+            start = end;
+        }
+        return groups;
+    }
+
+    /**
+     * Approximate number of bytes occupied by grouped residue pairs once they are buffered.
+     * @param groups the output of {@link #build()}
+     * @return bytes
+     */
+    static long getFootprint(Map<Integer, Collection<ResiduePairIdentifier>> groups) {
+        long footprint = 0;
+        for (Collection<ResiduePairIdentifier> group : groups.values()) {
+            footprint += MAP_ENTRY_SIZE + ((PackedResiduePairIdentifiers) group).getFootprint();
+        }
+        return footprint;
+    }
+}
@@ -0,0 +1,283 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.strucmotif.domain.motif.IndexResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.structure.IndexSelection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Sorted run files of extracted residue pairs. Each run holds the content of one update buffer, grouped by descriptor
+ * in ascending order of {@link ResiduePairDescriptor#getCode()} and by structure in ascending order of identifiers. All
+ * runs are merged at the end, so that each bin of the inverted index is written once - regardless of the number of
+ * runs and without holding more than one descriptor in memory.
+ * <p>
+ * Layout of a run: a sequence of groups. Each group starts with the descriptor code and the number of structures. For
+ * each structure follows its identifier, the number of residue pairs and the pairs themselves: both residue indices
+ * and a flag that indicates whether operators other than the identity follow.
+ * <p>
+ * Runs are synced when written, so they can be referenced by a {@link Checkpoint} and merged by a later update.
+ */
+class SpillRuns implements Closeable {
+    private static final String IDENTITY = "1";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Path directory;
+    private final List<Path> runs;
+    private final AtomicInteger runCounter;
+    private final AtomicLong bytes;
+
+    /**
+     * Runs in a directory. Existing runs from failed updates are dropped.
+     * @param directory where runs are written
+     */
+    SpillRuns(Path directory) {
+        this(directory, Collections.emptyList());
+    }
+
+    /**
+     * Runs in a directory. Existing runs are dropped unless they are retained, retained runs will be part of the merge.
+     * @param directory where runs are written
+     * @param retained names of existing runs to keep
+     */
+    SpillRuns(Path directory, Collection<String> retained) {
+        this.directory = directory;
+        this.runs = new ArrayList<>();
+        this.runCounter = new AtomicInteger();
+        this.bytes = new AtomicLong();
+        try {
+            if (Files.exists(directory)) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        if (!retained.contains(file.getFileName().toString())) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+            }
+            Files.createDirectories(directory);
+
+            for (String name : retained) {
+                Path run = directory.resolve(name);
+                if (!Files.exists(run)) {
+                    throw new IllegalStateException("Run " + run + " is missing");
+                }
+                runs.add(run);
+                bytes.addAndGet(Files.size(run));
+                runCounter.accumulateAndGet(Integer.parseInt(name.replaceAll("\\D", "")), Math::max);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a buffer as a new run.
+     * @param residuePairs the buffer, keys are descriptor codes
+     * @return the name of the run
+     */
+    String write(Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> residuePairs) {
+        Path run = directory.resolve(String.format("run-%05d.bin", runCounter.incrementAndGet()));
+        int[] codes = residuePairs.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(run.toFile());
+             DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream, BUFFER_SIZE))) {
+            for (int code : codes) {
+                Map<String, Collection<ResiduePairIdentifier>> group = residuePairs.get(code);
+                outputStream.writeInt(code);
+                String[] structureIdentifiers = group.keySet().toArray(String[]::new);
+                Arrays.sort(structureIdentifiers);
+                outputStream.writeInt(structureIdentifiers.length);
+                for (String structureIdentifier : structureIdentifiers) {
+                    Collection<ResiduePairIdentifier> identifiers = group.get(structureIdentifier);
+                    outputStream.writeUTF(structureIdentifier);
+                    outputStream.writeInt(identifiers.size());
+                    for (ResiduePairIdentifier identifier : identifiers) {
+                        writeIdentifier(outputStream, identifier);
+                    }
+                }
+            }
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+            bytes.addAndGet(outputStream.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        synchronized (runs) {
+            runs.add(run);
+        }
+        return run.getFileName().toString();
+    }
+
+    private static void writeIdentifier(DataOutputStream outputStream, ResiduePairIdentifier identifier) throws IOException {
+        String structOperId1 = identifier.getStructOperId1();
+        String structOperId2 = identifier.getStructOperId2();
+        boolean identity = IDENTITY.equals(structOperId1) && IDENTITY.equals(structOperId2);
+        outputStream.writeInt(identifier.getIndex1());
+        outputStream.writeInt(identifier.getIndex2());
+        outputStream.writeBoolean(identity);
+        if (!identity) {
+            outputStream.writeUTF(structOperId1);
+            outputStream.writeUTF(structOperId2);
+        }
+    }
+
+    private static ResiduePairIdentifier readIdentifier(DataInputStream inputStream) throws IOException {
+        int index1 = inputStream.readInt();
+        int index2 = inputStream.readInt();
+        if (inputStream.readBoolean()) {
+            return new IndexResiduePairIdentifier(new IndexSelection(IDENTITY, index1), new IndexSelection(IDENTITY, index2));
+        } else {
+            return new IndexResiduePairIdentifier(new IndexSelection(inputStream.readUTF(), index1), new IndexSelection(inputStream.readUTF(), index2));
+        }
+    }
+
+    /**
+     * Number of runs written so far.
+     * @return an int
+     */
+    int size() {
+        synchronized (runs) {
+            return runs.size();
+        }
+    }
+
+    /**
+     * Total size of all runs.
+     * @return bytes
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Merge all runs. Reports each descriptor once, in ascending order of codes, along with the residue pairs of all
+     * runs in ascending order of structure identifiers.
+     * @param consumer receives descriptor and all associated residue pairs, grouped by structure identifier
+     */
+    void merge(BiConsumer<ResiduePairDescriptor, Map<String, Collection<ResiduePairIdentifier>>> consumer) {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            synchronized (runs) {
+                for (Path run : runs) {
+                    readers.add(new RunReader(run));
+                }
+            }
+
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparingInt(reader -> reader.code));
+            for (RunReader reader : readers) {
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                int code = queue.peek().code;
+                // each structure is part of exactly one run - no need to merge on the structure level
+                Map<String, Collection<ResiduePairIdentifier>> residuePairs = new TreeMap<>();
+                while (!queue.isEmpty() && queue.peek().code == code) {
+                    RunReader reader = queue.poll();
+                    reader.readGroup(residuePairs);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+                consumer.accept(ResiduePairDescriptor.ofCode(code), residuePairs);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (RunReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete all runs.
+     */
+    @Override
+    public void close() {
+        synchronized (runs) {
+            runs.clear();
+        }
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class RunReader implements Closeable {
+        private final DataInputStream inputStream;
+        private int code;
+
+        RunReader(Path run) throws IOException {
+            this.inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+        }
+
+        /**
+         * Move to the next group.
+         * @return false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            try {
+                code = inputStream.readInt();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        void readGroup(Map<String, Collection<ResiduePairIdentifier>> residuePairs) throws IOException {
+            int structureCount = inputStream.readInt();
+            for (int i = 0; i < structureCount; i++) {
+                String structureIdentifier = inputStream.readUTF();
+                int count = inputStream.readInt();
+                List<ResiduePairIdentifier> identifiers = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    identifiers.add(readIdentifier(inputStream));
+                }
+                residuePairs.put(structureIdentifier, identifiers);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+}
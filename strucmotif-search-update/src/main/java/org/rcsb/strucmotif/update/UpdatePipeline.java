@@ -0,0 +1,773 @@
+package org.rcsb.strucmotif.update;
+
+import org.rcsb.cif.CifIO;
+import org.rcsb.cif.ParsingException;
+import org.rcsb.cif.schema.StandardSchemata;
+import org.rcsb.cif.schema.mm.MmCifFile;
+import org.rcsb.strucmotif.config.MotifSearchConfig;
+import org.rcsb.strucmotif.core.ThreadPool;
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.structure.ResidueGraph;
+import org.rcsb.strucmotif.domain.structure.Structure;
+import org.rcsb.strucmotif.domain.structure.StructureInformation;
+import org.rcsb.strucmotif.io.InvertedIndex;
+import org.rcsb.strucmotif.io.StateRepository;
+import org.rcsb.strucmotif.io.StructureDataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Adds structures to the index in 4 stages that are connected by bounded queues: reading source files, parsing and
+ * writing renumbered structures, extraction of residue pairs, and writing to the inverted index. Each stage has its own
+ * workers so that downloads, CPU-heavy extraction and disk-heavy index writes overlap instead of alternating.
+ * <p>
+ * Extracted residue pairs are collected in a buffer that is handed to the index writer once its estimated size exceeds
+ * <code>update-buffer-size</code> or it contains <code>update-chunk-size</code> structures. Extraction blocks while
+ * the writer is still busy with the previous buffer, hence at most 2 buffers are held in memory.
+ * <p>
+ * With <code>update-spill</code>, full buffers are written as sorted runs instead (see {@link SpillRuns}), which are
+ * merged into the inverted index once all structures have been processed.
+ * <p>
+ * Progress is recorded by a {@link Checkpoint}: each buffer is committed as partition before it is written to the index
+ * (or once its run is written). A pipeline takes over the partitions of an interrupted update before it processes
+ * new structures - runs are merged along with new runs, all other structures are extracted again from their renumbered
+ * files.
+ */
+class UpdatePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(UpdatePipeline.class);
+    private static final Object END = new Object();
+
+    private final StructureDataProvider structureDataProvider;
+    private final InvertedIndex invertedIndex;
+    private final StateRepository stateRepository;
+    private final ThreadPool threadPool;
+    private final MotifSearchConfig motifSearchConfig;
+    private final BiFunction<String, MmCifFile, StructureInformation> structureInformationFunction;
+    private final int readWorkers;
+    private final int parseWorkers;
+    private final int extractWorkers;
+    private final long bufferLimit;
+    // null if progress isn't recorded
+    private final Checkpoint checkpoint;
+    // null if codes of indexed structures aren't recorded
+    private final DescriptorCodes descriptorCodes;
+    // null unless buffers are spilled to sorted runs
+    private SpillRuns spillRuns;
+    private boolean rebuild;
+    // descriptor codes of the previous version of structures being replaced
+    private Map<String, int[]> replaced;
+    // bins that contain data of a replaced structure which won't be overwritten by new data
+    private final Map<Integer, Set<String>> stale;
+    // descriptor codes of these bins, keys are structure identifiers
+    private final Map<String, int[]> staleCodes;
+    private final List<StructureInformation> spilled;
+
+    private final List<ExecutorService> executorServices;
+    private final AtomicReference<Throwable> failure;
+    private final CountDownLatch finished;
+    private final StageStatistics readStatistics;
+    private final StageStatistics parseStatistics;
+    private final StageStatistics extractStatistics;
+    private final StageStatistics writeStatistics;
+    // guarded by this
+    private Batch batch;
+    private int batchCount;
+
+    /**
+     * Construct a pipeline.
+     * @param structureDataProvider reads source files and writes renumbered structures
+     * @param invertedIndex where residue pairs will be written
+     * @param stateRepository tracks processed structures
+     * @param threadPool used by the index writer
+     * @param motifSearchConfig the config
+     * @param structureInformationFunction extracts revision and assembly information from parsed files
+     * @param checkpoint records progress, <code>null</code> if an interrupted run won't be resumed
+     * @param descriptorCodes records the bins of each structure, <code>null</code> if they aren't recorded
+     */
+    UpdatePipeline(StructureDataProvider structureDataProvider, InvertedIndex invertedIndex, StateRepository stateRepository, ThreadPool threadPool, MotifSearchConfig motifSearchConfig, BiFunction<String, MmCifFile, StructureInformation> structureInformationFunction, Checkpoint checkpoint, DescriptorCodes descriptorCodes) {
+        this.structureDataProvider = structureDataProvider;
+        this.invertedIndex = invertedIndex;
+        this.stateRepository = stateRepository;
+        this.threadPool = threadPool;
+        this.motifSearchConfig = motifSearchConfig;
+        this.structureInformationFunction = structureInformationFunction;
+        // reading is mostly waiting for I/O, parsing and extraction compete for the same cores
+        int threads = motifSearchConfig.getNumberThreads();
+        this.readWorkers = threads;
+        this.parseWorkers = Math.max(1, threads / 2);
+        this.extractWorkers = Math.max(1, threads - parseWorkers);
+        this.bufferLimit = motifSearchConfig.getUpdateBufferSize() * 1024L * 1024L;
+        this.checkpoint = checkpoint;
+        this.descriptorCodes = descriptorCodes;
+        this.spilled = new ArrayList<>();
+
+        this.executorServices = new ArrayList<>();
+        this.failure = new AtomicReference<>();
+        this.finished = new CountDownLatch(1);
+        this.readStatistics = new StageStatistics("read");
+        this.parseStatistics = new StageStatistics("parse");
+        this.extractStatistics = new StageStatistics("extract");
+        this.writeStatistics = new StageStatistics("write");
+        this.batch = new Batch();
+        this.replaced = Collections.emptyMap();
+        this.stale = new ConcurrentHashMap<>();
+        this.staleCodes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Process a collection of structures. Structures of committed partitions are processed as well (and skipped if
+     * requested again). Blocks until all structures have been written to the index.
+     * @param identifiers the structures to add
+     * @throws ExecutionException if any stage failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void run(Collection<String> identifiers) throws ExecutionException, InterruptedException {
+        run(identifiers, Collections.emptyMap());
+    }
+
+    /**
+     * Process a collection of structures, some of which replace previous versions that are present in the index.
+     * Bins that receive new data of a structure drop its previous data while being written, only bins where a replaced
+     * structure won't occur anymore are visited once more at the end. The caller is responsible for marking replaced
+     * structures as dirty before, they are marked as clean once the index is consistent again. Structures of committed
+     * partitions are processed as well (and skipped if requested again). Blocks until all structures have been written
+     * to the index.
+     * @param identifiers the structures to add
+     * @param replaced descriptor codes (see {@link ResiduePairDescriptor#getCode()}) of all previously indexed residue
+     *                 pairs of structures that are replaced, keys are structure identifiers
+     * @throws ExecutionException if any stage failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void run(Collection<String> identifiers, Map<String, int[]> replaced) throws ExecutionException, InterruptedException {
+        this.replaced = replaced;
+        Queue<StructureInformation> resumed = new ConcurrentLinkedQueue<>(adopt());
+        Set<String> adopted = spilled.stream()
+                .map(StructureInformation::getStructureIdentifier)
+                .collect(Collectors.toSet());
+        resumed.forEach(structureInformation -> adopted.add(structureInformation.getStructureIdentifier()));
+        Queue<String> pending = identifiers.stream()
+                .filter(structureIdentifier -> !adopted.contains(structureIdentifier))
+                .collect(Collectors.toCollection(ConcurrentLinkedQueue::new));
+        BlockingQueue<Object> sources = new ArrayBlockingQueue<>(2 * parseWorkers);
+        BlockingQueue<Object> parsed = new ArrayBlockingQueue<>(2 * extractWorkers);
+        int target = resumed.size() + pending.size();
+
+        start("read", readWorkers, () -> {
+            // renumbered structures of committed partitions are present already
+            StructureInformation structureInformation;
+            while ((structureInformation = resumed.poll()) != null) {
+                long start = System.nanoTime();
+                Parsed p = new Parsed(structureInformation, readRenumbered(structureInformation.getStructureIdentifier()));
+                readStatistics.record(start);
+                parsed.put(p);
+            }
+
+            String structureIdentifier;
+            while ((structureIdentifier = pending.poll()) != null) {
+                long start = System.nanoTime();
+                Source source = read(structureIdentifier);
+                readStatistics.record(start);
+                sources.put(source);
+            }
+        }, () -> signalEnd(sources, parseWorkers));
+
+        start("parse", parseWorkers, () -> {
+            Object item;
+            while ((item = sources.take()) != END) {
+                long start = System.nanoTime();
+                Parsed p = parse((Source) item);
+                parseStatistics.record(start);
+                parsed.put(p);
+            }
+        }, () -> signalEnd(parsed, extractWorkers));
+
+        extractAndWrite(parsed, target);
+    }
+
+    /**
+     * Finish the work of an interrupted update, i.e. process all structures of committed partitions. Blocks until all
+     * structures have been written to the index.
+     * @throws ExecutionException if any stage failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void resume() throws ExecutionException, InterruptedException {
+        run(Collections.emptyList());
+    }
+
+    /**
+     * Take over the partitions of an interrupted update. Runs of spilled partitions become part of the merge, stale
+     * bins of replaced structures are removed at the end.
+     * @return structures of all other partitions, which have to be extracted again
+     */
+    private Collection<StructureInformation> adopt() {
+        if (checkpoint == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> retained = new ArrayList<>();
+        Map<String, StructureInformation> resumed = new LinkedHashMap<>();
+        for (Checkpoint.Partition partition : checkpoint.getPartitions()) {
+            if (partition.run != null) {
+                retained.add(partition.run);
+                spilled.addAll(partition.structures);
+            } else {
+                partition.structures.forEach(structureInformation -> resumed.put(structureInformation.getStructureIdentifier(), structureInformation));
+            }
+
+            for (Map.Entry<String, int[]> entry : partition.stale.entrySet()) {
+                staleCodes.put(entry.getKey(), entry.getValue());
+                for (int code : entry.getValue()) {
+                    stale.computeIfAbsent(code, k -> ConcurrentHashMap.newKeySet()).add(entry.getKey());
+                }
+            }
+        }
+        // a structure may have been committed again after it was resumed before
+        spilled.forEach(structureInformation -> resumed.remove(structureInformation.getStructureIdentifier()));
+
+        if (!spilled.isEmpty() || !resumed.isEmpty()) {
+            logger.info("Resuming interrupted update - merging {} runs of {} structures, extracting {} structures from renumbered files",
+                    retained.size(),
+                    spilled.size(),
+                    resumed.size());
+            // structures might have been marked as known before the update was interrupted, they are again once written
+            Set<String> structureIdentifiers = spilled.stream()
+                    .map(StructureInformation::getStructureIdentifier)
+                    .collect(Collectors.toSet());
+            structureIdentifiers.addAll(resumed.keySet());
+            List<String> known = stateRepository.selectKnown()
+                    .stream()
+                    .map(StructureInformation::getStructureIdentifier)
+                    .filter(structureIdentifiers::contains)
+                    .collect(Collectors.toList());
+            if (!known.isEmpty()) {
+                stateRepository.deleteKnown(known);
+            }
+        }
+
+        if (motifSearchConfig.isUpdateSpill() || !retained.isEmpty()) {
+            spillRuns = new SpillRuns(getSpillDirectory(), retained);
+        }
+        return resumed.values();
+    }
+
+    /**
+     * Extract residue pairs from structures that have been renumbered before. Residue pairs are always spilled to
+     * sorted runs, so each bin of the inverted index is written exactly once. The state of structures isn't changed.
+     * Blocks until all structures have been written to the index.
+     * @param structures the structures to process
+     * @throws ExecutionException if any stage failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void rebuild(Collection<StructureInformation> structures) throws ExecutionException, InterruptedException {
+        this.rebuild = true;
+        spillRuns = new SpillRuns(getSpillDirectory());
+
+        Queue<StructureInformation> pending = new ConcurrentLinkedQueue<>(structures);
+        BlockingQueue<Object> parsed = new ArrayBlockingQueue<>(2 * extractWorkers);
+
+        start("read", readWorkers, () -> {
+            StructureInformation structureInformation;
+            while ((structureInformation = pending.poll()) != null) {
+                long start = System.nanoTime();
+                Parsed p = new Parsed(structureInformation, readRenumbered(structureInformation.getStructureIdentifier()));
+                readStatistics.record(start);
+                parsed.put(p);
+            }
+        }, () -> signalEnd(parsed, extractWorkers));
+
+        extractAndWrite(parsed, structures.size());
+    }
+
+    private void extractAndWrite(BlockingQueue<Object> parsed, int target) throws ExecutionException, InterruptedException {
+        // hand-off without capacity: a full buffer waits until the writer is done with the previous one
+        BlockingQueue<Object> batches = new SynchronousQueue<>();
+        AtomicInteger extracted = new AtomicInteger();
+
+        start("extract", extractWorkers, () -> {
+            // reused for all structures handled by this worker
+            ResiduePairCollector collector = new ResiduePairCollector();
+            Object item;
+            while ((item = parsed.take()) != END) {
+                long start = System.nanoTime();
+                Parsed p = (Parsed) item;
+                Map<Integer, Collection<ResiduePairIdentifier>> residuePairs = extract(p, collector, extracted.incrementAndGet() + " / " + target);
+                collectStale(p.structureInformation.getStructureIdentifier(), residuePairs);
+                recordCodes(p.structureInformation.getStructureIdentifier(), residuePairs);
+                extractStatistics.record(start);
+                offer(p.structureInformation, residuePairs, batches);
+            }
+        }, () -> {
+            flush(batches);
+            signalEnd(batches, 1);
+        });
+
+        start("write", 1, () -> {
+            Object item;
+            while ((item = batches.take()) != END) {
+                long start = System.nanoTime();
+                if (spillRuns != null) {
+                    spill((Batch) item);
+                } else {
+                    write((Batch) item);
+                }
+                writeStatistics.record(start);
+                logThroughput();
+            }
+            if (spillRuns != null) {
+                merge();
+            }
+            removeStale();
+            if (checkpoint != null) {
+                checkpoint.clear();
+            }
+            finished.countDown();
+        }, () -> {});
+
+        try {
+            finished.await();
+        } finally {
+            executorServices.forEach(ExecutorService::shutdownNow);
+        }
+
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new ExecutionException(throwable);
+        }
+        logThroughput();
+    }
+
+    private Source read(String structureIdentifier) {
+        int maxRetries = motifSearchConfig.getDownloadTries();
+        for (int i = 1; ; i++) {
+            try (InputStream inputStream = structureDataProvider.getOriginalInputStream(structureIdentifier)) {
+                return new Source(structureIdentifier, inputStream.readAllBytes());
+            } catch (IOException | UncheckedIOException e) {
+                if (i >= maxRetries) {
+                    // max retries exceeded
+                    throw e instanceof UncheckedIOException ? (UncheckedIOException) e : new UncheckedIOException((IOException) e);
+                }
+
+                logger.warn("[{}] [try: {} / {}] Failed to download source file - {}",
+                        structureIdentifier,
+                        i,
+                        maxRetries,
+                        e.getMessage());
+            }
+        }
+    }
+
+    private Parsed parse(Source source) {
+        String structureIdentifier = source.structureIdentifier;
+        StructureInformation structureInformation;
+        try {
+            // write renumbered structure
+            MmCifFile mmCifFile = CifIO.readFromInputStream(new ByteArrayInputStream(source.data)).as(StandardSchemata.MMCIF);
+            structureInformation = structureInformationFunction.apply(structureIdentifier, mmCifFile);
+            structureDataProvider.writeRenumbered(structureIdentifier, mmCifFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cif parsing failed for " + structureIdentifier, e);
+        } catch (ParsingException e) {
+            logger.info("cif parsing failed for " + structureIdentifier, e);
+            throw e;
+        }
+
+        return new Parsed(structureInformation, readRenumbered(structureIdentifier));
+    }
+
+    private Structure readRenumbered(String structureIdentifier) {
+        // fails when file is missing (should not happen) or does not contain valid polymer chain
+        try {
+            return structureDataProvider.readRenumbered(structureIdentifier);
+        } catch (UncheckedIOException e) {
+            logger.warn("[{}] No valid polymer chains",
+                    structureIdentifier);
+            return null;
+        }
+    }
+
+    private Map<Integer, Collection<ResiduePairIdentifier>> extract(Parsed parsed, ResiduePairCollector collector, String structureContext) {
+        if (parsed.structure == null) {
+            return Collections.emptyMap();
+        }
+
+        String structureIdentifier = parsed.structureInformation.getStructureIdentifier();
+        try {
+            ResidueGraph residueGraph = new ResidueGraph(parsed.structure, motifSearchConfig.getSquaredDistanceCutoff(), false);
+            // stage is already parallel - extract each structure sequentially
+            collector.clear();
+            residueGraph.forEachResiduePair(collector::add);
+            logger.info("[{}] [{}] Extracted {} residue pairs",
+                    structureContext,
+                    structureIdentifier,
+                    collector.size());
+            return collector.build();
+        } catch (Exception e) {
+            logger.warn("[{}] [{}] Residue graph determination failed",
+                    structureContext,
+                    structureIdentifier,
+                    e);
+            // fail complete update
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void collectStale(String structureIdentifier, Map<Integer, Collection<ResiduePairIdentifier>> residuePairs) {
+        int[] previous = replaced.get(structureIdentifier);
+        if (previous == null) {
+            return;
+        }
+
+        int[] codes = Arrays.stream(previous)
+                .filter(code -> !residuePairs.containsKey(code))
+                .toArray();
+        for (int code : codes) {
+            stale.computeIfAbsent(code, k -> ConcurrentHashMap.newKeySet()).add(structureIdentifier);
+        }
+        staleCodes.put(structureIdentifier, codes);
+    }
+
+    /**
+     * Record the bins of a structure before they are written, so that it can be removed from exactly these bins once it
+     * gets replaced.
+     */
+    private void recordCodes(String structureIdentifier, Map<Integer, Collection<ResiduePairIdentifier>> residuePairs) {
+        if (descriptorCodes == null) {
+            return;
+        }
+
+        descriptorCodes.write(structureIdentifier, residuePairs.keySet()
+                .stream()
+                .mapToInt(Integer::intValue)
+                .toArray());
+    }
+
+    private void removeStale() throws ExecutionException, InterruptedException {
+        if (staleCodes.isEmpty()) {
+            return;
+        }
+
+        logger.info("Removing previous versions of {} structures from {} bins",
+                staleCodes.size(),
+                stale.size());
+        threadPool.submit(() -> {
+            stale.entrySet().parallelStream().forEach(entry -> invertedIndex.delete(ResiduePairDescriptor.ofCode(entry.getKey()), entry.getValue()));
+            return null;
+        }).get();
+        stale.clear();
+        stateRepository.deleteDirty(new ArrayList<>(staleCodes.keySet()));
+    }
+
+    // replaced structures stay dirty until stale bins are removed
+    private List<String> getClean(List<String> structureIdentifiers) {
+        return structureIdentifiers.stream()
+                .filter(structureIdentifier -> !staleCodes.containsKey(structureIdentifier))
+                .collect(Collectors.toList());
+    }
+
+    private Checkpoint.Partition commit(String run, Batch batch) {
+        if (checkpoint == null) {
+            return null;
+        }
+
+        Map<String, int[]> batchStale = new HashMap<>();
+        for (StructureInformation structureInformation : batch.processed) {
+            String structureIdentifier = structureInformation.getStructureIdentifier();
+            int[] codes = staleCodes.get(structureIdentifier);
+            if (codes != null) {
+                batchStale.put(structureIdentifier, codes);
+            }
+        }
+        return checkpoint.commit(run, batch.processed, batchStale);
+    }
+
+    /**
+     * Add the residue pairs of a structure to the current buffer. Hands over the buffer to the writer if it is full -
+     * while the writer is busy, all extraction workers wait here.
+     */
+    private synchronized void offer(StructureInformation structureInformation, Map<Integer, Collection<ResiduePairIdentifier>> residuePairs, BlockingQueue<Object> batches) throws InterruptedException {
+        String structureIdentifier = structureInformation.getStructureIdentifier();
+        for (Map.Entry<Integer, Collection<ResiduePairIdentifier>> entry : residuePairs.entrySet()) {
+            batch.residuePairs.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(structureIdentifier, entry.getValue());
+        }
+        batch.processed.add(structureInformation);
+        batch.bytes += ResiduePairCollector.getFootprint(residuePairs);
+
+        // runs are cheap to write, so only memory matters when spilling
+        if (batch.bytes >= bufferLimit || (spillRuns == null && batch.processed.size() >= motifSearchConfig.getUpdateChunkSize())) {
+            flush(batches);
+        }
+    }
+
+    private synchronized void flush(BlockingQueue<Object> batches) throws InterruptedException {
+        if (batch.processed.isEmpty()) {
+            return;
+        }
+        batch.name = String.valueOf(++batchCount);
+        batches.put(batch);
+        batch = new Batch();
+    }
+
+    private void write(Batch batch) throws ExecutionException, InterruptedException {
+        List<String> structureIdentifiers = batch.processed.stream()
+                .map(StructureInformation::getStructureIdentifier)
+                .collect(Collectors.toList());
+        logger.info("[{}] Persisting {} unique residue pair descriptors of {} structures (~{} MB)",
+                batch.name,
+                batch.residuePairs.size(),
+                structureIdentifiers.size(),
+                batch.bytes / 1024 / 1024);
+
+        // mark as dirty only around index update
+        Checkpoint.Partition partition = commit(null, batch);
+        stateRepository.insertDirty(structureIdentifiers);
+
+        final int bufferTotal = batch.residuePairs.size();
+        AtomicInteger bufferCount = new AtomicInteger();
+        threadPool.submit(() -> {
+            batch.residuePairs.entrySet().parallelStream().forEach(entry -> {
+                if (bufferCount.incrementAndGet() % 100000 == 0) {
+                    logger.info("[{}] {} / {}",
+                            batch.name,
+                            bufferCount,
+                            bufferTotal);
+                }
+
+                invertedIndex.insert(ResiduePairDescriptor.ofCode(entry.getKey()), entry.getValue());
+
+                // writing takes additional heap - ease burden by dropping processed output bins
+                entry.getValue().clear();
+            });
+            return null;
+        }).get();
+        batch.residuePairs.clear();
+
+        // processed contains all StructureIdentifiers + corresponding revision
+        stateRepository.insertKnown(batch.processed);
+        stateRepository.deleteDirty(getClean(structureIdentifiers));
+        // keep partitions of replaced structures until their stale bins are removed
+        if (partition != null && structureIdentifiers.stream().noneMatch(staleCodes::containsKey)) {
+            checkpoint.remove(partition);
+        }
+    }
+
+    private Path getSpillDirectory() {
+        return Paths.get(motifSearchConfig.getRootPath()).resolve(MotifSearchConfig.SPILL_DIRECTORY);
+    }
+
+    private void spill(Batch batch) {
+        logger.info("[{}] Spilling {} unique residue pair descriptors of {} structures (~{} MB)",
+                batch.name,
+                batch.residuePairs.size(),
+                batch.processed.size(),
+                batch.bytes / 1024 / 1024);
+        String run = spillRuns.write(batch.residuePairs);
+        batch.residuePairs.clear();
+        commit(run, batch);
+        spilled.addAll(batch.processed);
+    }
+
+    private void merge() throws ExecutionException, InterruptedException {
+        if (spilled.isEmpty()) {
+            spillRuns.close();
+            return;
+        }
+
+        List<String> structureIdentifiers = spilled.stream()
+                .map(StructureInformation::getStructureIdentifier)
+                .collect(Collectors.toList());
+        logger.info("Merging {} runs (~{} MB) of {} structures into inverted index",
+                spillRuns.size(),
+                spillRuns.getBytes() / 1024 / 1024,
+                structureIdentifiers.size());
+
+        // mark as dirty only around index update - a rebuild doesn't touch the current index
+        if (!rebuild) {
+            stateRepository.insertDirty(structureIdentifiers);
+        }
+
+        // runs are read sequentially, bins are written concurrently - bound the number of bins held in memory
+        int permits = 2 * motifSearchConfig.getNumberThreads();
+        Semaphore semaphore = new Semaphore(permits);
+        AtomicReference<Throwable> insertFailure = new AtomicReference<>();
+        AtomicInteger binCount = new AtomicInteger();
+        spillRuns.merge((residuePairDescriptor, residuePairs) -> {
+            semaphore.acquireUninterruptibly();
+            Throwable throwable = insertFailure.get();
+            if (throwable != null) {
+                semaphore.release();
+                throw new IllegalStateException("Writing to inverted index failed", throwable);
+            }
+
+            threadPool.submit(() -> {
+                try {
+                    invertedIndex.insert(residuePairDescriptor, residuePairs);
+                } catch (Throwable t) {
+                    insertFailure.compareAndSet(null, t);
+                } finally {
+                    semaphore.release();
+                }
+                return null;
+            });
+
+            if (binCount.incrementAndGet() % 100000 == 0) {
+                logger.info("Merged {} bins", binCount);
+            }
+        });
+        semaphore.acquire(permits);
+        if (insertFailure.get() != null) {
+            throw new ExecutionException(insertFailure.get());
+        }
+
+        if (!rebuild) {
+            stateRepository.insertKnown(spilled);
+            stateRepository.deleteDirty(getClean(structureIdentifiers));
+        }
+        spillRuns.close();
+        logger.info("Merged {} bins", binCount);
+    }
+
+    private void start(String name, int workers, Task task, Task onCompletion) {
+        AtomicInteger remaining = new AtomicInteger(workers);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "update-" + name + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executorServices.add(executorService);
+
+        for (int i = 0; i < workers; i++) {
+            executorService.submit(() -> {
+                try {
+                    task.run();
+                    if (remaining.decrementAndGet() == 0) {
+                        onCompletion.run();
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            });
+        }
+    }
+
+    private void fail(Throwable t) {
+        // interrupts caused by an earlier failure aren't interesting
+        if (failure.compareAndSet(null, t)) {
+            logger.warn("Update pipeline failed", t);
+            executorServices.forEach(ExecutorService::shutdownNow);
+            finished.countDown();
+        }
+    }
+
+    private static void signalEnd(BlockingQueue<Object> queue, int consumers) throws InterruptedException {
+        for (int i = 0; i < consumers; i++) {
+            queue.put(END);
+        }
+    }
+
+    private void logThroughput() {
+        for (StageStatistics statistics : List.of(readStatistics, parseStatistics, extractStatistics, writeStatistics)) {
+            logger.info("Throughput of {}", statistics);
+        }
+    }
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    static class Source {
+        final String structureIdentifier;
+        final byte[] data;
+
+        Source(String structureIdentifier, byte[] data) {
+            this.structureIdentifier = structureIdentifier;
+            this.data = data;
+        }
+    }
+
+    static class Parsed {
+        final StructureInformation structureInformation;
+        // null if there are no valid polymer chains
+        final Structure structure;
+
+        Parsed(StructureInformation structureInformation, Structure structure) {
+            this.structureInformation = structureInformation;
+            this.structure = structure;
+        }
+    }
+
+    static class Batch {
+        // keys are descriptor codes
+        final Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> residuePairs = new HashMap<>();
+        final List<StructureInformation> processed = new ArrayList<>();
+        String name;
+        long bytes;
+    }
+
+    /**
+     * Number of items processed by a stage and time spent doing so.
+     */
+    static class StageStatistics {
+        private final String name;
+        private final long start;
+        private final AtomicLong items;
+        private final AtomicLong busyNanos;
+
+        StageStatistics(String name) {
+            this.name = name;
+            this.start = System.nanoTime();
+            this.items = new AtomicLong();
+            this.busyNanos = new AtomicLong();
+        }
+
+        void record(long itemStart) {
+            items.incrementAndGet();
+            busyNanos.addAndGet(System.nanoTime() - itemStart);
+        }
+
+        @Override
+        public String toString() {
+            double elapsed = Math.max(1, System.nanoTime() - start) / 1e9;
+            double busy = busyNanos.get() / 1e9;
+            return String.format("%s: %d items, %.1f items/s, %.0f ms per item, %.1f s busy",
+                    name,
+                    items.get(),
+                    items.get() / elapsed,
+                    items.get() == 0 ? 0 : 1000 * busy / items.get(),
+                    busy);
+        }
+    }
+}
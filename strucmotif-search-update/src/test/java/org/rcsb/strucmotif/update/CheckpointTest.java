@@ -0,0 +1,116 @@
+package org.rcsb.strucmotif.update;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.structure.Revision;
+import org.rcsb.strucmotif.domain.structure.StructureInformation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+    private Path directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = Files.createTempDirectory("checkpoint");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static StructureInformation structure(String structureIdentifier, int minor) {
+        return new StructureInformation(structureIdentifier, new Revision(1, minor), Map.of("1", Set.of("1"), "2", Set.of("1", "2")));
+    }
+
+    private static void assertStructureEquals(StructureInformation expected, StructureInformation actual) {
+        assertEquals(expected.getStructureIdentifier(), actual.getStructureIdentifier());
+        assertEquals(expected.getRevision(), actual.getRevision());
+        assertEquals(expected.getAssemblyInformation(), actual.getAssemblyInformation());
+    }
+
+    @Test
+    public void whenReloading_thenRestorePartitionsAndReplaced() {
+        Checkpoint checkpoint = new Checkpoint(directory);
+        checkpoint.commit("run-00001.bin", List.of(structure("1ACJ", 0), structure("4HHB", 3)), Map.of("4HHB", new int[] { 1, 1 << 26 }));
+        Checkpoint.Partition removed = checkpoint.commit(null, List.of(structure("1EXR", 1)), Map.of());
+        checkpoint.commit(null, List.of(structure("2MNR", 2)), Map.of());
+        checkpoint.remove(removed);
+        checkpoint.writeReplaced(Map.of("4HHB", new int[] { 1, 2, 3 }));
+
+        Checkpoint reloaded = new Checkpoint(directory);
+        List<Checkpoint.Partition> partitions = reloaded.getPartitions();
+        assertEquals(2, partitions.size());
+
+        Checkpoint.Partition first = partitions.get(0);
+        assertEquals(1, first.number);
+        assertEquals("run-00001.bin", first.run);
+        assertEquals(2, first.structures.size());
+        assertStructureEquals(structure("1ACJ", 0), first.structures.get(0));
+        assertStructureEquals(structure("4HHB", 3), first.structures.get(1));
+        assertEquals(Set.of("4HHB"), first.stale.keySet());
+        assertArrayEquals(new int[] { 1, 1 << 26 }, first.stale.get("4HHB"));
+
+        Checkpoint.Partition second = partitions.get(1);
+        assertEquals(3, second.number);
+        assertNull(second.run);
+        assertStructureEquals(structure("2MNR", 2), second.structures.get(0));
+        assertTrue(second.stale.isEmpty());
+
+        assertEquals(Set.of("1ACJ", "4HHB", "2MNR"), reloaded.getStructureIdentifiers());
+        assertArrayEquals(new int[] { 1, 2, 3 }, reloaded.getReplaced().get("4HHB"));
+
+        // numbering continues after the last partition
+        assertEquals(4, reloaded.commit(null, List.of(structure("3ACJ", 0)), Map.of()).number);
+
+        reloaded.clear();
+        assertTrue(new Checkpoint(directory).getPartitions().isEmpty());
+        assertTrue(new Checkpoint(directory).getReplaced().isEmpty());
+    }
+
+    @Test
+    public void whenTemporaryFileTruncated_thenIgnoreIt() throws IOException {
+        Checkpoint checkpoint = new Checkpoint(directory);
+        checkpoint.commit(null, List.of(structure("1ACJ", 0)), Map.of());
+        checkpoint.commit(null, List.of(structure("4HHB", 0), structure("1EXR", 0)), Map.of());
+        checkpoint.writeReplaced(Map.of("4HHB", new int[] { 1, 2, 3 }));
+
+        // a crash while writing the next partition and the record of replaced structures leaves truncated files behind
+        Path second = directory.resolve("partition-00002.bin");
+        byte[] bytes = Files.readAllBytes(second);
+        Files.write(directory.resolve("partition-00003.bin.tmp"), Arrays.copyOf(bytes, bytes.length / 2));
+        Files.write(directory.resolve("replaced.bin.tmp"), new byte[] { 0, 0 });
+
+        Checkpoint reloaded = new Checkpoint(directory);
+        assertEquals(List.of(1, 2), reloaded.getPartitions()
+                .stream()
+                .map(partition -> partition.number)
+                .collect(Collectors.toList()));
+        assertEquals(Set.of("1ACJ", "4HHB", "1EXR"), reloaded.getStructureIdentifiers());
+        assertArrayEquals(new int[] { 1, 2, 3 }, reloaded.getReplaced().get("4HHB"));
+
+        // the partition is written again from scratch
+        reloaded.commit(null, List.of(structure("2MNR", 0)), Map.of());
+        List<Checkpoint.Partition> partitions = new Checkpoint(directory).getPartitions();
+        assertEquals(3, partitions.size());
+        assertStructureEquals(structure("2MNR", 0), partitions.get(2).structures.get(0));
+        assertFalse(Files.exists(directory.resolve("partition-00003.bin.tmp")));
+    }
+}
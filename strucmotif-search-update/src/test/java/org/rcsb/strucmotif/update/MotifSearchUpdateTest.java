@@ -0,0 +1,213 @@
+package org.rcsb.strucmotif.update;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.config.MotifSearchConfig;
+import org.rcsb.strucmotif.core.ThreadPoolImpl;
+import org.rcsb.strucmotif.domain.Pair;
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
+import org.rcsb.strucmotif.domain.structure.Revision;
+import org.rcsb.strucmotif.domain.structure.StructureInformation;
+import org.rcsb.strucmotif.io.InvertedIndex;
+import org.rcsb.strucmotif.io.InvertedIndexImpl;
+import org.rcsb.strucmotif.io.StateRepository;
+import org.rcsb.strucmotif.io.StateRepositoryImpl;
+import org.rcsb.strucmotif.io.StructureDataProviderImpl;
+import org.rcsb.strucmotif.io.StructureReaderImpl;
+import org.rcsb.strucmotif.io.StructureWriterImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MotifSearchUpdateTest {
+    private Path rootPath;
+    private Path indexPath;
+    private Path rebuildPath;
+    private Path obsoletePath;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.rootPath = Files.createTempDirectory("update");
+        this.indexPath = rootPath.resolve(MotifSearchConfig.INDEX_DIRECTORY);
+        this.rebuildPath = rootPath.resolve(MotifSearchConfig.INDEX_DIRECTORY + ".rebuild");
+        this.obsoletePath = rootPath.resolve(MotifSearchConfig.INDEX_DIRECTORY + ".obsolete");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(rootPath)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    // 3 residues of 1ACJ
+    private static final String[] ATOMS = {
+            "N SER 1 -12.503 89.084 35.130", "CA SER 1 -12.189 87.877 35.866", "C SER 1 -11.066 88.196 36.842", "O SER 1 -11.260 89.101 37.633", "CB SER 1 -12.025 86.720 34.856", "OG SER 1 -13.195 86.792 34.018",
+            "N GLU 2 -9.920 87.515 36.768", "CA GLU 2 -8.763 87.673 37.662", "C GLU 2 -9.082 86.841 38.872", "O GLU 2 -8.332 85.956 39.236", "CB GLU 2 -8.315 89.106 38.012", "CG GLU 2 -7.047 89.190 38.917", "CD GLU 2 -5.714 88.670 38.353", "OE1 GLU 2 -5.502 88.765 37.150", "OE2 GLU 2 -4.880 88.179 39.122",
+            "N LEU 3 -10.253 87.138 39.444", "CA LEU 3 -10.748 86.426 40.612", "C LEU 3 -11.840 85.431 40.295", "O LEU 3 -12.296 84.700 41.162", "CB LEU 3 -11.321 87.429 41.633", "CG LEU 3 -10.276 87.885 42.667", "CD1 LEU 3 -9.060 88.579 42.040", "CD2 LEU 3 -10.937 88.762 43.732"
+    };
+
+    /**
+     * Write a source file of a structure in the data source.
+     * @param minorRevision the revision of this version
+     * @param shift moves the 3rd residue along x
+     */
+    private void writeSource(int minorRevision, float shift) throws IOException {
+        StringBuilder cif = new StringBuilder("data_1ACJ\n#\nloop_\n_pdbx_audit_revision_history.ordinal\n_pdbx_audit_revision_history.major_revision\n_pdbx_audit_revision_history.minor_revision\n");
+        for (int i = 0; i <= minorRevision; i++) {
+            cif.append(i + 1).append(" 1 ").append(i).append("\n");
+        }
+        cif.append("#\n_pdbx_struct_assembly_gen.assembly_id 1\n_pdbx_struct_assembly_gen.oper_expression 1\n_pdbx_struct_assembly_gen.asym_id_list A\n#\n")
+                .append("_pdbx_struct_oper_list.id 1\n_pdbx_struct_oper_list.type 'identity operation'\n");
+        for (int i = 1; i <= 3; i++) {
+            for (int j = 1; j <= 3; j++) {
+                cif.append("_pdbx_struct_oper_list.matrix[").append(i).append("][").append(j).append("] ").append(i == j ? "1.0" : "0.0").append("\n");
+            }
+            cif.append("_pdbx_struct_oper_list.vector[").append(i).append("] 0.0\n");
+        }
+        cif.append("#\nloop_\n_atom_site.group_PDB\n_atom_site.id\n_atom_site.type_symbol\n_atom_site.label_atom_id\n_atom_site.label_alt_id\n_atom_site.label_comp_id\n_atom_site.label_asym_id\n_atom_site.label_entity_id\n_atom_site.label_seq_id\n_atom_site.Cartn_x\n_atom_site.Cartn_y\n_atom_site.Cartn_z\n_atom_site.pdbx_PDB_model_num\n");
+        for (int i = 0; i < ATOMS.length; i++) {
+            String[] split = ATOMS[i].split(" ");
+            float x = Float.parseFloat(split[3]) + ("3".equals(split[2]) ? shift : 0);
+            cif.append(String.format(Locale.US, "ATOM %d %s %s . %s A 1 %s %.3f %s %s 1\n", i + 1, split[0].substring(0, 1), split[0], split[1], split[2], x, split[4], split[5]));
+        }
+        cif.append("#\n");
+        Files.writeString(rootPath.resolve("1acj.cif"), cif.toString());
+    }
+
+    private MotifSearchUpdate createMotifSearchUpdate(StateRepository stateRepository, InvertedIndex invertedIndex) {
+        MotifSearchConfig motifSearchConfig = createConfig();
+        return new MotifSearchUpdate(stateRepository,
+                new StructureDataProviderImpl(new StructureReaderImpl(), new StructureWriterImpl(), motifSearchConfig),
+                invertedIndex,
+                motifSearchConfig,
+                new ThreadPoolImpl(motifSearchConfig));
+    }
+
+    private MotifSearchConfig createConfig() {
+        MotifSearchConfig motifSearchConfig = new MotifSearchConfig();
+        motifSearchConfig.setRootPath(rootPath.toString());
+        motifSearchConfig.setDataSource(rootPath.resolve("{id}.cif").toString());
+        return motifSearchConfig;
+    }
+
+    private static Set<Integer> getBins(InvertedIndex invertedIndex, Set<Integer> codes) {
+        return codes.stream()
+                .filter(code -> invertedIndex.select(ResiduePairDescriptor.ofCode(code)).map(Pair::getFirst).anyMatch("1ACJ"::equals))
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> toSet(int[] codes) {
+        return Arrays.stream(codes).boxed().collect(Collectors.toSet());
+    }
+
+    private void assertUpdated(boolean recorded) throws Exception {
+        MotifSearchConfig motifSearchConfig = createConfig();
+        StateRepository stateRepository = new StateRepositoryImpl(motifSearchConfig);
+        InvertedIndex invertedIndex = new InvertedIndexImpl(motifSearchConfig);
+        DescriptorCodes descriptorCodes = new DescriptorCodes(indexPath);
+        writeSource(0, 0);
+        createMotifSearchUpdate(stateRepository, invertedIndex).add(List.of("1ACJ"));
+        Set<Integer> previous = toSet(descriptorCodes.read("1ACJ"));
+        assertEquals(previous, getBins(invertedIndex, previous));
+        if (!recorded) {
+            // indexed by an earlier version
+            descriptorCodes.delete(List.of("1ACJ"));
+        }
+
+        // the 3rd residue moves out of contact, bins of its pairs become stale
+        writeSource(1, 50);
+        createMotifSearchUpdate(stateRepository, invertedIndex).update(List.of("1ACJ"));
+
+        Set<Integer> current = toSet(descriptorCodes.read("1ACJ"));
+        assertFalse(current.isEmpty());
+        assertTrue(previous.containsAll(current));
+        assertTrue(previous.size() > current.size());
+        Set<Integer> all = IntStream.concat(previous.stream().mapToInt(Integer::intValue), current.stream().mapToInt(Integer::intValue))
+                .boxed()
+                .collect(Collectors.toSet());
+        assertEquals(current, getBins(invertedIndex, all));
+
+        List<StructureInformation> known = List.copyOf(stateRepository.selectKnown());
+        assertEquals(1, known.size());
+        assertEquals(new Revision(1, 1), known.get(0).getRevision());
+        assertTrue(stateRepository.selectDirty().isEmpty());
+    }
+
+    @Test
+    public void whenRevisionChanged_thenReplaceStructureAndCleanStaleBins() throws Exception {
+        assertUpdated(true);
+    }
+
+    @Test
+    public void whenBinsWereNotRecorded_thenCleanStaleBinsByWalk() throws Exception {
+        assertUpdated(false);
+    }
+
+    private static void writeIndex(Path path, String content) throws IOException {
+        Files.createDirectories(path);
+        Files.writeString(path.resolve("bin"), content);
+    }
+
+    private String readIndex() throws IOException {
+        return Files.readString(indexPath.resolve("bin"));
+    }
+
+    @Test
+    public void whenInterruptedBetweenMoves_thenFinishSwap() throws IOException {
+        // the first move happened, the second didn't
+        writeIndex(obsoletePath, "previous");
+        writeIndex(rebuildPath, "rebuilt");
+
+        MotifSearchUpdate.recoverIndex(rootPath);
+
+        assertEquals("rebuilt", readIndex());
+        assertFalse(Files.exists(rebuildPath));
+        assertFalse(Files.exists(obsoletePath));
+    }
+
+    @Test
+    public void whenRebuiltIndexMissing_thenRestorePreviousIndex() throws IOException {
+        writeIndex(obsoletePath, "previous");
+
+        MotifSearchUpdate.recoverIndex(rootPath);
+
+        assertEquals("previous", readIndex());
+        assertFalse(Files.exists(obsoletePath));
+    }
+
+    @Test
+    public void whenInterruptedAfterSwap_thenRemovePreviousIndex() throws IOException {
+        writeIndex(indexPath, "rebuilt");
+        writeIndex(obsoletePath, "previous");
+
+        MotifSearchUpdate.recoverIndex(rootPath);
+
+        assertEquals("rebuilt", readIndex());
+        assertFalse(Files.exists(obsoletePath));
+    }
+
+    @Test
+    public void whenInterruptedDuringRebuild_thenKeepIndex() throws IOException {
+        writeIndex(indexPath, "previous");
+        writeIndex(rebuildPath, "partial");
+
+        MotifSearchUpdate.recoverIndex(rootPath);
+
+        assertEquals("previous", readIndex());
+    }
+}
@@ -0,0 +1,153 @@
+package org.rcsb.strucmotif.update;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.rcsb.strucmotif.domain.motif.AngleType;
+import org.rcsb.strucmotif.domain.motif.DistanceType;
+import org.rcsb.strucmotif.domain.motif.IndexResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.motif.ResiduePairDescriptor;
+import org.rcsb.strucmotif.domain.motif.ResiduePairIdentifier;
+import org.rcsb.strucmotif.domain.structure.IndexSelection;
+import org.rcsb.strucmotif.domain.structure.ResidueType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillRunsTest {
+    private Path directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = Files.createTempDirectory("runs");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static int randomCode(Random random) {
+        ResidueType[] residueTypes = ResidueType.values();
+        DistanceType[] distanceTypes = DistanceType.values();
+        AngleType[] angleTypes = AngleType.values();
+        return new ResiduePairDescriptor(residueTypes[random.nextInt(residueTypes.length)],
+                residueTypes[random.nextInt(residueTypes.length)],
+                distanceTypes[random.nextInt(distanceTypes.length)],
+                distanceTypes[random.nextInt(distanceTypes.length)],
+                angleTypes[random.nextInt(angleTypes.length)]).getCode();
+    }
+
+    private static ResiduePairIdentifier randomIdentifier(Random random) {
+        String structOperId1 = random.nextBoolean() ? "1" : "2";
+        String structOperId2 = random.nextBoolean() ? "1" : "1-2";
+        return new IndexResiduePairIdentifier(new IndexSelection(structOperId1, random.nextInt(1000)), new IndexSelection(structOperId2, random.nextInt(1000)));
+    }
+
+    private static String toString(ResiduePairIdentifier identifier) {
+        return identifier.getStructOperId1() + "_" + identifier.getIndex1() + "-" + identifier.getStructOperId2() + "_" + identifier.getIndex2();
+    }
+
+    /**
+     * A run with residue pairs of some structures, descriptors are drawn from a small pool so that runs overlap.
+     */
+    private static Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> randomRun(Random random, int[] codes, List<String> structureIdentifiers) {
+        Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> run = new HashMap<>();
+        for (String structureIdentifier : structureIdentifiers) {
+            int descriptors = 1 + random.nextInt(10);
+            for (int i = 0; i < descriptors; i++) {
+                int code = codes[random.nextInt(codes.length)];
+                Collection<ResiduePairIdentifier> identifiers = run.computeIfAbsent(code, k -> new HashMap<>())
+                        .computeIfAbsent(structureIdentifier, k -> new ArrayList<>());
+                int pairs = 1 + random.nextInt(3);
+                for (int j = 0; j < pairs; j++) {
+                    identifiers.add(randomIdentifier(random));
+                }
+            }
+        }
+        return run;
+    }
+
+    private static void add(Map<Integer, Map<String, List<String>>> expected, Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> run) {
+        run.forEach((code, group) -> group.forEach((structureIdentifier, identifiers) -> expected.computeIfAbsent(code, k -> new TreeMap<>())
+                .put(structureIdentifier, identifiers.stream().map(SpillRunsTest::toString).collect(Collectors.toList()))));
+    }
+
+    @Test
+    public void whenMergingRuns_thenMatchSortedMergeInMemory() {
+        Random random = new Random(42);
+        int[] codes = new int[25];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = randomCode(random);
+        }
+
+        // each structure is part of exactly one run
+        List<Map<Integer, Map<String, Collection<ResiduePairIdentifier>>>> runs = new ArrayList<>();
+        int structureCounter = 0;
+        for (int i = 0; i < 4; i++) {
+            List<String> structureIdentifiers = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                structureIdentifiers.add(String.format("%04d", structureCounter++ * 7919 % 10000));
+            }
+            runs.add(randomRun(random, codes, structureIdentifiers));
+        }
+        runs.add(1, new HashMap<>());
+        Map<String, Collection<ResiduePairIdentifier>> single = new HashMap<>();
+        single.put("SNGL", List.of(new IndexResiduePairIdentifier(new IndexSelection("1", 1), new IndexSelection("2", 2))));
+        runs.add(3, Map.of(codes[0], single));
+
+        Map<Integer, Map<String, List<String>>> expected = new TreeMap<>();
+        try (SpillRuns spillRuns = new SpillRuns(directory)) {
+            for (Map<Integer, Map<String, Collection<ResiduePairIdentifier>>> run : runs) {
+                spillRuns.write(run);
+                add(expected, run);
+            }
+            assertEquals(runs.size(), spillRuns.size());
+
+            Map<Integer, Map<String, List<String>>> actual = new TreeMap<>();
+            List<Integer> order = new ArrayList<>();
+            spillRuns.merge((residuePairDescriptor, residuePairs) -> {
+                int code = residuePairDescriptor.getCode();
+                order.add(code);
+                List<String> structureIdentifiers = new ArrayList<>(residuePairs.keySet());
+                assertEquals(structureIdentifiers.stream().sorted().collect(Collectors.toList()), structureIdentifiers, "structures out of order");
+                Map<String, List<String>> group = new TreeMap<>();
+                residuePairs.forEach((structureIdentifier, identifiers) -> group.put(structureIdentifier, identifiers.stream().map(SpillRunsTest::toString).collect(Collectors.toList())));
+                actual.put(code, group);
+            });
+
+            // each descriptor is reported once, in ascending order
+            assertEquals(new ArrayList<>(expected.keySet()), order);
+            assertEquals(expected, actual);
+            assertTrue(actual.get(codes[0]).containsKey("SNGL"));
+        }
+    }
+
+    @Test
+    public void whenOnlyEmptyRuns_thenMergeNothing() {
+        try (SpillRuns spillRuns = new SpillRuns(directory)) {
+            spillRuns.write(new HashMap<>());
+            spillRuns.write(new HashMap<>());
+            List<ResiduePairDescriptor> merged = new ArrayList<>();
+            spillRuns.merge((residuePairDescriptor, residuePairs) -> merged.add(residuePairDescriptor));
+            assertTrue(merged.isEmpty());
+        }
+    }
+}